@@ -0,0 +1,322 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven.indexer;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.maven.index.ArtifactContext;
+import org.apache.maven.index.ArtifactContextProducer;
+import org.apache.maven.index.DefaultArtifactContextProducer;
+import org.apache.maven.index.DefaultIndexer;
+import org.apache.maven.index.DefaultIndexerEngine;
+import org.apache.maven.index.DefaultQueryCreator;
+import org.apache.maven.index.DefaultSearchEngine;
+import org.apache.maven.index.Indexer;
+import org.apache.maven.index.artifact.DefaultArtifactPackagingMapper;
+import org.apache.maven.index.context.IndexCreator;
+import org.apache.maven.index.context.IndexingContext;
+import org.apache.maven.index.creator.JarFileContentsIndexCreator;
+import org.apache.maven.index.creator.MinimalArtifactInfoIndexCreator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds, from a local repository or a mirror laid out as one, the index and usage statistics the
+ * artifact searcher of the plugin loads: an output directory holding the maven-indexer context in
+ * "index" and "ArtifactUsage.json" next to it, the layout of resources/IndexData and of the
+ * indexes added with the maven.artifactSearch.indexes setting.
+ *
+ * <p>Version directories are walked in name order and indexed in parallel, a batch at a time so
+ * that memory stays bounded whatever the size of the repository. Every few minutes the index is
+ * committed together with the last directory completed and the usage counts, and a build started
+ * again with --resume carries on from there.
+ */
+public class IndexBuilder {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java -jar com.microsoft.java.maven.indexer.jar --repository <dir> --output <dir> [options]",
+            "",
+            "  --repository <dir>          local repository or mirror to index",
+            "  --output <dir>              receives index/ and ArtifactUsage.json",
+            "  --resume                    carry on from the last checkpoint of a build in <dir>",
+            "  --threads <n>               artifacts read in parallel (default: available processors)",
+            "  --batch <n>                 version directories held in memory at once (default: 64 per thread)",
+            "  --checkpoint-minutes <n>    time between checkpoints (default: 5)",
+            "  --report-seconds <n>        time between throughput reports (default: 10)",
+            "  --context-id <id>           id of the indexing context (default: indexer)",
+            "  --repository-id <id>        id of the repository in the index (default: repo)");
+
+    // commit data of the index: the last version directory completed, or that the build is over
+    private static final String RESUME_AFTER = "resumeAfter";
+    private static final String COMPLETED = "completed";
+
+    private final Path repository;
+    private final Path output;
+    private final int threads;
+    private final int batchSize;
+    private final long checkpointMillis;
+    private final long reportMillis;
+    private final String contextId;
+    private final String repositoryId;
+
+    private final AtomicLong directories = new AtomicLong();
+    private final AtomicLong poms = new AtomicLong();
+    private final AtomicLong jars = new AtomicLong();
+    private final AtomicLong jarBytes = new AtomicLong();
+    private final AtomicLong unreadable = new AtomicLong();
+
+    IndexBuilder(Path repository, Path output, int threads, int batchSize, long checkpointMillis, long reportMillis,
+            String contextId, String repositoryId) {
+        this.repository = repository;
+        this.output = output;
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.checkpointMillis = checkpointMillis;
+        this.reportMillis = reportMillis;
+        this.contextId = contextId;
+        this.repositoryId = repositoryId;
+    }
+
+    public static void main(String[] args) {
+        final Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("--resume".equals(args[i])) {
+                options.put(args[i], "true");
+            } else if (args[i].startsWith("--") && i + 1 < args.length) {
+                options.put(args[i], args[++i]);
+            } else {
+                exit(USAGE);
+            }
+        }
+        final String repository = options.get("--repository");
+        final String output = options.get("--output");
+        if (repository == null || output == null) {
+            exit(USAGE);
+        }
+        if (!Files.isDirectory(Paths.get(repository))) {
+            exit("Not a directory: " + repository);
+        }
+        try {
+            final int threads = Integer.parseInt(options.getOrDefault("--threads",
+                    String.valueOf(Runtime.getRuntime().availableProcessors())));
+            final int batchSize = Integer.parseInt(options.getOrDefault("--batch", String.valueOf(threads * 64)));
+            final long checkpointMillis = TimeUnit.MINUTES.toMillis(
+                    Long.parseLong(options.getOrDefault("--checkpoint-minutes", "5")));
+            final long reportMillis = TimeUnit.SECONDS.toMillis(
+                    Long.parseLong(options.getOrDefault("--report-seconds", "10")));
+            if (threads < 1 || batchSize < 1 || reportMillis < 1) {
+                exit(USAGE);
+            }
+            new IndexBuilder(Paths.get(repository).toAbsolutePath(), Paths.get(output).toAbsolutePath(), threads,
+                    batchSize, checkpointMillis, reportMillis, options.getOrDefault("--context-id", "indexer"),
+                    options.getOrDefault("--repository-id", "repo")).build(options.containsKey("--resume"));
+        } catch (NumberFormatException e) {
+            exit(USAGE);
+        } catch (IOException | UncheckedIOException | IllegalStateException e) {
+            exit("Index build failed: " + e.getMessage());
+        }
+    }
+
+    private static void exit(String message) {
+        System.err.println(message);
+        System.exit(1);
+    }
+
+    void build(boolean resume) throws IOException {
+        final File indexDirectory = output.resolve("index").toFile();
+        final File checkpointFile = output.resolve("checkpoint").resolve("usage.bin").toFile();
+        final String[] existing = indexDirectory.list();
+        if (!resume && existing != null && existing.length > 0) {
+            throw new IllegalStateException(indexDirectory + " is not empty, pass --resume to carry on with it");
+        }
+
+        final Indexer indexer = new DefaultIndexer(new DefaultSearchEngine(), new DefaultIndexerEngine(),
+                new DefaultQueryCreator());
+        final List<IndexCreator> creators = Arrays.asList(new MinimalArtifactInfoIndexCreator(),
+                new JarFileContentsIndexCreator());
+        final IndexingContext context = indexer.createIndexingContext(contextId, repositoryId, repository.toFile(),
+                indexDirectory, null, null, true, false, creators);
+        final UsageCounter usage = new UsageCounter();
+        final ExecutorService workers = Executors.newFixedThreadPool(threads, daemonThreads("Maven Index Builder"));
+        final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(
+                daemonThreads("Maven Index Builder Report"));
+        boolean completed = false;
+        try {
+            final Map<String, String> commitData = context.getIndexWriter().getCommitData();
+            if (commitData.containsKey(COMPLETED)) {
+                throw new IllegalStateException(indexDirectory + " holds a completed build");
+            }
+            final String resumeAfter = commitData.get(RESUME_AFTER);
+            if (resumeAfter != null) {
+                if (!checkpointFile.isFile()) {
+                    throw new IllegalStateException("The usage counts of the checkpoint are missing: " +
+                            checkpointFile);
+                }
+                usage.load(checkpointFile);
+                System.err.println("Resuming after " + resumeAfter);
+            }
+            Files.createDirectories(checkpointFile.toPath().getParent());
+
+            final long start = System.nanoTime();
+            reporter.scheduleAtFixedRate(() -> report(start, usage), reportMillis, reportMillis,
+                    TimeUnit.MILLISECONDS);
+            final ArtifactContextProducer producer = new DefaultArtifactContextProducer(
+                    new DefaultArtifactPackagingMapper());
+            final RepositoryWalker walker = new RepositoryWalker(repository, resumeAfter);
+            // the last version directory completed
+            String resumePoint = resumeAfter;
+            long lastCheckpoint = System.currentTimeMillis();
+            final List<Callable<Void>> batch = new ArrayList<>(batchSize);
+            while (walker.hasNext()) {
+                Path last = null;
+                batch.clear();
+                while (batch.size() < batchSize && walker.hasNext()) {
+                    final Path directory = walker.next();
+                    batch.add(() -> {
+                        indexVersion(directory, context, producer, usage);
+                        return null;
+                    });
+                    last = directory;
+                }
+                for (final Future<Void> result : workers.invokeAll(batch)) {
+                    result.get();
+                }
+                resumePoint = walker.relativize(last);
+                if (System.currentTimeMillis() - lastCheckpoint >= checkpointMillis) {
+                    checkpoint(context, usage, checkpointFile, Collections.singletonMap(RESUME_AFTER, resumePoint));
+                    lastCheckpoint = System.currentTimeMillis();
+                }
+            }
+
+            // the steps below commit on their own, a build stopped among them resumes from here
+            if (resumePoint != null) {
+                checkpoint(context, usage, checkpointFile, Collections.singletonMap(RESUME_AFTER, resumePoint));
+            }
+            // the searcher opens the index as it is, merge it once instead of on every load
+            context.getIndexWriter().forceMerge(1);
+            context.rebuildGroups();
+            context.updateTimestamp(true);
+            usage.writeUsage(output.resolve("ArtifactUsage.json").toFile());
+            checkpoint(context, usage, checkpointFile, Collections.singletonMap(COMPLETED, "true"));
+            report(start, usage);
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted, resume from the last checkpoint", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            reporter.shutdownNow();
+            workers.shutdownNow();
+            // what was indexed since the last checkpoint is dropped, a resumed build indexes it again
+            if (!completed) {
+                context.rollback();
+            }
+            indexer.closeIndexingContext(context, false);
+        }
+        Files.deleteIfExists(checkpointFile.toPath());
+        Files.deleteIfExists(checkpointFile.toPath().getParent());
+    }
+
+    /**
+     * Indexes the artifacts of a version directory: the usage of the dependencies of each pom and
+     * the class names of the jar beside it, if any.
+     */
+    void indexVersion(Path directory, IndexingContext context, ArtifactContextProducer producer,
+            UsageCounter usage) throws IOException {
+        directories.incrementAndGet();
+        final List<Path> pomFiles = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*.pom")) {
+            entries.forEach(pomFiles::add);
+        } catch (IOException e) {
+            unreadable.incrementAndGet();
+            return;
+        }
+        for (final Path pom : pomFiles) {
+            poms.incrementAndGet();
+            if (!usage.addPom(pom)) {
+                unreadable.incrementAndGet();
+            }
+            final String name = pom.getFileName().toString();
+            final Path jar = directory.resolve(name.substring(0, name.length() - ".pom".length()) + ".jar");
+            if (!Files.isRegularFile(jar)) {
+                continue;
+            }
+            final ArtifactContext artifact = producer.getArtifactContext(context, jar.toFile());
+            if (artifact == null) {
+                continue;
+            }
+            // the creators record what they cannot read instead of failing, index what they could
+            final Document document = artifact.createDocument(context);
+            if (!artifact.getErrors().isEmpty()) {
+                unreadable.incrementAndGet();
+            }
+            context.getIndexWriter().addDocument(document);
+            jars.incrementAndGet();
+            jarBytes.addAndGet(Files.size(jar));
+        }
+    }
+
+    /**
+     * Persists the usage counts first: dependencies are counted once, so counts ahead of the index
+     * are harmless when a build resumes, while counts behind it would lose the poms in between.
+     */
+    private static void checkpoint(IndexingContext context, UsageCounter usage, File checkpointFile,
+            Map<String, String> commitData) throws IOException {
+        usage.save(checkpointFile);
+        final IndexWriter writer = context.getIndexWriter();
+        writer.setCommitData(commitData);
+        context.commit();
+    }
+
+    private void report(long start, UsageCounter usage) {
+        final double seconds = Math.max(1e-3, (System.nanoTime() - start) / 1e9);
+        System.err.println(String.format("%,d directories, %,d poms, %,d jars (%.1f/s, %.1f MB/s), " +
+                "%,d unreadable, %,d artifacts used", directories.get(), poms.get(), jars.get(), jars.get() / seconds,
+                jarBytes.get() / seconds / (1024 * 1024), unreadable.get(), usage.size()));
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name + " " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven.indexer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks the version directories of a repository layout (group/artifact/version), the directories
+ * holding poms, depth first and in name order, so that a walk can be resumed after the last
+ * directory a previous one completed. Only the listings of the directories being walked are kept
+ * in memory, whatever the size of the repository.
+ */
+class RepositoryWalker implements Iterator<Path> {
+
+    private final Path repository;
+    // the directories left to visit of each level being walked, in name order
+    private final Deque<Iterator<Path>> pending = new ArrayDeque<>();
+    // segments of the directory to resume after, null to walk everything
+    private final String[] resumeAfter;
+    private Path next;
+
+    /**
+     * @param resumeAfter path relative to the repository, with "/" separators, of the last version
+     *     directory completed by a previous walk, or null to start from the beginning
+     */
+    RepositoryWalker(Path repository, String resumeAfter) {
+        this.repository = repository;
+        this.resumeAfter = resumeAfter == null ? null : resumeAfter.split("/");
+        pending.push(listDirectories(repository).iterator());
+    }
+
+    /**
+     * The path of a version directory as recorded in checkpoints.
+     */
+    String relativize(Path directory) {
+        return repository.relativize(directory).toString().replace('\\', '/');
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && !pending.isEmpty()) {
+            final Iterator<Path> level = pending.peek();
+            if (!level.hasNext()) {
+                pending.pop();
+                continue;
+            }
+            final Path directory = level.next();
+            final int order = compareToResumePoint(directory);
+            if (order < 0 && !isResumeAncestor(directory)) {
+                // completed by the previous walk
+                continue;
+            }
+            final List<Path> children = new ArrayList<>();
+            if (containsPom(directory, children)) {
+                if (order > 0) {
+                    next = directory;
+                }
+            } else {
+                Collections.sort(children);
+                pending.push(children.iterator());
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Path next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Path result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * Compares a directory to the resume point in walk order: segment by segment, an ancestor of
+     * the resume point coming before it.
+     */
+    private int compareToResumePoint(Path directory) {
+        if (resumeAfter == null) {
+            return 1;
+        }
+        final String[] segments = relativize(directory).split("/");
+        for (int i = 0; i < Math.min(segments.length, resumeAfter.length); i++) {
+            final int order = segments[i].compareTo(resumeAfter[i]);
+            if (order != 0) {
+                return order;
+            }
+        }
+        return Integer.compare(segments.length, resumeAfter.length);
+    }
+
+    private boolean isResumeAncestor(Path directory) {
+        final String[] segments = relativize(directory).split("/");
+        return segments.length < resumeAfter.length &&
+                Arrays.equals(segments, Arrays.copyOf(resumeAfter, segments.length));
+    }
+
+    /**
+     * Whether the directory holds poms, collecting its subdirectories otherwise.
+     */
+    private static boolean containsPom(Path directory, List<Path> children) {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (final Path entry : entries) {
+                if (entry.getFileName().toString().endsWith(".pom") && Files.isRegularFile(entry)) {
+                    return true;
+                }
+                if (Files.isDirectory(entry) && !entry.getFileName().toString().startsWith(".")) {
+                    children.add(entry);
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            // unreadable directories are skipped, as the files they would hold
+            children.clear();
+            return false;
+        }
+    }
+
+    private static List<Path> listDirectories(Path directory) {
+        final List<Path> directories = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (final Path entry : entries) {
+                if (!entry.getFileName().toString().startsWith(".")) {
+                    directories.add(entry);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Collections.sort(directories);
+        return directories;
+    }
+}
@@ -0,0 +1,335 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven.indexer;
+
+import com.google.gson.Gson;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts how many artifacts use each artifact, from the dependencies their poms declare: the
+ * "groupId:artifactId" -> count map the searcher reads from ArtifactUsage.json to rank results.
+ * An artifact counts once per dependency whatever the number of its versions, so dependencies are
+ * deduplicated on a 64-bit hash of the (dependent, dependency) pair rather than kept as strings.
+ */
+class UsageCounter {
+
+    private static final int MAGIC = 0x4d565543; // "MVUC"
+    private static final int FORMAT_VERSION = 1;
+
+    // factories are not guaranteed to be thread-safe, and creating one per pom is costly
+    private static final ThreadLocal<XMLInputFactory> factories = ThreadLocal.withInitial(
+            UsageCounter::createFactory);
+
+    private final Map<String, Integer> usages = new HashMap<>();
+    private final LongSet dependencies = new LongSet();
+
+    /**
+     * Records the dependencies declared by a pom, returns false if it cannot be read.
+     */
+    boolean addPom(Path pom) {
+        final List<String> declared;
+        final String dependent;
+        try (InputStream in = Files.newInputStream(pom)) {
+            final PomDependencies parsed = parse(in);
+            if (parsed.artifactId == null || parsed.groupId == null) {
+                return false;
+            }
+            dependent = parsed.groupId + ":" + parsed.artifactId;
+            declared = parsed.dependencies;
+        } catch (IOException | XMLStreamException e) {
+            return false;
+        }
+        synchronized (this) {
+            for (final String dependency : declared) {
+                if (!dependency.equals(dependent) && dependencies.add(hash(dependent, dependency))) {
+                    usages.merge(dependency, 1, Integer::sum);
+                }
+            }
+        }
+        return true;
+    }
+
+    synchronized int size() {
+        return usages.size();
+    }
+
+    /**
+     * Writes the counts as the searcher reads them, sorted to keep the file stable across builds.
+     */
+    synchronized void writeUsage(File file) throws IOException {
+        final File temp = new File(file.getPath() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            new Gson().toJson(new TreeMap<>(usages), writer);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Persists the counts and the dependencies seen so far, for a build to resume from.
+     */
+    synchronized void save(File file) throws IOException {
+        final File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(usages.size());
+            for (final Map.Entry<String, Integer> usage : usages.entrySet()) {
+                out.writeUTF(usage.getKey());
+                out.writeInt(usage.getValue());
+            }
+            dependencies.write(out);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Restores what {@link #save(File)} persisted.
+     */
+    synchronized void load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a usage checkpoint: " + file);
+            }
+            usages.clear();
+            final int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                usages.put(in.readUTF(), in.readInt());
+            }
+            dependencies.read(in);
+        }
+    }
+
+    private static class PomDependencies {
+        String groupId;
+        String parentGroupId;
+        String artifactId;
+        final Map<String, String> properties = new HashMap<>();
+        // groupId:artifactId of each dependency, the coordinates may still refer to properties
+        final List<String[]> coordinates = new ArrayList<>();
+        final List<String> dependencies = new ArrayList<>();
+    }
+
+    /**
+     * Reads the coordinates of a pom and of the dependencies it declares, management sections and
+     * profiles left out. Only the properties of the pom itself are interpolated, dependencies
+     * whose coordinates come from a parent are skipped.
+     */
+    private static PomDependencies parse(InputStream in) throws XMLStreamException {
+        final PomDependencies pom = new PomDependencies();
+        final XMLStreamReader reader = factories.get().createXMLStreamReader(in);
+        try {
+            // the elements from <project> down to the current one
+            final List<String> path = new ArrayList<>();
+            String[] dependency = null;
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    path.add(reader.getLocalName());
+                    if (path.size() == 1 && !"project".equals(path.get(0))) {
+                        return pom;
+                    }
+                    final String location = String.join("/", path);
+                    switch (location) {
+                        case "project/groupId":
+                            pom.groupId = reader.getElementText().trim();
+                            path.remove(path.size() - 1);
+                            break;
+                        case "project/artifactId":
+                            pom.artifactId = reader.getElementText().trim();
+                            path.remove(path.size() - 1);
+                            break;
+                        case "project/parent/groupId":
+                            pom.parentGroupId = reader.getElementText().trim();
+                            path.remove(path.size() - 1);
+                            break;
+                        case "project/dependencies/dependency":
+                            dependency = new String[2];
+                            break;
+                        case "project/dependencies/dependency/groupId":
+                            dependency[0] = reader.getElementText().trim();
+                            path.remove(path.size() - 1);
+                            break;
+                        case "project/dependencies/dependency/artifactId":
+                            dependency[1] = reader.getElementText().trim();
+                            path.remove(path.size() - 1);
+                            break;
+                        default:
+                            if (path.size() == 3 && "properties".equals(path.get(1))) {
+                                pom.properties.put(path.get(2), readText(reader));
+                                path.remove(path.size() - 1);
+                            }
+                            break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (dependency != null && path.size() == 3) {
+                        pom.coordinates.add(dependency);
+                        dependency = null;
+                    }
+                    path.remove(path.size() - 1);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        if (pom.groupId == null) {
+            pom.groupId = pom.parentGroupId;
+        }
+        pom.properties.put("project.groupId", pom.groupId);
+        pom.properties.put("pom.groupId", pom.groupId);
+        pom.properties.put("groupId", pom.groupId);
+        for (final String[] coordinates : pom.coordinates) {
+            final String groupId = interpolate(coordinates[0], pom.properties);
+            final String artifactId = interpolate(coordinates[1], pom.properties);
+            if (groupId != null && artifactId != null) {
+                pom.dependencies.add(groupId + ":" + artifactId);
+            }
+        }
+        return pom;
+    }
+
+    private static String interpolate(String value, Map<String, String> properties) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        if (value.startsWith("${") && value.endsWith("}")) {
+            value = properties.get(value.substring(2, value.length() - 1));
+        }
+        return value == null || value.contains("${") ? null : value;
+    }
+
+    /**
+     * Reads the text of the current element until its end, ignoring nested elements.
+     */
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        final StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (depth == 1 && (event == XMLStreamConstants.CHARACTERS ||
+                    event == XMLStreamConstants.CDATA)) {
+                text.append(reader.getText());
+            }
+        }
+        return text.toString().trim();
+    }
+
+    private static XMLInputFactory createFactory() {
+        final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return inputFactory;
+    }
+
+    /**
+     * FNV-1a over "dependent>dependency".
+     */
+    private static long hash(String dependent, String dependency) {
+        long hash = 0xcbf29ce484222325L;
+        final String key = dependent + ">" + dependency;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * An open-addressing set of longs, a few bytes per dependency where boxed longs would take
+     * several times more across the millions of dependencies of a mirror.
+     */
+    private static class LongSet {
+        // 0 marks a free slot, the hash 0 being stored as 1
+        private long[] slots = new long[1 << 16];
+        private int size;
+
+        boolean add(long value) {
+            value = value == 0 ? 1 : value;
+            if (size * 4 >= slots.length * 3) {
+                grow();
+            }
+            final int mask = slots.length - 1;
+            for (int i = (int) mix(value) & mask; ; i = (i + 1) & mask) {
+                if (slots[i] == value) {
+                    return false;
+                }
+                if (slots[i] == 0) {
+                    slots[i] = value;
+                    size++;
+                    return true;
+                }
+            }
+        }
+
+        private void grow() {
+            final long[] previous = slots;
+            slots = new long[previous.length * 2];
+            size = 0;
+            for (final long value : previous) {
+                if (value != 0) {
+                    add(value);
+                }
+            }
+        }
+
+        private static long mix(long value) {
+            value ^= value >>> 33;
+            value *= 0xff51afd7ed558ccdL;
+            return value ^ (value >>> 33);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(size);
+            for (final long value : slots) {
+                if (value != 0) {
+                    out.writeLong(value);
+                }
+            }
+        }
+
+        void read(DataInputStream in) throws IOException {
+            final int count = in.readInt();
+            slots = new long[Math.max(1 << 16, Integer.highestOneBit(Math.max(1, count)) << 2)];
+            size = 0;
+            for (int i = 0; i < count; i++) {
+                add(in.readLong());
+            }
+        }
+    }
+}
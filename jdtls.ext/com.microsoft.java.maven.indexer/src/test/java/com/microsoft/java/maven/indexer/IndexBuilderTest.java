@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven.indexer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.maven.index.ArtifactContextProducer;
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.context.IndexingContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Builds the index of a fixture repository, stopped by a failure and resumed from its checkpoint.
+ */
+public class IndexBuilderTest {
+
+    @TempDir
+    Path temp;
+
+    private Path repository;
+    private Path output;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        repository = temp.resolve("repository");
+        output = temp.resolve("output");
+        artifact("a", null);
+        artifact("b", "a");
+        artifact("c", "a");
+        artifact("d", "a");
+    }
+
+    @Test
+    public void testFailedBuildRollsBackToItsCheckpointAndResumes() throws IOException {
+        // two version directories per batch, a checkpoint after each: c is indexed, then d fails
+        final IndexBuilder failing = new IndexBuilder(repository, output, 1, 2, 0, 60000, "test", "repo") {
+            @Override
+            void indexVersion(Path directory, IndexingContext context, ArtifactContextProducer producer,
+                    UsageCounter usage) throws IOException {
+                if (directory.endsWith("d/1.0")) {
+                    throw new IOException("Cannot read " + directory);
+                }
+                super.indexVersion(directory, context, producer, usage);
+            }
+        };
+        assertThrows(IOException.class, () -> failing.build(false));
+
+        assertEquals("com/example/b/1.0", readCommitData().get("resumeAfter"));
+        assertEquals(new TreeSet<>(Arrays.asList("a", "b")), readIndexedArtifacts());
+        assertTrue(Files.isRegularFile(output.resolve("checkpoint/usage.bin")));
+        assertThrows(IllegalStateException.class, () -> builder().build(false));
+
+        builder().build(true);
+
+        assertEquals("true", readCommitData().get("completed"));
+        assertEquals(new TreeSet<>(Arrays.asList("a", "b", "c", "d")), readIndexedArtifacts());
+        // c was counted before the failure, but only once in the end
+        final String usage = new String(Files.readAllBytes(output.resolve("ArtifactUsage.json")),
+                StandardCharsets.UTF_8);
+        assertEquals("{\"com.example:a\":3}", usage);
+        assertFalse(Files.exists(output.resolve("checkpoint")));
+        assertThrows(IllegalStateException.class, () -> builder().build(true));
+    }
+
+    private IndexBuilder builder() {
+        return new IndexBuilder(repository, output, 2, 2, 0, 60000, "test", "repo");
+    }
+
+    private Map<String, String> readCommitData() throws IOException {
+        try (Directory directory = FSDirectory.open(output.resolve("index"));
+                DirectoryReader reader = DirectoryReader.open(directory)) {
+            return reader.getIndexCommit().getUserData();
+        }
+    }
+
+    /**
+     * The artifactIds of the artifact documents, leaving out the descriptor and group documents.
+     */
+    private TreeSet<String> readIndexedArtifacts() throws IOException {
+        final TreeSet<String> artifactIds = new TreeSet<>();
+        try (Directory directory = FSDirectory.open(output.resolve("index"));
+                DirectoryReader reader = DirectoryReader.open(directory)) {
+            final Bits liveDocs = MultiFields.getLiveDocs(reader);
+            for (int i = 0; i < reader.maxDoc(); i++) {
+                final String uinfo = liveDocs == null || liveDocs.get(i) ? reader.document(i).get(ArtifactInfo.UINFO) :
+                        null;
+                if (uinfo != null) {
+                    artifactIds.add(uinfo.split("\\|")[1]);
+                }
+            }
+        }
+        return artifactIds;
+    }
+
+    /**
+     * Installs com.example:artifactId:1.0, a pom depending on com.example:dependency and a jar
+     * holding one class.
+     */
+    private void artifact(String artifactId, String dependency) throws IOException {
+        final Path directory = repository.resolve("com/example/" + artifactId + "/1.0");
+        Files.createDirectories(directory);
+        Files.write(directory.resolve(artifactId + "-1.0.pom"), String.join("\n",
+                "<project>",
+                "  <groupId>com.example</groupId>",
+                "  <artifactId>" + artifactId + "</artifactId>",
+                "  <version>1.0</version>",
+                dependency == null ? "" : "  <dependencies><dependency><groupId>com.example</groupId>" +
+                        "<artifactId>" + dependency + "</artifactId></dependency></dependencies>",
+                "</project>").getBytes(StandardCharsets.UTF_8));
+        try (OutputStream out = Files.newOutputStream(directory.resolve(artifactId + "-1.0.jar"));
+                JarOutputStream jar = new JarOutputStream(out)) {
+            jar.putNextEntry(new ZipEntry("com/example/" + artifactId.toUpperCase() + ".class"));
+            jar.write(new byte[] { (byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe });
+            jar.closeEntry();
+        }
+    }
+}
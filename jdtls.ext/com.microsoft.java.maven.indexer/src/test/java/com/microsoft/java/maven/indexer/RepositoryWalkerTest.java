@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven.indexer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Walks a fixture repository, whole and resumed.
+ */
+public class RepositoryWalkerTest {
+
+    @TempDir
+    Path repository;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        // created out of order, the walk sorts them
+        pom("org/other/x/1.0/x-1.0.pom");
+        pom("com/example/lib/2.0/lib-2.0.pom");
+        pom("com/example/lib/1.0/lib-1.0.pom");
+        pom("com/example/app/1.0/app-1.0.pom");
+        pom(".cache/hidden/1.0/hidden-1.0.pom");
+        Files.write(repository.resolve("com/example/lib/maven-metadata.xml"), new byte[0]);
+        Files.createDirectories(repository.resolve("com/empty"));
+    }
+
+    @Test
+    public void testWalksVersionDirectoriesInNameOrder() {
+        assertEquals(Arrays.asList("com/example/app/1.0", "com/example/lib/1.0", "com/example/lib/2.0",
+                "org/other/x/1.0"), walk(null));
+    }
+
+    @Test
+    public void testResumesAfterTheLastDirectoryCompleted() {
+        assertEquals(Arrays.asList("com/example/lib/2.0", "org/other/x/1.0"), walk("com/example/lib/1.0"));
+        assertEquals(Arrays.asList(), walk("org/other/x/1.0"));
+    }
+
+    @Test
+    public void testResumesAfterADirectoryRemovedSince() {
+        assertEquals(Arrays.asList("com/example/lib/1.0", "com/example/lib/2.0", "org/other/x/1.0"),
+                walk("com/example/bar/1.0"));
+    }
+
+    @Test
+    public void testUnreadableRepository() {
+        assertThrows(UncheckedIOException.class, () -> new RepositoryWalker(repository.resolve("missing"), null));
+    }
+
+    private List<String> walk(String resumeAfter) {
+        final RepositoryWalker walker = new RepositoryWalker(repository, resumeAfter);
+        final List<String> result = new ArrayList<>();
+        while (walker.hasNext()) {
+            result.add(walker.relativize(walker.next()));
+        }
+        return result;
+    }
+
+    private void pom(String path) throws IOException {
+        final Path file = repository.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, "<project/>".getBytes());
+    }
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven.indexer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts the usages declared by fixture poms.
+ */
+public class UsageCounterTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    public void testCountsDeclaredDependencies() throws IOException {
+        final UsageCounter counter = new UsageCounter();
+
+        assertTrue(counter.addPom(pom("app-1.0.pom",
+                "<project>",
+                "  <parent><groupId>com.example</groupId></parent>",
+                "  <artifactId>app</artifactId>",
+                "  <properties><lib.group>org.lib</lib.group></properties>",
+                "  <dependencies>",
+                "    <dependency><groupId>${lib.group}</groupId><artifactId>lib</artifactId></dependency>",
+                "    <dependency><groupId>${project.groupId}</groupId><artifactId>core</artifactId></dependency>",
+                "    <dependency><groupId>${inherited.group}</groupId><artifactId>other</artifactId></dependency>",
+                "    <dependency><groupId>com.example</groupId><artifactId>app</artifactId></dependency>",
+                "  </dependencies>",
+                "  <dependencyManagement><dependencies>",
+                "    <dependency><groupId>org.managed</groupId><artifactId>managed</artifactId></dependency>",
+                "  </dependencies></dependencyManagement>",
+                "  <profiles><profile><dependencies>",
+                "    <dependency><groupId>org.profiled</groupId><artifactId>profiled</artifactId></dependency>",
+                "  </dependencies></profile></profiles>",
+                "</project>")));
+        // another version of the same artifact counts once
+        assertTrue(counter.addPom(pom("app-2.0.pom",
+                "<project>",
+                "  <groupId>com.example</groupId>",
+                "  <artifactId>app</artifactId>",
+                "  <dependencies>",
+                "    <dependency><groupId>org.lib</groupId><artifactId>lib</artifactId></dependency>",
+                "  </dependencies>",
+                "</project>")));
+        assertTrue(counter.addPom(pom("tool-1.0.pom",
+                "<project>",
+                "  <groupId>com.example</groupId>",
+                "  <artifactId>tool</artifactId>",
+                "  <dependencies>",
+                "    <dependency><groupId>org.lib</groupId><artifactId>lib</artifactId></dependency>",
+                "  </dependencies>",
+                "</project>")));
+
+        final Map<String, Integer> expected = new TreeMap<>();
+        expected.put("com.example:core", 1);
+        expected.put("org.lib:lib", 2);
+        assertEquals(expected, usage(counter));
+    }
+
+    @Test
+    public void testUnreadablePoms() throws IOException {
+        final UsageCounter counter = new UsageCounter();
+
+        assertFalse(counter.addPom(pom("broken.pom", "<project><artifactId>a</artifactId>")));
+        assertFalse(counter.addPom(pom("nogroup.pom", "<project><artifactId>a</artifactId></project>")));
+        assertFalse(counter.addPom(temp.resolve("missing.pom")));
+        assertEquals(0, counter.size());
+    }
+
+    @Test
+    public void testCheckpointKeepsTheDependenciesSeen() throws IOException {
+        final Path app = pom("app-1.0.pom",
+                "<project>",
+                "  <groupId>com.example</groupId>",
+                "  <artifactId>app</artifactId>",
+                "  <dependencies>",
+                "    <dependency><groupId>org.lib</groupId><artifactId>lib</artifactId></dependency>",
+                "  </dependencies>",
+                "</project>");
+        final UsageCounter counter = new UsageCounter();
+        counter.addPom(app);
+        counter.save(temp.resolve("usage.bin").toFile());
+
+        final UsageCounter resumed = new UsageCounter();
+        resumed.load(temp.resolve("usage.bin").toFile());
+        resumed.addPom(app);
+
+        assertEquals(usage(counter), usage(resumed));
+    }
+
+    private Map<String, Integer> usage(UsageCounter counter) throws IOException {
+        final Path file = temp.resolve("ArtifactUsage.json");
+        counter.writeUsage(file.toFile());
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return new Gson().fromJson(reader, new TypeToken<TreeMap<String, Integer>>() { }.getType());
+        }
+    }
+
+    private Path pom(String name, String... lines) throws IOException {
+        final Path file = temp.resolve(name);
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,671 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.eclipse.aether.util.version.GenericVersionScheme;
+import org.eclipse.aether.version.InvalidVersionSpecificationException;
+import org.eclipse.aether.version.Version;
+import org.eclipse.m2e.core.MavenPlugin;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches the archetypes of the remote catalogs (Maven Central and any internal mirror), of the
+ * local catalog ({@code ~/.m2/repository/archetype-catalog.xml}) and of the catalog bundled with
+ * the extension. Catalogs are read with a streaming pass, never as a whole document, into one
+ * entry per archetype and a sorted table of the words of their ids and descriptions, so that a
+ * query is a few binary searches whatever the size of the catalogs. Remote catalogs are
+ * downloaded to disk on {@link #refresh()}, and also in the background once a week when automatic
+ * updates are enabled; the index is rebuilt when any catalog changes, queries being answered from
+ * the previous index in the meantime.
+ */
+public class ArchetypeCatalogIndex {
+
+    static final String CENTRAL_CATALOG_URL = "https://repo.maven.apache.org/maven2/archetype-catalog.xml";
+    public static final int DEFAULT_LIMIT = 100;
+    private static final long REMOTE_TTL_MILLIS = TimeUnit.DAYS.toMillis(7);
+    // after a failed download, do not try again on every query
+    private static final long REMOTE_RETRY_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    // what a word of the index belongs to, kept in the lowest bits of the postings
+    private static final int FIELD_ARTIFACT_ID = 0;
+    private static final int FIELD_ARTIFACT_WORD = 1;
+    private static final int FIELD_GROUP_WORD = 2;
+    private static final int FIELD_DESCRIPTION_WORD = 3;
+    private static final int FIELD_BITS = 2;
+    // score of a query term matching a word of each field, as a whole and as a prefix
+    private static final int[] EXACT_SCORES = { 100, 40, 15, 8 };
+    private static final int[] PREFIX_SCORES = { 60, 25, 10, 5 };
+
+    private static ArchetypeCatalogIndex defaultIndex;
+
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final GenericVersionScheme versionScheme = new GenericVersionScheme();
+    private final File localCatalog;
+    private final File cacheDirectory;
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "Maven Archetype Catalogs");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    // url -> when its download last failed
+    private final Map<String, Long> failedDownloads = new ConcurrentHashMap<>();
+    private List<String> mirrors = Collections.emptyList();
+    private File bundledCatalog;
+    // whether outdated remote catalogs (Maven Central's is about 17MB) are downloaded without asking
+    private boolean autoUpdate;
+    private volatile Snapshot snapshot;
+    private boolean refreshScheduled;
+    private OkHttpClient client;
+
+    private static class Entry {
+        final String groupId;
+        final String artifactId;
+        String description;
+        String repository;
+        Set<String> versionSet = new LinkedHashSet<>();
+        List<String> versions;
+        boolean local;
+        boolean remote;
+
+        Entry(String groupId, String artifactId) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+        }
+
+        boolean isLocalOnly() {
+            return local && !remote;
+        }
+    }
+
+    private static class Snapshot {
+        // the stamps of the catalogs it was built from
+        final String key;
+        // ordered the way archetypes are listed without a query
+        final Entry[] entries;
+        final Map<String, Integer> idsByCoordinates;
+        // sorted words, and for each the ids of the entries having it, shifted by FIELD_BITS
+        final String[] words;
+        final int[][] postings;
+
+        Snapshot(String key, Entry[] entries, Map<String, Integer> idsByCoordinates, String[] words,
+                int[][] postings) {
+            this.key = key;
+            this.entries = entries;
+            this.idsByCoordinates = idsByCoordinates;
+            this.words = words;
+            this.postings = postings;
+        }
+    }
+
+    /**
+     * @param localCatalog the catalog of the local repository, e.g. ~/.m2/repository/archetype-catalog.xml
+     * @param cacheDirectory where remote catalogs are downloaded to
+     */
+    ArchetypeCatalogIndex(File localCatalog, File cacheDirectory) {
+        this.localCatalog = localCatalog;
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    public static synchronized ArchetypeCatalogIndex getDefault() {
+        if (defaultIndex == null) {
+            File cacheDirectory = PluginActivator.getStateFile("archetype-catalogs");
+            if (cacheDirectory == null) {
+                cacheDirectory = new File(System.getProperty("java.io.tmpdir"), "vscode-maven-archetype-catalogs");
+            }
+            defaultIndex = new ArchetypeCatalogIndex(
+                    new File(MavenPlugin.getMaven().getLocalRepositoryPath(), "archetype-catalog.xml"), cacheDirectory);
+        }
+        return defaultIndex;
+    }
+
+    /**
+     * @param mirrors the urls of the catalogs to search besides Maven Central's
+     * @param bundledCatalog the archetypes shipped with the extension (a json array), searched until
+     *        the catalog of Maven Central is downloaded
+     * @param autoUpdate whether remote catalogs missing or older than a week are downloaded in the
+     *        background, otherwise only {@link #refresh()} downloads them
+     */
+    public synchronized void configure(List<String> mirrors, String bundledCatalog, boolean autoUpdate) {
+        this.mirrors = mirrors == null ? Collections.emptyList() : new ArrayList<>(mirrors);
+        this.bundledCatalog = bundledCatalog == null ? null : new File(bundledCatalog);
+        this.autoUpdate = autoUpdate;
+    }
+
+    /**
+     * Downloads the remote catalogs again and rebuilds the index, waiting for both. The index is
+     * rebuilt from the catalogs that could be downloaded even when others could not.
+     *
+     * @throws IOException when a catalog could not be downloaded
+     */
+    public void refresh() throws IOException, InterruptedException {
+        try {
+            refresher.submit(() -> {
+                final List<String> failures = new ArrayList<>();
+                for (final String url : getRemoteCatalogs()) {
+                    try {
+                        download(url);
+                    } catch (IOException e) {
+                        failures.add(url + " (" + e.getMessage() + ")");
+                    }
+                }
+                rebuild();
+                if (!failures.isEmpty()) {
+                    throw new IOException("Cannot download the archetype catalogs " + String.join(", ", failures));
+                }
+                return null;
+            }).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Returns the best archetypes for the query, each word of the query having to match the start of
+     * a word of the artifactId, of the groupId or of the description. Without a query archetypes only
+     * known locally come first, then the most released ones. With {@code identifiers} ("g:a") only
+     * those are returned, in the given order, and with {@code localOnly} only those not found in a
+     * remote catalog.
+     */
+    public List<ArchetypeInfo> search(String query, int limit, List<String> identifiers, boolean localOnly) {
+        final Snapshot current = getSnapshot();
+        try (MetricsRegistry.Timer timer = metrics.time("archetypes.search")) {
+            final List<ArchetypeInfo> result = new ArrayList<>();
+            if (identifiers != null) {
+                for (final String identifier : identifiers) {
+                    final Integer id = current.idsByCoordinates.get(identifier);
+                    if (id != null && result.size() < limit) {
+                        result.add(toInfo(current.entries[id]));
+                    }
+                }
+                return result;
+            }
+            final String[] terms = query == null ? new String[0] :
+                    query.trim().toLowerCase(Locale.ROOT).split("[\\s:]+");
+            if (terms.length == 0 || terms[0].isEmpty()) {
+                // entries are already in the default order
+                for (final Entry entry : current.entries) {
+                    if (result.size() >= limit) {
+                        break;
+                    }
+                    if (!localOnly || entry.isLocalOnly()) {
+                        result.add(toInfo(entry));
+                    }
+                }
+                return result;
+            }
+            final int[] scores = score(current, terms);
+            // the best ids, the worst of them at the head; ties keep the default order
+            final PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1,
+                    Comparator.<Integer>comparingInt(id -> scores[id]).thenComparing(Comparator.reverseOrder()));
+            for (int id = 0; id < scores.length; id++) {
+                if (scores[id] > 0 && (!localOnly || current.entries[id].isLocalOnly())) {
+                    best.add(id);
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+            final List<Integer> ids = new ArrayList<>(best);
+            ids.sort(Comparator.<Integer>comparingInt(id -> -scores[id]).thenComparing(Comparator.naturalOrder()));
+            for (final int id : ids) {
+                result.add(toInfo(current.entries[id]));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Sums the scores of the terms for each entry, entries missing any term scoring 0.
+     */
+    private static int[] score(Snapshot current, String[] terms) {
+        final int[] scores = new int[current.entries.length];
+        final int[] termScores = new int[current.entries.length];
+        for (int t = 0; t < terms.length; t++) {
+            Arrays.fill(termScores, 0);
+            final String term = terms[t];
+            int index = Arrays.binarySearch(current.words, term);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            for (; index < current.words.length && current.words[index].startsWith(term); index++) {
+                final boolean exact = current.words[index].length() == term.length();
+                for (final int posting : current.postings[index]) {
+                    final int field = posting & ((1 << FIELD_BITS) - 1);
+                    final int id = posting >>> FIELD_BITS;
+                    termScores[id] = Math.max(termScores[id], exact ? EXACT_SCORES[field] : PREFIX_SCORES[field]);
+                }
+            }
+            for (int id = 0; id < scores.length; id++) {
+                // a term that does not match discards the entry for good
+                scores[id] = termScores[id] == 0 || (t > 0 && scores[id] == 0) ? 0 : scores[id] + termScores[id];
+            }
+        }
+        return scores;
+    }
+
+    private static ArchetypeInfo toInfo(Entry entry) {
+        return new ArchetypeInfo(entry.groupId, entry.artifactId, entry.description, entry.repository,
+                entry.versions, entry.isLocalOnly());
+    }
+
+    /**
+     * Returns the current index, building it on first use and in the background when a catalog
+     * changed since.
+     */
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    // the bundled and local catalogs are read right away, the downloaded ones (tens of
+                    // MB) in the background
+                    snapshot = build("", false);
+                }
+                current = snapshot;
+            }
+        }
+        scheduleRefresh(current);
+        return current;
+    }
+
+    private synchronized void scheduleRefresh(Snapshot current) {
+        if (refreshScheduled) {
+            return;
+        }
+        final boolean stale = !current.key.equals(getSourcesKey());
+        final List<String> outdated = new ArrayList<>();
+        final long now = System.currentTimeMillis();
+        for (final String url : autoUpdate ? getRemoteCatalogs() : Collections.<String>emptyList()) {
+            final File file = getCatalogFile(url);
+            final Long failedAt = failedDownloads.get(url);
+            if ((!file.isFile() || now - file.lastModified() > REMOTE_TTL_MILLIS) &&
+                    (failedAt == null || now - failedAt > REMOTE_RETRY_MILLIS)) {
+                outdated.add(url);
+            }
+        }
+        if (!stale && outdated.isEmpty()) {
+            return;
+        }
+        refreshScheduled = true;
+        refresher.execute(() -> {
+            try {
+                for (final String url : outdated) {
+                    try {
+                        download(url);
+                    } catch (IOException e) {
+                        // tried again after a while, the previous copy is searched meanwhile
+                    }
+                }
+                rebuild();
+            } finally {
+                synchronized (this) {
+                    refreshScheduled = false;
+                }
+            }
+        });
+    }
+
+    private void rebuild() {
+        final String key = getSourcesKey();
+        final Snapshot current = snapshot;
+        if (current == null || !current.key.equals(key)) {
+            final Snapshot rebuilt = build(key, true);
+            synchronized (this) {
+                snapshot = rebuilt;
+            }
+        }
+    }
+
+    private synchronized List<String> getRemoteCatalogs() {
+        final List<String> catalogs = new ArrayList<>();
+        catalogs.add(CENTRAL_CATALOG_URL);
+        for (final String mirror : mirrors) {
+            if (!catalogs.contains(mirror)) {
+                catalogs.add(mirror);
+            }
+        }
+        return catalogs;
+    }
+
+    private synchronized File getBundledCatalog() {
+        return bundledCatalog;
+    }
+
+    private String getSourcesKey() {
+        final StringBuilder key = new StringBuilder();
+        for (final String url : getRemoteCatalogs()) {
+            key.append(url).append('=').append(stampOf(getCatalogFile(url))).append(';');
+        }
+        final File bundled = getBundledCatalog();
+        if (bundled != null) {
+            key.append(bundled.getPath()).append('=').append(stampOf(bundled)).append(';');
+        }
+        return key.append(stampOf(localCatalog)).toString();
+    }
+
+    private static long stampOf(File file) {
+        return file.lastModified() * 31 + file.length();
+    }
+
+    private Snapshot build(String key, boolean readDownloads) {
+        try (MetricsRegistry.Timer timer = metrics.time("archetypes.index")) {
+            final Map<String, Entry> entries = new HashMap<>();
+            boolean centralRead = false;
+            for (final String url : readDownloads ? getRemoteCatalogs() : Collections.<String>emptyList()) {
+                final File file = getCatalogFile(url);
+                if (file.isFile() && readCatalogQuietly(file, entries, false) && CENTRAL_CATALOG_URL.equals(url)) {
+                    centralRead = true;
+                }
+            }
+            final File bundled = getBundledCatalog();
+            if (!centralRead && bundled != null && bundled.isFile()) {
+                readBundledCatalog(bundled, entries);
+            }
+            if (localCatalog != null && localCatalog.isFile()) {
+                readCatalogQuietly(localCatalog, entries, true);
+            }
+            return index(key, entries.values());
+        }
+    }
+
+    private Snapshot index(String key, Iterable<Entry> values) {
+        final List<Entry> sorted = new ArrayList<>();
+        for (final Entry entry : values) {
+            entry.versions = sortVersions(entry.versionSet);
+            entry.versionSet = null;
+            sorted.add(entry);
+        }
+        sorted.sort(Comparator.comparing((Entry entry) -> !entry.isLocalOnly())
+                .thenComparing(entry -> -entry.versions.size())
+                .thenComparing(entry -> entry.groupId)
+                .thenComparing(entry -> entry.artifactId));
+
+        final Entry[] entries = sorted.toArray(new Entry[0]);
+        final Map<String, Integer> idsByCoordinates = new HashMap<>(entries.length * 2);
+        final Map<String, IntList> postings = new HashMap<>();
+        for (int id = 0; id < entries.length; id++) {
+            final Entry entry = entries[id];
+            idsByCoordinates.put(entry.groupId + ":" + entry.artifactId, id);
+            final String artifactId = entry.artifactId.toLowerCase(Locale.ROOT);
+            addPosting(postings, artifactId, id, FIELD_ARTIFACT_ID);
+            addWords(postings, artifactId, id, FIELD_ARTIFACT_WORD, 1);
+            final String groupId = entry.groupId.toLowerCase(Locale.ROOT);
+            addPosting(postings, groupId, id, FIELD_GROUP_WORD);
+            addWords(postings, groupId, id, FIELD_GROUP_WORD, 1);
+            if (entry.description != null) {
+                addWords(postings, entry.description.toLowerCase(Locale.ROOT), id, FIELD_DESCRIPTION_WORD, 2);
+            }
+        }
+        final String[] words = postings.keySet().toArray(new String[0]);
+        Arrays.sort(words);
+        final int[][] postingArrays = new int[words.length][];
+        for (int i = 0; i < words.length; i++) {
+            postingArrays[i] = postings.get(words[i]).toArray();
+        }
+        return new Snapshot(key, entries, idsByCoordinates, words, postingArrays);
+    }
+
+    /**
+     * Adds the words of a text, i.e. its runs of letters and digits, other than the text itself.
+     */
+    private static void addWords(Map<String, IntList> postings, String text, int id, int field, int minLength) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            final boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                if (i - start >= minLength && i - start < text.length()) {
+                    addPosting(postings, text.substring(start, i), id, field);
+                }
+                start = -1;
+            }
+        }
+    }
+
+    private static void addPosting(Map<String, IntList> postings, String word, int id, int field) {
+        postings.computeIfAbsent(word, k -> new IntList()).add(id << FIELD_BITS | field);
+    }
+
+    private List<String> sortVersions(Set<String> versions) {
+        final List<Version> parsed = new ArrayList<>(versions.size());
+        for (final String version : versions) {
+            try {
+                parsed.add(versionScheme.parseVersion(version));
+            } catch (InvalidVersionSpecificationException e) {
+                // not a version
+            }
+        }
+        Collections.sort(parsed, Collections.reverseOrder());
+        final List<String> result = new ArrayList<>(parsed.size());
+        for (final Version version : parsed) {
+            result.add(version.toString());
+        }
+        return result;
+    }
+
+    private boolean readCatalogQuietly(File file, Map<String, Entry> entries, boolean local) {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            readCatalog(in, entries, local);
+            return true;
+        } catch (IOException | XMLStreamException e) {
+            // a truncated download keeps what was read, and is downloaded again later
+            return false;
+        }
+    }
+
+    /**
+     * Reads the archetypes of an {@code archetype-catalog.xml} document one at a time.
+     */
+    static void readCatalog(InputStream in, Map<String, Entry> entries, boolean local) throws XMLStreamException {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        final XMLStreamReader reader = factory.createXMLStreamReader(in);
+        try {
+            final Map<String, String> fields = new HashMap<>();
+            boolean inArchetype = false;
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    final String name = reader.getLocalName();
+                    if ("archetype".equals(name)) {
+                        inArchetype = true;
+                        fields.clear();
+                    } else if (inArchetype) {
+                        fields.put(name, reader.getElementText().trim());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "archetype".equals(reader.getLocalName())) {
+                    inArchetype = false;
+                    add(entries, fields.get("groupId"), fields.get("artifactId"), fields.get("version"),
+                            fields.get("description"), fields.get("repository"), local);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the json array of archetypes shipped with the extension, each with its versions.
+     */
+    private static void readBundledCatalog(File file, Map<String, Entry> entries) {
+        try (Reader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+                JsonReader reader = new JsonReader(in)) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                final Map<String, String> fields = new HashMap<>();
+                final List<String> versions = new ArrayList<>();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    final String name = reader.nextName();
+                    if ("versions".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            versions.add(reader.nextString());
+                        }
+                        reader.endArray();
+                    } else if (reader.peek() == JsonToken.STRING) {
+                        fields.put(name, reader.nextString());
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                for (final String version : versions) {
+                    add(entries, fields.get("groupId"), fields.get("artifactId"), version, fields.get("description"),
+                            fields.get("repository"), false);
+                }
+            }
+            reader.endArray();
+        } catch (IOException | IllegalStateException e) {
+            // the remote catalogs are used alone
+        }
+    }
+
+    private static void add(Map<String, Entry> entries, String groupId, String artifactId, String version,
+            String description, String repository, boolean local) {
+        if (isEmpty(groupId) || isEmpty(artifactId)) {
+            return;
+        }
+        final Entry entry = entries.computeIfAbsent(groupId + ":" + artifactId, k -> new Entry(groupId, artifactId));
+        if (!isEmpty(version)) {
+            entry.versionSet.add(version);
+        }
+        if (entry.description == null && !isEmpty(description)) {
+            entry.description = description;
+        }
+        if (entry.repository == null && !isEmpty(repository)) {
+            entry.repository = repository;
+        }
+        if (local) {
+            entry.local = true;
+        } else {
+            entry.remote = true;
+        }
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    File getCatalogFile(String url) {
+        return new File(cacheDirectory, sha1(url) + ".xml");
+    }
+
+    /**
+     * Downloads a catalog to disk, replacing the previous copy only once it is complete.
+     */
+    private void download(String url) throws IOException {
+        final File file = getCatalogFile(url);
+        try (MetricsRegistry.Timer timer = metrics.time("archetypes.download")) {
+            try (Response response = getClient().newCall(new Request.Builder().url(url).build()).execute()) {
+                if (!response.isSuccessful() || response.body() == null) {
+                    throw new IOException("HTTP " + response.code());
+                }
+                Files.createDirectories(cacheDirectory.toPath());
+                final File temp = new File(file.getPath() + ".tmp");
+                try (InputStream in = response.body().byteStream()) {
+                    Files.copy(in, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                failedDownloads.remove(url);
+            } catch (IOException e) {
+                timer.fail();
+                failedDownloads.put(url, System.currentTimeMillis());
+                throw e;
+            } catch (IllegalArgumentException e) {
+                timer.fail();
+                failedDownloads.put(url, System.currentTimeMillis());
+                throw new IOException("Invalid url", e);
+            }
+        }
+    }
+
+    private synchronized OkHttpClient getClient() {
+        if (client == null) {
+            client = new OkHttpClient.Builder().connectTimeout(10, TimeUnit.SECONDS)
+                    .readTimeout(30, TimeUnit.SECONDS).build();
+        }
+        return client;
+    }
+
+    private static String sha1(String value) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder hex = new StringBuilder();
+            for (final byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import java.util.List;
+
+public class ArchetypeInfo {
+
+    private String groupId;
+
+    private String artifactId;
+
+    private String description;
+
+    private String repository;
+
+    // newest first
+    private List<String> versions;
+
+    // whether the archetype is only known to the local catalog, e.g. one installed from a local project
+    private boolean localOnly;
+
+    public ArchetypeInfo(String groupId, String artifactId, String description, String repository,
+            List<String> versions, boolean localOnly) {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.description = description;
+        this.repository = repository;
+        this.versions = versions;
+        this.localOnly = localOnly;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getRepository() {
+        return repository;
+    }
+
+    public List<String> getVersions() {
+        return versions;
+    }
+
+    public boolean isLocalOnly() {
+        return localOnly;
+    }
+}
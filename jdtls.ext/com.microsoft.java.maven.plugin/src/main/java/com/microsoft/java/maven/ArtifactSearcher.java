@@ -20,11 +20,14 @@ import okhttp3.Callback;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
-import org.apache.commons.text.similarity.LevenshteinDistance;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.BooleanQuery.Builder;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
 import org.apache.maven.index.ArtifactInfo;
 import org.apache.maven.index.DefaultIndexer;
 import org.apache.maven.index.DefaultIndexerEngine;
@@ -35,28 +38,46 @@ import org.apache.maven.index.FlatSearchResponse;
 import org.apache.maven.index.Indexer;
 import org.apache.maven.index.MAVEN;
 import org.apache.maven.index.context.IndexCreator;
+import org.apache.maven.index.context.IndexUtils;
 import org.apache.maven.index.context.IndexingContext;
 import org.apache.maven.index.creator.JarFileContentsIndexCreator;
 import org.apache.maven.index.creator.MinimalArtifactInfoIndexCreator;
 import org.apache.maven.index.expr.UserInputSearchExpression;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.IJavaSearchScope;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.TypeNameRequestor;
 
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.CharBuffer;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 
 public class ArtifactSearcher {
 
@@ -66,6 +87,14 @@ public class ArtifactSearcher {
     private static String extensionPath;
     private static final String index = "index";
     private static final String artifactUsage = "ArtifactUsage.json";
+    private static final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    // speculative searches run one at a time at the lowest priority, behind the ones a user waits for
+    private static final ExecutorService speculativeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "Maven Index Prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
 
     public static void initialize(String path){
         extensionPath = path;
@@ -75,11 +104,96 @@ public class ArtifactSearcher {
         if (classSearcher == null) {
             constructContext();
         }
+        try (MetricsRegistry.Timer timer = metrics.time("search.className")) {
+            try {
+                // the case is kept for CamelCase abbreviations, matching is case-insensitive otherwise
+                final List<ArtifactResult> result = classSearcher.searchByClassName(className,
+                        ArtifactSearcher::isDeclaredInWorkspace);
+                metrics.add("search.className.results", result.size());
+                return result;
+            } catch (Exception e) {
+                timer.fail();
+                return new ArrayList<>();
+            }
+        }
+    }
+
+    /**
+     * Whether a source type of the workspace has exactly this simple name: the name is then
+     * unresolved for want of an import rather than of a dependency, and the network has nothing
+     * to add. The search does not wait for the workspace to be indexed.
+     */
+    private static boolean isDeclaredInWorkspace(String className) {
+        try (MetricsRegistry.Timer timer = metrics.time("search.workspace")) {
+            try {
+                final IJavaProject[] projects = JavaCore.create(ResourcesPlugin.getWorkspace().getRoot())
+                        .getJavaProjects();
+                if (projects.length == 0) {
+                    return false;
+                }
+                final IJavaSearchScope scope = SearchEngine.createJavaSearchScope(projects, IJavaSearchScope.SOURCES);
+                final List<String> found = new ArrayList<>();
+                new SearchEngine().searchAllTypeNames(null, new char[][] { className.toCharArray() }, scope,
+                        new TypeNameRequestor() {
+                            @Override
+                            public void acceptType(int modifiers, char[] packageName, char[] simpleTypeName,
+                                    char[][] enclosingTypeNames, String path) {
+                                found.add(path);
+                            }
+                        }, IJavaSearchConstants.FORCE_IMMEDIATE_SEARCH, null);
+                return !found.isEmpty();
+            } catch (JavaModelException | RuntimeException e) {
+                timer.fail();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Searches the classes of unresolved names before anyone asks for them, so that hovers and
+     * quick fixes have them at hand. Only the indexes are searched: a name the network would have
+     * to complete is left out of the result, to be searched when it is actually needed.
+     */
+    public static Map<String, List<ArtifactResult>> searchByClassNames(List<String> classNames,
+            IProgressMonitor monitor) {
+        if (classSearcher == null) {
+            constructContext();
+        }
+        final ClassSearcher searcher = classSearcher;
+        final Map<String, List<ArtifactResult>> result = new LinkedHashMap<>();
+        if (searcher == null) {
+            return result;
+        }
+        final Future<?> batch = speculativeExecutor.submit(() -> {
+            for (final String className : classNames) {
+                if (monitor != null && monitor.isCanceled()) {
+                    metrics.increment("search.speculative.canceled");
+                    return;
+                }
+                try (MetricsRegistry.Timer timer = metrics.time("search.speculative")) {
+                    final List<ArtifactResult> found = searcher.searchIndexes(className);
+                    if (found != null) {
+                        synchronized (result) {
+                            result.put(className, found);
+                        }
+                    } else {
+                        metrics.increment("search.speculative.deferred");
+                    }
+                } catch (RuntimeException e) {
+                    metrics.increment("search.speculative.failed");
+                }
+            }
+        });
         try {
-            className = className.toLowerCase();
-            return classSearcher.searchByClassName(className);
-        } catch (Exception e) {
-            return new ArrayList<>();
+            batch.get();
+        } catch (ExecutionException e) {
+            // each name is guarded above
+        } catch (InterruptedException e) {
+            batch.cancel(false);
+            Thread.currentThread().interrupt();
+        }
+        synchronized (result) {
+            return new LinkedHashMap<>(result);
         }
     }
 
@@ -87,23 +201,100 @@ public class ArtifactSearcher {
         if (classSearcher == null) {
             constructContext();
         }
-        try {
-            return classSearcher.searchByIdentifier(groupId, artifactId);
-        } catch (Exception e) {
-            return new ArrayList<>();
+        try (MetricsRegistry.Timer timer = metrics.time("search.identifier")) {
+            try {
+                final List<ArtifactResult> result = classSearcher.searchByIdentifier(groupId, artifactId);
+                metrics.add("search.identifier.results", result.size());
+                return result;
+            } catch (Exception e) {
+                timer.fail();
+                return new ArrayList<>();
+            }
         }
-        
     }
 
-    public static Boolean controlIndexerContext(Boolean controlParam, IProgressMonitor monitor) {
+    /**
+     * Turns the given index context on or off, every context when contextId is null.
+     */
+    public static Boolean controlIndexerContext(Boolean controlParam, String contextId, IProgressMonitor monitor) {
         if (classSearcher == null) {
             return true;
         } else {
-            return classSearcher.controlIndexerContext(controlParam);
+            return classSearcher.controlIndexerContext(controlParam, contextId);
+        }
+    }
+
+    /**
+     * Adds a maven-indexer index directory searched for classes along with the bundled one, e.g.
+     * the index of an internal mirror or one built from the local repository. Usage counts are
+     * read from an ArtifactUsage.json next to the directory when there is one, as for the bundled
+     * index. Returns false when the searcher is not initialized, the id is invalid or the index
+     * cannot be opened.
+     */
+    public static Boolean addIndexContext(String contextId, String indexPath, Number deadlineMillis,
+            IProgressMonitor monitor) {
+        if (classSearcher == null && extensionPath != null) {
+            constructContext();
+        }
+        final ClassSearcher searcher = classSearcher;
+        // the id names the state files of the context
+        if (searcher == null || contextId == null || !contextId.matches("[\\w.-]+") || indexPath == null ||
+                !new File(indexPath).isDirectory()) {
+            return false;
+        }
+        final File usage = new File(new File(indexPath).getAbsoluteFile().getParentFile(), artifactUsage);
+        return searcher.addContext(contextId, indexPath, usage.getPath(), deadlineMillis == null ?
+                ClassSearcher.DEFAULT_DEADLINE_MILLIS : deadlineMillis.longValue());
+    }
+
+    public static Boolean removeIndexContext(String contextId, IProgressMonitor monitor) {
+        final ClassSearcher searcher = classSearcher;
+        return searcher != null && searcher.removeContext(contextId);
+    }
+
+    public static List<String> getIndexContexts(IProgressMonitor monitor) {
+        final ClassSearcher searcher = classSearcher;
+        return searcher == null ? new ArrayList<>() : searcher.getContextIds();
+    }
+
+    /**
+     * Returns the class names ("/org/slf4j/Logger" lines) the bundled index lists for the given
+     * jar, or null when the index does not know the artifact or lists a jar of another size.
+     */
+    public static String getIndexedClassNames(String groupId, String artifactId, String version,
+            String classifier, File file) {
+        if (classSearcher == null && extensionPath != null) {
+            constructContext();
         }
+        final ClassSearcher searcher = classSearcher;
+        return searcher == null ? null : searcher.getClassNames(groupId, artifactId, version, classifier, file);
     }
 
-    private static void constructContext() {
+    /**
+     * Returns the versions the bundled index lists for exactly the given artifact.
+     */
+    public static List<String> getIndexedVersions(String groupId, String artifactId) {
+        if (classSearcher == null && extensionPath != null) {
+            constructContext();
+        }
+        final ClassSearcher searcher = classSearcher;
+        final List<String> versions = new ArrayList<>();
+        if (searcher == null) {
+            return versions;
+        }
+        // the identifier search matches prefixes too
+        for (final ArtifactResult result : searcher.searchByIdentifier(groupId, artifactId)) {
+            if (groupId.equals(result.getGroupId()) && artifactId.equals(result.getArtifactId())) {
+                versions.add(result.getVersion());
+            }
+        }
+        return versions;
+    }
+
+    private static synchronized void constructContext() {
+        if (classSearcher != null) {
+            return;
+        }
         try {
             final String indexPath = Paths.get(extensionPath, index).toString();
             final String artifactUsagePath = Paths.get(extensionPath, artifactUsage).toString();
@@ -116,16 +307,24 @@ public class ArtifactSearcher {
 }
 
 class ClassSearcher {
-    private BaseClassSearcher mavenSearcher;
+    // how long a search waits for each context unless told otherwise, they are queried concurrently
+    static final long DEFAULT_DEADLINE_MILLIS = 3000;
+    private static final ExecutorService contextExecutor = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "Maven Index Search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private NetSearcher netSearcher;
-    private Map<String, Integer> artifactUsageDict;
+    // context id -> context, in the order they were added, replaced as a whole when it changes
+    private volatile Map<String, SearchContext> contexts = new LinkedHashMap<>();
+    // groupId:artifactId -> usage, the highest count any context gives
+    private volatile Map<String, Integer> artifactUsageDict = new HashMap<>();
     private final int fuzzyResultThreshold = 1000;
     private final Set<String> azureSet = new HashSet<>();
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
 
-    private final String contextId;
     private final String repositoryId;
-    private final String indexPath;
-    private final String artifactUsagePath;
 
     {
         final String azureArtifacts[] = { "adal4j", "azure-mgmt-appservice", "applicationinsights-web", 
@@ -157,12 +356,12 @@ class ClassSearcher {
         public int compare(ArtifactResult r1, ArtifactResult r2) {
             if (r1.getKind() < r2.getKind() || (r1.getKind() == r2.getKind() && r1.getUsage() > r2.getUsage()) || 
                     (r1.getKind() == r2.getKind() && r1.getUsage() == r2.getUsage() && 
-                    r1.getClassName().toLowerCase().compareTo(r2.getClassName().toLowerCase()) < 0)) {
+                    String.CASE_INSENSITIVE_ORDER.compare(r1.getClassName(), r2.getClassName()) < 0)) {
                 return -1;
             } else if (r2.getKind() < r1.getKind() || (r2.getKind() == r1.getKind() && 
                     r2.getUsage() > r1.getUsage()) || 
                     (r2.getKind() == r1.getKind() && r2.getUsage() == r1.getUsage() && 
-                    r2.getClassName().toLowerCase().compareTo(r1.getClassName().toLowerCase()) < 0)) {
+                    String.CASE_INSENSITIVE_ORDER.compare(r2.getClassName(), r1.getClassName()) < 0)) {
                 return 1;
             } else {
                 return 0;
@@ -170,31 +369,113 @@ class ClassSearcher {
         }
     };
 
+    /**
+     * One maven-indexer index searched for classes, with the usage counts shipped next to it.
+     */
+    private static class SearchContext {
+        final String id;
+        final String repositoryId;
+        final String indexPath;
+        final String artifactUsagePath;
+        final long deadlineMillis;
+        // null while the context cannot be opened
+        volatile BaseClassSearcher searcher;
+        volatile Map<String, Integer> usage = new HashMap<>();
+
+        SearchContext(String id, String repositoryId, String indexPath, String artifactUsagePath,
+                long deadlineMillis) {
+            this.id = id;
+            this.repositoryId = repositoryId;
+            this.indexPath = indexPath;
+            this.artifactUsagePath = artifactUsagePath;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        synchronized Boolean open() {
+            try {
+                if (artifactUsagePath != null && new File(artifactUsagePath).isFile()) {
+                    try (JsonReader reader = new JsonReader(new FileReader(artifactUsagePath))) {
+                        final Map<String, Integer> read = new Gson().fromJson(reader,
+                                new TypeToken<HashMap<String, Integer>>() {
+                                }.getType());
+                        usage = read == null ? new HashMap<>() : read;
+                    }
+                }
+                searcher = new BaseClassSearcher(id, repositoryId, indexPath);
+                return true;
+            } catch (Exception e) {
+                close();
+                usage = new HashMap<>();
+                e.printStackTrace();
+                return false;
+            }
+        }
+
+        synchronized Boolean turnOn() {
+            return searcher == null ? open() : searcher.turnOnIndexerContext();
+        }
+
+        synchronized Boolean turnOff() {
+            return searcher == null ? true : searcher.turnOffIndexerContext();
+        }
+
+        synchronized void close() {
+            if (searcher != null) {
+                searcher.turnOffIndexerContext();
+                searcher = null;
+            }
+        }
+    }
+
     public ClassSearcher(String contextId, String repositoryId, String indexPath, String artifactUsagePath) {
-        this.contextId = contextId;
         this.repositoryId = repositoryId;
-        this.indexPath = indexPath;
-        this.artifactUsagePath = artifactUsagePath;
-        constructMavenSearcher();
+        addContext(contextId, indexPath, artifactUsagePath, DEFAULT_DEADLINE_MILLIS);
         constructNetSearcher();
     }
 
-    private Boolean constructMavenSearcher() {
-        try {
-            artifactUsageDict = new Gson().fromJson(new JsonReader(new FileReader(artifactUsagePath)), 
-                    new TypeToken<HashMap<String, Integer>>() {
-                    }.getType());
-            mavenSearcher = new BaseClassSearcher(contextId, repositoryId, indexPath);
-            return true;
-        } catch (Exception e) {
-            if (mavenSearcher != null) {
-                mavenSearcher.turnOffIndexerContext();
-            }
-            mavenSearcher = null;
-            artifactUsageDict = null;
-            e.printStackTrace();
+    /**
+     * Adds an index searched along with the others, replacing the one with the same id. The
+     * context is kept even if it cannot be opened yet, so that turning it on tries again.
+     */
+    public synchronized Boolean addContext(String id, String indexPath, String artifactUsagePath,
+            long deadlineMillis) {
+        final SearchContext context = new SearchContext(id, repositoryId, indexPath, artifactUsagePath,
+                deadlineMillis);
+        final Boolean opened = context.open();
+        final Map<String, SearchContext> updated = new LinkedHashMap<>(contexts);
+        final SearchContext replaced = updated.put(id, context);
+        if (replaced != null) {
+            replaced.close();
+        }
+        contexts = updated;
+        updateUsage();
+        return opened;
+    }
+
+    public synchronized Boolean removeContext(String id) {
+        final Map<String, SearchContext> updated = new LinkedHashMap<>(contexts);
+        final SearchContext removed = updated.remove(id);
+        if (removed == null) {
             return false;
         }
+        removed.close();
+        contexts = updated;
+        updateUsage();
+        return true;
+    }
+
+    public List<String> getContextIds() {
+        return new ArrayList<>(contexts.keySet());
+    }
+
+    private void updateUsage() {
+        final Map<String, Integer> merged = new HashMap<>();
+        for (final SearchContext context : contexts.values()) {
+            for (final Map.Entry<String, Integer> entry : context.usage.entrySet()) {
+                merged.merge(entry.getKey(), entry.getValue(), Math::max);
+            }
+        }
+        artifactUsageDict = merged;
     }
 
     private Boolean constructNetSearcher() {
@@ -209,14 +490,109 @@ class ClassSearcher {
     }
 
     public List<ArtifactResult> searchByClassName(String className)  {
-        Map<String, ArtifactResult> r1 = mavenSearcher != null ?
-                mavenSearcher.searchByClassName(className) : new HashMap<>();
-        if (r1.size() < 5 && netSearcher != null) {
-            final Map<String, ArtifactResult> r2 = netSearcher.searchByClassName(className);
-            r2.putAll(r1); // r1 will override r2 if necessary
-            r1 = r2;
-        }
-        final List<ArtifactResult> result = new ArrayList<>(r1.values());
+        return searchByClassName(className, name -> false);
+    }
+
+    /**
+     * Searches the indexes, then the network when they found little, unless
+     * {@code declaredLocally} tells the name is one of the user's own types.
+     */
+    public List<ArtifactResult> searchByClassName(String className, Predicate<String> declaredLocally) {
+        final Map<String, ArtifactResult> r1 = searchContexts(className);
+        if (needsNetwork(className, r1) && declaredLocally.test(className)) {
+            metrics.increment("search.net.skipped");
+        } else if (needsNetwork(className, r1)) {
+            final Map<String, ArtifactResult> r2;
+            try (MetricsRegistry.Timer timer = metrics.time("search.net")) {
+                r2 = netSearcher.searchByClassName(className.toLowerCase());
+            }
+            metrics.add("search.net.results", r2.size());
+            for (final ArtifactResult r : r2.values()) {
+                r1.putIfAbsent(keyOf(r), r); // the indexes win over the network
+            }
+        }
+        try (MetricsRegistry.Timer timer = metrics.time("search.rank")) {
+            return rank(new ArrayList<>(r1.values()));
+        }
+    }
+
+    /**
+     * Searches the indexes only, one context after the other on the calling thread, for a search
+     * nobody waits for yet. Returns null when the network would be asked as well, the results of
+     * {@link #searchByClassName(String)} then being different.
+     */
+    public List<ArtifactResult> searchIndexes(String className) {
+        final Map<String, ArtifactResult> merged = new HashMap<>();
+        for (final SearchContext context : contexts.values()) {
+            final BaseClassSearcher searcher = context.searcher;
+            if (searcher != null) {
+                merge(merged, searcher.searchByClassName(className));
+            }
+        }
+        if (needsNetwork(className, merged)) {
+            return null;
+        }
+        try (MetricsRegistry.Timer timer = metrics.time("search.rank")) {
+            return rank(new ArrayList<>(merged.values()));
+        }
+    }
+
+    private boolean needsNetwork(String className, Map<String, ArtifactResult> found) {
+        // the indexes know every package they ship, asking the network for a qualified name only adds noise
+        return found.size() < 5 && netSearcher != null && className.indexOf('.') == -1;
+    }
+
+    /**
+     * Queries every open context concurrently, each one within its own deadline, and merges what
+     * came back in time: a class shipped by the same artifact in several indexes is kept once,
+     * with its best match kind, the context added first winning ties.
+     */
+    private Map<String, ArtifactResult> searchContexts(String className) {
+        final List<SearchContext> searched = new ArrayList<>();
+        final List<Future<Map<String, ArtifactResult>>> futures = new ArrayList<>();
+        for (final SearchContext context : contexts.values()) {
+            final BaseClassSearcher searcher = context.searcher;
+            if (searcher != null) {
+                searched.add(context);
+                futures.add(contextExecutor.submit(() -> searcher.searchByClassName(className)));
+            }
+        }
+        final long start = System.nanoTime();
+        final Map<String, ArtifactResult> merged = new HashMap<>();
+        for (int i = 0; i < futures.size(); i++) {
+            final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            final long remainingMillis = Math.max(0, searched.get(i).deadlineMillis - elapsedMillis);
+            try {
+                merge(merged, futures.get(i).get(remainingMillis, TimeUnit.MILLISECONDS));
+            } catch (TimeoutException e) {
+                // not interrupted: an interrupt while Lucene reads would close the index files
+                futures.get(i).cancel(false);
+                metrics.increment("search.context.timeout");
+            } catch (ExecutionException e) {
+                metrics.increment("search.context.failed");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        metrics.add("search.contexts", futures.size());
+        return merged;
+    }
+
+    private static void merge(Map<String, ArtifactResult> merged, Map<String, ArtifactResult> results) {
+        for (final ArtifactResult r : results.values()) {
+            final ArtifactResult existing = merged.putIfAbsent(keyOf(r), r);
+            if (existing != null && r.getKind() < existing.getKind()) {
+                merged.put(keyOf(r), r);
+            }
+        }
+    }
+
+    private static String keyOf(ArtifactResult r) {
+        return r.getFullClassName() + "|" + r.getGroupId() + ":" + r.getArtifactId();
+    }
+
+    private List<ArtifactResult> rank(List<ArtifactResult> result) {
         final List<ArtifactResult> azureResult = new ArrayList<>();
         for (final ArtifactResult r : result) {
             final String id = r.getGroupId() + ":" + r.getArtifactId();
@@ -251,7 +627,7 @@ class ClassSearcher {
         Collections.sort(result.subList(starNums, result.size()), new Comparator<ArtifactResult>() {
             @Override
             public int compare(ArtifactResult r1, ArtifactResult r2) {
-                return r1.getClassName().toLowerCase().compareTo(r2.getClassName().toLowerCase());
+                return String.CASE_INSENSITIVE_ORDER.compare(r1.getClassName(), r2.getClassName());
             }
         });
         return result;
@@ -259,15 +635,42 @@ class ClassSearcher {
 
     public List<ArtifactResult> searchByIdentifier(String groupId, String artifactId) {
         // does not use netSearcher
-        return mavenSearcher.searchByIdentifier(groupId, artifactId);
+        final Map<String, ArtifactResult> results = new LinkedHashMap<>();
+        for (final SearchContext context : contexts.values()) {
+            final BaseClassSearcher searcher = context.searcher;
+            if (searcher != null) {
+                for (final ArtifactResult r : searcher.searchByIdentifier(groupId, artifactId)) {
+                    results.putIfAbsent(r.getGroupId() + ":" + r.getArtifactId() + ":" + r.getVersion(), r);
+                }
+            }
+        }
+        return new ArrayList<>(results.values());
     }
 
-    public Boolean controlIndexerContext(Boolean controlParam) {
-        if (controlParam == true) {
-            return mavenSearcher == null ? constructMavenSearcher() : mavenSearcher.turnOnIndexerContext();
-        } else {
-            return mavenSearcher == null ? true : mavenSearcher.turnOffIndexerContext();
+    public String getClassNames(String groupId, String artifactId, String version, String classifier,
+            File file) {
+        for (final SearchContext context : contexts.values()) {
+            final BaseClassSearcher searcher = context.searcher;
+            final String classNames = searcher == null ? null :
+                    searcher.getClassNames(groupId, artifactId, version, classifier, file);
+            if (classNames != null) {
+                return classNames;
+            }
         }
+        return null;
+    }
+
+    /**
+     * Turns the given context on or off, every context when contextId is null.
+     */
+    public Boolean controlIndexerContext(Boolean controlParam, String contextId) {
+        Boolean result = true;
+        for (final SearchContext context : contexts.values()) {
+            if (contextId == null || contextId.equals(context.id)) {
+                result &= controlParam == true ? context.turnOn() : context.turnOff();
+            }
+        }
+        return result;
     }
 }
 
@@ -319,35 +722,170 @@ abstract class MavenSearcher {
 
 class BaseClassSearcher extends MavenSearcher {
 
-    private LevenshteinDistance editDistanceCalculator = new LevenshteinDistance();
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private volatile SimpleNameColumn simpleNameColumn;
+    private volatile SimpleNameIndex simpleNameIndex;
+    private volatile PackageTrie packageTrie;
+    private volatile SimpleNameFilter nameFilter;
+    // classes returned at most for a qualified query, a package prefix may stand for many
+    private static final int MAX_QUALIFIED_RESULTS = 200;
 
     public BaseClassSearcher(String contextId, String repositoryId, String indexPath) throws IOException {
         super(contextId, repositoryId, indexPath);
         this.indexerContext = indexer.createIndexingContext(contextId, repositoryId, null, 
                 new File(indexPath), null, null, true, true, indexers);
+        openSimpleNameColumn();
+    }
+
+    /**
+     * Loads (or derives and persists) the simple-name column, index and filter and the package
+     * trie in the background, searches fall back to scanning the raw class names, without
+     * abbreviations and infixes, until they are available.
+     */
+    private void openSimpleNameColumn() {
+        final IndexingContext context = indexerContext;
+        final Thread thread = new Thread(() -> {
+            try {
+                final SimpleNameColumn column = SimpleNameColumn.open(context,
+                        PluginActivator.getStateFile(contextId + ".names"));
+                if (indexerContext == context) {
+                    simpleNameColumn = column;
+                }
+                final SimpleNameIndex names = SimpleNameIndex.open(context,
+                        PluginActivator.getStateFile(contextId + ".humps"));
+                if (indexerContext == context) {
+                    simpleNameIndex = names;
+                }
+                final SimpleNameFilter filter = SimpleNameFilter.open(context,
+                        PluginActivator.getStateFile(contextId + ".bloom"), names);
+                if (indexerContext == context) {
+                    nameFilter = filter;
+                }
+                final PackageTrie packages = PackageTrie.open(context,
+                        PluginActivator.getStateFile(contextId + ".packages"));
+                if (indexerContext == context) {
+                    packageTrie = packages;
+                }
+            } catch (IOException | RuntimeException e) {
+                // the context was closed meanwhile or the index cannot be read
+                metrics.increment("index.column.failed");
+            }
+        }, "Maven Index Column");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
     }
 
     public Map<String, ArtifactResult> searchByClassName(String className) {
         if (indexerContext == null) {
+            metrics.increment("search.index.unavailable");
             return new HashMap<>();
         }
+        if (className.indexOf('.') != -1 && packageTrie != null) {
+            return searchQualified(className);
+        }
+        final String lowerCaseName = className.toLowerCase();
+        if (className.indexOf('.') == -1 && !mayMatchByName(lowerCaseName)) {
+            // the scan would find nothing, only abbreviations and infixes are left to look for
+            try {
+                return searchByNameIndex(className);
+            } catch (IOException e) {
+                return new HashMap<>();
+            }
+        }
         // UserInputSearchExpression supports prefix search in nature
         // ~ enables fuzzy search with maximal edit distances 2
-        final Query q = indexer.constructQuery(MAVEN.CLASSNAMES, new UserInputSearchExpression(className + "~"));
+        final Query q = indexer.constructQuery(MAVEN.CLASSNAMES, new UserInputSearchExpression(lowerCaseName + "~"));
         final BooleanQuery bq = new BooleanQuery.Builder().add(q, Occur.MUST).build();
         try {
-            final List<ArtifactResult> result = search(bq, className);
-            final Map<String, ArtifactResult> resultMap = new HashMap<>();
-            for (final ArtifactResult r : result) {
-                if (!resultMap.containsKey(r.getFullClassName())) {
-                    resultMap.put(r.getFullClassName(), r);
+            final String qc = lowerCaseName.indexOf('.') != -1 ?
+                    lowerCaseName.substring(lowerCaseName.lastIndexOf('.') + 1) : lowerCaseName;
+            final Map<String, ArtifactResult> result = search(bq, new ClassNameMatcher(qc));
+            if (className.indexOf('.') != -1) {
+                // the trie is not loaded yet, keep the classes the qualifier stands for
+                result.values().removeIf(r -> !r.getFullClassName().toLowerCase().startsWith(lowerCaseName));
+            } else {
+                for (final ArtifactResult r : searchByNameIndex(className).values()) {
+                    final ArtifactResult existing = result.putIfAbsent(r.getFullClassName(), r);
+                    if (existing != null && r.getKind() < existing.getKind()) {
+                        result.put(r.getFullClassName(), r);
+                    }
                 }
             }
-            return resultMap;
+            return result;
         } catch (IOException e) {
             return new HashMap<>();
         }
-    } 
+    }
+
+    /**
+     * Whether scanning the class names may find one starting with a simple name or within the
+     * edit distance of it: false only when the name filter rules out the former and the name
+     * index the latter, true until both are loaded.
+     */
+    private boolean mayMatchByName(String lowerCaseName) {
+        final SimpleNameFilter filter = nameFilter;
+        final SimpleNameIndex names = simpleNameIndex;
+        if (filter == null || names == null) {
+            return true;
+        }
+        // the skip rate is search.filter.skipped / search.filter.checked
+        metrics.increment("search.filter.checked");
+        if (filter.mightStartName(lowerCaseName) ||
+                names.mayBeWithinDistance(lowerCaseName, ClassNameMatcher.MAX_DISTANCE)) {
+            return true;
+        }
+        metrics.increment("search.filter.skipped");
+        return false;
+    }
+
+    /**
+     * Finds the classes of a query with a package qualifier in the package trie.
+     */
+    private Map<String, ArtifactResult> searchQualified(String className) {
+        final List<PackageTrie.Match> matches;
+        try (MetricsRegistry.Timer timer = metrics.time("search.packages")) {
+            matches = packageTrie.find(className, MAX_QUALIFIED_RESULTS);
+        }
+        metrics.add("search.packages.results", matches.size());
+        final Map<String, ArtifactResult> result = new HashMap<>();
+        for (final PackageTrie.Match match : matches) {
+            result.put(match.fullClassName, new ArtifactResult(match.groupId, match.artifactId, match.version,
+                    match.fullClassName.substring(match.fullClassName.lastIndexOf('.') + 1), match.fullClassName,
+                    -1, ArtifactResult.PREFIX));
+        }
+        return result;
+    }
+
+    /**
+     * Finds the classes a simple name stands for as a CamelCase abbreviation or an infix, through
+     * the name index: the candidate names are looked up as terms, which only expands the
+     * artifacts shipping one of them.
+     */
+    private Map<String, ArtifactResult> searchByNameIndex(String className) throws IOException {
+        final SimpleNameIndex names = simpleNameIndex;
+        if (names == null) {
+            return new HashMap<>();
+        }
+        final Map<String, Integer> candidates;
+        try (MetricsRegistry.Timer timer = metrics.time("search.names")) {
+            candidates = names.find(className);
+        }
+        metrics.add("search.names.candidates", candidates.size());
+        if (candidates.isEmpty()) {
+            return new HashMap<>();
+        }
+        final String classNamesField = JarFileContentsIndexCreator.FLD_CLASSNAMES.getKey();
+        final BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (final String name : candidates.keySet()) {
+            // the field is tokenized on anything but letters and digits, e.g. inner classes on '$'
+            final String[] tokens = name.split("[^\\p{L}\\p{N}]+");
+            if (tokens.length > 0) {
+                builder.add(new TermQuery(new Term(classNamesField, tokens[tokens.length - 1])), Occur.SHOULD);
+            }
+        }
+        return search(builder.build(), new CandidateMatcher(candidates));
+    }
 
     public List<ArtifactResult> searchByIdentifier(String groupId, String artifactId) {
         if (indexerContext == null) {
@@ -376,42 +914,229 @@ class BaseClassSearcher extends MavenSearcher {
         }
     }
 
-    private List<ArtifactResult> search(Query q, String queryClassname) throws IOException {
+    public String getClassNames(String groupId, String artifactId, String version, String classifier,
+            File file) {
+        final IndexingContext context = indexerContext;
+        if (context == null) {
+            return null;
+        }
+        final String uinfo = new ArtifactInfo(repositoryId, groupId, artifactId, version,
+                classifier == null || classifier.isEmpty() ? null : classifier, "jar").getUinfo();
+        try {
+            final IndexSearcher searcher = context.acquireIndexSearcher();
+            try {
+                final TopDocs topDocs = searcher.search(new TermQuery(new Term(ArtifactInfo.UINFO, uinfo)), 1);
+                if (topDocs.scoreDocs.length == 0) {
+                    return null;
+                }
+                final ArtifactInfo info = IndexUtils.constructArtifactInfo(searcher.doc(topDocs.scoreDocs[0].doc),
+                        context);
+                // a jar rebuilt locally under released coordinates does not ship what the index lists
+                if (info == null || info.getSize() >= 0 && info.getSize() != file.length()) {
+                    return null;
+                }
+                return info.getClassNames();
+            } finally {
+                context.releaseIndexSearcher(searcher);
+            }
+        } catch (IOException e) {
+            // closed meanwhile, the caller reads the jar instead
+            return null;
+        }
+    }
+
+    private Map<String, ArtifactResult> search(Query q, NameMatcher matcher) throws IOException {
         final FlatSearchResponse response;
-        response = indexer.searchFlat(new FlatSearchRequest(q, indexerContext));
+        try (MetricsRegistry.Timer timer = metrics.time("search.lucene")) {
+            response = indexer.searchFlat(new FlatSearchRequest(q, indexerContext));
+        }
+        metrics.add("search.lucene.hits", response.getResults().size());
 
-        final List<ArtifactResult> resultList = new ArrayList<>();
+        final SimpleNameColumn column = simpleNameColumn;
+        // the same groupId/artifactId/version shows up in many hits, share a single instance of each
+        final Map<String, String> interned = new HashMap<>();
+        // keyed by full class name, the first artifact providing a class wins
+        final Map<String, ArtifactResult> resultMap = new HashMap<>();
+        final long expandStart = System.nanoTime();
         for (final ArtifactInfo r : response.getResults()) {
-            final String[] fullClassnameList = r.getClassNames().split("\n");
-            for (String fullClassname : fullClassnameList) {
-                fullClassname = fullClassname.substring(1).replaceAll("/", ".");
-                final int matchKind = isMatch(fullClassname, queryClassname);
-                if (matchKind == ArtifactResult.PREFIX) {
-                    resultList.add(new ArtifactResult(r.getGroupId(), r.getArtifactId(), r.getVersion(), 
-                            fullClassname.substring(fullClassname.lastIndexOf(".") + 1), 
-                            fullClassname, -1, ArtifactResult.PREFIX));
-                } else if (matchKind == ArtifactResult.FUZZY) {
-                    resultList.add(new ArtifactResult(r.getGroupId(), r.getArtifactId(), r.getVersion(), 
-                            fullClassname.substring(fullClassname.lastIndexOf(".") + 1), 
-                            fullClassname, -1, ArtifactResult.FUZZY));
+            final String classNames = r.getClassNames();
+            if (classNames == null) {
+                continue;
+            }
+            final SimpleNameColumn.Entry entry = column == null ? null : column.get(r.getUinfo());
+            if (entry != null) {
+                metrics.increment("search.column.hit");
+                final CharSequence names = CharBuffer.wrap(entry.names);
+                for (int i = 0; i < entry.size(); i++) {
+                    final int matchKind = matcher.match(names, entry.nameStarts[i], entry.nameStarts[i + 1]);
+                    if (matchKind != 0) {
+                        addResult(resultMap, interned, r, classNames, entry.lineStarts[i], entry.lineEnds[i],
+                                matchKind);
+                    }
                 }
+                continue;
+            }
+            metrics.increment("search.column.miss");
+            // entries look like "/com/example/Foo" and are separated by '\n', walk them in place
+            // and only build a String for the ones that actually match
+            int lineStart = 0;
+            while (lineStart < classNames.length()) {
+                int lineEnd = classNames.indexOf('\n', lineStart);
+                if (lineEnd < 0) {
+                    lineEnd = classNames.length();
+                }
+                final int nameStart = Math.max(classNames.lastIndexOf('/', lineEnd - 1) + 1, lineStart);
+                final int matchKind = matcher.match(classNames, nameStart, lineEnd);
+                if (matchKind != 0) {
+                    addResult(resultMap, interned, r, classNames, lineStart, lineEnd, matchKind);
+                }
+                lineStart = lineEnd + 1;
             }
         }
-        return resultList;
+        // fuzzy matching is interleaved with the expansion, report the two separately
+        metrics.recordNanos("search.expand", System.nanoTime() - expandStart - matcher.fuzzyNanos);
+        metrics.recordNanos("search.fuzzy", matcher.fuzzyNanos);
+        return resultMap;
     }
 
-    private int isMatch(String fullClassName, String queryClassName) {
-        final String fc = fullClassName.substring(fullClassName.lastIndexOf(".") + 1).toLowerCase();
-        final String qc = queryClassName.indexOf('.') != -1 ? 
-                queryClassName.substring(queryClassName.lastIndexOf(".") + 1).toLowerCase() : queryClassName;
-        if (fc.startsWith(qc)) {
-            return ArtifactResult.PREFIX;
-        } else if (fc.length() >= qc.length() && editDistanceCalculator.apply(fc, qc) <= 2) {
-            //(fc.substring(0, 1).equals(qc.substring(0, 1)) || 
-            //fc.substring(fc.length() - 1).equals(qc.substring(qc.length() - 1))) &&
-            return ArtifactResult.FUZZY;
-        } else {
-            return 0;
+    private static void addResult(Map<String, ArtifactResult> resultMap, Map<String, String> interned,
+            ArtifactInfo r, String classNames, int lineStart, int lineEnd, int matchKind) {
+        final String fullClassName = toFullClassName(classNames, lineStart, lineEnd);
+        if (!resultMap.containsKey(fullClassName)) {
+            resultMap.put(fullClassName, new ArtifactResult(intern(interned, r.getGroupId()),
+                    intern(interned, r.getArtifactId()), intern(interned, r.getVersion()),
+                    fullClassName.substring(fullClassName.lastIndexOf('.') + 1),
+                    fullClassName, -1, matchKind));
+        }
+    }
+
+    private static String intern(Map<String, String> interned, String value) {
+        if (value == null) {
+            return null;
+        }
+        final String existing = interned.putIfAbsent(value, value);
+        return existing == null ? value : existing;
+    }
+
+    private static String toFullClassName(String classNames, int start, int end) {
+        if (start < end && classNames.charAt(start) == '/') {
+            start++;
+        }
+        final char[] chars = new char[end - start];
+        for (int i = start; i < end; i++) {
+            final char c = classNames.charAt(i);
+            chars[i - start] = c == '/' ? '.' : c;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Tells how a simple class name, lower-cased when read from the column, matches a query:
+     * returns one of the {@link ArtifactResult} kinds, or 0 when it does not match.
+     */
+    private abstract static class NameMatcher {
+        long fuzzyNanos;
+
+        abstract int match(CharSequence source, int start, int end);
+    }
+
+    /**
+     * Matches simple class names against one query, case-insensitively: a prefix match or a
+     * Levenshtein distance of at most 2 for names at least as long as the query.
+     */
+    private static class ClassNameMatcher extends NameMatcher {
+        private static final int MAX_DISTANCE = 2;
+
+        private final String query;
+        private int[] previous;
+        private int[] current;
+
+        ClassNameMatcher(String query) {
+            this.query = query;
+            this.previous = new int[query.length() + 1];
+            this.current = new int[query.length() + 1];
+        }
+
+        @Override
+        int match(CharSequence source, int start, int end) {
+            final int length = end - start;
+            if (length <= 0) {
+                return 0;
+            }
+            if (isPrefix(source, start, end)) {
+                return ArtifactResult.PREFIX;
+            }
+            // the edit distance is at least the length difference, longer names can never match
+            if (length < query.length() || length - query.length() > MAX_DISTANCE) {
+                return 0;
+            }
+            final long matchStart = System.nanoTime();
+            final boolean fuzzy = isWithinEditDistance(source, start, end);
+            fuzzyNanos += System.nanoTime() - matchStart;
+            return fuzzy ? ArtifactResult.FUZZY : 0;
+        }
+
+        private boolean isPrefix(CharSequence source, int start, int end) {
+            if (end - start < query.length()) {
+                return false;
+            }
+            for (int i = 0; i < query.length(); i++) {
+                if (Character.toLowerCase(source.charAt(start + i)) != query.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isWithinEditDistance(CharSequence source, int start, int end) {
+            final int m = query.length();
+            for (int j = 0; j <= m; j++) {
+                previous[j] = j;
+            }
+            for (int i = start; i < end; i++) {
+                final char c = Character.toLowerCase(source.charAt(i));
+                current[0] = i - start + 1;
+                int rowMin = current[0];
+                for (int j = 1; j <= m; j++) {
+                    final int cost = query.charAt(j - 1) == c ? 0 : 1;
+                    current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                    rowMin = Math.min(rowMin, current[j]);
+                }
+                // every later row is at least as large, give up early
+                if (rowMin > MAX_DISTANCE) {
+                    return false;
+                }
+                final int[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            return previous[m] <= MAX_DISTANCE;
+        }
+    }
+
+    /**
+     * Matches the names found in the name index, with the kind the index gave each of them.
+     */
+    private static class CandidateMatcher extends NameMatcher {
+        // lower-cased name -> kind
+        private final Map<String, Integer> candidates;
+        private final BitSet lengths = new BitSet();
+
+        CandidateMatcher(Map<String, Integer> candidates) {
+            this.candidates = candidates;
+            for (final String name : candidates.keySet()) {
+                lengths.set(name.length());
+            }
+        }
+
+        @Override
+        int match(CharSequence source, int start, int end) {
+            // most names of the artifacts expanded are other classes, avoid building a string for them
+            if (end <= start || !lengths.get(end - start)) {
+                return 0;
+            }
+            final Integer kind = candidates.get(source.subSequence(start, end).toString().toLowerCase());
+            return kind == null ? 0 : kind;
         }
     }
 
@@ -420,6 +1145,7 @@ class BaseClassSearcher extends MavenSearcher {
             try {
                 indexerContext = indexer.createIndexingContext(contextId, repositoryId, null, 
                         new File(indexPath), null, null, true, true, indexers);
+                openSimpleNameColumn();
                 return true;
             } catch (IOException | IllegalArgumentException e) {
                 indexerContext = null;
@@ -436,6 +1162,10 @@ class BaseClassSearcher extends MavenSearcher {
         try {
             indexer.closeIndexingContext(indexerContext, false);
             indexerContext = null;
+            simpleNameColumn = null;
+            simpleNameIndex = null;
+            nameFilter = null;
+            packageTrie = null;
             return true;
         } catch (IOException e) {
             return false;
@@ -544,7 +1274,7 @@ class NetSearcher {
             if (consultMap.containsKey(id)) {
                 final List<String> fullClassNames = consultMap.get(id).getFch();
                 for (String fullClassName : fullClassNames) {
-                    fullClassName = fullClassName.replaceAll("<em>", "").replaceAll("</em>", "");
+                    fullClassName = fullClassName.replace("<em>", "").replace("</em>", "");
                     if (!resultMap.containsKey(fullClassName) && isMatch(fullClassName, queryClassName)) {
                         resultMap.put(fullClassName, new ArtifactResult(info.getG(), info.getA(), info.getV(), 
                             fullClassName.substring(fullClassName.lastIndexOf('.') + 1), fullClassName, -1, kind));
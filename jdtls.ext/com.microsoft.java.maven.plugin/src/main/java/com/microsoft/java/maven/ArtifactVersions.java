@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+public class ArtifactVersions {
+
+    // qualifiers of the versions published ahead of a release, as Maven orders them before it
+    private static final Set<String> PRE_RELEASE_QUALIFIERS = new HashSet<>(Arrays.asList("alpha", "beta",
+            "milestone", "rc", "cr", "preview", "pre", "ea", "snapshot"));
+    // their one-letter forms only count when followed by a number, e.g. "1.0-M1" or "2.0b3"
+    private static final Set<String> SHORT_PRE_RELEASE_QUALIFIERS = new HashSet<>(Arrays.asList("a", "b", "m"));
+
+    private String groupId;
+
+    private String artifactId;
+
+    // newest first, ordered as Maven orders versions
+    private List<String> versions;
+
+    // the newest version, snapshots included
+    private String latest;
+
+    // the newest version that is neither a snapshot nor a pre-release (alpha, beta, milestone, rc...)
+    private String release;
+
+    public ArtifactVersions(String groupId, String artifactId, List<String> versions) {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.versions = versions;
+        this.latest = versions.isEmpty() ? null : versions.get(0);
+        for (final String version : versions) {
+            if (!isPreRelease(version)) {
+                this.release = version;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Whether a version is a snapshot or is published ahead of a release, e.g. "2.0-rc1", "5.0.0-M1"
+     * or "1.0-alpha-2".
+     */
+    static boolean isPreRelease(String version) {
+        // split on separators and on transitions between digits and letters, as Maven does
+        final String[] tokens = version.toLowerCase(Locale.ROOT)
+                .split("[-._]|(?<=\\d)(?=\\p{Alpha})|(?<=\\p{Alpha})(?=\\d)");
+        for (int i = 0; i < tokens.length; i++) {
+            if (PRE_RELEASE_QUALIFIERS.contains(tokens[i]) || SHORT_PRE_RELEASE_QUALIFIERS.contains(tokens[i]) &&
+                    i + 1 < tokens.length && !tokens[i + 1].isEmpty() && Character.isDigit(tokens[i + 1].charAt(0))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public List<String> getVersions() {
+        return versions;
+    }
+
+    public String getLatest() {
+        return latest;
+    }
+
+    public String getRelease() {
+        return release;
+    }
+}
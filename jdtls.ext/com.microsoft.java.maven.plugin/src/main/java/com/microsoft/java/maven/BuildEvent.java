@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+public class BuildEvent {
+
+    public static final String DIAGNOSTIC = "diagnostic";
+    public static final String MODULE_STARTED = "moduleStarted";
+    public static final String MODULE_FINISHED = "moduleFinished";
+
+    private String kind;
+
+    // the artifactId of the module being built, or its name when Maven does not print the artifactId
+    private String module;
+
+    // for diagnostics, the file and the 0-based position of the problem
+    private String file;
+
+    private int line;
+
+    private int column;
+
+    // "error" or "warning"
+    private String severity;
+
+    private String message;
+
+    // for finished modules, "SUCCESS", "FAILURE" or "SKIPPED"
+    private String status;
+
+    private long durationMillis;
+
+    private BuildEvent(String kind, String module) {
+        this.kind = kind;
+        this.module = module;
+    }
+
+    static BuildEvent diagnostic(String module, String file, int line, int column, String severity,
+            String message) {
+        final BuildEvent event = new BuildEvent(DIAGNOSTIC, module);
+        event.file = file;
+        event.line = line;
+        event.column = column;
+        event.severity = severity;
+        event.message = message;
+        return event;
+    }
+
+    static BuildEvent moduleStarted(String module) {
+        return new BuildEvent(MODULE_STARTED, module);
+    }
+
+    static BuildEvent moduleFinished(String module, String status, long durationMillis) {
+        final BuildEvent event = new BuildEvent(MODULE_FINISHED, module);
+        event.status = status;
+        event.durationMillis = durationMillis;
+        return event;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public String getModule() {
+        return module;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public String getSeverity() {
+        return severity;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+}
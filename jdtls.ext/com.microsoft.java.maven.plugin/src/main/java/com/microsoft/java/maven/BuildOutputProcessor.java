@@ -0,0 +1,364 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the output of a Maven build as it is produced and turns it into {@link BuildEvent}s:
+ * compiler errors and warnings, failed tests, failed goals, and the start, end and duration of
+ * every module of the reactor. The output is processed line by line and never kept, so memory
+ * stays bounded whatever the size of the build log: lines are truncated and the number of
+ * diagnostics is capped.
+ */
+public class BuildOutputProcessor implements Consumer<String> {
+
+    static final int MAX_LINE_LENGTH = 8192;
+    static final int MAX_DIAGNOSTICS = 1000;
+
+    private static final String ERROR = "error";
+    private static final String WARNING = "warning";
+    private static final String SUCCESS = "SUCCESS";
+    private static final String FAILURE = "FAILURE";
+
+    private static final Pattern ANSI_ESCAPE = Pattern.compile("\u001B\\[[;\\d]*m");
+    // [INFO] ---------------------< com.example:app >----------------------
+    private static final Pattern MODULE_HEADER = Pattern.compile("^\\[INFO\\] -+< [^:\\s]+:(\\S+) >-+$");
+    // [INFO] Building app 1.0-SNAPSHOT                                  [2/3]
+    private static final Pattern MODULE_NAME = Pattern.compile(
+            "^\\[INFO\\] Building (.+?) \\S+(?:\\s+\\[\\d+/\\d+\\])?$");
+    // [INFO]   from app/pom.xml
+    private static final Pattern MODULE_POM = Pattern.compile("^\\[INFO\\]\\s+from (.+)$");
+    // [INFO] app ........................................ SUCCESS [  1.234 s]
+    private static final Pattern REACTOR_SUMMARY_ENTRY = Pattern.compile(
+            "^\\[INFO\\] (.+?) \\.+ (SUCCESS|FAILURE|SKIPPED)(?: \\[\\s*([\\d.:]+) (s|min|h)\\])?$");
+    private static final Pattern BUILD_RESULT = Pattern.compile("^\\[INFO\\] BUILD (SUCCESS|FAILURE)$");
+    // [ERROR] /path/to/App.java:[12,5] cannot find symbol
+    private static final Pattern COMPILER_MESSAGE = Pattern.compile(
+            "^\\[(ERROR|WARNING)\\] (.+?):\\[(\\d+)(?:,(\\d+))?\\] (.*)$");
+    // [ERROR] com.example.AppTest.testApp -- Time elapsed: 0.01 s <<< FAILURE! (Surefire 3)
+    private static final Pattern TEST_FAILURE = Pattern.compile(
+            "^\\[ERROR\\] ([\\w.$]+)\\.([\\w$]+)\\S* -- Time elapsed: .*<<< (?:FAILURE|ERROR)!$");
+    // [ERROR] testApp(com.example.AppTest)  Time elapsed: 0.01 s  <<< FAILURE! (Surefire 2)
+    private static final Pattern LEGACY_TEST_FAILURE = Pattern.compile(
+            "^\\[ERROR\\] ([\\w$]+)\\(([\\w.$]+)\\)\\S*\\s+Time elapsed: .*<<< (?:FAILURE|ERROR)!$");
+    private static final Pattern STACK_FRAME = Pattern.compile("^\\s+at ([\\w.$]+)\\.[\\w$<>]+\\([^:)]+:(\\d+)\\)$");
+    private static final Pattern FAILED_GOAL = Pattern.compile(
+            "^\\[ERROR\\] Failed to execute goal (\\S+) (?:\\([^)]*\\) )?on project ([^:\\s]+): (.*)$");
+    private static final Pattern WARNING_MESSAGE = Pattern.compile("^\\[WARNING\\] (.+)$");
+
+    private final File projectDirectory;
+    private final Consumer<BuildEvent> listener;
+    private final StringBuilder line = new StringBuilder();
+
+    private final List<BuildEvent> diagnostics = new ArrayList<>();
+    // file:line:column:message of the diagnostics reported, as Maven repeats compiler errors
+    private final Set<String> reported = new HashSet<>();
+    // module -> last finished event, in the order modules finished
+    private final Map<String, BuildEvent> modules = new LinkedHashMap<>();
+    // module name (as in the reactor summary) -> artifactId, and artifactId -> directory
+    private final Map<String, String> moduleIds = new HashMap<>();
+    private final Map<String, File> moduleDirectories = new HashMap<>();
+    private final Set<String> failedModules = new HashSet<>();
+
+    private String currentModule;
+    private File moduleDirectory;
+    private long moduleStart;
+    // the line expected after a module header: 1 for its name, 2 for its pom
+    private int headerLine;
+    private FailedTest failedTest;
+
+    private static class FailedTest {
+        final String className;
+        final String method;
+        String message;
+
+        FailedTest(String className, String method) {
+            this.className = className;
+            this.method = method;
+        }
+    }
+
+    /**
+     * @param projectDirectory the directory of the pom being built, module poms being relative to it
+     * @param listener notified of every event as soon as it is recognized, may be null
+     */
+    public BuildOutputProcessor(File projectDirectory, Consumer<BuildEvent> listener) {
+        this.projectDirectory = projectDirectory;
+        this.moduleDirectory = projectDirectory;
+        this.listener = listener;
+    }
+
+    @Override
+    public void accept(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == '\n') {
+                processLine(line.toString());
+                line.setLength(0);
+            } else if (c != '\r' && line.length() < MAX_LINE_LENGTH) {
+                line.append(c);
+            }
+        }
+    }
+
+    /**
+     * Processes what is left once the build is over.
+     */
+    public void finish() {
+        if (line.length() > 0) {
+            processLine(line.toString());
+            line.setLength(0);
+        }
+        reportFailedTest(failedTest, -1);
+        if (currentModule != null) {
+            finishModule(currentModule, failedModules.contains(currentModule) ? FAILURE : SUCCESS, elapsed());
+            currentModule = null;
+        }
+    }
+
+    public List<BuildEvent> getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Returns the modules built, in the order they finished, with their status and duration.
+     */
+    public List<BuildEvent> getModules() {
+        return new ArrayList<>(modules.values());
+    }
+
+    private void processLine(String rawLine) {
+        final String text = rawLine.indexOf('\u001B') < 0 ? rawLine : ANSI_ESCAPE.matcher(rawLine).replaceAll("");
+        if (failedTest != null && processFailedTest(text)) {
+            return;
+        }
+        if (headerLine > 0 && processModuleHeader(text)) {
+            return;
+        }
+        if (!text.startsWith("[INFO] ") && !text.startsWith("[ERROR] ") && !text.startsWith("[WARNING] ")) {
+            return;
+        }
+
+        Matcher matcher = MODULE_HEADER.matcher(text);
+        if (matcher.matches()) {
+            startModule(matcher.group(1));
+            return;
+        }
+        matcher = COMPILER_MESSAGE.matcher(text);
+        if (matcher.matches()) {
+            final File file = resolve(matcher.group(2));
+            final int column = matcher.group(4) == null ? 1 : Integer.parseInt(matcher.group(4));
+            report(file, Integer.parseInt(matcher.group(3)) - 1, column - 1,
+                    "ERROR".equals(matcher.group(1)) ? ERROR : WARNING, matcher.group(5));
+            return;
+        }
+        matcher = TEST_FAILURE.matcher(text);
+        if (matcher.matches()) {
+            failedTest = new FailedTest(matcher.group(1), matcher.group(2));
+            return;
+        }
+        matcher = LEGACY_TEST_FAILURE.matcher(text);
+        if (matcher.matches()) {
+            failedTest = new FailedTest(matcher.group(2), matcher.group(1));
+            return;
+        }
+        matcher = FAILED_GOAL.matcher(text);
+        if (matcher.matches()) {
+            final String module = matcher.group(2);
+            // a compilation or test failure is already reported where it happened
+            if (!failedModules.contains(module)) {
+                final File directory = moduleDirectories.getOrDefault(module, projectDirectory);
+                report(module, new File(directory, "pom.xml"), 0, 0, ERROR,
+                        "Failed to execute goal " + matcher.group(1) + ": " + matcher.group(3));
+            }
+            return;
+        }
+        matcher = BUILD_RESULT.matcher(text);
+        if (matcher.matches()) {
+            if (currentModule != null) {
+                finishModule(currentModule, matcher.group(1), elapsed());
+                currentModule = null;
+            }
+            return;
+        }
+        matcher = REACTOR_SUMMARY_ENTRY.matcher(text);
+        if (matcher.matches()) {
+            processSummaryEntry(matcher);
+            return;
+        }
+        matcher = WARNING_MESSAGE.matcher(text);
+        if (matcher.matches() && !matcher.group(1).contains("COMPILATION WARNING")) {
+            // as before, general warnings of the build are shown on the pom
+            report(new File(moduleDirectory, "pom.xml"), 0, 0, WARNING, "Maven: " + matcher.group(1).trim());
+        }
+    }
+
+    private boolean processModuleHeader(String text) {
+        if (headerLine == 1) {
+            headerLine = 2;
+            final Matcher matcher = MODULE_NAME.matcher(text);
+            if (matcher.matches()) {
+                moduleIds.put(matcher.group(1), currentModule);
+                return true;
+            }
+        } else {
+            headerLine = 0;
+            final Matcher matcher = MODULE_POM.matcher(text);
+            if (matcher.matches()) {
+                final File pom = resolve(matcher.group(1).trim());
+                moduleDirectory = pom.getParentFile();
+                moduleDirectories.put(currentModule, moduleDirectory);
+                return true;
+            }
+        }
+        headerLine = 0;
+        return false;
+    }
+
+    /**
+     * Collects the message and the location of a failed test from the lines following its header,
+     * returning false when the line belongs to something else.
+     */
+    private boolean processFailedTest(String text) {
+        final Matcher frame = STACK_FRAME.matcher(text);
+        if (frame.matches()) {
+            final String className = frame.group(1);
+            if (className.equals(failedTest.className) || className.startsWith(failedTest.className + "$")) {
+                reportFailedTest(failedTest, Integer.parseInt(frame.group(2)) - 1);
+            }
+            return true;
+        }
+        if (text.startsWith("[")) {
+            reportFailedTest(failedTest, -1);
+            return false;
+        }
+        if (failedTest.message == null && !text.trim().isEmpty()) {
+            failedTest.message = text.trim();
+        }
+        return true;
+    }
+
+    private void reportFailedTest(FailedTest test, int lineNumber) {
+        if (test == null || test != failedTest) {
+            return;
+        }
+        failedTest = null;
+        final String outerClass = test.className.contains("$") ?
+                test.className.substring(0, test.className.indexOf('$')) : test.className;
+        File file = new File(moduleDirectory, "src/test/java/" + outerClass.replace('.', '/') + ".java");
+        int line = Math.max(lineNumber, 0);
+        if (!file.isFile()) {
+            file = new File(moduleDirectory, "pom.xml");
+            line = 0;
+        }
+        report(file, line, 0, ERROR, test.method + (test.message == null ? " failed" : ": " + test.message));
+    }
+
+    private void startModule(String module) {
+        reportFailedTest(failedTest, -1);
+        if (currentModule != null) {
+            finishModule(currentModule, failedModules.contains(currentModule) ? FAILURE : SUCCESS, elapsed());
+        }
+        currentModule = module;
+        moduleDirectory = projectDirectory;
+        moduleStart = System.currentTimeMillis();
+        headerLine = 1;
+        emit(BuildEvent.moduleStarted(module));
+    }
+
+    private void processSummaryEntry(Matcher matcher) {
+        final String module = moduleIds.getOrDefault(matcher.group(1), matcher.group(1));
+        final String status = matcher.group(2);
+        if (module.equals(currentModule)) {
+            finishModule(module, status, elapsed());
+            currentModule = null;
+            return;
+        }
+        final BuildEvent finished = modules.get(module);
+        // modules are assumed successful when the next one starts, which -fae may contradict
+        if (finished == null || !finished.getStatus().equals(status)) {
+            finishModule(module, status, finished != null ? finished.getDurationMillis() :
+                    parseDuration(matcher.group(3), matcher.group(4)));
+        }
+    }
+
+    private void finishModule(String module, String status, long durationMillis) {
+        final BuildEvent event = BuildEvent.moduleFinished(module, status, durationMillis);
+        modules.remove(module);
+        modules.put(module, event);
+        emit(event);
+    }
+
+    private long elapsed() {
+        return System.currentTimeMillis() - moduleStart;
+    }
+
+    /**
+     * Reads the durations of the reactor summary, e.g. "1.234 s", "01:02 min" or "01:02 h".
+     */
+    static long parseDuration(String value, String unit) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            if ("s".equals(unit)) {
+                return Math.round(Double.parseDouble(value) * 1000);
+            }
+            final String[] parts = value.split(":");
+            final long major = Long.parseLong(parts[0]);
+            final long minor = parts.length > 1 ? Long.parseLong(parts[1]) : 0;
+            return "h".equals(unit) ? (major * 3600 + minor * 60) * 1000 : (major * 60 + minor) * 1000;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private File resolve(String path) {
+        final File file = new File(path);
+        return file.isAbsolute() ? file : new File(projectDirectory, path);
+    }
+
+    private void report(File file, int line, int column, String severity, String message) {
+        report(currentModule, file, line, column, severity, message);
+    }
+
+    private void report(String module, File file, int line, int column, String severity, String message) {
+        if (ERROR.equals(severity) && module != null) {
+            failedModules.add(module);
+        }
+        if (diagnostics.size() >= MAX_DIAGNOSTICS ||
+                !reported.add(file.getPath() + ":" + line + ":" + column + ":" + message)) {
+            return;
+        }
+        final BuildEvent event = BuildEvent.diagnostic(module, file.getAbsolutePath(), line, column, severity,
+                message);
+        diagnostics.add(event);
+        emit(event);
+    }
+
+    private void emit(BuildEvent event) {
+        if (listener != null) {
+            listener.accept(event);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Maps every class (and package) to the artifacts shipping it, for all the jars of the classpaths
+ * currently analyzed, the others being evicted through {@link #retain(Set)}. The class lists come
+ * from the bundled index when it knows the artifact and from the jar itself otherwise, read in
+ * parallel. Only the classes shipped by two artifacts or more are candidates for duplicates, so
+ * checking a classpath only walks those instead of every class.
+ */
+class ClassPostingIndex {
+
+    private static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final ClassPostingIndex INSTANCE = new ClassPostingIndex();
+
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS, runnable -> {
+        final Thread thread = new Thread(runnable, "Maven Class Index");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    // indexed artifacts, the position being the id used in the postings
+    private final List<IndexedArtifact> artifacts = new ArrayList<>();
+    // jar path -> id of the artifact currently indexed for it
+    private final Map<String, Integer> idsByPath = new HashMap<>();
+    // internal class name (e.g. "org/slf4j/Logger") or package name -> ids of the artifacts shipping it
+    private final Map<String, int[]> classPostings = new HashMap<>();
+    private final Map<String, int[]> packagePostings = new HashMap<>();
+    // the keys of the postings above with at least two ids, sorted to report them in order
+    private final Set<String> sharedClasses = new TreeSet<>();
+    private final Set<String> sharedPackages = new TreeSet<>();
+
+    /**
+     * A jar of a classpath, {@code label} being how it is reported ("g:a:v", or "g:a:v:classifier").
+     */
+    static class ClasspathEntry {
+        final String groupId;
+        final String artifactId;
+        final String version;
+        final String classifier;
+        final String label;
+        final File file;
+
+        ClasspathEntry(String groupId, String artifactId, String version, String classifier, File file) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.classifier = classifier == null || classifier.isEmpty() ? null : classifier;
+            this.label = groupId + ":" + artifactId + ":" + version +
+                    (this.classifier == null ? "" : ":" + this.classifier);
+            this.file = file;
+        }
+    }
+
+    private static class IndexedArtifact {
+        final String label;
+        final long stamp;
+        final String[] classNames;
+        final String[] packageNames;
+
+        IndexedArtifact(String label, long stamp, String[] classNames) {
+            this.label = label;
+            this.stamp = stamp;
+            this.classNames = classNames;
+            final Set<String> packages = new TreeSet<>();
+            for (final String className : classNames) {
+                final int separator = className.lastIndexOf('/');
+                packages.add(separator < 0 ? "" : className.substring(0, separator));
+            }
+            this.packageNames = packages.toArray(new String[packages.size()]);
+        }
+    }
+
+    static ClassPostingIndex getDefault() {
+        return INSTANCE;
+    }
+
+    /**
+     * Finds the classes shipped by more than one jar of the classpath, grouped by the set of jars
+     * shipping them, and the packages spread over more than one jar.
+     */
+    synchronized void analyze(String pomPath, List<ClasspathEntry> classpath, ConflictReport report)
+            throws InterruptedException {
+        final BitSet members = new BitSet();
+        for (final int id : ensureIndexed(classpath)) {
+            members.set(id);
+        }
+        try (MetricsRegistry.Timer timer = metrics.time("classpath.join")) {
+            final Map<List<String>, ConflictReport.DuplicateClasses> groups = new LinkedHashMap<>();
+            for (final String className : sharedClasses) {
+                final List<String> owners = ownersOf(classPostings.get(className), members);
+                if (owners != null) {
+                    groups.computeIfAbsent(owners, k -> new ConflictReport.DuplicateClasses(pomPath, k))
+                        .addClass(className.replace('/', '.'));
+                }
+            }
+            report.getDuplicateClasses().addAll(groups.values());
+            for (final String packageName : sharedPackages) {
+                final List<String> owners = ownersOf(packagePostings.get(packageName), members);
+                if (owners != null) {
+                    report.getSplitPackages().add(
+                            new ConflictReport.SplitPackage(pomPath, packageName.replace('/', '.'), owners));
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the jars that are not among the given paths, e.g. once no module resolves them
+     * anymore, and compacts the ids so that the postings stay as small as the jars indexed.
+     */
+    synchronized void retain(Set<String> jarPaths) {
+        int evicted = 0;
+        for (final Iterator<Map.Entry<String, Integer>> it = idsByPath.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<String, Integer> entry = it.next();
+            if (!jarPaths.contains(entry.getKey())) {
+                remove(entry.getValue());
+                it.remove();
+                evicted++;
+            }
+        }
+        metrics.add("classpath.jar.evicted", evicted);
+        // jars replaced on disk leave a free id too
+        if (idsByPath.size() < artifacts.size()) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        final int[] newIds = new int[artifacts.size()];
+        final List<IndexedArtifact> kept = new ArrayList<>(idsByPath.size());
+        for (int id = 0; id < artifacts.size(); id++) {
+            final IndexedArtifact artifact = artifacts.get(id);
+            newIds[id] = artifact == null ? -1 : kept.size();
+            if (artifact != null) {
+                kept.add(artifact);
+            }
+        }
+        artifacts.clear();
+        artifacts.addAll(kept);
+        idsByPath.replaceAll((path, id) -> newIds[id]);
+        // the removed ids are gone from the postings already, the order of the others is kept
+        for (final Map<String, int[]> postings : Arrays.asList(classPostings, packagePostings)) {
+            for (final int[] posting : postings.values()) {
+                for (int i = 0; i < posting.length; i++) {
+                    posting[i] = newIds[posting[i]];
+                }
+            }
+        }
+    }
+
+    private List<String> ownersOf(int[] posting, BitSet members) {
+        List<String> owners = null;
+        for (final int id : posting) {
+            if (members.get(id)) {
+                if (owners == null) {
+                    owners = new ArrayList<>(2);
+                }
+                owners.add(artifacts.get(id).label);
+            }
+        }
+        return owners != null && owners.size() > 1 ? owners : null;
+    }
+
+    private int[] ensureIndexed(List<ClasspathEntry> classpath) throws InterruptedException {
+        final int[] ids = new int[classpath.size()];
+        final List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < classpath.size(); i++) {
+            final File file = classpath.get(i).file;
+            final Integer id = idsByPath.get(file.getPath());
+            if (id != null && artifacts.get(id) != null && artifacts.get(id).stamp == stampOf(file)) {
+                ids[i] = id;
+            } else {
+                missing.add(i);
+            }
+        }
+        metrics.add("classpath.jar.cache.hit", classpath.size() - missing.size());
+        metrics.add("classpath.jar.cache.miss", missing.size());
+        if (missing.isEmpty()) {
+            return ids;
+        }
+        final List<Callable<IndexedArtifact>> tasks = new ArrayList<>();
+        for (final int i : missing) {
+            final ClasspathEntry entry = classpath.get(i);
+            tasks.add(() -> load(entry));
+        }
+        final List<Future<IndexedArtifact>> loaded;
+        try (MetricsRegistry.Timer timer = metrics.time("classpath.load")) {
+            loaded = executor.invokeAll(tasks);
+        }
+        for (int n = 0; n < missing.size(); n++) {
+            final ClasspathEntry entry = classpath.get(missing.get(n));
+            final IndexedArtifact artifact;
+            try {
+                artifact = loaded.get(n).get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Cannot read " + entry.file, e.getCause());
+            }
+            final Integer previous = idsByPath.get(entry.file.getPath());
+            if (previous != null) {
+                // the jar changed on disk, its former content no longer ships anything
+                remove(previous);
+            }
+            ids[missing.get(n)] = add(entry.file.getPath(), artifact);
+        }
+        return ids;
+    }
+
+    private IndexedArtifact load(ClasspathEntry entry) {
+        final long stamp = stampOf(entry.file);
+        // released artifacts never change, their class list from the index is as good as the jar's
+        // as long as the index describes this very file
+        final String indexed = entry.version.endsWith("-SNAPSHOT") ? null : ArtifactSearcher.getIndexedClassNames(
+                entry.groupId, entry.artifactId, entry.version, entry.classifier, entry.file);
+        if (indexed != null) {
+            metrics.increment("classpath.jar.fromIndex");
+            return new IndexedArtifact(entry.label, stamp, fromIndexedClassNames(indexed));
+        }
+        metrics.increment("classpath.jar.scanned");
+        return new IndexedArtifact(entry.label, stamp, readClassNames(entry.file));
+    }
+
+    private int add(String path, IndexedArtifact artifact) {
+        final int id = artifacts.size();
+        artifacts.add(artifact);
+        idsByPath.put(path, id);
+        for (final String className : artifact.classNames) {
+            addPosting(classPostings, sharedClasses, className, id);
+        }
+        for (final String packageName : artifact.packageNames) {
+            addPosting(packagePostings, sharedPackages, packageName, id);
+        }
+        return id;
+    }
+
+    private void remove(int id) {
+        final IndexedArtifact artifact = artifacts.get(id);
+        for (final String className : artifact.classNames) {
+            removePosting(classPostings, sharedClasses, className, id);
+        }
+        for (final String packageName : artifact.packageNames) {
+            removePosting(packagePostings, sharedPackages, packageName, id);
+        }
+        artifacts.set(id, null);
+    }
+
+    private static void addPosting(Map<String, int[]> postings, Set<String> shared, String key, int id) {
+        final int[] posting = postings.get(key);
+        if (posting == null) {
+            postings.put(key, new int[] { id });
+            return;
+        }
+        final int[] grown = Arrays.copyOf(posting, posting.length + 1);
+        grown[posting.length] = id;
+        postings.put(key, grown);
+        shared.add(key);
+    }
+
+    private static void removePosting(Map<String, int[]> postings, Set<String> shared, String key, int id) {
+        final int[] posting = postings.get(key);
+        if (posting == null) {
+            return;
+        }
+        final int[] shrunk = new int[posting.length - 1];
+        int n = 0;
+        for (final int other : posting) {
+            if (other != id && n < shrunk.length) {
+                shrunk[n++] = other;
+            }
+        }
+        if (shrunk.length == 0) {
+            postings.remove(key);
+        } else {
+            postings.put(key, shrunk);
+        }
+        if (shrunk.length < 2) {
+            shared.remove(key);
+        }
+    }
+
+    /**
+     * Turns the {@code MAVEN.CLASSNAMES} of the index ("/org/slf4j/Logger" lines) into internal
+     * names, with the same filtering as {@link #readClassNames(File)}.
+     */
+    static String[] fromIndexedClassNames(String classNames) {
+        final List<String> result = new ArrayList<>();
+        int lineStart = 0;
+        while (lineStart < classNames.length()) {
+            int lineEnd = classNames.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = classNames.length();
+            }
+            final int nameStart = classNames.charAt(lineStart) == '/' ? lineStart + 1 : lineStart;
+            final int dollar = classNames.indexOf('$', nameStart);
+            // nested classes follow their outer class
+            if (nameStart < lineEnd && (dollar < 0 || dollar >= lineEnd)) {
+                final String name = classNames.substring(nameStart, lineEnd);
+                if (isReported(name)) {
+                    result.add(name);
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    /**
+     * Lists the internal names of the top level classes of a jar.
+     */
+    static String[] readClassNames(File jar) {
+        final List<String> result = new ArrayList<>();
+        try (ZipFile zipFile = new ZipFile(jar)) {
+            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                final String name = entries.nextElement().getName();
+                // nested classes follow their outer class, multi-release copies are not duplicates
+                if (name.endsWith(".class") && !name.startsWith("META-INF/") && name.indexOf('$') < 0) {
+                    final String className = name.substring(0, name.length() - ".class".length());
+                    if (isReported(className)) {
+                        result.add(className);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            MetricsRegistry.getDefault().increment("classpath.jar.unreadable");
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    private static boolean isReported(String className) {
+        return !className.endsWith("module-info") && !className.endsWith("package-info");
+    }
+
+    private static long stampOf(File file) {
+        return file.lastModified() * 31 + file.length();
+    }
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ConflictReport {
+
+    private List<VersionConflict> versionConflicts = new ArrayList<>();
+
+    private List<ConvergenceViolation> convergenceViolations = new ArrayList<>();
+
+    private List<DuplicateClasses> duplicateClasses = new ArrayList<>();
+
+    private List<SplitPackage> splitPackages = new ArrayList<>();
+
+    public List<VersionConflict> getVersionConflicts() {
+        return versionConflicts;
+    }
+
+    public List<ConvergenceViolation> getConvergenceViolations() {
+        return convergenceViolations;
+    }
+
+    public List<DuplicateClasses> getDuplicateClasses() {
+        return duplicateClasses;
+    }
+
+    public List<SplitPackage> getSplitPackages() {
+        return splitPackages;
+    }
+
+    /**
+     * A dependency of a module that was requested in one version and resolved to another.
+     */
+    public static class VersionConflict {
+        private String pomPath;
+        private String groupId;
+        private String artifactId;
+        private String requestedVersion;
+        private String resolvedVersion;
+        // "g:a:v" of the dependencies leading to the omitted one, the module itself excluded
+        private List<String> path;
+
+        public VersionConflict(String pomPath, String groupId, String artifactId, String requestedVersion,
+                String resolvedVersion, List<String> path) {
+            this.pomPath = pomPath;
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.requestedVersion = requestedVersion;
+            this.resolvedVersion = resolvedVersion;
+            this.path = path;
+        }
+
+        public String getPomPath() {
+            return pomPath;
+        }
+
+        public String getGroupId() {
+            return groupId;
+        }
+
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        public String getRequestedVersion() {
+            return requestedVersion;
+        }
+
+        public String getResolvedVersion() {
+            return resolvedVersion;
+        }
+
+        public List<String> getPath() {
+            return path;
+        }
+    }
+
+    /**
+     * An artifact resolved to different versions by different modules of the workspace.
+     */
+    public static class ConvergenceViolation {
+        private String groupId;
+        private String artifactId;
+        // resolved version -> poms of the modules resolving it
+        private Map<String, List<String>> versions = new TreeMap<>();
+
+        public ConvergenceViolation(String groupId, String artifactId) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+        }
+
+        public String getGroupId() {
+            return groupId;
+        }
+
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        public Map<String, List<String>> getVersions() {
+            return versions;
+        }
+    }
+
+    /**
+     * Classes found in more than one jar of a module's classpath, grouped by the set of jars
+     * shipping them.
+     */
+    public static class DuplicateClasses {
+        public static final int MAX_CLASSES = 20;
+
+        private String pomPath;
+        // "g:a:v" of the jars shipping the classes
+        private List<String> artifacts;
+        private int classCount;
+        // the first MAX_CLASSES of them
+        private List<String> classes = new ArrayList<>();
+
+        public DuplicateClasses(String pomPath, List<String> artifacts) {
+            this.pomPath = pomPath;
+            this.artifacts = artifacts;
+        }
+
+        public void addClass(String className) {
+            if (classCount++ < MAX_CLASSES) {
+                classes.add(className);
+            }
+        }
+
+        public String getPomPath() {
+            return pomPath;
+        }
+
+        public List<String> getArtifacts() {
+            return artifacts;
+        }
+
+        public int getClassCount() {
+            return classCount;
+        }
+
+        public List<String> getClasses() {
+            return classes;
+        }
+    }
+
+    /**
+     * A package whose classes come from more than one jar of a module's classpath.
+     */
+    public static class SplitPackage {
+        private String pomPath;
+        private String packageName;
+        // "g:a:v" of the jars contributing to the package
+        private List<String> artifacts;
+
+        public SplitPackage(String pomPath, String packageName, List<String> artifacts) {
+            this.pomPath = pomPath;
+            this.packageName = packageName;
+            this.artifacts = artifacts;
+        }
+
+        public String getPomPath() {
+            return pomPath;
+        }
+
+        public String getPackageName() {
+            return packageName;
+        }
+
+        public List<String> getArtifacts() {
+            return artifacts;
+        }
+    }
+}
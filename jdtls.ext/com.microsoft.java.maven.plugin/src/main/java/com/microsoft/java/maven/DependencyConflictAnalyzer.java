@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.m2e.core.MavenPlugin;
+import org.eclipse.m2e.core.project.IMavenProjectFacade;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Keeps the resolved graphs of all workspace modules in memory and reports version conflicts,
+ * convergence violations across modules and classes shipped by more than one jar.
+ * Only the modules m2e re-read since the last analysis are resolved again, and artifacts shared
+ * by several modules are represented once; the class lists of their jars come from
+ * {@link ClassPostingIndex}.
+ */
+public class DependencyConflictAnalyzer {
+
+    private static final MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+    // pom path -> module
+    private static final Map<String, ModuleGraph> modules = new HashMap<>();
+    // g:a[:classifier]:v -> node shared by every module resolving it
+    private static final Map<String, ClassPostingIndex.ClasspathEntry> nodes = new HashMap<>();
+
+    private static class ModuleGraph {
+        final DependencyTreeHandler.ModelStamp stamp;
+        final String pomPath;
+        final List<ClassPostingIndex.ClasspathEntry> classpath;
+        final List<ConflictReport.VersionConflict> versionConflicts;
+        // computed on first use, the classpath of a module does not change without a new facade
+        ConflictReport classpathReport;
+
+        ModuleGraph(DependencyTreeHandler.ModelStamp stamp, String pomPath,
+                List<ClassPostingIndex.ClasspathEntry> classpath,
+                List<ConflictReport.VersionConflict> versionConflicts) {
+            this.stamp = stamp;
+            this.pomPath = pomPath;
+            this.classpath = classpath;
+            this.versionConflicts = versionConflicts;
+        }
+    }
+
+    /**
+     * Analyzes every Maven project of the workspace, reusing the graphs of the modules that did
+     * not change since the previous call.
+     */
+    public static synchronized ConflictReport analyzeWorkspace(IProgressMonitor monitor)
+            throws InterruptedException {
+        final Set<String> current = new HashSet<>();
+        for (final IMavenProjectFacade facade : MavenPlugin.getMavenProjectRegistry().getProjects()) {
+            if (monitor != null && monitor.isCanceled()) {
+                throw new OperationCanceledException();
+            }
+            final String pomPath = facade.getPomFile().getAbsolutePath();
+            current.add(pomPath);
+            final ModuleGraph cached = modules.get(pomPath);
+            if (cached != null && cached.stamp.isCurrent(facade)) {
+                metrics.increment("conflicts.module.cache.hit");
+                continue;
+            }
+            metrics.increment("conflicts.module.cache.miss");
+            try (MetricsRegistry.Timer timer = metrics.time("conflicts.module")) {
+                modules.put(pomPath, resolveModule(facade, pomPath, monitor));
+            } catch (CoreException e) {
+                // a module that cannot be resolved is reported by m2e already
+                modules.remove(pomPath);
+                metrics.increment("conflicts.module.failed");
+            }
+        }
+        modules.keySet().retainAll(current);
+        forgetUnusedArtifacts();
+
+        final ConflictReport report = new ConflictReport();
+        final Map<String, ConflictReport.ConvergenceViolation> convergence = new TreeMap<>();
+        for (final ModuleGraph module : modules.values()) {
+            report.getVersionConflicts().addAll(module.versionConflicts);
+            for (final ClassPostingIndex.ClasspathEntry node : module.classpath) {
+                final List<String> poms = convergence.computeIfAbsent(node.groupId + ":" + node.artifactId,
+                    k -> new ConflictReport.ConvergenceViolation(node.groupId, node.artifactId))
+                    .getVersions().computeIfAbsent(node.version, k -> new ArrayList<>());
+                // classified artifacts (e.g. tests) share the version of the main one
+                if (poms.isEmpty() || !poms.get(poms.size() - 1).equals(module.pomPath)) {
+                    poms.add(module.pomPath);
+                }
+            }
+            final ConflictReport classpathReport = getClasspathReport(module);
+            report.getDuplicateClasses().addAll(classpathReport.getDuplicateClasses());
+            report.getSplitPackages().addAll(classpathReport.getSplitPackages());
+        }
+        for (final ConflictReport.ConvergenceViolation violation : convergence.values()) {
+            if (violation.getVersions().size() > 1) {
+                report.getConvergenceViolations().add(violation);
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Reports the classes and packages shipped by more than one jar of the classpath of the given
+     * pom, or returns null when the pom does not belong to a Maven project known to m2e.
+     */
+    public static synchronized ConflictReport analyzeClasspath(String pomPath, IProgressMonitor monitor)
+            throws CoreException, InterruptedException {
+        final IMavenProjectFacade facade = DependencyTreeHandler.getProjectFacade(pomPath);
+        if (facade == null) {
+            return null;
+        }
+        ModuleGraph module = modules.get(pomPath);
+        if (module == null || !module.stamp.isCurrent(facade)) {
+            module = resolveModule(facade, pomPath, monitor);
+            modules.put(pomPath, module);
+            forgetUnusedArtifacts();
+        }
+        final ConflictReport classpathReport = getClasspathReport(module);
+        final ConflictReport report = new ConflictReport();
+        report.getDuplicateClasses().addAll(classpathReport.getDuplicateClasses());
+        report.getSplitPackages().addAll(classpathReport.getSplitPackages());
+        return report;
+    }
+
+    /**
+     * Forgets the artifacts no module resolves anymore, along with their classes in the index.
+     */
+    private static void forgetUnusedArtifacts() {
+        final Set<ClassPostingIndex.ClasspathEntry> liveNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Set<String> liveJars = new HashSet<>();
+        for (final ModuleGraph module : modules.values()) {
+            liveNodes.addAll(module.classpath);
+            for (final ClassPostingIndex.ClasspathEntry node : module.classpath) {
+                liveJars.add(node.file.getPath());
+            }
+        }
+        nodes.values().retainAll(liveNodes);
+        ClassPostingIndex.getDefault().retain(liveJars);
+    }
+
+    private static ModuleGraph resolveModule(IMavenProjectFacade facade, String pomPath, IProgressMonitor monitor)
+            throws CoreException {
+        final DependencyTreeHandler.ModelStamp stamp = new DependencyTreeHandler.ModelStamp(facade);
+        final List<ConflictReport.VersionConflict> versionConflicts = new ArrayList<>();
+        final DependencyTreeNode tree = DependencyTreeHandler.resolveDependencyTree(pomPath, monitor);
+        if (tree != null) {
+            collectConflicts(pomPath, tree.getChildren(), new ArrayDeque<>(), versionConflicts);
+        }
+        final MavenProject mavenProject = facade.getMavenProject(monitor);
+        final List<ClassPostingIndex.ClasspathEntry> classpath = new ArrayList<>();
+        for (final Artifact artifact : mavenProject.getArtifacts()) {
+            final File file = artifact.getFile();
+            // workspace modules resolve to their output folders, only jars are compared
+            if (file == null || !file.isFile()) {
+                continue;
+            }
+            final String key = keyOf(artifact.getGroupId(), artifact.getArtifactId(), artifact.getClassifier(),
+                    artifact.getBaseVersion());
+            ClassPostingIndex.ClasspathEntry node = nodes.get(key);
+            if (node == null || !node.file.equals(file)) {
+                node = new ClassPostingIndex.ClasspathEntry(artifact.getGroupId(), artifact.getArtifactId(),
+                        artifact.getBaseVersion(), artifact.getClassifier(), file);
+                nodes.put(key, node);
+            }
+            classpath.add(node);
+        }
+        return new ModuleGraph(stamp, pomPath, classpath, versionConflicts);
+    }
+
+    private static void collectConflicts(String pomPath, List<DependencyTreeNode> children, Deque<String> path,
+            List<ConflictReport.VersionConflict> result) {
+        for (final DependencyTreeNode child : children) {
+            if (DependencyTreeNode.OMITTED_FOR_CONFLICT.equals(child.getOmitted())) {
+                result.add(new ConflictReport.VersionConflict(pomPath, child.getGroupId(), child.getArtifactId(),
+                        child.getVersion(), child.getEffectiveVersion(), new ArrayList<>(path)));
+            } else if (!child.getChildren().isEmpty()) {
+                path.addLast(child.getGroupId() + ":" + child.getArtifactId() + ":" + child.getVersion());
+                collectConflicts(pomPath, child.getChildren(), path, result);
+                path.removeLast();
+            }
+        }
+    }
+
+    private static ConflictReport getClasspathReport(ModuleGraph module) throws InterruptedException {
+        if (module.classpathReport == null) {
+            final ConflictReport classpathReport = new ConflictReport();
+            try (MetricsRegistry.Timer timer = metrics.time("conflicts.classpath")) {
+                ClassPostingIndex.getDefault().analyze(module.pomPath, module.classpath, classpathReport);
+            }
+            module.classpathReport = classpathReport;
+        }
+        return module.classpathReport;
+    }
+
+    private static String keyOf(String groupId, String artifactId, String classifier, String version) {
+        final StringBuilder builder = new StringBuilder(groupId).append(':').append(artifactId);
+        if (classifier != null && !classifier.isEmpty()) {
+            builder.append(':').append(classifier);
+        }
+        return builder.append(':').append(version).toString();
+    }
+}
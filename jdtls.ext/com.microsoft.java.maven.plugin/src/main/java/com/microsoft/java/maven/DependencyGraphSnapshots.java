@@ -0,0 +1,481 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import org.eclipse.m2e.core.MavenPlugin;
+import org.eclipse.m2e.core.embedder.IMavenConfiguration;
+
+import javax.xml.stream.XMLStreamException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the resolved dependency tree of each module across sessions, so that the explorer can
+ * show it on reload before m2e resolved anything. A snapshot is keyed by a hash of the pom, of
+ * the poms it inherits from, of the boms they import and of the settings. The key only tells
+ * whether the snapshot is likely current: the poms of the workspace modules it depends on or a
+ * snapshot downloaded again may still change the tree, so it is resolved again once shown.
+ *
+ * <p>Snapshots are stored one file per module in a compact binary form: a table of the distinct
+ * strings, a table of the distinct coordinates referring to it, then the nodes in pre-order with
+ * their children as offsets into one edge array.
+ */
+public class DependencyGraphSnapshots {
+
+    private static final int MAGIC = 0x4d564447; // "MVDG"
+    private static final int FORMAT_VERSION = 1;
+    // ancestors followed at most, in case of a parent cycle in broken poms
+    private static final int MAX_DEPTH = 32;
+    private static final int NONE = -1;
+    private static final Pattern PROPERTY = Pattern.compile("\\$\\{([^}]+)\\}");
+
+    private static DependencyGraphSnapshots defaultSnapshots;
+
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final File directory;
+    // pom path -> the snapshot last read or written
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    public static class Snapshot {
+        final String key;
+        final DependencyTreeNode tree;
+
+        Snapshot(String key, DependencyTreeNode tree) {
+            this.key = key;
+            this.tree = tree;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public DependencyTreeNode getTree() {
+            return tree;
+        }
+    }
+
+    /**
+     * @param directory where snapshots are persisted, null to keep them in memory only
+     */
+    DependencyGraphSnapshots(File directory) {
+        this.directory = directory;
+    }
+
+    public static synchronized DependencyGraphSnapshots getDefault() {
+        if (defaultSnapshots == null) {
+            defaultSnapshots = new DependencyGraphSnapshots(PluginActivator.getStateFile("dependency-graphs"));
+        }
+        return defaultSnapshots;
+    }
+
+    /**
+     * Returns the last snapshot of the given pom whatever its key, or null when there is none.
+     */
+    public Snapshot get(String pomPath) {
+        final Snapshot cached = snapshots.get(pomPath);
+        if (cached != null || directory == null) {
+            return cached;
+        }
+        final File file = getFile(pomPath);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(
+                file.toPath())))) {
+            final Snapshot snapshot = read(in, pomPath);
+            if (snapshot != null) {
+                snapshots.put(pomPath, snapshot);
+            }
+            return snapshot;
+        } catch (IOException | RuntimeException e) {
+            // a corrupted snapshot is replaced by the next resolution
+            metrics.increment("dependencyTree.snapshot.unreadable");
+            return null;
+        }
+    }
+
+    public void put(String pomPath, String key, DependencyTreeNode tree) {
+        snapshots.put(pomPath, new Snapshot(key, tree));
+        if (directory == null) {
+            return;
+        }
+        final File file = getFile(pomPath);
+        try {
+            Files.createDirectories(directory.toPath());
+            final File temp = new File(file.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                    temp.toPath())))) {
+                write(out, pomPath, key, tree);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // kept in memory, written again with the next resolution
+        }
+    }
+
+    private File getFile(String pomPath) {
+        return new File(directory, hash(pomPath.getBytes(StandardCharsets.UTF_8)) + ".bin");
+    }
+
+    /**
+     * Computes the key of the current state of a pom: its content, the content of the poms it
+     * inherits from, found next to it or in the local repository, of the boms they import and
+     * the settings. Returns null when the pom cannot be read.
+     */
+    public static String computeKey(String pomPath) {
+        final IMavenConfiguration configuration = MavenPlugin.getMavenConfiguration();
+        final List<String> settingsFiles = new ArrayList<>();
+        if (configuration != null) {
+            settingsFiles.add(configuration.getUserSettingsFile());
+            settingsFiles.add(configuration.getGlobalSettingsFile());
+        }
+        if (configuration == null || configuration.getUserSettingsFile() == null) {
+            settingsFiles.add(new File(System.getProperty("user.home"), ".m2/settings.xml").getPath());
+        }
+        final File localRepository = MavenPlugin.getMaven() == null ? null :
+                MavenPlugin.getMaven().getLocalRepositoryPath();
+        return computeKey(pomPath, localRepository, settingsFiles);
+    }
+
+    static String computeKey(String pomPath, File localRepository, List<String> settingsFiles) {
+        final MessageDigest digest = newDigest();
+        // the properties the imports may refer to, the closest pom defining them winning
+        final Map<String, String> properties = new HashMap<>();
+        final List<String> boms = new ArrayList<>();
+        File pom = new File(pomPath);
+        for (int depth = 0; pom != null && depth < MAX_DEPTH; depth++) {
+            final byte[] content;
+            try {
+                content = Files.readAllBytes(pom.toPath());
+            } catch (IOException e) {
+                if (depth == 0) {
+                    return null;
+                }
+                break;
+            }
+            update(digest, pom.getAbsolutePath());
+            digest.update(content);
+            final PomHeader header;
+            try {
+                header = PomHeaderScanner.parseHeader(pom.getPath(), new ByteArrayInputStream(content));
+            } catch (XMLStreamException e) {
+                // the content is hashed already, the parent chain ends here
+                break;
+            }
+            final PomHeader.Parent parent = header.getParent();
+            if (depth == 0) {
+                // as in Maven, the project properties of inherited imports are those of the module
+                final String groupId = header.getGroupId() != null ? header.getGroupId() :
+                        parent != null ? parent.getGroupId() : null;
+                final String version = header.getVersion() != null ? header.getVersion() :
+                        parent != null ? parent.getVersion() : null;
+                putIfNotNull(properties, "project.groupId", groupId);
+                putIfNotNull(properties, "project.version", version);
+            }
+            header.getProperties().forEach(properties::putIfAbsent);
+            try {
+                boms.addAll(PomHeaderScanner.parseImportedBoms(new ByteArrayInputStream(content)));
+            } catch (XMLStreamException e) {
+                // the header was read, only the dependency management is broken
+            }
+            if (parent == null) {
+                break;
+            }
+            update(digest, parent.getGroupId() + ":" + parent.getArtifactId() + ":" + parent.getVersion());
+            pom = findParentPom(pom, parent, localRepository);
+        }
+        for (final String bom : boms) {
+            final String[] coordinates = interpolate(bom, properties).split(":");
+            final File bomPom = coordinates.length != 3 ? null :
+                    findInRepository(localRepository, coordinates[0], coordinates[1], coordinates[2]);
+            if (bomPom != null) {
+                updateWithFile(digest, bomPom.getPath());
+            }
+        }
+        for (final String settingsFile : settingsFiles) {
+            updateWithFile(digest, settingsFile);
+        }
+        update(digest, String.valueOf(localRepository));
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Finds the pom of a parent the way Maven does: at its relative path when the coordinates
+     * match, in the local repository otherwise. Returns null when it is in neither.
+     */
+    private static File findParentPom(File pom, PomHeader.Parent parent, File localRepository) {
+        final String relativePath = parent.getRelativePath() == null ? "../pom.xml" : parent.getRelativePath();
+        if (!relativePath.isEmpty()) {
+            File candidate = new File(pom.getAbsoluteFile().getParentFile(), relativePath);
+            if (candidate.isDirectory()) {
+                candidate = new File(candidate, "pom.xml");
+            }
+            if (candidate.isFile() && isPomOf(candidate, parent)) {
+                return candidate;
+            }
+        }
+        return findInRepository(localRepository, parent.getGroupId(), parent.getArtifactId(), parent.getVersion());
+    }
+
+    private static File findInRepository(File localRepository, String groupId, String artifactId, String version) {
+        if (localRepository == null || groupId == null || artifactId == null || version == null) {
+            return null;
+        }
+        final File candidate = new File(localRepository, groupId.replace('.', '/') + "/" + artifactId + "/" +
+                version + "/" + artifactId + "-" + version + ".pom");
+        return candidate.isFile() ? candidate : null;
+    }
+
+    /**
+     * Replaces the properties of a value, leaving the unknown ones as written.
+     */
+    private static String interpolate(String value, Map<String, String> properties) {
+        final Matcher matcher = PROPERTY.matcher(value);
+        final StringBuffer result = new StringBuffer();
+        while (matcher.find()) {
+            final String replacement = properties.getOrDefault(matcher.group(1), matcher.group());
+            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static void putIfNotNull(Map<String, String> properties, String name, String value) {
+        if (value != null) {
+            properties.put(name, value);
+        }
+    }
+
+    private static boolean isPomOf(File candidate, PomHeader.Parent parent) {
+        try (InputStream in = Files.newInputStream(candidate.toPath())) {
+            final PomHeader header = PomHeaderScanner.parseHeader(candidate.getPath(), in);
+            final String groupId = header.getGroupId() != null ? header.getGroupId() :
+                    header.getParent() != null ? header.getParent().getGroupId() : null;
+            return parent.getArtifactId() != null && parent.getArtifactId().equals(header.getArtifactId()) &&
+                    (parent.getGroupId() == null || parent.getGroupId().equals(groupId));
+        } catch (IOException | XMLStreamException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Encodes a tree in the snapshot format, which also gives a cheap way to compare two trees.
+     */
+    static byte[] encode(DependencyTreeNode tree) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeGraph(out, tree);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static void write(DataOutputStream out, String pomPath, String key, DependencyTreeNode tree)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(pomPath);
+        out.writeUTF(key);
+        writeGraph(out, tree);
+    }
+
+    /**
+     * Reads a snapshot, or returns null when it was written by another format version or for
+     * another pom.
+     */
+    static Snapshot read(DataInputStream in, String pomPath) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !pomPath.equals(in.readUTF())) {
+            return null;
+        }
+        final String key = in.readUTF();
+        return new Snapshot(key, readGraph(in));
+    }
+
+    private static void writeGraph(DataOutputStream out, DependencyTreeNode tree) throws IOException {
+        final List<DependencyTreeNode> nodes = new ArrayList<>();
+        collect(tree, nodes);
+        final Map<String, Integer> stringIndex = new HashMap<>();
+        final List<String> strings = new ArrayList<>();
+        final Map<String, Integer> gavIndex = new HashMap<>();
+        final List<int[]> gavs = new ArrayList<>();
+        // gav, scope, omitted and effective version of each node
+        final int[][] nodeFields = new int[nodes.size()][];
+        for (int i = 0; i < nodes.size(); i++) {
+            final DependencyTreeNode node = nodes.get(i);
+            final int[] gav = {
+                intern(node.getGroupId(), stringIndex, strings),
+                intern(node.getArtifactId(), stringIndex, strings),
+                intern(node.getVersion(), stringIndex, strings)
+            };
+            nodeFields[i] = new int[] {
+                gavIndex.computeIfAbsent(gav[0] + ":" + gav[1] + ":" + gav[2], k -> {
+                    gavs.add(gav);
+                    return gavs.size() - 1;
+                }),
+                intern(node.getScope(), stringIndex, strings, NONE),
+                intern(node.getOmitted(), stringIndex, strings, NONE),
+                intern(node.getEffectiveVersion(), stringIndex, strings, NONE)
+            };
+        }
+
+        out.writeInt(strings.size());
+        for (final String string : strings) {
+            out.writeUTF(string);
+        }
+        out.writeInt(gavs.size());
+        for (final int[] gav : gavs) {
+            out.writeInt(gav[0]);
+            out.writeInt(gav[1]);
+            out.writeInt(gav[2]);
+        }
+        out.writeInt(nodes.size());
+        for (final int[] fields : nodeFields) {
+            for (final int field : fields) {
+                out.writeInt(field);
+            }
+        }
+        // nodes are in pre-order, so the children of each node follow it: the edge array lists
+        // them node after node and the offsets tell where the children of each node start
+        final Map<DependencyTreeNode, Integer> positions = new IdentityHashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            positions.put(nodes.get(i), i);
+        }
+        int offset = 0;
+        for (final DependencyTreeNode node : nodes) {
+            out.writeInt(offset);
+            offset += node.getChildren().size();
+        }
+        out.writeInt(offset);
+        for (final DependencyTreeNode node : nodes) {
+            for (final DependencyTreeNode child : node.getChildren()) {
+                out.writeInt(positions.get(child));
+            }
+        }
+    }
+
+    private static DependencyTreeNode readGraph(DataInputStream in) throws IOException {
+        final String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        final int[][] gavs = new int[in.readInt()][3];
+        for (final int[] gav : gavs) {
+            gav[0] = in.readInt();
+            gav[1] = in.readInt();
+            gav[2] = in.readInt();
+        }
+        final DependencyTreeNode[] nodes = new DependencyTreeNode[in.readInt()];
+        for (int i = 0; i < nodes.length; i++) {
+            final int[] gav = gavs[in.readInt()];
+            final String scope = lookup(strings, in.readInt());
+            final String omitted = lookup(strings, in.readInt());
+            final String effectiveVersion = lookup(strings, in.readInt());
+            nodes[i] = new DependencyTreeNode(strings[gav[0]], strings[gav[1]], strings[gav[2]], scope);
+            if (omitted != null) {
+                nodes[i].setOmitted(omitted, effectiveVersion);
+            }
+        }
+        final int[] offsets = new int[nodes.length + 1];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = in.readInt();
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            for (int edge = offsets[i]; edge < offsets[i + 1]; edge++) {
+                nodes[i].getChildren().add(nodes[in.readInt()]);
+            }
+        }
+        return nodes.length == 0 ? null : nodes[0];
+    }
+
+    private static void collect(DependencyTreeNode node, List<DependencyTreeNode> nodes) {
+        nodes.add(node);
+        for (final DependencyTreeNode child : node.getChildren()) {
+            collect(child, nodes);
+        }
+    }
+
+    private static int intern(String string, Map<String, Integer> index, List<String> strings) {
+        return index.computeIfAbsent(string == null ? "" : string, k -> {
+            strings.add(k);
+            return strings.size() - 1;
+        });
+    }
+
+    private static int intern(String string, Map<String, Integer> index, List<String> strings, int absent) {
+        return string == null ? absent : intern(string, index, strings);
+    }
+
+    private static String lookup(String[] strings, int index) {
+        return index == NONE ? null : strings[index];
+    }
+
+    private static void updateWithFile(MessageDigest digest, String path) {
+        if (path == null) {
+            return;
+        }
+        update(digest, path);
+        try {
+            digest.update(Files.readAllBytes(new File(path).toPath()));
+        } catch (IOException e) {
+            // a missing settings file counts as empty
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static String hash(byte[] bytes) {
+        final MessageDigest digest = newDigest();
+        digest.update(bytes);
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        final StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
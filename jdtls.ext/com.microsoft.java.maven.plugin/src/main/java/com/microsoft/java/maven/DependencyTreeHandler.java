@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.util.artifact.JavaScopes;
+import org.eclipse.aether.util.graph.transformer.ConflictResolver;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.ls.core.internal.JavaClientConnection;
+import org.eclipse.jdt.ls.core.internal.JavaLanguageServerPlugin;
+import org.eclipse.m2e.core.MavenPlugin;
+import org.eclipse.m2e.core.project.IMavenProjectFacade;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the dependency tree of a workspace pom in-process, from the project model m2e
+ * already loaded, instead of forking Maven and parsing the text it prints.
+ */
+@SuppressWarnings("restriction")
+public class DependencyTreeHandler {
+
+    // called with the pom path when a tree shown from a snapshot turned out different once resolved again
+    static final String CHANGED_CLIENT_COMMAND = "maven.dependencyTreeChanged";
+    // m2e may still be importing the projects when the explorer first asks for their trees
+    private static final long RETRY_MILLIS = 5000;
+    private static final int MAX_RETRIES = 24;
+
+    private static final Map<String, CachedTree> cache = new ConcurrentHashMap<>();
+    private static final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private static final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private static final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "Maven Dependency Tree Refresh");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private static class CachedTree {
+        final ModelStamp stamp;
+        final DependencyTreeNode tree;
+
+        CachedTree(ModelStamp stamp, DependencyTreeNode tree) {
+            this.stamp = stamp;
+            this.tree = tree;
+        }
+    }
+
+    /**
+     * Tells whether what was computed from the model of a workspace project is still current:
+     * m2e hands out a new facade whenever the project (or one of its parents) is re-read, and the
+     * pom may have been edited since.
+     */
+    static final class ModelStamp {
+        private final IMavenProjectFacade facade;
+        private final long modificationStamp;
+
+        ModelStamp(IMavenProjectFacade facade) {
+            this.facade = facade;
+            this.modificationStamp = modificationStampOf(facade);
+        }
+
+        boolean isCurrent(IMavenProjectFacade current) {
+            return current != null && facade == current && modificationStamp == modificationStampOf(current);
+        }
+
+        private static long modificationStampOf(IMavenProjectFacade facade) {
+            return facade.getPom() == null ? 0 : facade.getPom().getModificationStamp();
+        }
+    }
+
+    /**
+     * Returns the dependency tree of the given pom, the root being the project itself, or null
+     * when the pom does not belong to a Maven project known to m2e.
+     */
+    public static DependencyTreeNode resolveDependencyTree(String pomPath, IProgressMonitor monitor)
+            throws CoreException {
+        final IMavenProjectFacade facade = getProjectFacade(pomPath);
+        if (facade == null) {
+            return null;
+        }
+        final ModelStamp stamp = new ModelStamp(facade);
+        final CachedTree cached = cache.get(pomPath);
+        if (cached != null && cached.stamp.isCurrent(facade)) {
+            metrics.increment("dependencyTree.cache.hit");
+            return cached.tree;
+        }
+        metrics.increment("dependencyTree.cache.miss");
+        final MavenProject mavenProject = facade.getMavenProject(monitor);
+        final DependencyNode root = MavenPlugin.getMavenModelManager().readDependencyTree(facade, mavenProject,
+                JavaScopes.TEST, monitor);
+        final DependencyTreeNode tree = new DependencyTreeNode(mavenProject.getGroupId(),
+                mavenProject.getArtifactId(), mavenProject.getVersion(), null);
+        if (root != null) {
+            for (final DependencyNode child : root.getChildren()) {
+                tree.getChildren().add(toTreeNode(child));
+            }
+        }
+        cache.put(pomPath, new CachedTree(stamp, tree));
+        return tree;
+    }
+
+    /**
+     * Returns the dependency tree of the given pom for display. The tree m2e resolved in this
+     * session is preferred; failing that, the snapshot persisted by a previous resolution is
+     * returned while the tree is resolved again in the background, the client being told when
+     * the new tree differs. Without a snapshot the tree is resolved right away.
+     */
+    public static DependencyTreeNode getDependencyTree(String pomPath, IProgressMonitor monitor)
+            throws CoreException {
+        final IMavenProjectFacade facade = getProjectFacade(pomPath);
+        final CachedTree cached = cache.get(pomPath);
+        if (cached != null && cached.stamp.isCurrent(facade)) {
+            metrics.increment("dependencyTree.cache.hit");
+            return cached.tree;
+        }
+        final DependencyGraphSnapshots snapshots = DependencyGraphSnapshots.getDefault();
+        final String key = DependencyGraphSnapshots.computeKey(pomPath);
+        final DependencyGraphSnapshots.Snapshot snapshot = snapshots.get(pomPath);
+        if (snapshot != null && key != null) {
+            metrics.increment(snapshot.getKey().equals(key) ? "dependencyTree.snapshot.hit" :
+                    "dependencyTree.snapshot.stale");
+            // even a matching key misses the workspace modules depended on and snapshots downloaded
+            // again, so the tree is checked once, then served from the session cache
+            refresh(pomPath, key, snapshot.getTree(), 0);
+            return snapshot.getTree();
+        }
+        metrics.increment("dependencyTree.snapshot.miss");
+        final DependencyTreeNode tree = resolveDependencyTree(pomPath, monitor);
+        if (tree != null && key != null) {
+            snapshots.put(pomPath, key, tree);
+        }
+        return tree;
+    }
+
+    private static void refresh(String pomPath, String key, DependencyTreeNode shown, int retries) {
+        if (retries == 0 && !refreshing.add(pomPath)) {
+            return;
+        }
+        final Runnable task = () -> {
+            boolean retry = false;
+            try (MetricsRegistry.Timer timer = metrics.time("dependencyTree.snapshot.refresh")) {
+                try {
+                    final DependencyTreeNode tree = resolveDependencyTree(pomPath, null);
+                    if (tree == null) {
+                        retry = retries < MAX_RETRIES;
+                        return;
+                    }
+                    DependencyGraphSnapshots.getDefault().put(pomPath, key, tree);
+                    if (!Arrays.equals(DependencyGraphSnapshots.encode(tree), DependencyGraphSnapshots.encode(shown))) {
+                        notifyChanged(pomPath);
+                    }
+                } catch (CoreException | RuntimeException e) {
+                    timer.fail();
+                }
+            } finally {
+                if (retry) {
+                    refresh(pomPath, key, shown, retries + 1);
+                } else {
+                    refreshing.remove(pomPath);
+                }
+            }
+        };
+        refresher.schedule(task, retries == 0 ? 0 : RETRY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void notifyChanged(String pomPath) {
+        final JavaClientConnection connection = JavaLanguageServerPlugin.getInstance() == null ? null :
+                JavaLanguageServerPlugin.getInstance().getClientConnection();
+        if (connection != null) {
+            connection.executeClientCommand(CHANGED_CLIENT_COMMAND, pomPath);
+        }
+    }
+
+    static IMavenProjectFacade getProjectFacade(String pomPath) {
+        final IFile pom = ResourcesPlugin.getWorkspace().getRoot().getFileForLocation(new Path(pomPath));
+        if (pom != null && pom.getProject() != null) {
+            final IMavenProjectFacade facade = MavenPlugin.getMavenProjectRegistry().getProject(pom.getProject());
+            if (facade != null && pom.equals(facade.getPom())) {
+                return facade;
+            }
+        }
+        // the pom may live outside of its project folder, e.g. a linked or nested module
+        final File pomFile = new File(pomPath);
+        for (final IMavenProjectFacade facade : MavenPlugin.getMavenProjectRegistry().getProjects()) {
+            if (pomFile.equals(facade.getPomFile())) {
+                return facade;
+            }
+        }
+        return null;
+    }
+
+    private static DependencyTreeNode toTreeNode(DependencyNode node) {
+        final Dependency dependency = node.getDependency();
+        final Artifact artifact = node.getArtifact();
+        final DependencyTreeNode result = new DependencyTreeNode(artifact.getGroupId(), artifact.getArtifactId(),
+                artifact.getVersion(), dependency == null ? null : dependency.getScope());
+        // with a verbose conflict resolver the losing nodes are kept, pointing to the winner
+        final Object winner = node.getData().get(ConflictResolver.NODE_DATA_WINNER);
+        if (winner instanceof DependencyNode) {
+            final Artifact winnerArtifact = ((DependencyNode) winner).getArtifact();
+            if (winnerArtifact != null && !artifact.getVersion().equals(winnerArtifact.getVersion())) {
+                result.setOmitted(DependencyTreeNode.OMITTED_FOR_CONFLICT, winnerArtifact.getVersion());
+            } else {
+                result.setOmitted(DependencyTreeNode.OMITTED_FOR_DUPLICATE, artifact.getVersion());
+            }
+            // omitted nodes are not expanded by Maven either
+            return result;
+        }
+        for (final DependencyNode child : node.getChildren()) {
+            result.getChildren().add(toTreeNode(child));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DependencyTreeNode {
+
+    public static final String OMITTED_FOR_CONFLICT = "conflict";
+    public static final String OMITTED_FOR_DUPLICATE = "duplicate";
+
+    private String groupId;
+
+    private String artifactId;
+
+    private String version;
+
+    private String scope;
+
+    // "conflict" or "duplicate" when the node lost conflict resolution, null otherwise
+    private String omitted;
+
+    // the version that won conflict resolution, set for omitted nodes only
+    private String effectiveVersion;
+
+    private List<DependencyTreeNode> children = new ArrayList<>();
+
+    public DependencyTreeNode(String groupId, String artifactId, String version, String scope) {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        this.scope = scope;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getScope() {
+        return scope;
+    }
+
+    public String getOmitted() {
+        return omitted;
+    }
+
+    public String getEffectiveVersion() {
+        return effectiveVersion;
+    }
+
+    public void setOmitted(String omitted, String effectiveVersion) {
+        this.omitted = omitted;
+        this.effectiveVersion = effectiveVersion;
+    }
+
+    public List<DependencyTreeNode> getChildren() {
+        return children;
+    }
+
+    @Override
+    public String toString() {
+        return groupId + ":" + artifactId + ":" + version + ":" + scope;
+    }
+}
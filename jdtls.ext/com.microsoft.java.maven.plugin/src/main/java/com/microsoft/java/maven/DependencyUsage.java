@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import org.eclipse.lsp4j.Range;
+
+public class DependencyUsage {
+
+    public static final String INHERITED = "inherited";
+    public static final String TRANSITIVE = "transitive";
+
+    // the module using the artifact
+    private String pomPath;
+
+    // "dependency", "managedDependency", "plugin", "managedPlugin" and "parent" for what the module pom declares,
+    // "inherited" for a dependency declared by an ancestor pom, "transitive" for an artifact a dependency brings
+    private String kind;
+
+    private String groupId;
+
+    private String artifactId;
+
+    // the version the module uses, or the declared text when it cannot be resolved
+    private String version;
+
+    // the version text as written in the pom, null when the declaration has none
+    private String declaredVersion;
+
+    private String scope;
+
+    // for transitive artifacts, the g:a:v of the direct dependency bringing it in
+    private String via;
+
+    // the pom holding the declaration the ranges point at: the module pom, an ancestor pom for inherited
+    // dependencies, and the declaration of the direct dependency for transitive artifacts. Null when unknown.
+    private String declaringPomPath;
+
+    private Range range;
+
+    // the version text, or the value of the property it refers to, null when the version is not declared
+    private Range versionRange;
+
+    DependencyUsage(String pomPath, String kind, String groupId, String artifactId, String version) {
+        this.pomPath = pomPath;
+        this.kind = kind;
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+    }
+
+    void setDeclaration(String declaringPomPath, String declaredVersion, Range range, Range versionRange) {
+        this.declaringPomPath = declaringPomPath;
+        this.declaredVersion = declaredVersion;
+        this.range = range;
+        this.versionRange = versionRange;
+    }
+
+    void setScope(String scope) {
+        this.scope = scope;
+    }
+
+    void setVia(String via) {
+        this.via = via;
+    }
+
+    public String getPomPath() {
+        return pomPath;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getDeclaredVersion() {
+        return declaredVersion;
+    }
+
+    public String getScope() {
+        return scope;
+    }
+
+    public String getVia() {
+        return via;
+    }
+
+    public String getDeclaringPomPath() {
+        return declaringPomPath;
+    }
+
+    public Range getRange() {
+        return range;
+    }
+
+    public Range getVersionRange() {
+        return versionRange;
+    }
+}
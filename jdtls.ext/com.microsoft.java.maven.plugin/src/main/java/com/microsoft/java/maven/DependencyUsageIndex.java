@@ -0,0 +1,356 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.m2e.core.MavenPlugin;
+import org.eclipse.m2e.core.project.IMavenProjectChangedListener;
+import org.eclipse.m2e.core.project.IMavenProjectFacade;
+import org.eclipse.m2e.core.project.MavenProjectChangedEvent;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Answers which workspace modules use an artifact: the poms declaring or managing it, the modules
+ * inheriting it from an ancestor pom and those receiving it transitively, each with the ranges of
+ * the declaration to edit. The usages are kept in two inverted indexes, by g:a and by g:a:v, so a
+ * query costs the size of its answer. Modules are indexed again in the background as m2e reports
+ * their changes.
+ */
+public class DependencyUsageIndex implements IMavenProjectChangedListener {
+
+    private static DependencyUsageIndex defaultIndex;
+
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    // g:a -> pom path -> usages of that module, and the same by g:a:v
+    private final Map<String, Map<String, List<DependencyUsage>>> byArtifact = new HashMap<>();
+    private final Map<String, Map<String, List<DependencyUsage>>> byVersion = new HashMap<>();
+    // pom path -> usages of the module, to take them out of the indexes when it changes
+    private final Map<String, List<DependencyUsage>> modules = new HashMap<>();
+    // poms to index again, all of the workspace until the first refresh
+    private final Set<String> stale = new LinkedHashSet<>();
+    private boolean initialized;
+    // one refresh at a time, queries only wait for it when they need its result
+    private final Object refreshLock = new Object();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r, "Maven Dependency Usage Index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static synchronized DependencyUsageIndex getDefault() {
+        if (defaultIndex == null) {
+            defaultIndex = new DependencyUsageIndex();
+            MavenPlugin.getMavenProjectRegistry().addMavenProjectChangedListener(defaultIndex);
+        }
+        return defaultIndex;
+    }
+
+    public static synchronized void shutdownDefault() {
+        if (defaultIndex != null) {
+            MavenPlugin.getMavenProjectRegistry().removeMavenProjectChangedListener(defaultIndex);
+            defaultIndex.refresher.shutdownNow();
+            defaultIndex = null;
+        }
+    }
+
+    @Override
+    public void mavenProjectChanged(List<MavenProjectChangedEvent> events, IProgressMonitor monitor) {
+        synchronized (this) {
+            for (final MavenProjectChangedEvent event : events) {
+                final IMavenProjectFacade facade = event.getMavenProject() != null ? event.getMavenProject() :
+                        event.getOldMavenProject();
+                if (facade != null && facade.getPomFile() != null) {
+                    stale.add(facade.getPomFile().getAbsolutePath());
+                }
+            }
+        }
+        refresher.execute(() -> {
+            try {
+                refresh(null);
+            } catch (OperationCanceledException e) {
+                // the next event or query refreshes again
+            }
+        });
+    }
+
+    /**
+     * Returns the usages of groupId:artifactId, of the given version only when version is not
+     * null, sorted by module. kinds restricts the answer to some kinds of usage, all by default.
+     */
+    public List<DependencyUsage> findUsages(String groupId, String artifactId, String version, Collection<String> kinds,
+            IProgressMonitor monitor) {
+        refresh(monitor);
+        final String key = groupId + ":" + artifactId;
+        final List<DependencyUsage> result = new ArrayList<>();
+        synchronized (this) {
+            final Map<String, List<DependencyUsage>> postings = version == null ? byArtifact.get(key) :
+                    byVersion.get(key + ":" + version);
+            if (postings == null) {
+                return result;
+            }
+            for (final List<DependencyUsage> usages : postings.values()) {
+                for (final DependencyUsage usage : usages) {
+                    if (kinds == null || kinds.isEmpty() || kinds.contains(usage.getKind())) {
+                        result.add(usage);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Indexes the modules that changed since the last refresh, the whole workspace the first time.
+     */
+    private void refresh(IProgressMonitor monitor) {
+        synchronized (refreshLock) {
+            final List<String> pomPaths;
+            synchronized (this) {
+                if (!initialized) {
+                    for (final IMavenProjectFacade facade : MavenPlugin.getMavenProjectRegistry().getProjects()) {
+                        stale.add(facade.getPomFile().getAbsolutePath());
+                    }
+                    initialized = true;
+                }
+                if (stale.isEmpty()) {
+                    return;
+                }
+                pomPaths = new ArrayList<>(stale);
+                stale.clear();
+            }
+            // ancestor poms read during this refresh, shared by the modules inheriting from them
+            final Map<String, PomDeclarationHandler> parsed = new HashMap<>();
+            for (int i = 0; i < pomPaths.size(); i++) {
+                final String pomPath = pomPaths.get(i);
+                if (monitor != null && monitor.isCanceled()) {
+                    synchronized (this) {
+                        stale.addAll(pomPaths.subList(i, pomPaths.size()));
+                    }
+                    throw new OperationCanceledException();
+                }
+                final List<DependencyUsage> usages;
+                try (MetricsRegistry.Timer timer = metrics.time("usages.module")) {
+                    usages = indexModule(pomPath, parsed, monitor);
+                }
+                synchronized (this) {
+                    replace(pomPath, usages);
+                }
+            }
+        }
+    }
+
+    private void replace(String pomPath, List<DependencyUsage> usages) {
+        final List<DependencyUsage> previous = usages == null ? modules.remove(pomPath) : modules.put(pomPath, usages);
+        if (previous != null) {
+            for (final DependencyUsage usage : previous) {
+                final String key = usage.getGroupId() + ":" + usage.getArtifactId();
+                removePosting(byArtifact, key, pomPath);
+                if (usage.getVersion() != null) {
+                    removePosting(byVersion, key + ":" + usage.getVersion(), pomPath);
+                }
+            }
+        }
+        if (usages != null) {
+            for (final DependencyUsage usage : usages) {
+                final String key = usage.getGroupId() + ":" + usage.getArtifactId();
+                addPosting(byArtifact, key, pomPath, usage);
+                if (usage.getVersion() != null) {
+                    addPosting(byVersion, key + ":" + usage.getVersion(), pomPath, usage);
+                }
+            }
+        }
+    }
+
+    private static void addPosting(Map<String, Map<String, List<DependencyUsage>>> index, String key, String pomPath,
+            DependencyUsage usage) {
+        index.computeIfAbsent(key, k -> new TreeMap<>()).computeIfAbsent(pomPath, k -> new ArrayList<>()).add(usage);
+    }
+
+    private static void removePosting(Map<String, Map<String, List<DependencyUsage>>> index, String key,
+            String pomPath) {
+        final Map<String, List<DependencyUsage>> postings = index.get(key);
+        if (postings != null && postings.remove(pomPath) != null && postings.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    /**
+     * Lists the usages of a module, or returns null when the pom no longer belongs to a Maven
+     * project known to m2e.
+     */
+    private List<DependencyUsage> indexModule(String pomPath, Map<String, PomDeclarationHandler> parsed,
+            IProgressMonitor monitor) {
+        final IMavenProjectFacade facade = DependencyTreeHandler.getProjectFacade(pomPath);
+        if (facade == null) {
+            return null;
+        }
+        final PomDeclarationHandler pom = parse(pomPath);
+        MavenProject mavenProject = null;
+        try {
+            mavenProject = facade.getMavenProject(monitor);
+        } catch (CoreException e) {
+            // a module that cannot be read is reported by m2e already, its declarations are still indexed
+            metrics.increment("usages.module.unresolved");
+        }
+
+        // versions the module ends up using, by kind then g:a
+        final Map<String, Map<String, String>> effectiveVersions = new HashMap<>();
+        if (mavenProject != null) {
+            putDependencies(effectiveVersions, PomDeclarationHandler.DEPENDENCY, mavenProject.getDependencies());
+            if (mavenProject.getDependencyManagement() != null) {
+                putDependencies(effectiveVersions, PomDeclarationHandler.MANAGED_DEPENDENCY,
+                        mavenProject.getDependencyManagement().getDependencies());
+            }
+            putPlugins(effectiveVersions, PomDeclarationHandler.PLUGIN, mavenProject.getBuildPlugins());
+            if (mavenProject.getPluginManagement() != null) {
+                putPlugins(effectiveVersions, PomDeclarationHandler.MANAGED_PLUGIN,
+                        mavenProject.getPluginManagement().getPlugins());
+            }
+        }
+
+        final List<DependencyUsage> usages = new ArrayList<>();
+        // g:a -> the usage holding the declaration of each direct dependency
+        final Map<String, DependencyUsage> direct = new HashMap<>();
+        for (final PomDeclarationHandler.Declaration declaration : pom.declarations) {
+            if (declaration.groupId == null) {
+                continue;
+            }
+            final String key = declaration.groupId + ":" + declaration.artifactId;
+            final PomDeclarationHandler.Property property = pom.getReferencedProperty(declaration.version);
+            String version = effectiveVersions.getOrDefault(declaration.kind, Collections.emptyMap()).get(key);
+            if (version == null) {
+                version = property != null ? property.value : declaration.version;
+            }
+            final DependencyUsage usage = new DependencyUsage(pomPath, declaration.kind, declaration.groupId,
+                    declaration.artifactId, version);
+            usage.setDeclaration(pomPath, declaration.version, declaration.artifactIdRange,
+                    property != null ? property.range : declaration.versionRange);
+            usages.add(usage);
+            if (PomDeclarationHandler.DEPENDENCY.equals(declaration.kind)) {
+                direct.putIfAbsent(key, usage);
+            }
+        }
+        if (mavenProject == null) {
+            return usages;
+        }
+
+        for (final Dependency dependency : mavenProject.getDependencies()) {
+            final String key = dependency.getGroupId() + ":" + dependency.getArtifactId();
+            final DependencyUsage declared = direct.get(key);
+            if (declared != null) {
+                declared.setScope(dependency.getScope());
+                continue;
+            }
+            final DependencyUsage usage = new DependencyUsage(pomPath, DependencyUsage.INHERITED,
+                    dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion());
+            usage.setScope(dependency.getScope());
+            setAncestorDeclaration(usage, mavenProject, parsed);
+            usages.add(usage);
+            direct.put(key, usage);
+        }
+
+        for (final Artifact artifact : mavenProject.getArtifacts()) {
+            // the trail starts with the module itself, then the direct dependency bringing the artifact
+            final List<String> trail = artifact.getDependencyTrail();
+            if (trail == null || trail.size() <= 2) {
+                continue;
+            }
+            final DependencyUsage usage = new DependencyUsage(pomPath, DependencyUsage.TRANSITIVE,
+                    artifact.getGroupId(), artifact.getArtifactId(), artifact.getBaseVersion());
+            usage.setScope(artifact.getScope());
+            final String[] via = trail.get(1).split(":");
+            if (via.length >= 3) {
+                usage.setVia(via[0] + ":" + via[1] + ":" + via[via.length - 1]);
+                final DependencyUsage declaration = direct.get(via[0] + ":" + via[1]);
+                if (declaration != null) {
+                    usage.setDeclaration(declaration.getDeclaringPomPath(), declaration.getDeclaredVersion(),
+                            declaration.getRange(), declaration.getVersionRange());
+                }
+            }
+            usages.add(usage);
+        }
+        return usages;
+    }
+
+    /**
+     * Points an inherited dependency at its declaration in the closest ancestor pom declaring it.
+     */
+    private void setAncestorDeclaration(DependencyUsage usage, MavenProject mavenProject,
+            Map<String, PomDeclarationHandler> parsed) {
+        for (MavenProject ancestor = mavenProject.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+            final File file = ancestor.getFile();
+            if (file == null) {
+                return;
+            }
+            final String ancestorPath = file.getAbsolutePath();
+            final PomDeclarationHandler pom = parsed.computeIfAbsent(ancestorPath, this::parse);
+            for (final PomDeclarationHandler.Declaration declaration : pom.declarations) {
+                if (PomDeclarationHandler.DEPENDENCY.equals(declaration.kind) &&
+                        usage.getGroupId().equals(declaration.groupId) &&
+                        usage.getArtifactId().equals(declaration.artifactId)) {
+                    final PomDeclarationHandler.Property property = pom.getReferencedProperty(declaration.version);
+                    final Range versionRange = property != null ? property.range : declaration.versionRange;
+                    usage.setDeclaration(ancestorPath, declaration.version, declaration.artifactIdRange,
+                            versionRange);
+                    return;
+                }
+            }
+        }
+    }
+
+    private PomDeclarationHandler parse(String pomPath) {
+        try {
+            return PomDeclarationHandler.parse(new File(pomPath));
+        } catch (IOException | SAXException e) {
+            // a pom being edited may not be well-formed, m2e reports it again once it is saved
+            metrics.increment("usages.pom.unreadable");
+            return new PomDeclarationHandler();
+        }
+    }
+
+    private static void putDependencies(Map<String, Map<String, String>> effectiveVersions, String kind,
+            List<Dependency> dependencies) {
+        final Map<String, String> versions = effectiveVersions.computeIfAbsent(kind, k -> new HashMap<>());
+        for (final Dependency dependency : dependencies) {
+            versions.putIfAbsent(dependency.getGroupId() + ":" + dependency.getArtifactId(), dependency.getVersion());
+        }
+    }
+
+    private static void putPlugins(Map<String, Map<String, String>> effectiveVersions, String kind,
+            List<Plugin> plugins) {
+        final Map<String, String> versions = effectiveVersions.computeIfAbsent(kind, k -> new HashMap<>());
+        for (final Plugin plugin : plugins) {
+            versions.putIfAbsent(plugin.getGroupId() + ":" + plugin.getArtifactId(), plugin.getVersion());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.InputLocation;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.m2e.core.MavenPlugin;
+import org.eclipse.m2e.core.project.IMavenProjectFacade;
+import org.eclipse.m2e.core.project.MavenUpdateRequest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serializes the effective model m2e already built for a workspace pom, the same content
+ * {@code help:effective-pom} prints, without forking Maven. m2e does not notice changes to a parent
+ * outside of the workspace or to an imported bom, so the model is read again when one of them
+ * changed since it was serialized.
+ */
+public class EffectivePomHandler {
+
+    private static final Map<String, CachedPom> cache = new ConcurrentHashMap<>();
+    private static final MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+    private static class CachedPom {
+        final DependencyTreeHandler.ModelStamp stamp;
+        // every pom the effective model was derived from: the pom, its parents and imported boms
+        final File[] chain;
+        final long[] stamps;
+        final String content;
+
+        CachedPom(DependencyTreeHandler.ModelStamp stamp, File[] chain, String content) {
+            this.stamp = stamp;
+            this.chain = chain;
+            this.stamps = stampsOf(chain);
+            this.content = content;
+        }
+
+        boolean isChainUnchanged() {
+            final long[] currentStamps = stampsOf(chain);
+            for (int i = 0; i < stamps.length; i++) {
+                if (stamps[i] != currentStamps[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Returns the effective pom of the given pom as XML, or null when the pom does not belong
+     * to a Maven project known to m2e.
+     */
+    public static String getEffectivePom(String pomPath, IProgressMonitor monitor) throws CoreException {
+        IMavenProjectFacade facade = DependencyTreeHandler.getProjectFacade(pomPath);
+        if (facade == null) {
+            return null;
+        }
+        final CachedPom cached = cache.get(pomPath);
+        if (cached != null && cached.stamp.isCurrent(facade)) {
+            if (cached.isChainUnchanged()) {
+                metrics.increment("effectivePom.cache.hit");
+                return cached.content;
+            }
+            // m2e still holds the model it built from the former parent or bom
+            metrics.increment("effectivePom.model.reload");
+            facade = reloadFacade(facade, pomPath, monitor);
+            if (facade == null) {
+                return null;
+            }
+        }
+        metrics.increment("effectivePom.cache.miss");
+        final DependencyTreeHandler.ModelStamp stamp = new DependencyTreeHandler.ModelStamp(facade);
+        final MavenProject mavenProject = facade.getMavenProject(monitor);
+        final Model model = mavenProject.getModel();
+        final StringWriter writer = new StringWriter();
+        try {
+            new MavenXpp3Writer().write(writer, model);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot serialize the effective pom of " + pomPath, e);
+        }
+        final String content = writer.toString();
+        cache.put(pomPath, new CachedPom(stamp, collectChain(facade.getPomFile(), mavenProject), content));
+        return content;
+    }
+
+    /**
+     * Has m2e read the project again, resolving its parents and imported boms anew, and returns
+     * the facade holding the new model.
+     */
+    private static IMavenProjectFacade reloadFacade(IMavenProjectFacade facade, String pomPath,
+            IProgressMonitor monitor) throws CoreException {
+        final boolean offline = MavenPlugin.getMavenConfiguration().isOffline();
+        MavenPlugin.getMavenProjectRegistry().refresh(
+                new MavenUpdateRequest(Collections.singletonList(facade.getProject()), offline, false), monitor);
+        return DependencyTreeHandler.getProjectFacade(pomPath);
+    }
+
+    private static File[] collectChain(File pomFile, MavenProject mavenProject) {
+        final Set<File> chain = new LinkedHashSet<>();
+        chain.add(pomFile);
+        for (MavenProject parent = mavenProject.getParent(); parent != null; parent = parent.getParent()) {
+            if (parent.getFile() != null) {
+                chain.add(parent.getFile());
+            }
+        }
+        // the import scope entries are gone from the effective model, but with location tracking on
+        // every managed dependency still knows the pom it came from
+        final DependencyManagement dependencyManagement = mavenProject.getModel().getDependencyManagement();
+        if (dependencyManagement != null) {
+            for (final Dependency dependency : dependencyManagement.getDependencies()) {
+                final InputLocation location = dependency.getLocation("");
+                if (location != null && location.getSource() != null && location.getSource().getLocation() != null) {
+                    final File source = new File(location.getSource().getLocation());
+                    if (source.isFile()) {
+                        chain.add(source);
+                    }
+                }
+            }
+        }
+        final List<File> result = new ArrayList<>(chain);
+        return result.toArray(new File[result.size()]);
+    }
+
+    private static long[] stampsOf(File[] files) {
+        final long[] stamps = new long[files.length];
+        for (int i = 0; i < files.length; i++) {
+            // mtime and size together, a missing file stamps as 0
+            stamps[i] = files[i].lastModified() * 31 + files[i].length();
+        }
+        return stamps;
+    }
+}
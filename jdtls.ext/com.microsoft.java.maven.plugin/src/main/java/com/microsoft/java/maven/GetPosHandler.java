@@ -11,18 +11,15 @@
 
 package com.microsoft.java.maven;
 
-import org.apache.commons.lang3.StringUtils;
 import org.eclipse.lsp4j.Position;
-import org.xml.sax.Attributes;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Stack;
-
-class GetPosHandler extends DefaultHandler {
+/**
+ * Finds where a dependency can be added to a pom, and whether it is already declared, on top of the
+ * declarations {@link PomDeclarationHandler} collects.
+ */
+class GetPosHandler extends PomDeclarationHandler {
     private Locator locator;
     private PosInfo posInfo = new PosInfo();
     private static final int LINE_OFFSET = 1;
@@ -31,79 +28,46 @@ class GetPosHandler extends DefaultHandler {
     private static final int PROJECT_LENGTH = 10; // the length of "</projects>"
     private String targetDependency;
 
-    List<String> dependenciesList = new ArrayList<>();
-    String groupId;
-    String artifactId;
-    Stack<String> nodes = new Stack<>();
-
     public PosInfo getPosInfo() {
         return posInfo;
     }
 
     @Override
     public void setDocumentLocator(Locator locator) {
+        super.setDocumentLocator(locator);
         this.locator = locator;
     }
 
-    @Override
-    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
-        nodes.push(qName);
-    }
-
-    @Override
-    public void characters(char[] ch, int start, int length) throws SAXException {
-        final String content = new String(ch, start, length);
-        if (isInArtifactIdNode()) {
-            groupId = content;
-        } else if (isInGroupIdNode()) {
-            artifactId = content;
-        }
-    }
-
-    private boolean isInDependencyNode() {
-        return nodes.contains("dependency");
-    }
-
-    private boolean isInGroupIdNode() {
-        return isInDependencyNode() && "groupId".equals(nodes.peek());
-    }
-
-    private boolean isInArtifactIdNode() {
-        return isInDependencyNode() && "artifactId".equals(nodes.peek());
-    }
-
     @Override
     public void endElement(String uri, String localName, String qName) throws SAXException {
-        String top = null;
-        while (!nodes.empty() && !StringUtils.equals(top, qName)) {
-            top = nodes.pop();
-        }
-        // post process
-        switch(qName) {
+        // post process, the element being closed is still the last one of the path
+        switch (qName) {
             case "dependencies":
-                if (!nodes.empty() && "project".equals(nodes.peek())) {
+                if (path.size() == 2 && "project".equals(path.get(0))) {
                     posInfo.alreadyHasDependencies = true;
                     posInfo.pos = new Position(locator.getLineNumber() - LINE_OFFSET,
                         locator.getColumnNumber() - COLUMN_OFFSET - DEPENDENCIES_LENGTH);
                 }
                 break;
             case "project":
-                if (posInfo.pos == null){
+                if (posInfo.pos == null) {
                     posInfo.pos = new Position(locator.getLineNumber() - LINE_OFFSET,
                         locator.getColumnNumber() - COLUMN_OFFSET - PROJECT_LENGTH);
                 }
                 break;
-            case "dependency":
-                dependenciesList.add(groupId + ":" + artifactId);
-                groupId = artifactId = "";
+            default:
                 break;
         }
+        super.endElement(uri, localName, qName);
     }
 
     @Override
     public void endDocument() throws SAXException {
-        if (dependenciesList.contains(targetDependency)) {
-            posInfo.needAddDependency = false;
+        for (final Declaration declaration : declarations) {
+            if (DEPENDENCY.equals(declaration.kind) &&
+                    (declaration.groupId + ":" + declaration.artifactId).equals(targetDependency)) {
+                posInfo.needAddDependency = false;
+            }
         }
     }
 
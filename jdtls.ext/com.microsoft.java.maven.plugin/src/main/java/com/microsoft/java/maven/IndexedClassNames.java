@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.util.Bits;
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.creator.JarFileContentsIndexCreator;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads the class names of index documents as {@link ArtifactInfo#getClassNames()} returns them
+ * to searches, so that offsets computed on them hold for search results. They are stored in the
+ * field {@code JarFileContentsIndexCreator.FLD_CLASSNAMES_KW}, one entry per line, and indexes
+ * written in the old format lack the leading '/' of each entry: the creator adds it when reading.
+ */
+final class IndexedClassNames {
+
+    private static final String FIELD = JarFileContentsIndexCreator.FLD_CLASSNAMES_KW.getKey();
+    private static final JarFileContentsIndexCreator CREATOR = new JarFileContentsIndexCreator();
+
+    interface Visitor {
+        void visit(Document document, String classNames);
+    }
+
+    private IndexedClassNames() {
+    }
+
+    /**
+     * The class names of a document, null when it has none. The document must have been read
+     * with the class-name field.
+     */
+    static String of(Document document) {
+        if (document.get(FIELD) == null) {
+            return null;
+        }
+        final ArtifactInfo info = new ArtifactInfo();
+        CREATOR.updateArtifactInfo(document, info);
+        return info.getClassNames();
+    }
+
+    /**
+     * Visits the live documents of a reader that have class names, read with the class-name
+     * field and the given other stored fields only.
+     */
+    static void forEach(IndexReader reader, Set<String> otherFields, Visitor visitor) throws IOException {
+        final Set<String> fields = new HashSet<>(otherFields);
+        fields.add(FIELD);
+        final Bits liveDocs = MultiFields.getLiveDocs(reader);
+        for (int i = 0; i < reader.maxDoc(); i++) {
+            if (liveDocs != null && !liveDocs.get(i)) {
+                continue;
+            }
+            final Document document = reader.document(i, fields);
+            final String classNames = of(document);
+            if (classNames != null) {
+                visitor.visit(document, classNames);
+            }
+        }
+    }
+}
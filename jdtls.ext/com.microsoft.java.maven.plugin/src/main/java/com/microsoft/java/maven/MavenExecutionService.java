@@ -0,0 +1,509 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Runs Maven builds in warm processes instead of starting {@code mvn} for every background goal.
+ * Each process ({@link MavenWorker}) loads the runtime of a Maven installation once and then runs
+ * one build at a time, so builds of different modules run concurrently in separate processes while
+ * builds of the same pom wait for each other. Idle processes are stopped after a while.
+ */
+public class MavenExecutionService {
+
+    private static final int MAX_WORKERS = Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() / 2));
+    private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final String WORKER_CLASS = MavenWorker.class.getName();
+    // the end of the output kept for the result, the rest being only streamed and processed
+    private static final int MAX_OUTPUT_LENGTH = 64 * 1024;
+    // how often a running build checks whether it was canceled
+    private static final long CANCEL_CHECK_MILLIS = 200;
+
+    private static MavenExecutionService defaultService;
+
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final File workerDirectory;
+    // maven home -> idle workers, the most recently used first
+    private final Map<String, Deque<Worker>> idleWorkers = new HashMap<>();
+    private int workerCount;
+    // pom path -> lock held while the pom is being built
+    private final Map<String, ReentrantLock> pomLocks = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(
+            daemonThreads("Maven Worker Reaper"));
+    // kills the workers of canceled builds, which may print nothing for a long time
+    private final ScheduledExecutorService watcher = Executors.newSingleThreadScheduledExecutor(
+            daemonThreads("Maven Worker Watcher"));
+
+    public static class ExecutionResult {
+        private int exitCode;
+        // the last 64KB of the output
+        private String output;
+        private long durationMillis;
+        // whether the build ran in a process started by an earlier build
+        private boolean warm;
+        private List<BuildEvent> diagnostics;
+        private List<BuildEvent> modules;
+
+        ExecutionResult(int exitCode, String output, long durationMillis, boolean warm, List<BuildEvent> diagnostics,
+                List<BuildEvent> modules) {
+            this.exitCode = exitCode;
+            this.output = output;
+            this.durationMillis = durationMillis;
+            this.warm = warm;
+            this.diagnostics = diagnostics;
+            this.modules = modules;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public boolean isWarm() {
+            return warm;
+        }
+
+        public List<BuildEvent> getDiagnostics() {
+            return diagnostics;
+        }
+
+        public List<BuildEvent> getModules() {
+            return modules;
+        }
+    }
+
+    private static class Worker {
+        final String mavenHome;
+        final Process process;
+        final DataOutputStream requests;
+        final DataInputStream replies;
+        long idleSince;
+        int builds;
+
+        Worker(String mavenHome, Process process) {
+            this.mavenHome = mavenHome;
+            this.process = process;
+            this.requests = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            this.replies = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        }
+    }
+
+    /**
+     * @param workerDirectory where the worker class is extracted to, as it has to be on the
+     *        classpath of a plain JVM
+     */
+    MavenExecutionService(File workerDirectory) {
+        this.workerDirectory = workerDirectory;
+        reaper.scheduleWithFixedDelay(this::stopIdleWorkers, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stops the workers of the default service, if it was ever used.
+     */
+    static synchronized void shutdownDefault() {
+        if (defaultService != null) {
+            defaultService.shutdown();
+        }
+    }
+
+    public static synchronized MavenExecutionService getDefault() {
+        if (defaultService == null) {
+            File directory = PluginActivator.getStateFile("worker");
+            if (directory == null) {
+                directory = new File(System.getProperty("java.io.tmpdir"), "vscode-maven-worker");
+            }
+            defaultService = new MavenExecutionService(directory);
+        }
+        return defaultService;
+    }
+
+    /**
+     * Finds the installation of a {@code mvn} executable, given as a path or a command name looked
+     * up in the PATH, following links. Returns null when it is not a regular Maven installation
+     * (e.g. a wrapper script).
+     */
+    public static File getMavenHome(String mavenExecutable) {
+        File executable = new File(mavenExecutable);
+        if (!executable.isFile() && executable.getParent() == null) {
+            executable = findInPath(mavenExecutable);
+        }
+        if (executable == null) {
+            return null;
+        }
+        try {
+            final File bin = executable.toPath().toRealPath().toFile().getParentFile();
+            final File home = bin == null ? null : bin.getParentFile();
+            if (home != null && new File(home, "bin/m2.conf").isFile() && getClassworldsJar(home) != null) {
+                return home;
+            }
+        } catch (IOException e) {
+            // not found
+        }
+        return null;
+    }
+
+    private static File findInPath(String command) {
+        final String path = System.getenv("PATH");
+        if (path == null) {
+            return null;
+        }
+        for (final String directory : path.split(File.pathSeparator)) {
+            for (final String suffix : new String[] { "", ".cmd" }) {
+                final File candidate = new File(directory, command + suffix);
+                if (candidate.isFile()) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds the given pom with the given Maven arguments, streaming the output and the events
+     * recognized in it ({@link BuildOutputProcessor}) to the listeners if any. The build runs in an
+     * idle warm process of the installation, or a new one.
+     */
+    public ExecutionResult execute(File mavenHome, String pomPath, List<String> args, Consumer<String> listener,
+            Consumer<BuildEvent> eventListener, IProgressMonitor monitor) throws IOException, InterruptedException {
+        final ReentrantLock pomLock = pomLocks.computeIfAbsent(pomPath, k -> new ReentrantLock());
+        pomLock.lockInterruptibly();
+        try {
+            final Worker worker = acquire(mavenHome, monitor);
+            final boolean warm = worker.builds > 0;
+            metrics.increment(warm ? "execution.worker.warm" : "execution.worker.cold");
+            try (MetricsRegistry.Timer timer = metrics.time("execution.build")) {
+                final long start = System.currentTimeMillis();
+                final int exitCode;
+                final StringBuilder output = new StringBuilder();
+                final BuildOutputProcessor processor = new BuildOutputProcessor(
+                        new File(pomPath).getAbsoluteFile().getParentFile(), eventListener);
+                try {
+                    exitCode = runBuild(worker, pomPath, args, output, text -> {
+                        processor.accept(text);
+                        if (listener != null) {
+                            listener.accept(text);
+                        }
+                    }, monitor);
+                } catch (IOException | RuntimeException e) {
+                    // the process died (e.g. a plugin called System.exit) or the build was canceled
+                    discard(worker);
+                    timer.fail();
+                    throw e;
+                }
+                if (exitCode != 0) {
+                    timer.fail();
+                }
+                release(worker);
+                processor.finish();
+                final String tail = output.substring(Math.max(0, output.length() - MAX_OUTPUT_LENGTH));
+                return new ExecutionResult(exitCode, tail, System.currentTimeMillis() - start, warm,
+                        processor.getDiagnostics(), processor.getModules());
+            }
+        } finally {
+            pomLock.unlock();
+        }
+    }
+
+    private int runBuild(Worker worker, String pomPath, List<String> args, StringBuilder output,
+            Consumer<String> listener, IProgressMonitor monitor) throws IOException {
+        final File pom = new File(pomPath).getAbsoluteFile();
+        final List<String> mavenArgs = new ArrayList<>(args);
+        if (!mavenArgs.contains("-B") && !mavenArgs.contains("--batch-mode")) {
+            // nobody can answer a prompt, the worker gives an empty stdin to the build
+            mavenArgs.add(0, "-B");
+        }
+        mavenArgs.add("-f");
+        mavenArgs.add(pom.getPath());
+        worker.requests.writeUTF(pom.getParent());
+        worker.requests.writeUTF(getMultiModuleProjectDirectory(pom.getParentFile()).getPath());
+        worker.requests.writeInt(mavenArgs.size());
+        for (final String arg : mavenArgs) {
+            worker.requests.writeUTF(arg);
+        }
+        worker.requests.flush();
+        worker.builds++;
+        // reading the replies blocks until the build prints something: the worker is killed instead
+        final ScheduledFuture<?> cancelCheck = monitor == null ? null : watcher.scheduleWithFixedDelay(() -> {
+            if (monitor.isCanceled()) {
+                worker.process.destroyForcibly();
+            }
+        }, CANCEL_CHECK_MILLIS, CANCEL_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+        try {
+            while (true) {
+                if (monitor != null && monitor.isCanceled()) {
+                    throw new OperationCanceledException();
+                }
+                final int type = worker.replies.readByte();
+                if (type == MavenWorker.OUTPUT) {
+                    final byte[] chunk = new byte[worker.replies.readInt()];
+                    worker.replies.readFully(chunk);
+                    final String text = new String(chunk, StandardCharsets.UTF_8);
+                    output.append(text);
+                    if (output.length() > 2 * MAX_OUTPUT_LENGTH) {
+                        output.delete(0, output.length() - MAX_OUTPUT_LENGTH);
+                    }
+                    listener.accept(text);
+                } else if (type == MavenWorker.EXIT) {
+                    return worker.replies.readInt();
+                } else {
+                    throw new IOException("Unexpected reply from the Maven worker: " + type);
+                }
+            }
+        } catch (IOException e) {
+            if (monitor != null && monitor.isCanceled()) {
+                // the worker was killed by the watcher
+                throw new OperationCanceledException();
+            }
+            throw e;
+        } finally {
+            if (cancelCheck != null) {
+                cancelCheck.cancel(false);
+            }
+        }
+    }
+
+    private Worker acquire(File mavenHome, IProgressMonitor monitor) throws IOException, InterruptedException {
+        final String key = mavenHome.getPath();
+        while (true) {
+            final Worker evicted;
+            synchronized (this) {
+                final Deque<Worker> idle = idleWorkers.get(key);
+                while (idle != null && !idle.isEmpty()) {
+                    final Worker worker = idle.pollFirst();
+                    if (worker.process.isAlive()) {
+                        return worker;
+                    }
+                    workerCount--;
+                }
+                if (workerCount < MAX_WORKERS) {
+                    workerCount++;
+                    break;
+                }
+                evicted = removeOldestIdleWorker();
+                if (evicted == null) {
+                    // every worker is busy, wait for one to be released
+                    wait(1000);
+                    if (monitor != null && monitor.isCanceled()) {
+                        throw new OperationCanceledException();
+                    }
+                    continue;
+                }
+            }
+            // it still counts until it is stopped, which may take a while: not while holding the lock
+            stop(evicted);
+        }
+        try (MetricsRegistry.Timer timer = metrics.time("execution.worker.start")) {
+            return start(mavenHome);
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                workerCount--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private synchronized void release(Worker worker) {
+        worker.idleSince = System.currentTimeMillis();
+        idleWorkers.computeIfAbsent(worker.mavenHome, k -> new ArrayDeque<>()).addFirst(worker);
+        notifyAll();
+    }
+
+    private synchronized void discard(Worker worker) {
+        worker.process.destroyForcibly();
+        workerCount--;
+        notifyAll();
+    }
+
+    /**
+     * Takes the idle worker unused for the longest time out of the idle ones, to make room for a
+     * worker of another installation. Returns null when no worker is idle.
+     */
+    private Worker removeOldestIdleWorker() {
+        Worker oldest = null;
+        for (final Deque<Worker> idle : idleWorkers.values()) {
+            final Worker last = idle.peekLast();
+            if (last != null && (oldest == null || last.idleSince < oldest.idleSince)) {
+                oldest = last;
+            }
+        }
+        if (oldest != null) {
+            idleWorkers.get(oldest.mavenHome).removeLast();
+        }
+        return oldest;
+    }
+
+    private void stopIdleWorkers() {
+        final List<Worker> expired = new ArrayList<>();
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            for (final Deque<Worker> idle : idleWorkers.values()) {
+                while (!idle.isEmpty() && now - idle.peekLast().idleSince > IDLE_TIMEOUT_MILLIS) {
+                    expired.add(idle.removeLast());
+                }
+            }
+        }
+        expired.forEach(this::stop);
+    }
+
+    /**
+     * Stops every worker, e.g. when the language server shuts down.
+     */
+    public void shutdown() {
+        final List<Worker> workers = new ArrayList<>();
+        synchronized (this) {
+            for (final Deque<Worker> idle : idleWorkers.values()) {
+                workers.addAll(idle);
+                idle.clear();
+            }
+        }
+        reaper.shutdownNow();
+        watcher.shutdownNow();
+        workers.forEach(this::stop);
+    }
+
+    /**
+     * Stops a worker taken out of the idle ones, waiting up to 2s for it to exit: must not be called
+     * while holding the lock of the service.
+     */
+    private void stop(Worker worker) {
+        try {
+            // closing stdin lets the worker exit on its own
+            worker.requests.close();
+        } catch (IOException e) {
+            // already gone
+        }
+        if (!waitFor(worker.process)) {
+            worker.process.destroyForcibly();
+        }
+        synchronized (this) {
+            workerCount--;
+            notifyAll();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static boolean waitFor(Process process) {
+        try {
+            return process.waitFor(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Worker start(File mavenHome) throws IOException {
+        extractWorker();
+        final String java = new File(System.getProperty("java.home"), "bin/java").getPath();
+        final List<String> command = new ArrayList<>();
+        command.add(java);
+        command.add("-cp");
+        command.add(workerDirectory.getPath() + File.pathSeparator + getClassworldsJar(mavenHome).getPath());
+        command.add("-Dmaven.home=" + mavenHome.getPath());
+        command.add("-Dclassworlds.conf=" + new File(mavenHome, "bin/m2.conf").getPath());
+        command.add("-Dlibrary.jansi.path=" + new File(mavenHome, "lib/jansi-native").getPath());
+        command.add(WORKER_CLASS);
+        command.add(new File(mavenHome, "bin/m2.conf").getPath());
+        final Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        final Worker worker = new Worker(mavenHome.getPath(), process);
+        if (worker.replies.readByte() != MavenWorker.READY) {
+            process.destroyForcibly();
+            throw new IOException("The Maven worker of " + mavenHome + " did not start");
+        }
+        return worker;
+    }
+
+    /**
+     * Copies the classes of the worker out of the bundle, where a plain JVM can load them.
+     */
+    private synchronized void extractWorker() throws IOException {
+        final String path = WORKER_CLASS.replace('.', '/');
+        for (final String suffix : new String[] { ".class", "$FramingOutputStream.class" }) {
+            final String name = path + suffix;
+            final File target = new File(workerDirectory, name);
+            try (InputStream in = MavenWorker.class.getClassLoader().getResourceAsStream(name)) {
+                if (in == null) {
+                    throw new IOException("Cannot find " + name);
+                }
+                final byte[] content = in.readAllBytes();
+                if (target.isFile() && Arrays.equals(Files.readAllBytes(target.toPath()), content)) {
+                    continue;
+                }
+                Files.createDirectories(target.getParentFile().toPath());
+                final File temp = new File(target.getPath() + ".tmp");
+                Files.write(temp.toPath(), content);
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private static File getClassworldsJar(File mavenHome) {
+        final File[] jars = new File(mavenHome, "boot").listFiles(
+            (dir, name) -> name.startsWith("plexus-classworlds") && name.endsWith(".jar"));
+        return jars == null || jars.length == 0 ? null : jars[0];
+    }
+
+    /**
+     * The directory {@code bin/mvn} would pass as {@code maven.multiModuleProjectDirectory}: the
+     * closest one holding a {@code .mvn} folder, or the project directory.
+     */
+    static File getMultiModuleProjectDirectory(File projectDirectory) {
+        for (File current = projectDirectory; current != null; current = current.getParentFile()) {
+            if (new File(current, ".mvn").isDirectory()) {
+                return current;
+            }
+        }
+        return projectDirectory;
+    }
+}
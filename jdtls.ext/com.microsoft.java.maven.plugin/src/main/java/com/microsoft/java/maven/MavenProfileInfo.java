@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import java.util.List;
+
+public class MavenProfileInfo {
+
+    public static final String SOURCE_POM = "pom";
+    public static final String SOURCE_SETTINGS = "settings.xml";
+
+    private String id;
+
+    private boolean active;
+
+    // "pom" or "settings.xml", as help:all-profiles reports it
+    private String source;
+
+    // the pom declaring the profile, null for profiles of settings.xml
+    private String pomPath;
+
+    // the activation conditions, e.g. "activeByDefault", "jdk:[17,)", "property:env=dev", "file:missing=x"
+    private List<String> activation;
+
+    public MavenProfileInfo(String id, boolean active, String source, String pomPath, List<String> activation) {
+        this.id = id;
+        this.active = active;
+        this.source = source;
+        this.pomPath = pomPath;
+        this.activation = activation;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getPomPath() {
+        return pomPath;
+    }
+
+    public List<String> getActivation() {
+        return activation;
+    }
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.Properties;
+
+/**
+ * The main class of a warm Maven process started by {@link MavenExecutionService}. It sets up the
+ * Maven runtime of a Maven installation once, the way {@code bin/mvn} does through plexus-classworlds,
+ * then runs the builds it is sent one after the other with the same {@code MavenCli}.
+ *
+ * <p>This class runs outside of the language server with nothing but plexus-classworlds on its
+ * classpath, so it only depends on the JDK and reaches Maven through reflection.
+ *
+ * <p>Requests are read from stdin: the working directory, the multi-module project directory and
+ * the arguments, written with {@link DataOutputStream#writeUTF(String)}. Maven and its plugins see
+ * an empty stdin instead, so that nothing reading it can consume requests. Replies are framed on
+ * stdout: {@link #READY} once the runtime is loaded, {@link #OUTPUT} chunks of build output and
+ * {@link #EXIT} with the exit code of each build. The system properties are restored after each
+ * build, as {@code MavenCli} turns the {@code -D} arguments into system properties.
+ */
+public final class MavenWorker {
+
+    static final int READY = 0;
+    static final int OUTPUT = 1;
+    static final int EXIT = 2;
+
+    private MavenWorker() {
+    }
+
+    /**
+     * @param args the path of {@code bin/m2.conf} of the Maven installation
+     */
+    public static void main(String[] args) throws Exception {
+        // the real stdout only carries frames from now on
+        final DataOutputStream replies = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out), 8192));
+        // anything printed by Maven or its plugins is part of the build output
+        final PrintStream buildOutput = new PrintStream(new FramingOutputStream(replies), true, "UTF-8");
+        System.setOut(buildOutput);
+        System.setErr(buildOutput);
+        // the real stdin only carries requests, a prompt of a build reads end of input
+        final DataInputStream requests = new DataInputStream(System.in);
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+
+        final Class<?> launcherClass = Class.forName("org.codehaus.plexus.classworlds.launcher.Launcher");
+        final Object launcher = launcherClass.getConstructor().newInstance();
+        launcherClass.getMethod("setSystemClassLoader", ClassLoader.class)
+                .invoke(launcher, MavenWorker.class.getClassLoader());
+        try (InputStream config = new FileInputStream(args[0])) {
+            launcherClass.getMethod("configure", InputStream.class).invoke(launcher, config);
+        }
+        final ClassLoader mainRealm = (ClassLoader) launcherClass.getMethod("getMainRealm").invoke(launcher);
+        final Object world = launcherClass.getMethod("getWorld").invoke(launcher);
+        final Class<?> cliClass = mainRealm.loadClass("org.apache.maven.cli.MavenCli");
+        final Object cli = cliClass.getConstructor(world.getClass()).newInstance(world);
+        final Method doMain = cliClass.getMethod("doMain", String[].class, String.class, PrintStream.class,
+                PrintStream.class);
+        Thread.currentThread().setContextClassLoader(mainRealm);
+        synchronized (replies) {
+            replies.writeByte(READY);
+            replies.flush();
+        }
+
+        while (true) {
+            final String workingDirectory;
+            final String[] mavenArgs;
+            final Properties savedProperties = (Properties) System.getProperties().clone();
+            try {
+                workingDirectory = requests.readUTF();
+                System.setProperty("maven.multiModuleProjectDirectory", requests.readUTF());
+                mavenArgs = new String[requests.readInt()];
+                for (int i = 0; i < mavenArgs.length; i++) {
+                    mavenArgs[i] = requests.readUTF();
+                }
+            } catch (EOFException e) {
+                // the language server closed the pipe
+                return;
+            }
+            int exitCode;
+            try {
+                exitCode = (Integer) doMain.invoke(cli, mavenArgs, workingDirectory, buildOutput, buildOutput);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                e.printStackTrace(buildOutput);
+                exitCode = 1;
+            } finally {
+                restoreProperties(savedProperties);
+            }
+            buildOutput.flush();
+            synchronized (replies) {
+                replies.writeByte(EXIT);
+                replies.writeInt(exitCode);
+                replies.flush();
+            }
+        }
+    }
+
+    /**
+     * Puts the system properties back as they were before a build, so that the {@code -D} arguments
+     * of a build do not apply to the next ones.
+     */
+    private static void restoreProperties(Properties saved) {
+        final Properties current = System.getProperties();
+        current.keySet().removeIf(key -> !saved.containsKey(key));
+        current.putAll(saved);
+    }
+
+    /**
+     * Turns everything written into {@link #OUTPUT} frames of the reply stream.
+     */
+    private static final class FramingOutputStream extends OutputStream {
+        private final DataOutputStream replies;
+
+        FramingOutputStream(DataOutputStream replies) {
+            this.replies = replies;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            synchronized (replies) {
+                replies.writeByte(OUTPUT);
+                replies.writeInt(len);
+                replies.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (replies) {
+                replies.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide registry of latency histograms, allocation histograms and counters
+ * for the delegate commands and the artifact search stages.
+ */
+public class MetricsRegistry {
+
+    private static final long NANOS_PER_MICRO = 1000L;
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private final Map<String, Stage> stages = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final AllocationMeter allocationMeter = new AllocationMeter();
+    private volatile long startedAt = System.currentTimeMillis();
+
+    public static MetricsRegistry getDefault() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts timing the given stage on the current thread; close the returned
+     * timer (ideally through try-with-resources) to record it.
+     */
+    public Timer time(String name) {
+        return new Timer(stage(name));
+    }
+
+    public void recordNanos(String name, long nanos) {
+        stage(name).latency.record(nanos);
+    }
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long delta) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    public long getCounter(String name) {
+        final LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public Map<String, Object> snapshot() {
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("since", startedAt);
+        result.put("allocationSupported", allocationMeter.isSupported());
+        final Map<String, Object> stageResult = new TreeMap<>();
+        for (final Map.Entry<String, Stage> entry : stages.entrySet()) {
+            final Map<String, Object> stat = new LinkedHashMap<>();
+            // latencies are recorded in nanoseconds and reported in microseconds
+            stat.put("latencyMicros", entry.getValue().latency.snapshot(NANOS_PER_MICRO));
+            if (allocationMeter.isSupported()) {
+                stat.put("allocatedBytes", entry.getValue().allocation.snapshot(1));
+            }
+            stat.put("errors", entry.getValue().errors.sum());
+            stageResult.put(entry.getKey(), stat);
+        }
+        result.put("stages", stageResult);
+        final Map<String, Object> counterResult = new TreeMap<>();
+        for (final Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            counterResult.put(entry.getKey(), entry.getValue().sum());
+        }
+        result.put("counters", counterResult);
+        // hit rates of the caches, from the counters named <cache>.hit and <cache>.miss
+        final Map<String, Object> cacheResult = new TreeMap<>();
+        for (final String name : counterResult.keySet()) {
+            final String cache = cacheOf(name);
+            if (cache != null && !cacheResult.containsKey(cache)) {
+                final long hits = getCounter(cache + ".hit");
+                final long misses = getCounter(cache + ".miss");
+                final Map<String, Object> stat = new LinkedHashMap<>();
+                stat.put("hits", hits);
+                stat.put("misses", misses);
+                stat.put("hitRate", hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+                cacheResult.put(cache, stat);
+            }
+        }
+        result.put("caches", cacheResult);
+        return result;
+    }
+
+    private static String cacheOf(String counter) {
+        if (counter.endsWith(".hit")) {
+            return counter.substring(0, counter.length() - ".hit".length());
+        }
+        if (counter.endsWith(".miss")) {
+            return counter.substring(0, counter.length() - ".miss".length());
+        }
+        return null;
+    }
+
+    public void reset() {
+        stages.clear();
+        counters.clear();
+        startedAt = System.currentTimeMillis();
+    }
+
+    private Stage stage(String name) {
+        return stages.computeIfAbsent(name, k -> new Stage());
+    }
+
+    private static class Stage {
+        final Histogram latency = new Histogram();
+        final Histogram allocation = new Histogram();
+        final LongAdder errors = new LongAdder();
+    }
+
+    public final class Timer implements AutoCloseable {
+        private final Stage stage;
+        private final long startNanos;
+        private final long startBytes;
+        private boolean failed = false;
+
+        private Timer(Stage stage) {
+            this.stage = stage;
+            this.startBytes = allocationMeter.currentThreadAllocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * Marks the timed stage as failed, used where an exception is swallowed
+         * into an empty result.
+         */
+        public void fail() {
+            failed = true;
+        }
+
+        @Override
+        public void close() {
+            stage.latency.record(System.nanoTime() - startNanos);
+            if (startBytes >= 0) {
+                final long endBytes = allocationMeter.currentThreadAllocatedBytes();
+                if (endBytes >= startBytes) {
+                    stage.allocation.record(endBytes - startBytes);
+                }
+            }
+            if (failed) {
+                stage.errors.increment();
+            }
+        }
+    }
+
+    /**
+     * Reads per-thread allocation from {@code com.sun.management.ThreadMXBean}.
+     * The interface is looked up reflectively since the bundle does not import
+     * {@code com.sun.management}; on VMs without it allocation is simply not reported.
+     */
+    private static class AllocationMeter {
+        private final ThreadMXBean threadBean;
+        private final Method allocatedBytesMethod;
+
+        AllocationMeter() {
+            ThreadMXBean bean = null;
+            Method method = null;
+            try {
+                bean = ManagementFactory.getThreadMXBean();
+                final Class<?> sunBean = Class.forName("com.sun.management.ThreadMXBean", false,
+                        ClassLoader.getSystemClassLoader());
+                if (sunBean.isInstance(bean)) {
+                    sunBean.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(bean, true);
+                    method = sunBean.getMethod("getCurrentThreadAllocatedBytes");
+                }
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                method = null;
+            }
+            this.threadBean = bean;
+            this.allocatedBytesMethod = method;
+        }
+
+        boolean isSupported() {
+            return allocatedBytesMethod != null;
+        }
+
+        long currentThreadAllocatedBytes() {
+            if (allocatedBytesMethod == null) {
+                return -1;
+            }
+            try {
+                return (long) allocatedBytesMethod.invoke(threadBean);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return -1;
+            }
+        }
+    }
+}
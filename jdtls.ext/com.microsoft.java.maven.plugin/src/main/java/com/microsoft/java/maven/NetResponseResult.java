@@ -64,6 +64,7 @@ public class NetResponseResult {
         String g;
         String a;
         String v;
+        String latestVersion;
         String p;
         String timestamp;
         ArrayList<String> ec;
@@ -84,6 +85,10 @@ public class NetResponseResult {
         public String getV() {
             return this.v;
         }
+
+        public String getLatestVersion() {
+            return this.latestVersion;
+        }
     }
 
     public class FullClassNameList {
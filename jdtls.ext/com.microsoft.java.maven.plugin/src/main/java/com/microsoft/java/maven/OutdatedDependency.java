@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import org.eclipse.lsp4j.Range;
+
+public class OutdatedDependency {
+
+    // "dependency", "managedDependency", "plugin", "managedPlugin" or "parent"
+    private String kind;
+
+    private String groupId;
+
+    private String artifactId;
+
+    private String version;
+
+    private String latestVersion;
+
+    // the version text in the pom, or the value of the property the version refers to
+    private Range range;
+
+    private String message;
+
+    public OutdatedDependency(String kind, String groupId, String artifactId, String version, String latestVersion,
+            Range range) {
+        this.kind = kind;
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        this.latestVersion = latestVersion;
+        this.range = range;
+        this.message = groupId + ":" + artifactId + ":" + version + " can be updated to " + latestVersion;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getLatestVersion() {
+        return latestVersion;
+    }
+
+    public Range getRange() {
+        return range;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
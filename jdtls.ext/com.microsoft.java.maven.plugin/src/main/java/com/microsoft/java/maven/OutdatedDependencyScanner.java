@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import com.google.gson.Gson;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.m2e.core.MavenPlugin;
+import org.eclipse.m2e.core.project.IMavenProjectFacade;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the declared artifacts of workspace poms that have a newer release, pre-releases (alpha,
+ * beta, milestones, release candidates...) not counting as one. All poms are read in one parallel
+ * SAX pass and every artifact is looked up once: first locally through {@link VersionService}, then
+ * with at most one search query per groupId, which answers the latest version of all the artifacts
+ * of that group at once.
+ */
+public class OutdatedDependencyScanner {
+
+    static final String SEARCH_URL = "https://search.maven.org/solrsearch/select";
+    // artifacts of a group answered by one query, bigger groups fall back to the local versions
+    private static final int SEARCH_ROWS = 200;
+    private static final long REMOTE_TTL_MILLIS = TimeUnit.HOURS.toMillis(12);
+    private static final long REMOTE_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    // the longest a query may take, whatever the server does
+    private static final long SEARCH_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    // how often the cancellation is checked while waiting for the queries
+    private static final long CANCEL_CHECK_MILLIS = 100;
+
+    private static OutdatedDependencyScanner defaultScanner;
+
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final VersionService versionService;
+    private final String searchUrl;
+    // groupId -> latest version of each of its artifacts, as last answered by the search
+    private final Map<String, CachedGroup> groups = new ConcurrentHashMap<>();
+    private OkHttpClient client;
+
+    private static class CachedGroup {
+        final long expiresAt;
+        final Map<String, String> latestVersions;
+
+        CachedGroup(long expiresAt, Map<String, String> latestVersions) {
+            this.expiresAt = expiresAt;
+            this.latestVersions = latestVersions;
+        }
+    }
+
+    /**
+     * @param versionService where the local versions come from
+     * @param searchUrl the select endpoint of a Maven Central like search, null to stay offline
+     */
+    OutdatedDependencyScanner(VersionService versionService, String searchUrl) {
+        this.versionService = versionService;
+        this.searchUrl = searchUrl;
+    }
+
+    public static synchronized OutdatedDependencyScanner getDefault() {
+        if (defaultScanner == null) {
+            defaultScanner = new OutdatedDependencyScanner(VersionService.getDefault(), SEARCH_URL);
+        }
+        return defaultScanner;
+    }
+
+    /**
+     * Scans the poms of every Maven project of the workspace.
+     */
+    public Map<String, List<OutdatedDependency>> scanWorkspace(boolean remote, IProgressMonitor monitor) {
+        final List<String> pomPaths = new ArrayList<>();
+        for (final IMavenProjectFacade facade : MavenPlugin.getMavenProjectRegistry().getProjects()) {
+            pomPaths.add(facade.getPomFile().getAbsolutePath());
+        }
+        return scan(pomPaths, remote, monitor);
+    }
+
+    /**
+     * Returns, for each given pom, its declarations having a newer release, the poms without any
+     * being mapped to an empty list so that their former diagnostics can be cleared. A version
+     * given by a property of the same pom is reported on the property value. Ranges, snapshots and
+     * versions that cannot be resolved from the pom alone are skipped.
+     */
+    public Map<String, List<OutdatedDependency>> scan(List<String> pomPaths, boolean remote,
+            IProgressMonitor monitor) {
+        try (MetricsRegistry.Timer timer = metrics.time("outdated.scan")) {
+            final Map<String, PomDeclarationHandler> poms = parse(pomPaths);
+            final Map<String, String> latestVersions = new LinkedHashMap<>();
+            final Set<String> groupIds = new LinkedHashSet<>();
+            for (final PomDeclarationHandler pom : poms.values()) {
+                for (final PomDeclarationHandler.Declaration declaration : pom.declarations) {
+                    if (getVersion(pom, declaration) != null) {
+                        latestVersions.put(declaration.groupId + ":" + declaration.artifactId, null);
+                        groupIds.add(declaration.groupId);
+                    }
+                }
+            }
+            metrics.add("outdated.artifacts", latestVersions.size());
+            for (final Map.Entry<String, String> entry : latestVersions.entrySet()) {
+                checkCanceled(monitor);
+                final String[] ga = entry.getKey().split(":");
+                entry.setValue(versionService.getVersions(ga[0], ga[1], false).getRelease());
+            }
+            if (remote && searchUrl != null) {
+                final Map<String, Map<String, String>> remoteVersions = searchGroups(groupIds, monitor);
+                for (final Map.Entry<String, String> entry : latestVersions.entrySet()) {
+                    final String[] ga = entry.getKey().split(":");
+                    final String remoteVersion = remoteVersions.getOrDefault(ga[0], Collections.emptyMap())
+                            .get(ga[1]);
+                    if (entry.getValue() == null || versionService.isNewer(remoteVersion, entry.getValue())) {
+                        entry.setValue(remoteVersion);
+                    }
+                }
+            }
+            checkCanceled(monitor);
+
+            final Map<String, List<OutdatedDependency>> result = new TreeMap<>();
+            for (final Map.Entry<String, PomDeclarationHandler> pom : poms.entrySet()) {
+                final List<OutdatedDependency> outdated = new ArrayList<>();
+                for (final PomDeclarationHandler.Declaration declaration : pom.getValue().declarations) {
+                    final String version = getVersion(pom.getValue(), declaration);
+                    final String latest = latestVersions.get(declaration.groupId + ":" + declaration.artifactId);
+                    if (version != null && versionService.isNewer(latest, version)) {
+                        final PomDeclarationHandler.Property property =
+                                pom.getValue().getReferencedProperty(declaration.version);
+                        final Range range = property != null ? property.range : declaration.versionRange;
+                        outdated.add(new OutdatedDependency(declaration.kind, declaration.groupId,
+                                declaration.artifactId, version, latest, range));
+                    }
+                }
+                result.put(pom.getKey(), outdated);
+            }
+            return result;
+        }
+    }
+
+    private Map<String, PomDeclarationHandler> parse(List<String> pomPaths) {
+        final Map<String, PomDeclarationHandler> poms = new ConcurrentHashMap<>();
+        pomPaths.parallelStream().distinct().forEach(pomPath -> {
+            try {
+                poms.put(pomPath, PomDeclarationHandler.parse(new File(pomPath)));
+            } catch (IOException | SAXException e) {
+                // a pom being edited may not be well-formed, it is scanned again on the next save
+                metrics.increment("outdated.pom.unreadable");
+                poms.put(pomPath, new PomDeclarationHandler());
+            }
+        });
+        return new TreeMap<>(poms);
+    }
+
+    /**
+     * The version the declaration uses, or null when it cannot be compared.
+     */
+    private static String getVersion(PomDeclarationHandler pom, PomDeclarationHandler.Declaration declaration) {
+        String version = declaration.version;
+        if (version == null || declaration.groupId == null || declaration.groupId.contains("${") ||
+                declaration.artifactId.contains("${")) {
+            return null;
+        }
+        final PomDeclarationHandler.Property property = pom.getReferencedProperty(version);
+        if (property != null) {
+            version = property.value;
+        }
+        if (version.isEmpty() || version.contains("${") || version.startsWith("[") || version.startsWith("(") ||
+                version.endsWith("-SNAPSHOT")) {
+            return null;
+        }
+        return version;
+    }
+
+    /**
+     * Asks the search for the latest version of every artifact of the given groups, one query per
+     * group sent concurrently, the groups answered recently being served from memory. The groups
+     * whose query has not completed within {@link #SEARCH_TIMEOUT_MILLIS} are left out.
+     */
+    private Map<String, Map<String, String>> searchGroups(Set<String> groupIds, IProgressMonitor monitor) {
+        final Map<String, Map<String, String>> result = new HashMap<>();
+        final long now = System.currentTimeMillis();
+        final List<String> missing = new ArrayList<>();
+        for (final String groupId : groupIds) {
+            final CachedGroup cached = groups.get(groupId);
+            if (cached != null && now < cached.expiresAt) {
+                result.put(groupId, cached.latestVersions);
+            } else {
+                missing.add(groupId);
+            }
+        }
+        metrics.add("outdated.remote.cache.hit", groupIds.size() - missing.size());
+        metrics.add("outdated.remote.cache.miss", missing.size());
+        if (missing.isEmpty()) {
+            return result;
+        }
+        try (MetricsRegistry.Timer timer = metrics.time("outdated.remote")) {
+            final CountDownLatch latch = new CountDownLatch(missing.size());
+            final List<Call> calls = new ArrayList<>();
+            for (final String groupId : missing) {
+                final HttpUrl url = HttpUrl.parse(searchUrl).newBuilder()
+                        .addQueryParameter("q", "g:\"" + groupId + "\"")
+                        .addQueryParameter("rows", String.valueOf(SEARCH_ROWS))
+                        .addQueryParameter("wt", "json").build();
+                final Call call = getClient().newCall(new Request.Builder().url(url).build());
+                calls.add(call);
+                call.enqueue(new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        // try again after a while, the local versions are used meanwhile; a canceled
+                        // or timed out query is sent again by the next scan
+                        if (!call.isCanceled()) {
+                            groups.put(groupId, new CachedGroup(now + REMOTE_RETRY_MILLIS, Collections.emptyMap()));
+                        }
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) {
+                        try (Response closing = response) {
+                            final Map<String, String> latestVersions = new HashMap<>();
+                            final NetResponseResult searchResult = new Gson().fromJson(response.body().string(),
+                                    NetResponseResult.class);
+                            if (searchResult != null && searchResult.getResponse() != null &&
+                                    searchResult.getResponse().getDocs() != null) {
+                                for (final NetResponseResult.Info info : searchResult.getResponse().getDocs()) {
+                                    // a pre-release is not offered, the local versions are used instead
+                                    if (groupId.equals(info.getG()) && info.getLatestVersion() != null &&
+                                            !ArtifactVersions.isPreRelease(info.getLatestVersion())) {
+                                        latestVersions.put(info.getA(), info.getLatestVersion());
+                                    }
+                                }
+                            }
+                            groups.put(groupId, new CachedGroup(now + REMOTE_TTL_MILLIS, latestVersions));
+                        } catch (IOException | RuntimeException e) {
+                            // e.g. no body, or not the JSON of a search
+                            groups.put(groupId, new CachedGroup(now + REMOTE_RETRY_MILLIS, Collections.emptyMap()));
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                });
+            }
+            final long deadline = System.currentTimeMillis() + SEARCH_TIMEOUT_MILLIS;
+            try {
+                while (!latch.await(CANCEL_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (monitor != null && monitor.isCanceled()) {
+                        calls.forEach(Call::cancel);
+                        timer.fail();
+                        throw new OperationCanceledException();
+                    }
+                    if (System.currentTimeMillis() >= deadline) {
+                        // the call timeout ends them soon, the groups answered so far are used
+                        timer.fail();
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                calls.forEach(Call::cancel);
+                timer.fail();
+                return result;
+            }
+        }
+        for (final String groupId : missing) {
+            final CachedGroup cached = groups.get(groupId);
+            if (cached != null) {
+                result.put(groupId, cached.latestVersions);
+            }
+        }
+        return result;
+    }
+
+    private synchronized OkHttpClient getClient() {
+        if (client == null) {
+            client = new OkHttpClient.Builder().connectTimeout(3, TimeUnit.SECONDS)
+                    .readTimeout(3, TimeUnit.SECONDS).callTimeout(SEARCH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).build();
+        }
+        return client;
+    }
+
+    private static void checkCanceled(IProgressMonitor monitor) {
+        if (monitor != null && monitor.isCanceled()) {
+            throw new OperationCanceledException();
+        }
+    }
+}
@@ -0,0 +1,324 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.context.IndexingContext;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The classes of an index context by package: a trie of package segments whose nodes list the
+ * classes of their package, each with the artifact shipping it. Qualified queries such as
+ * "com.google.common.collect.Imm" and package prefixes such as "com.google.common.coll" are
+ * answered exactly from it, instead of matching the simple name alone.
+ */
+class PackageTrie {
+
+    private static final int MAGIC = 0x504b5431; // "PKT1"
+    private static final int FORMAT_VERSION = 1;
+
+    private final long indexTimestamp;
+    private final int documentCount;
+    // groupId, artifactId and version of each artifact, the position being the id used in the nodes
+    private final String[][] artifacts;
+    private final Node root = new Node("");
+
+    static class Match {
+        final String groupId;
+        final String artifactId;
+        final String version;
+        final String fullClassName;
+
+        Match(String groupId, String artifactId, String version, String fullClassName) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.fullClassName = fullClassName;
+        }
+    }
+
+    private static class Node {
+        final String segment;
+        // lower-cased segment -> child, sorted to walk package prefixes in order
+        final Map<String, Node> children = new TreeMap<>();
+        // simple names of the classes of the package and the artifact shipping each of them
+        String[] classNames = new String[0];
+        int[] classArtifacts = new int[0];
+        int classCount;
+
+        Node(String segment) {
+            this.segment = segment;
+        }
+
+        Node child(String segment) {
+            return children.computeIfAbsent(segment.toLowerCase(), k -> new Node(segment));
+        }
+
+        void addClass(String simpleName, int artifact) {
+            if (classCount == classNames.length) {
+                classNames = Arrays.copyOf(classNames, Math.max(4, classCount * 2));
+                classArtifacts = Arrays.copyOf(classArtifacts, classNames.length);
+            }
+            classNames[classCount] = simpleName;
+            classArtifacts[classCount] = artifact;
+            classCount++;
+        }
+    }
+
+    private PackageTrie(long indexTimestamp, int documentCount, String[][] artifacts) {
+        this.indexTimestamp = indexTimestamp;
+        this.documentCount = documentCount;
+        this.artifacts = artifacts;
+    }
+
+    /**
+     * Finds the classes a query with a package qualifier stands for, case-insensitively: the
+     * classes of the package named by all but the last segment whose simple name starts with the
+     * last segment, then the classes of the packages the query is a prefix of. Returns at most
+     * {@code limit} classes, the first artifact shipping a class winning.
+     */
+    List<Match> find(String query, int limit) {
+        final Map<String, Match> found = new LinkedHashMap<>();
+        final int separator = query.lastIndexOf('.');
+        final String last = query.substring(separator + 1).toLowerCase();
+        // the package as written in the index, the query may differ in case
+        final StringBuilder packageName = new StringBuilder();
+        Node parent = root;
+        for (final String segment : query.substring(0, separator).split("\\.")) {
+            parent = parent.children.get(segment.toLowerCase());
+            if (parent == null) {
+                return new ArrayList<>();
+            }
+            packageName.append(packageName.length() == 0 ? "" : ".").append(parent.segment);
+        }
+        for (int i = 0; i < parent.classCount && found.size() < limit; i++) {
+            if (parent.classNames[i].toLowerCase().startsWith(last)) {
+                add(found, packageName.toString(), parent, i);
+            }
+        }
+        for (final Map.Entry<String, Node> child : parent.children.entrySet()) {
+            if (found.size() >= limit) {
+                break;
+            }
+            if (child.getKey().startsWith(last)) {
+                addSubtree(found, packageName + "." + child.getValue().segment, child.getValue(), limit);
+            }
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    private void addSubtree(Map<String, Match> found, String packageName, Node node, int limit) {
+        for (int i = 0; i < node.classCount && found.size() < limit; i++) {
+            add(found, packageName, node, i);
+        }
+        for (final Node child : node.children.values()) {
+            if (found.size() >= limit) {
+                return;
+            }
+            addSubtree(found, packageName + "." + child.segment, child, limit);
+        }
+    }
+
+    private void add(Map<String, Match> found, String packageName, Node node, int i) {
+        final String fullClassName = packageName + "." + node.classNames[i];
+        if (!found.containsKey(fullClassName)) {
+            final String[] artifact = artifacts[node.classArtifacts[i]];
+            found.put(fullClassName, new Match(artifact[0], artifact[1], artifact[2], fullClassName));
+        }
+    }
+
+    /**
+     * Loads the trie persisted in {@code file} if it was built from the current state of the
+     * index, otherwise builds it again from the index and persists it.
+     */
+    static PackageTrie open(IndexingContext context, File file) throws IOException {
+        final long timestamp = context.getTimestamp() == null ? 0 : context.getTimestamp().getTime();
+        final IndexSearcher searcher = context.acquireIndexSearcher();
+        try {
+            final int documentCount = searcher.getIndexReader().numDocs();
+            if (file != null && file.isFile()) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                    final PackageTrie trie = read(in);
+                    if (trie != null && trie.indexTimestamp == timestamp && trie.documentCount == documentCount) {
+                        MetricsRegistry.getDefault().increment("index.packages.cache.hit");
+                        return trie;
+                    }
+                } catch (IOException e) {
+                    // corrupted or outdated, build it again below
+                }
+            }
+            MetricsRegistry.getDefault().increment("index.packages.cache.miss");
+            final PackageTrie trie;
+            try (MetricsRegistry.Timer timer = MetricsRegistry.getDefault().time("index.packages.build")) {
+                trie = build(searcher.getIndexReader(), timestamp, documentCount);
+            }
+            if (file != null) {
+                try {
+                    trie.write(file);
+                } catch (IOException e) {
+                    // the trie still works in memory, it will just be built again next time
+                }
+            }
+            return trie;
+        } finally {
+            context.releaseIndexSearcher(searcher);
+        }
+    }
+
+    private static PackageTrie build(IndexReader reader, long timestamp, int documentCount) throws IOException {
+        final List<String[]> artifacts = new ArrayList<>();
+        final List<String> classNamesByArtifact = new ArrayList<>();
+        IndexedClassNames.forEach(reader, Collections.singleton(ArtifactInfo.UINFO), (document, classNames) -> {
+            final String uinfo = document.get(ArtifactInfo.UINFO);
+            if (uinfo == null) {
+                return;
+            }
+            // groupId|artifactId|version|classifier|extension
+            final String[] coordinates = uinfo.split("\\" + ArtifactInfo.FS);
+            if (coordinates.length >= 3) {
+                artifacts.add(new String[] { coordinates[0], coordinates[1], coordinates[2] });
+                classNamesByArtifact.add(classNames);
+            }
+        });
+        return build(timestamp, documentCount, artifacts, classNamesByArtifact);
+    }
+
+    /**
+     * Builds the trie from the coordinates of each artifact and its class names field, one
+     * "/com/example/Foo" entry per line.
+     */
+    static PackageTrie build(long timestamp, int documentCount, List<String[]> artifacts,
+            List<String> classNamesByArtifact) {
+        final PackageTrie trie = new PackageTrie(timestamp, documentCount, artifacts.toArray(new String[0][]));
+        // the same simple names and segments come up in many artifacts, share one instance of each
+        final Map<String, String> interned = new HashMap<>();
+        for (int artifact = 0; artifact < classNamesByArtifact.size(); artifact++) {
+            final String classNames = classNamesByArtifact.get(artifact);
+            int lineStart = 0;
+            while (lineStart < classNames.length()) {
+                int lineEnd = classNames.indexOf('\n', lineStart);
+                if (lineEnd < 0) {
+                    lineEnd = classNames.length();
+                }
+                // entries look like "/com/example/Foo"
+                Node node = trie.root;
+                int segmentStart = lineStart + 1;
+                for (int slash = classNames.indexOf('/', segmentStart); slash >= 0 && slash < lineEnd;
+                        slash = classNames.indexOf('/', segmentStart)) {
+                    node = node.child(intern(interned, classNames.substring(segmentStart, slash)));
+                    segmentStart = slash + 1;
+                }
+                // classes of the default package cannot be imported
+                if (segmentStart < lineEnd && node != trie.root) {
+                    node.addClass(intern(interned, classNames.substring(segmentStart, lineEnd)), artifact);
+                }
+                lineStart = lineEnd + 1;
+            }
+        }
+        return trie;
+    }
+
+    private static String intern(Map<String, String> interned, String value) {
+        final String existing = interned.putIfAbsent(value, value);
+        return existing == null ? value : existing;
+    }
+
+    private void write(File file) throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        final File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            write(out);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(indexTimestamp);
+        out.writeInt(documentCount);
+        out.writeInt(artifacts.length);
+        for (final String[] artifact : artifacts) {
+            out.writeUTF(artifact[0]);
+            out.writeUTF(artifact[1]);
+            out.writeUTF(artifact[2]);
+        }
+        writeNode(out, root);
+    }
+
+    private static void writeNode(DataOutputStream out, Node node) throws IOException {
+        out.writeUTF(node.segment);
+        out.writeInt(node.classCount);
+        for (int i = 0; i < node.classCount; i++) {
+            out.writeUTF(node.classNames[i]);
+            out.writeInt(node.classArtifacts[i]);
+        }
+        out.writeInt(node.children.size());
+        for (final Node child : node.children.values()) {
+            writeNode(out, child);
+        }
+    }
+
+    /**
+     * Reads a trie, or returns null when it was written by another format version.
+     */
+    static PackageTrie read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+        final long timestamp = in.readLong();
+        final int documentCount = in.readInt();
+        final String[][] artifacts = new String[in.readInt()][];
+        for (int i = 0; i < artifacts.length; i++) {
+            artifacts[i] = new String[] { in.readUTF(), in.readUTF(), in.readUTF() };
+        }
+        final PackageTrie trie = new PackageTrie(timestamp, documentCount, artifacts);
+        in.readUTF(); // the root has no segment
+        readChildren(in, trie.root, new HashMap<>());
+        return trie;
+    }
+
+    private static void readChildren(DataInputStream in, Node node, Map<String, String> interned)
+            throws IOException {
+        final int classCount = in.readInt();
+        for (int i = 0; i < classCount; i++) {
+            node.addClass(intern(interned, in.readUTF()), in.readInt());
+        }
+        final int childCount = in.readInt();
+        for (int i = 0; i < childCount; i++) {
+            readChildren(in, node.child(intern(interned, in.readUTF())), interned);
+        }
+    }
+}
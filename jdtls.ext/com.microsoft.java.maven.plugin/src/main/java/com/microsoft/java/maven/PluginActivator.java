@@ -11,9 +11,12 @@
 
 package com.microsoft.java.maven;
 
+import org.eclipse.core.runtime.Platform;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 
+import java.io.File;
+
 public class PluginActivator implements BundleActivator {
 
     public static final String PLUGIN_ID = "com.microsoft.java.maven.plugin";
@@ -26,6 +29,22 @@ public class PluginActivator implements BundleActivator {
 
     @Override
     public void stop(BundleContext context) throws Exception {
+        MavenExecutionService.shutdownDefault();
+        DependencyUsageIndex.shutdownDefault();
+    }
+
+    /**
+     * Returns the given file of the plugin state location, or null when the plugin was not started.
+     */
+    public static File getStateFile(String name) {
+        if (context == null) {
+            return null;
+        }
+        try {
+            return Platform.getStateLocation(context.getBundle()).append(name).toFile();
+        } catch (IllegalStateException e) {
+            return null;
+        }
     }
 
 }
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import java.util.List;
+
+public class PluginDescriptor {
+
+    private String groupId;
+
+    private String artifactId;
+
+    private String version;
+
+    private String goalPrefix;
+
+    // null when the plugin jar is not in the local repository yet
+    private List<String> goals;
+
+    public PluginDescriptor(String groupId, String artifactId, String version, String goalPrefix,
+            List<String> goals) {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        this.goalPrefix = goalPrefix;
+        this.goals = goals;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getGoalPrefix() {
+        return goalPrefix;
+    }
+
+    public List<String> getGoals() {
+        return goals;
+    }
+}
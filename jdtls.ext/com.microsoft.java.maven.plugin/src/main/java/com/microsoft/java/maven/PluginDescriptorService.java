@@ -0,0 +1,303 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.m2e.core.MavenPlugin;
+import org.eclipse.m2e.core.project.IMavenProjectFacade;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Describes Maven plugins (goal prefix and goals) from the {@code META-INF/maven/plugin.xml} of
+ * their jar in the local repository, instead of running {@code help:describe}. Only the descriptor
+ * entry is read from the jar, and only up to the end of its mojos. Descriptions are kept in a
+ * persistent cache keyed by GAV and checked against the jar's size and modification time.
+ */
+public class PluginDescriptorService {
+
+    static final String DESCRIPTOR_ENTRY = "META-INF/maven/plugin.xml";
+    static final String DEFAULT_GROUP_ID = "org.apache.maven.plugins";
+
+    private static PluginDescriptorService defaultService;
+
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final File localRepository;
+    private final File cacheFile;
+    // g:a:v -> description, null until read from the cache file
+    private Map<String, CachedDescriptor> cache;
+    private boolean dirty;
+
+    private static class CachedDescriptor {
+        long stamp;
+        String goalPrefix;
+        List<String> goals;
+
+        CachedDescriptor(long stamp, String goalPrefix, List<String> goals) {
+            this.stamp = stamp;
+            this.goalPrefix = goalPrefix;
+            this.goals = goals;
+        }
+    }
+
+    /**
+     * @param localRepository the local repository, e.g. ~/.m2/repository
+     * @param cacheFile where descriptions are persisted, null to keep them in memory only
+     */
+    PluginDescriptorService(File localRepository, File cacheFile) {
+        this.localRepository = localRepository;
+        this.cacheFile = cacheFile;
+    }
+
+    public static synchronized PluginDescriptorService getDefault() {
+        if (defaultService == null) {
+            defaultService = new PluginDescriptorService(new File(MavenPlugin.getMaven().getLocalRepositoryPath()),
+                    PluginActivator.getStateFile("plugin-descriptors.json"));
+        }
+        return defaultService;
+    }
+
+    /**
+     * Describes the given plugins of a project, each a map with groupId, artifactId and an optional
+     * version. Missing versions are taken from the project model m2e built, and without any plugin
+     * given all the build plugins of the project are described.
+     */
+    public List<PluginDescriptor> describePlugins(String pomPath, List<Map<String, String>> plugins,
+            IProgressMonitor monitor) throws CoreException {
+        final List<Plugin> requested = new ArrayList<>();
+        MavenProject mavenProject = null;
+        if (plugins == null || plugins.isEmpty() || needsProjectModel(plugins)) {
+            final IMavenProjectFacade facade = pomPath == null ? null : DependencyTreeHandler.getProjectFacade(pomPath);
+            mavenProject = facade == null ? null : facade.getMavenProject(monitor);
+        }
+        if (plugins == null || plugins.isEmpty()) {
+            if (mavenProject != null) {
+                requested.addAll(mavenProject.getBuildPlugins());
+            }
+        } else {
+            for (final Map<String, String> plugin : plugins) {
+                final Plugin coordinates = new Plugin();
+                coordinates.setGroupId(isEmpty(plugin.get("groupId")) ? DEFAULT_GROUP_ID : plugin.get("groupId"));
+                coordinates.setArtifactId(plugin.get("artifactId"));
+                coordinates.setVersion(isEmpty(plugin.get("version")) ?
+                        getProjectVersion(mavenProject, coordinates.getKey()) : plugin.get("version"));
+                requested.add(coordinates);
+            }
+        }
+
+        final List<PluginDescriptor> result = new ArrayList<>(requested.size());
+        synchronized (this) {
+            for (final Plugin plugin : requested) {
+                if (monitor != null && monitor.isCanceled()) {
+                    throw new OperationCanceledException();
+                }
+                result.add(describe(plugin.getGroupId(), plugin.getArtifactId(), plugin.getVersion()));
+            }
+            save();
+        }
+        return result;
+    }
+
+    /**
+     * Describes one plugin, the goals being null when its jar is not in the local repository.
+     */
+    synchronized PluginDescriptor describe(String groupId, String artifactId, String version) {
+        if (version == null) {
+            return new PluginDescriptor(groupId, artifactId, null, null, null);
+        }
+        final String key = groupId + ":" + artifactId + ":" + version;
+        final File jar = new File(VersionService.getArtifactFolder(localRepository, groupId, artifactId),
+                version + File.separator + artifactId + "-" + version + ".jar");
+        final long stamp = jar.lastModified() * 31 + jar.length();
+        final CachedDescriptor cached = getCache().get(key);
+        if (cached != null && cached.stamp == stamp) {
+            metrics.increment("plugins.cache.hit");
+            return new PluginDescriptor(groupId, artifactId, version, cached.goalPrefix, cached.goals);
+        }
+        metrics.increment("plugins.cache.miss");
+        if (!jar.isFile()) {
+            return new PluginDescriptor(groupId, artifactId, version, getDefaultGoalPrefix(artifactId), null);
+        }
+        try (MetricsRegistry.Timer timer = metrics.time("plugins.read")) {
+            final CachedDescriptor descriptor = readDescriptor(jar, stamp);
+            if (descriptor == null) {
+                timer.fail();
+                return new PluginDescriptor(groupId, artifactId, version, getDefaultGoalPrefix(artifactId), null);
+            }
+            if (descriptor.goalPrefix == null) {
+                descriptor.goalPrefix = getDefaultGoalPrefix(artifactId);
+            }
+            getCache().put(key, descriptor);
+            dirty = true;
+            return new PluginDescriptor(groupId, artifactId, version, descriptor.goalPrefix, descriptor.goals);
+        }
+    }
+
+    private static CachedDescriptor readDescriptor(File jar, long stamp) {
+        try (ZipFile zipFile = new ZipFile(jar)) {
+            final ZipEntry entry = zipFile.getEntry(DESCRIPTOR_ENTRY);
+            if (entry == null) {
+                return null;
+            }
+            try (InputStream in = zipFile.getInputStream(entry)) {
+                final CachedDescriptor descriptor = new CachedDescriptor(stamp, null, new ArrayList<>());
+                parseDescriptor(in, descriptor);
+                return descriptor;
+            }
+        } catch (IOException | XMLStreamException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the goal prefix and the goals of a plugin descriptor, stopping at the end of the mojos
+     * since the rest (mostly the plugin dependencies) is not needed.
+     */
+    private static void parseDescriptor(InputStream in, CachedDescriptor descriptor) throws XMLStreamException {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        final XMLStreamReader reader = factory.createXMLStreamReader(in);
+        try {
+            // depth 1 is <plugin>, 2 <goalPrefix> or <mojos>, 3 <mojo>, 4 <goal>
+            int depth = 0;
+            boolean inMojos = false;
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    final String name = reader.getLocalName();
+                    if (depth == 2 && "goalPrefix".equals(name)) {
+                        descriptor.goalPrefix = reader.getElementText().trim();
+                        depth--;
+                    } else if (depth == 2 && "mojos".equals(name)) {
+                        inMojos = true;
+                    } else if (depth == 4 && inMojos && "goal".equals(name)) {
+                        descriptor.goals.add(reader.getElementText().trim());
+                        depth--;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                    if (depth == 1 && inMojos) {
+                        if (descriptor.goalPrefix != null) {
+                            return;
+                        }
+                        inMojos = false;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * The prefix Maven derives when the descriptor does not declare one, e.g. "compiler" for
+     * maven-compiler-plugin and "spring-boot" for spring-boot-maven-plugin.
+     */
+    static String getDefaultGoalPrefix(String artifactId) {
+        if (artifactId.startsWith("maven-") && artifactId.endsWith("-plugin") && artifactId.length() > 13) {
+            return artifactId.substring("maven-".length(), artifactId.length() - "-plugin".length());
+        }
+        if (artifactId.endsWith("-maven-plugin")) {
+            return artifactId.substring(0, artifactId.length() - "-maven-plugin".length());
+        }
+        return artifactId;
+    }
+
+    private static String getProjectVersion(MavenProject mavenProject, String key) {
+        if (mavenProject == null) {
+            return null;
+        }
+        final Plugin plugin = mavenProject.getPlugin(key);
+        if (plugin != null && plugin.getVersion() != null) {
+            return plugin.getVersion();
+        }
+        final Plugin managed = mavenProject.getPluginManagement() == null ? null :
+                mavenProject.getPluginManagement().getPluginsAsMap().get(key);
+        return managed == null ? null : managed.getVersion();
+    }
+
+    private static boolean needsProjectModel(List<Map<String, String>> plugins) {
+        for (final Map<String, String> plugin : plugins) {
+            if (isEmpty(plugin.get("version"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    private Map<String, CachedDescriptor> getCache() {
+        if (cache == null) {
+            cache = new HashMap<>();
+            if (cacheFile != null && cacheFile.isFile()) {
+                try (Reader reader = Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+                    final Map<String, CachedDescriptor> persisted = new Gson().fromJson(reader,
+                            new TypeToken<Map<String, CachedDescriptor>>() { }.getType());
+                    if (persisted != null) {
+                        cache.putAll(persisted);
+                    }
+                } catch (IOException | JsonParseException e) {
+                    // a corrupted cache is rebuilt from the jars
+                }
+            }
+        }
+        return cache;
+    }
+
+    private void save() {
+        if (!dirty || cacheFile == null) {
+            return;
+        }
+        dirty = false;
+        try {
+            Files.createDirectories(cacheFile.getParentFile().toPath());
+            final File temp = new File(cacheFile.getPath() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                new Gson().toJson(cache, writer);
+            }
+            Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // kept in memory, saved again with the next description
+            dirty = true;
+        }
+    }
+}
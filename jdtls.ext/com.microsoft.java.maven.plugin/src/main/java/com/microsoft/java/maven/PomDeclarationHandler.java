@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects, in a single SAX pass, every artifact a pom declares (dependencies, managed dependencies,
+ * plugins, managed plugins and the parent, profiles included) and its properties, with the exact
+ * ranges of each artifactId and version text.
+ */
+class PomDeclarationHandler extends DefaultHandler {
+    static final String DEPENDENCY = "dependency";
+    static final String MANAGED_DEPENDENCY = "managedDependency";
+    static final String PLUGIN = "plugin";
+    static final String MANAGED_PLUGIN = "managedPlugin";
+    static final String PARENT = "parent";
+
+    private static final String DEFAULT_PLUGIN_GROUP_ID = "org.apache.maven.plugins";
+    private static final int LINE_OFFSET = 1;
+    private static final int COLUMN_OFFSET = 1;
+
+    static class Declaration {
+        final String kind;
+        // whether it is declared in a profile, so only applies when the profile is active
+        final boolean inProfile;
+        String groupId;
+        String artifactId;
+        String version;
+        // range of the artifactId text, which every declaration has
+        Range artifactIdRange;
+        // range of the version text, null when the version is not declared
+        Range versionRange;
+
+        Declaration(String kind, boolean inProfile) {
+            this.kind = kind;
+            this.inProfile = inProfile;
+        }
+    }
+
+    static class Property {
+        final String name;
+        final String value;
+        final Range range;
+
+        Property(String name, String value, Range range) {
+            this.name = name;
+            this.value = value;
+            this.range = range;
+        }
+    }
+
+    private Locator locator;
+    // the elements enclosing the current one, the document element first
+    final List<String> path = new ArrayList<>();
+    private final StringBuilder text = new StringBuilder();
+    private int textLine;
+    private int textColumn;
+    private Declaration current;
+    private int currentDepth;
+
+    final List<Declaration> declarations = new ArrayList<>();
+    final Map<String, Property> properties = new HashMap<>();
+    // the coordinates of the project itself, null when inherited from the parent
+    String groupId;
+    String artifactId;
+
+    static PomDeclarationHandler parse(File pom) throws IOException, SAXException {
+        final PomDeclarationHandler handler = new PomDeclarationHandler();
+        try {
+            final SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+            parser.parse(pom, handler);
+        } catch (ParserConfigurationException e) {
+            throw new SAXException(e);
+        }
+        return handler;
+    }
+
+    /**
+     * Parses the given pom content, so that the ranges can be mapped back to offsets of the same text.
+     */
+    static PomDeclarationHandler parse(String content) throws IOException, SAXException {
+        final PomDeclarationHandler handler = new PomDeclarationHandler();
+        try {
+            final SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+            parser.parse(new InputSource(new StringReader(content)), handler);
+        } catch (ParserConfigurationException e) {
+            throw new SAXException(e);
+        }
+        return handler;
+    }
+
+    /**
+     * Returns the declaration of the parent pom, or null when there is none.
+     */
+    Declaration getParent() {
+        for (final Declaration declaration : declarations) {
+            if (PARENT.equals(declaration.kind)) {
+                return declaration;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the property a version refers to when it is exactly "${name}" and the pom defines
+     * it, null otherwise.
+     */
+    Property getReferencedProperty(String version) {
+        if (version != null && version.startsWith("${") && version.endsWith("}")) {
+            return properties.get(version.substring(2, version.length() - 1));
+        }
+        return null;
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator) {
+        this.locator = locator;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+        path.add(qName);
+        if (current == null) {
+            final String kind = kindOf(path);
+            if (kind != null) {
+                current = new Declaration(kind, "profiles".equals(path.get(1)));
+                currentDepth = path.size();
+            }
+        }
+        text.setLength(0);
+        textLine = locator.getLineNumber() - LINE_OFFSET;
+        textColumn = locator.getColumnNumber() - COLUMN_OFFSET;
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        text.append(ch, start, length);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        if (current != null && path.size() == currentDepth + 1) {
+            switch (qName) {
+                case "groupId":
+                    current.groupId = text.toString().trim();
+                    break;
+                case "artifactId":
+                    current.artifactId = text.toString().trim();
+                    current.artifactIdRange = trimmedRange();
+                    break;
+                case "version":
+                    current.version = text.toString().trim();
+                    current.versionRange = trimmedRange();
+                    break;
+                default:
+                    break;
+            }
+        } else if (current != null && path.size() == currentDepth) {
+            if (current.groupId == null && (PLUGIN.equals(current.kind) || MANAGED_PLUGIN.equals(current.kind))) {
+                current.groupId = DEFAULT_PLUGIN_GROUP_ID;
+            }
+            if (current.artifactId != null) {
+                declarations.add(current);
+            }
+            current = null;
+        } else if (path.size() == 2 && "project".equals(path.get(0)) && "groupId".equals(qName)) {
+            groupId = text.toString().trim();
+        } else if (path.size() == 2 && "project".equals(path.get(0)) && "artifactId".equals(qName)) {
+            artifactId = text.toString().trim();
+        } else if (path.size() == 3 && "project".equals(path.get(0)) && "properties".equals(path.get(1))) {
+            properties.put(qName, new Property(qName, text.toString().trim(), trimmedRange()));
+        }
+        path.remove(path.size() - 1);
+        text.setLength(0);
+    }
+
+    private static String kindOf(List<String> path) {
+        int start = 1;
+        if (path.isEmpty() || !"project".equals(path.get(0))) {
+            return null;
+        }
+        if (path.size() > 3 && "profiles".equals(path.get(1)) && "profile".equals(path.get(2))) {
+            start = 3;
+        }
+        final List<String> relative = path.subList(start, path.size());
+        switch (relative.size()) {
+            case 1:
+                return start == 1 && "parent".equals(relative.get(0)) ? PARENT : null;
+            case 2:
+                return "dependencies".equals(relative.get(0)) && "dependency".equals(relative.get(1)) ?
+                        DEPENDENCY : null;
+            case 3:
+                if ("dependencyManagement".equals(relative.get(0)) && "dependencies".equals(relative.get(1)) &&
+                        "dependency".equals(relative.get(2))) {
+                    return MANAGED_DEPENDENCY;
+                }
+                return "build".equals(relative.get(0)) && "plugins".equals(relative.get(1)) &&
+                        "plugin".equals(relative.get(2)) ? PLUGIN : null;
+            case 4:
+                return "build".equals(relative.get(0)) && "pluginManagement".equals(relative.get(1)) &&
+                        "plugins".equals(relative.get(2)) && "plugin".equals(relative.get(3)) ? MANAGED_PLUGIN : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The range of the text of the element being closed, surrounding whitespace excluded. The text
+     * starts right after the start tag, where the locator was when the element was opened.
+     */
+    private Range trimmedRange() {
+        int first = 0;
+        while (first < text.length() && Character.isWhitespace(text.charAt(first))) {
+            first++;
+        }
+        int last = text.length();
+        while (last > first && Character.isWhitespace(text.charAt(last - 1))) {
+            last--;
+        }
+        int line = textLine;
+        int column = textColumn;
+        Position start = null;
+        for (int i = 0; i <= last; i++) {
+            if (i == first) {
+                start = new Position(line, column);
+            }
+            if (i == last) {
+                return new Range(start, new Position(line, column));
+            }
+            if (text.charAt(i) == '\n') {
+                line++;
+                column = 0;
+            } else {
+                column++;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What the explorer needs of a pom before showing it, as written in the pom: nothing is
+ * inherited or interpolated.
+ */
+public class PomHeader {
+
+    private String pomPath;
+
+    private String groupId;
+
+    private String artifactId;
+
+    private String version;
+
+    private String name;
+
+    private String packaging;
+
+    // the <module> entries, as written
+    private List<String> modules = new ArrayList<>();
+
+    private Parent parent;
+
+    private Map<String, String> properties = new LinkedHashMap<>();
+
+    public static class Parent {
+
+        private String groupId;
+
+        private String artifactId;
+
+        private String version;
+
+        // null when not declared, empty when explicitly disabled
+        private String relativePath;
+
+        public String getGroupId() {
+            return groupId;
+        }
+
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getRelativePath() {
+            return relativePath;
+        }
+
+        void set(String element, String value) {
+            switch (element) {
+                case "groupId":
+                    groupId = value;
+                    break;
+                case "artifactId":
+                    artifactId = value;
+                    break;
+                case "version":
+                    version = value;
+                    break;
+                case "relativePath":
+                    relativePath = value;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    PomHeader(String pomPath) {
+        this.pomPath = pomPath;
+    }
+
+    void set(String element, String value) {
+        switch (element) {
+            case "groupId":
+                groupId = value;
+                break;
+            case "artifactId":
+                artifactId = value;
+                break;
+            case "version":
+                version = value;
+                break;
+            case "name":
+                name = value;
+                break;
+            case "packaging":
+                packaging = value;
+                break;
+            default:
+                break;
+        }
+    }
+
+    void setParent(Parent parent) {
+        this.parent = parent;
+    }
+
+    public String getPomPath() {
+        return pomPath;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPackaging() {
+        return packaging;
+    }
+
+    public List<String> getModules() {
+        return modules;
+    }
+
+    public Parent getParent() {
+        return parent;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+}
@@ -0,0 +1,346 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the headers of many poms at once for the explorer: coordinates, name, packaging, parent,
+ * modules and properties. Poms are read in parallel with a StAX cursor that stops at the first
+ * build section (dependencies, build, profiles...) once nothing it could still find matters,
+ * and the headers are kept in a persistent cache keyed by path, modification time and size.
+ * Other elements such as the description or licenses are skipped, as properties may follow them.
+ */
+public class PomHeaderScanner {
+
+    // factories are not guaranteed to be thread-safe, and creating one per pom is costly
+    private static final ThreadLocal<XMLInputFactory> factories = ThreadLocal.withInitial(
+            PomHeaderScanner::createFactory);
+
+    // the sections that usually follow the header elements, and are the bulk of a pom
+    private static final Set<String> BUILD_SECTIONS = new HashSet<>(Arrays.asList("dependencies",
+            "dependencyManagement", "build", "profiles", "reporting"));
+    private static final List<String> MANAGED_DEPENDENCIES = Arrays.asList("project", "dependencyManagement",
+            "dependencies");
+
+    private static PomHeaderScanner defaultScanner;
+
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final File cacheFile;
+    // pom path -> header, null until read from the cache file
+    private Map<String, CachedHeader> cache;
+    private volatile boolean dirty;
+
+    private static class CachedHeader {
+        long modified;
+        long size;
+        PomHeader header;
+
+        CachedHeader(long modified, long size, PomHeader header) {
+            this.modified = modified;
+            this.size = size;
+            this.header = header;
+        }
+    }
+
+    /**
+     * @param cacheFile where headers are persisted, null to keep them in memory only
+     */
+    PomHeaderScanner(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    public static synchronized PomHeaderScanner getDefault() {
+        if (defaultScanner == null) {
+            // version 2: headers of poms with properties after other elements were missing them
+            defaultScanner = new PomHeaderScanner(PluginActivator.getStateFile("pom-headers-2.json"));
+        }
+        return defaultScanner;
+    }
+
+    /**
+     * Returns the headers of the given poms in the same order, leaving out the poms that cannot
+     * be read.
+     */
+    public List<PomHeader> scan(List<String> pomPaths, IProgressMonitor monitor) {
+        try (MetricsRegistry.Timer timer = metrics.time("pomHeaders.scan")) {
+            final Map<String, CachedHeader> headers = getCache();
+            final AtomicInteger hits = new AtomicInteger();
+            final List<PomHeader> result = pomPaths.parallelStream().map(pomPath -> {
+                if (monitor != null && monitor.isCanceled()) {
+                    throw new OperationCanceledException();
+                }
+                return scan(headers, pomPath, hits);
+            }).filter(Objects::nonNull).collect(Collectors.toList());
+            metrics.add("pomHeaders.cache.hit", hits.get());
+            metrics.add("pomHeaders.cache.miss", pomPaths.size() - hits.get());
+            save();
+            return result;
+        }
+    }
+
+    private PomHeader scan(Map<String, CachedHeader> headers, String pomPath, AtomicInteger hits) {
+        final Path path = Paths.get(pomPath);
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            headers.remove(pomPath);
+            return null;
+        }
+        final long modified = attributes.lastModifiedTime().toMillis();
+        final CachedHeader cached = headers.get(pomPath);
+        if (cached != null && cached.modified == modified && cached.size == attributes.size()) {
+            hits.incrementAndGet();
+            return cached.header;
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            final PomHeader header = parseHeader(pomPath, in);
+            headers.put(pomPath, new CachedHeader(modified, attributes.size(), header));
+            dirty = true;
+            return header;
+        } catch (IOException | XMLStreamException e) {
+            // a pom being edited may not be well-formed, the explorer parses it itself
+            metrics.increment("pomHeaders.pom.unreadable");
+            headers.remove(pomPath);
+            return null;
+        }
+    }
+
+    static PomHeader parseHeader(String pomPath, InputStream in) throws XMLStreamException {
+        final PomHeader header = new PomHeader(pomPath);
+        final XMLStreamReader reader = factories.get().createXMLStreamReader(in);
+        try {
+            // depth 1 is <project>, 2 the sections of the pom
+            int depth = 0;
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    final String name = reader.getLocalName();
+                    if (depth == 1) {
+                        if (!"project".equals(name)) {
+                            return header;
+                        }
+                        continue;
+                    }
+                    switch (name) {
+                        case "groupId":
+                        case "artifactId":
+                        case "version":
+                        case "name":
+                        case "packaging":
+                            header.set(name, readText(reader));
+                            break;
+                        case "parent":
+                            final PomHeader.Parent parent = new PomHeader.Parent();
+                            readChildren(reader, parent::set);
+                            header.setParent(parent);
+                            break;
+                        case "modules":
+                            readChildren(reader, (element, value) -> {
+                                if ("module".equals(element)) {
+                                    header.getModules().add(value);
+                                }
+                            });
+                            break;
+                        case "properties":
+                            readChildren(reader, header.getProperties()::put);
+                            break;
+                        default:
+                            if (BUILD_SECTIONS.contains(name) && isComplete(header)) {
+                                return header;
+                            }
+                            skipElement(reader);
+                            break;
+                    }
+                    depth--;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+            return header;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the coordinates of the boms imported by the dependency management of a pom, as
+     * "groupId:artifactId:version" with their properties left as written.
+     */
+    static List<String> parseImportedBoms(InputStream in) throws XMLStreamException {
+        final List<String> boms = new ArrayList<>();
+        final XMLStreamReader reader = factories.get().createXMLStreamReader(in);
+        try {
+            final List<String> path = new ArrayList<>();
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    final String name = reader.getLocalName();
+                    if (!"dependency".equals(name) || !MANAGED_DEPENDENCIES.equals(path)) {
+                        path.add(name);
+                        continue;
+                    }
+                    final Map<String, String> dependency = new HashMap<>();
+                    readChildren(reader, dependency::put);
+                    if ("import".equals(dependency.get("scope")) && "pom".equals(dependency.get("type")) &&
+                            dependency.get("groupId") != null && dependency.get("artifactId") != null &&
+                            dependency.get("version") != null) {
+                        boms.add(dependency.get("groupId") + ":" + dependency.get("artifactId") + ":" +
+                                dependency.get("version"));
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && !path.isEmpty()) {
+                    path.remove(path.size() - 1);
+                }
+            }
+            return boms;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Whether the rest of the pom can be skipped at a build section: only aggregators have
+     * modules, and in practice the header elements come before the build sections.
+     */
+    private static boolean isComplete(PomHeader header) {
+        return header.getArtifactId() != null && (!"pom".equals(header.getPackaging()) ||
+                !header.getModules().isEmpty());
+    }
+
+    private interface ChildConsumer {
+        void accept(String element, String value);
+    }
+
+    /**
+     * Reads the text of each child of the current element until its end.
+     */
+    private static void readChildren(XMLStreamReader reader, ChildConsumer consumer) throws XMLStreamException {
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                final String element = reader.getLocalName();
+                consumer.accept(element, readText(reader));
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads the text of the current element until its end, ignoring nested elements.
+     */
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        final StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (depth == 1 && (event == XMLStreamConstants.CHARACTERS ||
+                    event == XMLStreamConstants.CDATA)) {
+                text.append(reader.getText());
+            }
+        }
+        return text.toString().trim();
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static XMLInputFactory createFactory() {
+        final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return inputFactory;
+    }
+
+    private synchronized Map<String, CachedHeader> getCache() {
+        if (cache == null) {
+            cache = new ConcurrentHashMap<>();
+            if (cacheFile != null && cacheFile.isFile()) {
+                try (Reader reader = Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+                    final Map<String, CachedHeader> persisted = new Gson().fromJson(reader,
+                            new TypeToken<Map<String, CachedHeader>>() { }.getType());
+                    if (persisted != null) {
+                        cache.putAll(persisted);
+                    }
+                } catch (IOException | JsonParseException e) {
+                    // a corrupted cache is rebuilt from the poms
+                }
+            }
+        }
+        return cache;
+    }
+
+    private synchronized void save() {
+        if (!dirty || cacheFile == null) {
+            return;
+        }
+        dirty = false;
+        try {
+            Files.createDirectories(cacheFile.getParentFile().toPath());
+            final File temp = new File(cacheFile.getPath() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                new Gson().toJson(cache, writer);
+            }
+            Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // kept in memory, saved again with the next scan
+            dirty = true;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import org.apache.maven.model.Activation;
+import org.apache.maven.model.ActivationFile;
+import org.apache.maven.model.ActivationOS;
+import org.apache.maven.model.ActivationProperty;
+import org.apache.maven.model.Profile;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.settings.Settings;
+import org.apache.maven.settings.SettingsUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.m2e.core.MavenPlugin;
+import org.eclipse.m2e.core.project.IMavenProjectFacade;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lists the profiles of workspace poms the way {@code help:all-profiles} does: those of the pom,
+ * of its parents and of settings.xml. Whether a profile is active comes from the model m2e built,
+ * where Maven already evaluated the activation (activeByDefault, jdk, os, property and file) of
+ * every profile of the chain, so nothing is forked and nothing is evaluated twice.
+ */
+public class ProfileHandler {
+
+    // the key of the profiles of settings.xml in MavenProject.getInjectedProfileIds()
+    private static final String EXTERNAL_PROFILES = "external";
+
+    private static final Map<String, CachedProfiles> cache = new ConcurrentHashMap<>();
+    private static final MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+    private static class CachedProfiles {
+        final DependencyTreeHandler.ModelStamp stamp;
+        final Settings settings;
+        final List<MavenProfileInfo> profiles;
+
+        CachedProfiles(DependencyTreeHandler.ModelStamp stamp, Settings settings, List<MavenProfileInfo> profiles) {
+            this.stamp = stamp;
+            this.settings = settings;
+            this.profiles = profiles;
+        }
+    }
+
+    /**
+     * Returns the profiles of each given pom, or of every Maven project of the workspace when no
+     * pom is given. Poms that do not belong to a Maven project known to m2e are left out.
+     */
+    public static Map<String, List<MavenProfileInfo>> listProfiles(List<String> pomPaths, IProgressMonitor monitor)
+            throws CoreException {
+        final Settings settings = MavenPlugin.getMaven().getSettings();
+        final List<IMavenProjectFacade> facades = new ArrayList<>();
+        if (pomPaths == null || pomPaths.isEmpty()) {
+            for (final IMavenProjectFacade facade : MavenPlugin.getMavenProjectRegistry().getProjects()) {
+                facades.add(facade);
+            }
+        } else {
+            for (final String pomPath : pomPaths) {
+                final IMavenProjectFacade facade = DependencyTreeHandler.getProjectFacade(pomPath);
+                if (facade != null) {
+                    facades.add(facade);
+                }
+            }
+        }
+        final Map<String, List<MavenProfileInfo>> result = new TreeMap<>();
+        for (final IMavenProjectFacade facade : facades) {
+            if (monitor != null && monitor.isCanceled()) {
+                throw new OperationCanceledException();
+            }
+            final String pomPath = facade.getPomFile().getAbsolutePath();
+            result.put(pomPath, getProfiles(pomPath, facade, settings, monitor));
+        }
+        return result;
+    }
+
+    private static List<MavenProfileInfo> getProfiles(String pomPath, IMavenProjectFacade facade, Settings settings,
+            IProgressMonitor monitor) throws CoreException {
+        final DependencyTreeHandler.ModelStamp stamp = new DependencyTreeHandler.ModelStamp(facade);
+        final CachedProfiles cached = cache.get(pomPath);
+        // m2e hands out a new settings instance whenever settings.xml changes
+        if (cached != null && cached.stamp.isCurrent(facade) && cached.settings == settings) {
+            metrics.increment("profiles.cache.hit");
+            return cached.profiles;
+        }
+        metrics.increment("profiles.cache.miss");
+        final MavenProject mavenProject = facade.getMavenProject(monitor);
+        final Map<String, List<String>> activeIds = mavenProject.getInjectedProfileIds();
+        final List<MavenProfileInfo> profiles = new ArrayList<>();
+        final Set<String> seen = new LinkedHashSet<>();
+        for (MavenProject current = mavenProject; current != null; current = current.getParent()) {
+            final List<String> active = activeIds.getOrDefault(current.getGroupId() + ":" +
+                    current.getArtifactId() + ":" + current.getVersion(), Collections.emptyList());
+            final File file = current.getFile();
+            for (final Profile profile : current.getOriginalModel().getProfiles()) {
+                // as help:all-profiles, a profile redeclared by a parent is listed once
+                if (seen.add(profile.getId())) {
+                    profiles.add(new MavenProfileInfo(profile.getId(), active.contains(profile.getId()),
+                            MavenProfileInfo.SOURCE_POM, file == null ? null : file.getAbsolutePath(),
+                            describeActivation(profile.getActivation())));
+                }
+            }
+        }
+        if (settings != null) {
+            final List<String> active = activeIds.getOrDefault(EXTERNAL_PROFILES, Collections.emptyList());
+            for (final org.apache.maven.settings.Profile settingsProfile : settings.getProfiles()) {
+                final Profile profile = SettingsUtils.convertFromSettingsProfile(settingsProfile);
+                if (seen.add(profile.getId())) {
+                    profiles.add(new MavenProfileInfo(profile.getId(),
+                            active.contains(profile.getId()) || settings.getActiveProfiles().contains(profile.getId()),
+                            MavenProfileInfo.SOURCE_SETTINGS, null, describeActivation(profile.getActivation())));
+                }
+            }
+        }
+        cache.put(pomPath, new CachedProfiles(stamp, settings, profiles));
+        return profiles;
+    }
+
+    /**
+     * Describes the conditions activating a profile, one entry per condition.
+     */
+    static List<String> describeActivation(Activation activation) {
+        final List<String> conditions = new ArrayList<>();
+        if (activation == null) {
+            return conditions;
+        }
+        if (activation.isActiveByDefault()) {
+            conditions.add("activeByDefault");
+        }
+        if (activation.getJdk() != null) {
+            conditions.add("jdk:" + activation.getJdk());
+        }
+        final ActivationOS os = activation.getOs();
+        if (os != null) {
+            final List<String> parts = new ArrayList<>();
+            addPart(parts, "name", os.getName());
+            addPart(parts, "family", os.getFamily());
+            addPart(parts, "arch", os.getArch());
+            addPart(parts, "version", os.getVersion());
+            conditions.add("os:" + String.join(",", parts));
+        }
+        final ActivationProperty property = activation.getProperty();
+        if (property != null && property.getName() != null) {
+            conditions.add("property:" + property.getName() +
+                    (property.getValue() == null ? "" : "=" + property.getValue()));
+        }
+        final ActivationFile file = activation.getFile();
+        if (file != null) {
+            if (file.getExists() != null) {
+                conditions.add("file:exists=" + file.getExists());
+            }
+            if (file.getMissing() != null) {
+                conditions.add("file:missing=" + file.getMissing());
+            }
+        }
+        return conditions;
+    }
+
+    private static void addPart(List<String> parts, String name, String value) {
+        if (value != null) {
+            parts.add(name + "=" + value);
+        }
+    }
+}
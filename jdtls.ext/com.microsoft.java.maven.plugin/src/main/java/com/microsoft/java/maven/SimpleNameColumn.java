@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.context.IndexingContext;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A column derived from {@code MAVEN.CLASSNAMES}: for every artifact of the index the
+ * lower-cased simple class names packed into one array, plus the offsets of each entry in
+ * the original class-name buffer so matches can still be turned into full class names.
+ */
+class SimpleNameColumn {
+
+    private static final int MAGIC = 0x534e4331; // "SNC1"
+    private static final int FORMAT_VERSION = 2;
+
+    private final long indexTimestamp;
+    private final int documentCount;
+    private final Map<String, Entry> entries;
+
+    static class Entry {
+        // lower-cased simple names, name i spans [nameStarts[i], nameStarts[i + 1])
+        final char[] names;
+        final int[] nameStarts;
+        // bounds of the i-th entry inside ArtifactInfo.getClassNames()
+        final int[] lineStarts;
+        final int[] lineEnds;
+
+        Entry(char[] names, int[] nameStarts, int[] lineStarts, int[] lineEnds) {
+            this.names = names;
+            this.nameStarts = nameStarts;
+            this.lineStarts = lineStarts;
+            this.lineEnds = lineEnds;
+        }
+
+        int size() {
+            return lineStarts.length;
+        }
+
+        static Entry of(String classNames) {
+            final int length = classNames.length();
+            final char[] names = new char[length];
+            int count = 0;
+            int[] nameStarts = new int[16];
+            int[] lineStarts = new int[16];
+            int[] lineEnds = new int[16];
+            int position = 0;
+            int lineStart = 0;
+            while (lineStart < length) {
+                int lineEnd = classNames.indexOf('\n', lineStart);
+                if (lineEnd < 0) {
+                    lineEnd = length;
+                }
+                final int nameStart = Math.max(classNames.lastIndexOf('/', lineEnd - 1) + 1, lineStart);
+                if (nameStart < lineEnd) {
+                    if (count + 1 >= nameStarts.length) {
+                        nameStarts = Arrays.copyOf(nameStarts, nameStarts.length * 2);
+                        lineStarts = Arrays.copyOf(lineStarts, lineStarts.length * 2);
+                        lineEnds = Arrays.copyOf(lineEnds, lineEnds.length * 2);
+                    }
+                    nameStarts[count] = position;
+                    lineStarts[count] = lineStart;
+                    lineEnds[count] = lineEnd;
+                    for (int i = nameStart; i < lineEnd; i++) {
+                        names[position++] = Character.toLowerCase(classNames.charAt(i));
+                    }
+                    count++;
+                }
+                lineStart = lineEnd + 1;
+            }
+            nameStarts[count] = position;
+            return new Entry(Arrays.copyOf(names, position), Arrays.copyOf(nameStarts, count + 1),
+                    Arrays.copyOf(lineStarts, count), Arrays.copyOf(lineEnds, count));
+        }
+    }
+
+    private SimpleNameColumn(long indexTimestamp, int documentCount, Map<String, Entry> entries) {
+        this.indexTimestamp = indexTimestamp;
+        this.documentCount = documentCount;
+        this.entries = entries;
+    }
+
+    /**
+     * Returns the entry of the artifact with the given {@code ArtifactInfo.getUinfo()}, or null
+     * when the artifact is not part of the column.
+     */
+    Entry get(String uinfo) {
+        return uinfo == null ? null : entries.get(uinfo);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Loads the column persisted in {@code file} if it was derived from the current state of the
+     * index, otherwise derives it again from the index and persists it.
+     */
+    static SimpleNameColumn open(IndexingContext context, File file) throws IOException {
+        final long timestamp = timestampOf(context);
+        final int documentCount = documentCountOf(context);
+        if (file != null && file.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                final SimpleNameColumn column = read(in);
+                if (column != null && column.indexTimestamp == timestamp && column.documentCount == documentCount) {
+                    MetricsRegistry.getDefault().increment("index.column.cache.hit");
+                    return column;
+                }
+            } catch (IOException e) {
+                // corrupted or outdated, derive it again below
+            }
+        }
+        MetricsRegistry.getDefault().increment("index.column.cache.miss");
+        final SimpleNameColumn column;
+        try (MetricsRegistry.Timer timer = MetricsRegistry.getDefault().time("index.column.build")) {
+            column = build(context, timestamp, documentCount);
+        }
+        if (file != null) {
+            try {
+                column.write(file);
+            } catch (IOException e) {
+                // the column still works in memory, it will just be derived again next time
+            }
+        }
+        return column;
+    }
+
+    private static SimpleNameColumn build(IndexingContext context, long timestamp, int documentCount)
+            throws IOException {
+        final Map<String, Entry> entries = new HashMap<>();
+        final IndexSearcher searcher = context.acquireIndexSearcher();
+        try {
+            // the offsets are taken on the class names searches get, so they can be applied to them
+            IndexedClassNames.forEach(searcher.getIndexReader(), Collections.singleton(ArtifactInfo.UINFO),
+                (document, classNames) -> {
+                    final String uinfo = document.get(ArtifactInfo.UINFO);
+                    if (uinfo != null) {
+                        entries.put(uinfo, Entry.of(classNames));
+                    }
+                });
+        } finally {
+            context.releaseIndexSearcher(searcher);
+        }
+        return new SimpleNameColumn(timestamp, documentCount, entries);
+    }
+
+    private void write(File file) throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        final File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(indexTimestamp);
+            out.writeInt(documentCount);
+            out.writeInt(entries.size());
+            for (final Map.Entry<String, Entry> e : entries.entrySet()) {
+                final Entry entry = e.getValue();
+                writeString(out, e.getKey());
+                writeString(out, new String(entry.names));
+                out.writeInt(entry.size());
+                for (int i = 0; i < entry.size(); i++) {
+                    out.writeInt(entry.nameStarts[i]);
+                    out.writeInt(entry.lineStarts[i]);
+                    out.writeInt(entry.lineEnds[i]);
+                }
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static SimpleNameColumn read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+        final long timestamp = in.readLong();
+        final int documentCount = in.readInt();
+        final int size = in.readInt();
+        final Map<String, Entry> entries = new HashMap<>(size * 4 / 3 + 1);
+        for (int n = 0; n < size; n++) {
+            final String uinfo = readString(in);
+            final char[] names = readString(in).toCharArray();
+            final int count = in.readInt();
+            final int[] nameStarts = new int[count + 1];
+            final int[] lineStarts = new int[count];
+            final int[] lineEnds = new int[count];
+            for (int i = 0; i < count; i++) {
+                nameStarts[i] = in.readInt();
+                lineStarts[i] = in.readInt();
+                lineEnds[i] = in.readInt();
+            }
+            nameStarts[count] = names.length;
+            entries.put(uinfo, new Entry(names, nameStarts, lineStarts, lineEnds));
+        }
+        return new SimpleNameColumn(timestamp, documentCount, entries);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long timestampOf(IndexingContext context) {
+        return context.getTimestamp() == null ? 0 : context.getTimestamp().getTime();
+    }
+
+    private static int documentCountOf(IndexingContext context) throws IOException {
+        final IndexSearcher searcher = context.acquireIndexSearcher();
+        try {
+            return searcher.getIndexReader().numDocs();
+        } finally {
+            context.releaseIndexSearcher(searcher);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.maven.index.context.IndexingContext;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * A Bloom filter over every prefix of the lower-cased simple class names of an index context,
+ * telling in a few probes that no class name starts with a query. It may wrongly say that one
+ * does, about one query in a hundred, but never the other way around.
+ */
+class SimpleNameFilter {
+
+    private static final int MAGIC = 0x534e4631; // "SNF1"
+    private static final int FORMAT_VERSION = 1;
+    // about 1% of false positives with the optimal number of probes, 7
+    private static final int BITS_PER_PREFIX = 10;
+    private static final int PROBES = 7;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private final long indexTimestamp;
+    private final int documentCount;
+    private final long[] bits;
+
+    private SimpleNameFilter(long indexTimestamp, int documentCount, long[] bits) {
+        this.indexTimestamp = indexTimestamp;
+        this.documentCount = documentCount;
+        this.bits = bits;
+    }
+
+    /**
+     * Whether some class name may start with a lower-cased query, false only when none does.
+     */
+    boolean mightStartName(String lowerCaseQuery) {
+        if (lowerCaseQuery.isEmpty()) {
+            return true;
+        }
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < lowerCaseQuery.length(); i++) {
+            hash = next(hash, lowerCaseQuery.charAt(i));
+        }
+        return contains(hash);
+    }
+
+    private boolean contains(long hash) {
+        final long h1 = mix(hash);
+        final long h2 = mix(h1) | 1;
+        final long size = (long) bits.length * Long.SIZE;
+        for (int i = 0; i < PROBES; i++) {
+            final long bit = Long.remainderUnsigned(h1 + i * h2, size);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(long hash) {
+        final long h1 = mix(hash);
+        final long h2 = mix(h1) | 1;
+        final long size = (long) bits.length * Long.SIZE;
+        for (int i = 0; i < PROBES; i++) {
+            final long bit = Long.remainderUnsigned(h1 + i * h2, size);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * FNV-1a, one character at a time: the hash of each prefix of a name comes from the hash of
+     * the previous one.
+     */
+    private static long next(long hash, char c) {
+        return (hash ^ c) * 0x100000001b3L;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+
+    /**
+     * Loads the filter persisted in {@code file} if it was built from the current state of the
+     * index, otherwise builds it again from the names of the name index and persists it.
+     */
+    static SimpleNameFilter open(IndexingContext context, File file, SimpleNameIndex names) throws IOException {
+        final long timestamp = context.getTimestamp() == null ? 0 : context.getTimestamp().getTime();
+        final int documentCount;
+        final IndexSearcher searcher = context.acquireIndexSearcher();
+        try {
+            documentCount = searcher.getIndexReader().numDocs();
+        } finally {
+            context.releaseIndexSearcher(searcher);
+        }
+        if (file != null && file.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() == MAGIC && in.readInt() == FORMAT_VERSION && in.readLong() == timestamp &&
+                        in.readInt() == documentCount) {
+                    final long[] bits = new long[in.readInt()];
+                    for (int i = 0; i < bits.length; i++) {
+                        bits[i] = in.readLong();
+                    }
+                    MetricsRegistry.getDefault().increment("index.filter.cache.hit");
+                    return new SimpleNameFilter(timestamp, documentCount, bits);
+                }
+            } catch (IOException e) {
+                // corrupted or outdated, build it again below
+            }
+        }
+        MetricsRegistry.getDefault().increment("index.filter.cache.miss");
+        final SimpleNameFilter filter;
+        try (MetricsRegistry.Timer timer = MetricsRegistry.getDefault().time("index.filter.build")) {
+            filter = build(timestamp, documentCount, names.lowerCaseNames());
+        }
+        if (file != null) {
+            try {
+                filter.write(file);
+            } catch (IOException e) {
+                // the filter still works in memory, it will just be built again next time
+            }
+        }
+        return filter;
+    }
+
+    static SimpleNameFilter build(long timestamp, int documentCount, String[] lowerCaseNames) {
+        final String[] sorted = lowerCaseNames.clone();
+        Arrays.sort(sorted);
+        // sorted names share their prefixes with the previous one, count each distinct prefix once
+        long prefixCount = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            prefixCount += sorted[i].length() - (i == 0 ? 0 : commonPrefixLength(sorted[i - 1], sorted[i]));
+        }
+        final long wordCount = Math.max(1, (prefixCount * BITS_PER_PREFIX + Long.SIZE - 1) / Long.SIZE);
+        final SimpleNameFilter filter = new SimpleNameFilter(timestamp, documentCount,
+                new long[(int) Math.min(wordCount, Integer.MAX_VALUE - 8)]);
+        for (int i = 0; i < sorted.length; i++) {
+            final String name = sorted[i];
+            final int known = i == 0 ? 0 : commonPrefixLength(sorted[i - 1], name);
+            long hash = FNV_OFFSET;
+            for (int j = 0; j < name.length(); j++) {
+                hash = next(hash, name.charAt(j));
+                if (j >= known) {
+                    filter.add(hash);
+                }
+            }
+        }
+        return filter;
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        final int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private void write(File file) throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        final File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(indexTimestamp);
+            out.writeInt(documentCount);
+            out.writeInt(bits.length);
+            for (final long word : bits) {
+                out.writeLong(word);
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,366 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.maven.index.context.IndexingContext;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An index over the distinct simple class names of an index context, for the queries prefix and
+ * fuzzy matching cannot answer. CamelCase abbreviations ("SBApp" for SpringBootApplication) are
+ * answered by intersecting the names whose n-th hump starts with the n-th hump initial of the
+ * query, infixes ("mapper" in ObjectMapper) by intersecting the names containing each trigram
+ * of the query. Candidates are then verified, so the postings only have to be a superset.
+ *
+ * <p>Only the names are persisted, the postings are derived from them when loading.
+ */
+class SimpleNameIndex {
+
+    private static final int MAGIC = 0x534e4931; // "SNI1"
+    private static final int FORMAT_VERSION = 1;
+    // humps indexed by position, later humps of a query are only verified
+    private static final int HUMP_POSITIONS = 4;
+    // names returned at most per query, the shortest ones being the closest to the query
+    static final int MAX_CANDIDATES = 256;
+
+    private final long indexTimestamp;
+    private final int documentCount;
+    // distinct simple names as written, sorted, the position being the id used in the postings
+    private final String[] names;
+    private final String[] lowerCaseNames;
+    // position * 65536 + upper-cased hump initial -> ids of the names with that hump
+    private final Map<Integer, int[]> humpPostings;
+    // three lower-cased characters packed in a long -> ids of the names containing them
+    private final Map<Long, int[]> trigramPostings;
+
+    SimpleNameIndex(long indexTimestamp, int documentCount, String[] names) {
+        this.indexTimestamp = indexTimestamp;
+        this.documentCount = documentCount;
+        this.names = names;
+        this.lowerCaseNames = new String[names.length];
+        final Map<Integer, IntList> humps = new HashMap<>();
+        final Map<Long, IntList> trigrams = new HashMap<>();
+        for (int id = 0; id < names.length; id++) {
+            final String name = names[id];
+            final String lowerCaseName = name.toLowerCase();
+            lowerCaseNames[id] = lowerCaseName;
+            final List<String> nameHumps = humpsOf(name);
+            for (int position = 0; position < Math.min(HUMP_POSITIONS, nameHumps.size()); position++) {
+                humps.computeIfAbsent(humpKey(position, nameHumps.get(position).charAt(0)), k -> new IntList())
+                        .addUnique(id);
+            }
+            for (int i = 0; i + 3 <= lowerCaseName.length(); i++) {
+                trigrams.computeIfAbsent(trigramKey(lowerCaseName, i), k -> new IntList()).addUnique(id);
+            }
+        }
+        this.humpPostings = toArrays(humps);
+        this.trigramPostings = toArrays(trigrams);
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    /**
+     * The lower-cased names, two names differing in case only giving the same one twice. Not to
+     * be modified.
+     */
+    String[] lowerCaseNames() {
+        return lowerCaseNames;
+    }
+
+    /**
+     * Whether some name as long as a lower-cased query, or up to {@code maxDistance} characters
+     * longer, may be within {@code maxDistance} edits of it: the names fuzzy matching accepts.
+     * Such a name contains unchanged one of the maxDistance + 1 pieces the query is cut
+     * into, so this is false only when no name of the right length contains any of them, and
+     * always true when the pieces are too short to be looked up by trigram.
+     */
+    boolean mayBeWithinDistance(String lowerCaseQuery, int maxDistance) {
+        final int length = lowerCaseQuery.length();
+        final int pieces = maxDistance + 1;
+        if (length < pieces * 3) {
+            return true;
+        }
+        for (int piece = 0; piece < pieces; piece++) {
+            final int start = length * piece / pieces;
+            final int end = length * (piece + 1) / pieces;
+            final String text = lowerCaseQuery.substring(start, end);
+            final List<int[]> postings = new ArrayList<>();
+            for (int i = start; i + 3 <= end; i++) {
+                postings.add(trigramPostings.get(trigramKey(lowerCaseQuery, i)));
+            }
+            for (final int id : intersect(postings)) {
+                final String name = lowerCaseNames[id];
+                if (name.length() >= length && name.length() - length <= maxDistance && name.contains(text)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the names a query typed as a simple class name may stand for, other than those it is
+     * a prefix of: the names matching it as a CamelCase abbreviation are returned with
+     * {@link ArtifactResult#PREFIX}, the names containing it with {@link ArtifactResult#FUZZY}.
+     * The result is keyed by lower-cased name.
+     */
+    Map<String, Integer> find(String query) {
+        final Map<String, Integer> result = new LinkedHashMap<>();
+        final List<String> queryHumps = humpsOf(query);
+        if (queryHumps.size() >= 2) {
+            final List<int[]> postings = new ArrayList<>();
+            for (int position = 0; position < Math.min(HUMP_POSITIONS, queryHumps.size()); position++) {
+                postings.add(humpPostings.get(humpKey(position, queryHumps.get(position).charAt(0))));
+            }
+            for (final int id : shortest(intersect(postings), candidate -> matchesHumps(queryHumps, candidate))) {
+                result.put(lowerCaseNames[id], ArtifactResult.PREFIX);
+            }
+        }
+        final String lowerCaseQuery = query.toLowerCase();
+        if (lowerCaseQuery.length() >= 3) {
+            final List<int[]> postings = new ArrayList<>();
+            for (int i = 0; i + 3 <= lowerCaseQuery.length(); i++) {
+                postings.add(trigramPostings.get(trigramKey(lowerCaseQuery, i)));
+            }
+            for (final int id : shortest(intersect(postings), candidate ->
+                    lowerCaseNames[candidate].indexOf(lowerCaseQuery) > 0)) {
+                result.putIfAbsent(lowerCaseNames[id], ArtifactResult.FUZZY);
+            }
+        }
+        return result;
+    }
+
+    private boolean matchesHumps(List<String> queryHumps, int id) {
+        final List<String> nameHumps = humpsOf(names[id]);
+        if (nameHumps.size() < queryHumps.size()) {
+            return false;
+        }
+        for (int i = 0; i < queryHumps.size(); i++) {
+            final String queryHump = queryHumps.get(i);
+            if (!nameHumps.get(i).regionMatches(true, 0, queryHump, 0, queryHump.length())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private interface Verifier {
+        boolean accept(int id);
+    }
+
+    /**
+     * Keeps the verified candidates, the shortest names first when there are too many of them.
+     */
+    private List<Integer> shortest(int[] candidates, Verifier verifier) {
+        final List<Integer> verified = new ArrayList<>();
+        for (final int id : candidates) {
+            if (verifier.accept(id)) {
+                verified.add(id);
+            }
+        }
+        if (verified.size() > MAX_CANDIDATES) {
+            Collections.sort(verified, Comparator.comparingInt((Integer id) -> names[id].length())
+                    .thenComparingInt(id -> id));
+            return verified.subList(0, MAX_CANDIDATES);
+        }
+        return verified;
+    }
+
+    /**
+     * Intersects sorted posting lists, walking the shortest one and looking the ids up in the others.
+     */
+    private static int[] intersect(List<int[]> postings) {
+        for (final int[] posting : postings) {
+            if (posting == null) {
+                return new int[0];
+            }
+        }
+        postings.sort(Comparator.comparingInt(posting -> posting.length));
+        final IntList result = new IntList();
+        candidates:
+        for (final int id : postings.get(0)) {
+            for (int i = 1; i < postings.size(); i++) {
+                if (Arrays.binarySearch(postings.get(i), id) < 0) {
+                    continue candidates;
+                }
+            }
+            result.add(id);
+        }
+        return result.toArray();
+    }
+
+    /**
+     * Splits a name before each upper-case letter and after each '$' or '_', e.g. "XMLParser" into
+     * X, M, L and Parser, the way abbreviations are typed.
+     */
+    static List<String> humpsOf(String name) {
+        final List<String> humps = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= name.length(); i++) {
+            if (i == name.length() || Character.isUpperCase(name.charAt(i)) || name.charAt(i) == '$' ||
+                    name.charAt(i) == '_') {
+                if (start < i) {
+                    humps.add(name.substring(start, i));
+                }
+                start = i < name.length() && (name.charAt(i) == '$' || name.charAt(i) == '_') ? i + 1 : i;
+            }
+        }
+        return humps;
+    }
+
+    private static int humpKey(int position, char initial) {
+        return position * 65536 + Character.toUpperCase(initial);
+    }
+
+    private static long trigramKey(String lowerCaseText, int start) {
+        return ((long) lowerCaseText.charAt(start) << 32) | ((long) lowerCaseText.charAt(start + 1) << 16) |
+                lowerCaseText.charAt(start + 2);
+    }
+
+    private static <K> Map<K, int[]> toArrays(Map<K, IntList> lists) {
+        final Map<K, int[]> arrays = new HashMap<>(lists.size() * 4 / 3 + 1);
+        for (final Map.Entry<K, IntList> entry : lists.entrySet()) {
+            arrays.put(entry.getKey(), entry.getValue().toArray());
+        }
+        return arrays;
+    }
+
+    /**
+     * Loads the names persisted in {@code file} if they were read from the current state of the
+     * index, otherwise reads them again from the index and persists them.
+     */
+    static SimpleNameIndex open(IndexingContext context, File file) throws IOException {
+        final long timestamp = context.getTimestamp() == null ? 0 : context.getTimestamp().getTime();
+        final IndexSearcher searcher = context.acquireIndexSearcher();
+        try {
+            final int documentCount = searcher.getIndexReader().numDocs();
+            if (file != null && file.isFile()) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                    if (in.readInt() == MAGIC && in.readInt() == FORMAT_VERSION && in.readLong() == timestamp &&
+                            in.readInt() == documentCount) {
+                        final String[] names = new String[in.readInt()];
+                        for (int i = 0; i < names.length; i++) {
+                            names[i] = in.readUTF();
+                        }
+                        MetricsRegistry.getDefault().increment("index.names.cache.hit");
+                        return new SimpleNameIndex(timestamp, documentCount, names);
+                    }
+                } catch (IOException e) {
+                    // corrupted or outdated, read the names again below
+                }
+            }
+            MetricsRegistry.getDefault().increment("index.names.cache.miss");
+            final SimpleNameIndex index;
+            try (MetricsRegistry.Timer timer = MetricsRegistry.getDefault().time("index.names.build")) {
+                index = new SimpleNameIndex(timestamp, documentCount, readNames(searcher.getIndexReader()));
+            }
+            if (file != null) {
+                try {
+                    index.write(file);
+                } catch (IOException e) {
+                    // the index still works in memory, the names will just be read again next time
+                }
+            }
+            return index;
+        } finally {
+            context.releaseIndexSearcher(searcher);
+        }
+    }
+
+    private static String[] readNames(IndexReader reader) throws IOException {
+        final Set<String> names = new TreeSet<>();
+        IndexedClassNames.forEach(reader, Collections.emptySet(), (document, classNames) -> {
+            int lineStart = 0;
+            while (lineStart < classNames.length()) {
+                int lineEnd = classNames.indexOf('\n', lineStart);
+                if (lineEnd < 0) {
+                    lineEnd = classNames.length();
+                }
+                final int nameStart = Math.max(classNames.lastIndexOf('/', lineEnd - 1) + 1, lineStart);
+                if (nameStart < lineEnd) {
+                    names.add(classNames.substring(nameStart, lineEnd));
+                }
+                lineStart = lineEnd + 1;
+            }
+        });
+        return names.toArray(new String[names.size()]);
+    }
+
+    private void write(File file) throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        final File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(indexTimestamp);
+            out.writeInt(documentCount);
+            out.writeInt(names.length);
+            for (final String name : names) {
+                out.writeUTF(name);
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * A growable array of ids, added in increasing order.
+     */
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        // a name contains the same trigram several times
+        void addUnique(int value) {
+            if (size == 0 || values[size - 1] != value) {
+                add(value);
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
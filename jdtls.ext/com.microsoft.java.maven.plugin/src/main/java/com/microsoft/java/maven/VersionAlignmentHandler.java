@@ -0,0 +1,297 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.jdt.ls.core.internal.ResourceUtils;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextEdit;
+import org.eclipse.lsp4j.WorkspaceEdit;
+import org.eclipse.m2e.core.MavenPlugin;
+import org.eclipse.m2e.core.project.IMavenProjectFacade;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes the edit setting one version for an artifact across all workspace poms. The poms are
+ * read in one parallel SAX pass. Where a pom or one of its workspace ancestors manages the
+ * artifact outside of profiles, and the managed version can be changed in the workspace, it is
+ * changed and the versions overriding it are removed, so that the managing pom decides; other
+ * declarations get the version themselves. Versions given by a property are changed where the
+ * property is defined, which aligns every artifact using it.
+ */
+public class VersionAlignmentHandler {
+
+    private static final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    // ancestors followed at most, in case of a parent cycle in broken poms
+    private static final int MAX_DEPTH = 32;
+
+    private static class Pom {
+        final String path;
+        final String content;
+        final PomDeclarationHandler declarations;
+        // offset of the start of each line of the content
+        final int[] lineOffsets;
+
+        Pom(String path, String content, PomDeclarationHandler declarations) {
+            this.path = path;
+            this.content = content;
+            this.declarations = declarations;
+            final List<Integer> offsets = new ArrayList<>();
+            offsets.add(0);
+            for (int i = 0; i < content.length(); i++) {
+                if (content.charAt(i) == '\n') {
+                    offsets.add(i + 1);
+                }
+            }
+            this.lineOffsets = offsets.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        int offsetOf(Position position) {
+            return Math.min(content.length(), lineOffsets[position.getLine()] + position.getCharacter());
+        }
+
+        Position positionOf(int offset) {
+            final int found = Arrays.binarySearch(lineOffsets, offset);
+            final int line = found >= 0 ? found : -found - 2;
+            return new Position(line, offset - lineOffsets[line]);
+        }
+    }
+
+    private static class ManagingDeclaration {
+        final Pom pom;
+        final PomDeclarationHandler.Declaration declaration;
+
+        ManagingDeclaration(Pom pom, PomDeclarationHandler.Declaration declaration) {
+            this.pom = pom;
+            this.declaration = declaration;
+        }
+    }
+
+    private static class DefinedProperty {
+        final Pom pom;
+        final PomDeclarationHandler.Property property;
+
+        DefinedProperty(Pom pom, PomDeclarationHandler.Property property) {
+            this.pom = pom;
+            this.property = property;
+        }
+    }
+
+    /**
+     * Returns the edit aligning groupId:artifactId to version in the given poms, every pom of the
+     * workspace when pomPaths is null. The edit is empty when nothing needs to change.
+     */
+    public static WorkspaceEdit alignVersion(String groupId, String artifactId, String version, List<String> pomPaths,
+            IProgressMonitor monitor) {
+        try (MetricsRegistry.Timer timer = metrics.time("alignment")) {
+            if (pomPaths == null) {
+                pomPaths = new ArrayList<>();
+                for (final IMavenProjectFacade facade : MavenPlugin.getMavenProjectRegistry().getProjects()) {
+                    pomPaths.add(facade.getPomFile().getAbsolutePath());
+                }
+            }
+            final Map<String, Pom> poms = parse(pomPaths);
+            checkCanceled(monitor);
+            // g:a of each workspace pom, to follow parents without resolving the projects
+            final Map<String, Pom> byCoordinates = new HashMap<>();
+            for (final Pom pom : poms.values()) {
+                final PomDeclarationHandler.Declaration parent = pom.declarations.getParent();
+                final String pomGroupId = pom.declarations.groupId != null ? pom.declarations.groupId :
+                        parent != null ? parent.groupId : null;
+                if (pomGroupId != null && pom.declarations.artifactId != null) {
+                    byCoordinates.putIfAbsent(pomGroupId + ":" + pom.declarations.artifactId, pom);
+                }
+            }
+
+            final Map<String, List<TextEdit>> changes = new TreeMap<>();
+            final Set<String> edited = new HashSet<>();
+            for (final Pom pom : poms.values()) {
+                for (final PomDeclarationHandler.Declaration declaration : pom.declarations.declarations) {
+                    if (!groupId.equals(declaration.groupId) || !artifactId.equals(declaration.artifactId) ||
+                            PomDeclarationHandler.PARENT.equals(declaration.kind) || declaration.version == null ||
+                            declaration.version.isEmpty()) {
+                        continue;
+                    }
+                    final String managedKind = getManagedKind(declaration.kind);
+                    final ManagingDeclaration managing = managedKind == null ? null :
+                            findManagement(pom, managedKind, groupId, artifactId, byCoordinates);
+                    // a managed version coming from outside the workspace is left alone, and so are its overrides
+                    if (managing != null && canSetVersion(managing.pom, managing.declaration, byCoordinates)) {
+                        if (!version.equals(resolveVersion(pom, declaration.version, byCoordinates))) {
+                            addEdit(changes, edited, pom, removeVersion(pom, declaration), "");
+                        }
+                    } else {
+                        setVersion(changes, edited, pom, declaration, version, byCoordinates);
+                    }
+                }
+            }
+            int count = 0;
+            for (final List<TextEdit> edits : changes.values()) {
+                count += edits.size();
+            }
+            metrics.add("alignment.edits", count);
+            return new WorkspaceEdit(changes);
+        }
+    }
+
+    private static Map<String, Pom> parse(List<String> pomPaths) {
+        final Map<String, Pom> poms = new ConcurrentHashMap<>();
+        pomPaths.parallelStream().distinct().forEach(pomPath -> {
+            try {
+                final String content = new String(Files.readAllBytes(new File(pomPath).toPath()),
+                        StandardCharsets.UTF_8);
+                poms.put(pomPath, new Pom(pomPath, content, PomDeclarationHandler.parse(content)));
+            } catch (IOException | SAXException e) {
+                // a pom that cannot be read is left untouched
+                metrics.increment("alignment.pom.unreadable");
+            }
+        });
+        return new TreeMap<>(poms);
+    }
+
+    private static String getManagedKind(String kind) {
+        if (PomDeclarationHandler.DEPENDENCY.equals(kind)) {
+            return PomDeclarationHandler.MANAGED_DEPENDENCY;
+        } else if (PomDeclarationHandler.PLUGIN.equals(kind)) {
+            return PomDeclarationHandler.MANAGED_PLUGIN;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the nearest declaration managing the version of the artifact in the pom or one of its
+     * workspace ancestors, or null when none does. Management in profiles is ignored, as it only
+     * applies when the profile is active.
+     */
+    private static ManagingDeclaration findManagement(Pom pom, String managedKind, String groupId,
+            String artifactId, Map<String, Pom> byCoordinates) {
+        for (int depth = 0; pom != null && depth < MAX_DEPTH; depth++) {
+            for (final PomDeclarationHandler.Declaration declaration : pom.declarations.declarations) {
+                if (managedKind.equals(declaration.kind) && !declaration.inProfile &&
+                        groupId.equals(declaration.groupId) && artifactId.equals(declaration.artifactId) &&
+                        declaration.version != null) {
+                    return new ManagingDeclaration(pom, declaration);
+                }
+            }
+            pom = getParent(pom, byCoordinates);
+        }
+        return null;
+    }
+
+    private static Pom getParent(Pom pom, Map<String, Pom> byCoordinates) {
+        final PomDeclarationHandler.Declaration parent = pom.declarations.getParent();
+        return parent == null ? null : byCoordinates.get(parent.groupId + ":" + parent.artifactId);
+    }
+
+    /**
+     * Finds the property a version refers to in the pom itself or a workspace ancestor, or returns
+     * null when the version is not a property defined in the workspace.
+     */
+    private static DefinedProperty findProperty(Pom pom, String version, Map<String, Pom> byCoordinates) {
+        for (int depth = 0; pom != null && depth < MAX_DEPTH; depth++) {
+            final PomDeclarationHandler.Property property = pom.declarations.getReferencedProperty(version);
+            if (property != null) {
+                return new DefinedProperty(pom, property);
+            }
+            pom = getParent(pom, byCoordinates);
+        }
+        return null;
+    }
+
+    private static String resolveVersion(Pom pom, String version, Map<String, Pom> byCoordinates) {
+        final DefinedProperty found = findProperty(pom, version, byCoordinates);
+        return found == null ? version : found.property.value;
+    }
+
+    /**
+     * Whether {@link #setVersion} can change the version of a declaration: it is either a literal
+     * or a property defined in the workspace.
+     */
+    private static boolean canSetVersion(Pom pom, PomDeclarationHandler.Declaration declaration,
+            Map<String, Pom> byCoordinates) {
+        final DefinedProperty found = findProperty(pom, declaration.version, byCoordinates);
+        if (found != null) {
+            return found.property.range != null;
+        }
+        return !declaration.version.contains("${") && declaration.versionRange != null;
+    }
+
+    private static void setVersion(Map<String, List<TextEdit>> changes, Set<String> edited, Pom pom,
+            PomDeclarationHandler.Declaration declaration, String version, Map<String, Pom> byCoordinates) {
+        final DefinedProperty found = findProperty(pom, declaration.version, byCoordinates);
+        if (found != null) {
+            if (!version.equals(found.property.value) && found.property.range != null) {
+                addEdit(changes, edited, found.pom, found.property.range, version);
+            }
+        } else if (!declaration.version.contains("${") && !version.equals(declaration.version) &&
+                declaration.versionRange != null) {
+            addEdit(changes, edited, pom, declaration.versionRange, version);
+        }
+    }
+
+    /**
+     * The range of the whole version element of a declaration, with its line when nothing else is
+     * on it.
+     */
+    private static Range removeVersion(Pom pom, PomDeclarationHandler.Declaration declaration) {
+        final String content = pom.content;
+        int start = content.lastIndexOf('<', pom.offsetOf(declaration.versionRange.getStart()));
+        int end = content.indexOf('>', pom.offsetOf(declaration.versionRange.getEnd()));
+        end = end < 0 ? content.length() : end + 1;
+        int lineStart = start;
+        while (lineStart > 0 && (content.charAt(lineStart - 1) == ' ' || content.charAt(lineStart - 1) == '\t')) {
+            lineStart--;
+        }
+        int lineEnd = end;
+        while (lineEnd < content.length() && (content.charAt(lineEnd) == ' ' || content.charAt(lineEnd) == '\t' ||
+                content.charAt(lineEnd) == '\r')) {
+            lineEnd++;
+        }
+        if ((lineStart == 0 || content.charAt(lineStart - 1) == '\n') &&
+                (lineEnd == content.length() || content.charAt(lineEnd) == '\n')) {
+            start = lineStart;
+            end = Math.min(content.length(), lineEnd + 1);
+        }
+        return new Range(pom.positionOf(start), pom.positionOf(end));
+    }
+
+    private static void addEdit(Map<String, List<TextEdit>> changes, Set<String> edited, Pom pom, Range range,
+            String text) {
+        final String uri = ResourceUtils.fixURI(new File(pom.path).toURI());
+        // several declarations may share a property
+        if (edited.add(uri + range)) {
+            changes.computeIfAbsent(uri, k -> new ArrayList<>()).add(new TextEdit(range, text));
+        }
+    }
+
+    private static void checkCanceled(IProgressMonitor monitor) {
+        if (monitor != null && monitor.isCanceled()) {
+            throw new OperationCanceledException();
+        }
+    }
+}
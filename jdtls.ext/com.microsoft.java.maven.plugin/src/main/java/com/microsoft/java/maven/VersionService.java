@@ -0,0 +1,373 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.eclipse.aether.util.version.GenericVersionScheme;
+import org.eclipse.aether.version.InvalidVersionSpecificationException;
+import org.eclipse.aether.version.Version;
+import org.eclipse.m2e.core.MavenPlugin;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lists the known versions of an artifact, merging the local repository (its version folders and
+ * {@code maven-metadata-*.xml} files), the bundled index and a persistent cache of the remote
+ * {@code maven-metadata.xml}, ordered the way Maven orders versions. Answers are kept in memory
+ * until the local repository folder of the artifact changes or the remote copy expires. Interactive
+ * callers get what is known right away while the remote copy is refreshed in the background.
+ */
+public class VersionService {
+
+    static final String CENTRAL_URL = "https://repo1.maven.org/maven2/";
+    static final String METADATA_FILE = "maven-metadata.xml";
+    private static final long REMOTE_TTL_MILLIS = TimeUnit.HOURS.toMillis(12);
+    // after a failed download, do not try again on every keystroke
+    private static final long REMOTE_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static VersionService defaultService;
+
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final GenericVersionScheme versionScheme = new GenericVersionScheme();
+    private final Map<String, CachedVersions> cache = new ConcurrentHashMap<>();
+    // artifacts whose remote metadata is being downloaded in the background
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "Maven Versions");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final File localRepository;
+    private final String remoteUrl;
+    private final File cacheDirectory;
+    private OkHttpClient client;
+
+    private static class CachedVersions {
+        final long localStamp;
+        // when the remote metadata was last downloaded or read from the persistent cache, 0 if never
+        final long remoteCheckedAt;
+        final ArtifactVersions versions;
+
+        CachedVersions(long localStamp, long remoteCheckedAt, ArtifactVersions versions) {
+            this.localStamp = localStamp;
+            this.remoteCheckedAt = remoteCheckedAt;
+            this.versions = versions;
+        }
+    }
+
+    /**
+     * @param localRepository the local repository, e.g. ~/.m2/repository
+     * @param remoteUrl the remote repository, ending with '/'
+     * @param cacheDirectory where remote metadata is persisted, null to keep it in memory only
+     */
+    VersionService(File localRepository, String remoteUrl, File cacheDirectory) {
+        this.localRepository = localRepository;
+        this.remoteUrl = remoteUrl;
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    public static synchronized VersionService getDefault() {
+        if (defaultService == null) {
+            defaultService = new VersionService(new File(MavenPlugin.getMaven().getLocalRepositoryPath()),
+                    CENTRAL_URL, PluginActivator.getStateFile("metadata"));
+        }
+        return defaultService;
+    }
+
+    /**
+     * Returns the versions of the given artifact, newest first. With {@code remote} false only what
+     * is available locally (including previously downloaded metadata) is used.
+     */
+    public ArtifactVersions getVersions(String groupId, String artifactId, boolean remote) {
+        final String key = groupId + ":" + artifactId;
+        final File localFolder = getArtifactFolder(localRepository, groupId, artifactId);
+        final long localStamp = localFolder.lastModified();
+        final long now = System.currentTimeMillis();
+        final CachedVersions cached = cache.get(key);
+        if (cached != null && cached.localStamp == localStamp &&
+                (!remote || now - cached.remoteCheckedAt < REMOTE_TTL_MILLIS)) {
+            metrics.increment("versions.cache.hit");
+            return cached.versions;
+        }
+        metrics.increment("versions.cache.miss");
+        try (MetricsRegistry.Timer timer = metrics.time("versions.collect")) {
+            final Set<String> versions = new HashSet<>();
+            collectLocalVersions(localFolder, artifactId, versions);
+            versions.addAll(ArtifactSearcher.getIndexedVersions(groupId, artifactId));
+            long remoteCheckedAt = cached == null ? 0 : cached.remoteCheckedAt;
+            final RemoteMetadata remoteMetadata = getRemoteMetadata(groupId, artifactId, remote, now);
+            if (remoteMetadata != null) {
+                versions.addAll(remoteMetadata.versions);
+                remoteCheckedAt = remoteMetadata.checkedAt;
+            }
+            final ArtifactVersions result = new ArtifactVersions(groupId, artifactId, sort(versions));
+            cache.put(key, new CachedVersions(localStamp, remoteCheckedAt, result));
+            return result;
+        }
+    }
+
+    /**
+     * Returns the versions of the given artifact known without waiting for the network, newest
+     * first, and downloads the remote metadata in the background when the cached copy expired so
+     * that the next call lists the remote versions too.
+     */
+    public ArtifactVersions getVersionsWithoutWaiting(String groupId, String artifactId) {
+        final ArtifactVersions versions = getVersions(groupId, artifactId, false);
+        final CachedVersions cached = cache.get(groupId + ":" + artifactId);
+        if (cached == null || System.currentTimeMillis() - cached.remoteCheckedAt >= REMOTE_TTL_MILLIS) {
+            refreshInBackground(groupId, artifactId);
+        }
+        return versions;
+    }
+
+    private void refreshInBackground(String groupId, String artifactId) {
+        final String key = groupId + ":" + artifactId;
+        if (!refreshing.add(key)) {
+            return;
+        }
+        metrics.increment("versions.remote.background");
+        try {
+            refresher.execute(() -> {
+                try {
+                    getVersions(groupId, artifactId, true);
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+        }
+    }
+
+    /**
+     * Orders versions newest first, with Maven's rules (e.g. 1.10 after 1.9, 1.0-beta before 1.0).
+     */
+    List<String> sort(Collection<String> versions) {
+        final List<Version> parsed = new ArrayList<>(versions.size());
+        for (final String version : versions) {
+            try {
+                parsed.add(versionScheme.parseVersion(version));
+            } catch (InvalidVersionSpecificationException e) {
+                // not a version, e.g. a stray folder of the local repository
+            }
+        }
+        Collections.sort(parsed, Collections.reverseOrder());
+        final List<String> result = new ArrayList<>(parsed.size());
+        for (final Version version : parsed) {
+            result.add(version.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Whether {@code candidate} comes after {@code current} in Maven's order, false when either is
+     * not a version.
+     */
+    boolean isNewer(String candidate, String current) {
+        if (candidate == null || current == null) {
+            return false;
+        }
+        try {
+            final Version newer = versionScheme.parseVersion(candidate);
+            return newer.compareTo(versionScheme.parseVersion(current)) > 0;
+        } catch (InvalidVersionSpecificationException e) {
+            return false;
+        }
+    }
+
+    private static void collectLocalVersions(File folder, String artifactId, Set<String> versions) {
+        final File[] children = folder.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (final File child : children) {
+            final String name = child.getName();
+            if (child.isDirectory()) {
+                // a version folder holds at least the pom once the artifact was downloaded or installed
+                if (new File(child, artifactId + "-" + name + ".pom").isFile()) {
+                    versions.add(name);
+                }
+            } else if (name.startsWith("maven-metadata") && name.endsWith(".xml")) {
+                // a half-written or corrupted file is skipped, the version folders are still there
+                versions.addAll(readMetadataQuietly(child));
+            }
+        }
+    }
+
+    private static class RemoteMetadata {
+        final List<String> versions;
+        final long checkedAt;
+
+        RemoteMetadata(List<String> versions, long checkedAt) {
+            this.versions = versions;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    private RemoteMetadata getRemoteMetadata(String groupId, String artifactId, boolean remote, long now) {
+        final File cacheFile = cacheDirectory == null ? null :
+                new File(getArtifactFolder(cacheDirectory, groupId, artifactId), METADATA_FILE);
+        final boolean cached = cacheFile != null && cacheFile.isFile();
+        if (remote && !(cached && now - cacheFile.lastModified() < REMOTE_TTL_MILLIS)) {
+            final byte[] content = download(groupId, artifactId);
+            if (content != null) {
+                writeCacheFile(cacheFile, content);
+                return new RemoteMetadata(parseMetadataQuietly(new ByteArrayInputStream(content)), now);
+            }
+            // unreachable: serve the stale copy, if any, and try again after a while
+            final List<String> stale = cached ? readMetadataQuietly(cacheFile) : Collections.emptyList();
+            return new RemoteMetadata(stale, now - REMOTE_TTL_MILLIS + REMOTE_RETRY_MILLIS);
+        }
+        return cached ? new RemoteMetadata(readMetadataQuietly(cacheFile), cacheFile.lastModified()) : null;
+    }
+
+    /**
+     * Downloads the remote metadata, an artifact unknown to the remote repository yielding an empty
+     * document so that it is cached too. Returns null when the repository cannot be reached.
+     */
+    byte[] download(String groupId, String artifactId) {
+        final String url = remoteUrl + groupId.replace('.', '/') + "/" + artifactId + "/" + METADATA_FILE;
+        try (MetricsRegistry.Timer timer = metrics.time("versions.remote")) {
+            try (Response response = getClient().newCall(new Request.Builder().url(url).build()).execute()) {
+                if (response.code() == 404) {
+                    return "<metadata/>".getBytes(StandardCharsets.UTF_8);
+                }
+                if (!response.isSuccessful() || response.body() == null) {
+                    timer.fail();
+                    return null;
+                }
+                return response.body().bytes();
+            } catch (IOException | IllegalArgumentException e) {
+                timer.fail();
+                return null;
+            }
+        }
+    }
+
+    private synchronized OkHttpClient getClient() {
+        if (client == null) {
+            client = new OkHttpClient.Builder().connectTimeout(3, TimeUnit.SECONDS)
+                    .readTimeout(3, TimeUnit.SECONDS).build();
+        }
+        return client;
+    }
+
+    private static void writeCacheFile(File file, byte[] content) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            final File temp = new File(file.getPath() + ".tmp");
+            Files.write(temp.toPath(), content);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // the content is still used for this call
+        }
+    }
+
+    static File getArtifactFolder(File repository, String groupId, String artifactId) {
+        return new File(new File(repository, groupId.replace('.', File.separatorChar)), artifactId);
+    }
+
+    /**
+     * Reads the versions listed by a {@code maven-metadata.xml} document.
+     */
+    static List<String> parseMetadata(InputStream in) throws IOException, SAXException {
+        final MetadataHandler handler = new MetadataHandler();
+        try {
+            final SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            final SAXParser parser = factory.newSAXParser();
+            parser.parse(in, handler);
+        } catch (ParserConfigurationException e) {
+            throw new SAXException(e);
+        }
+        return handler.versions;
+    }
+
+    private static List<String> readMetadataQuietly(File file) {
+        try (InputStream in = new FileInputStream(file)) {
+            return parseMetadataQuietly(in);
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static List<String> parseMetadataQuietly(InputStream in) {
+        try {
+            return parseMetadata(in);
+        } catch (IOException | SAXException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static class MetadataHandler extends DefaultHandler {
+        final List<String> versions = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+        private boolean inVersions = false;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if ("versions".equals(qName)) {
+                inVersions = true;
+            }
+            text.setLength(0);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            text.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if ("versions".equals(qName)) {
+                inVersions = false;
+            } else if (inVersions && "version".equals(qName)) {
+                final String version = text.toString().trim();
+                if (!version.isEmpty()) {
+                    versions.add(version);
+                }
+            }
+            text.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven.handler;
+
+import com.microsoft.java.maven.BuildEvent;
+import org.eclipse.jdt.ls.core.internal.JavaClientConnection;
+import org.eclipse.jdt.ls.core.internal.JavaLanguageServerPlugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Streams the output of a build to the client while it runs, through a client command called with
+ * the request id and the text, and the events recognized in it through another one called with the
+ * request id and the events. Both are sent in batches so that a chatty build does not turn into
+ * one round trip per line.
+ */
+@SuppressWarnings("restriction")
+class BuildOutputForwarder implements Consumer<String>, AutoCloseable {
+
+    static final String CLIENT_COMMAND = "maven.backgroundOutput";
+    static final String EVENTS_CLIENT_COMMAND = "maven.buildEvents";
+    private static final long BATCH_MILLIS = 200;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "Maven Build Output");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String requestId;
+    private final StringBuilder pending = new StringBuilder();
+    private List<BuildEvent> pendingEvents = new ArrayList<>();
+    // held while sending, so that batches reach the client in order
+    private final Object sendLock = new Object();
+    private boolean scheduled;
+
+    BuildOutputForwarder(String requestId) {
+        this.requestId = requestId;
+    }
+
+    @Override
+    public synchronized void accept(String text) {
+        pending.append(text);
+        schedule();
+    }
+
+    synchronized void acceptEvent(BuildEvent event) {
+        pendingEvents.add(event);
+        schedule();
+    }
+
+    private void schedule() {
+        if (!scheduled) {
+            scheduled = true;
+            scheduler.schedule(this::send, BATCH_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends what is left, the build being over.
+     */
+    @Override
+    public void close() {
+        send();
+    }
+
+    private void send() {
+        synchronized (sendLock) {
+            final String text;
+            final List<BuildEvent> events;
+            synchronized (this) {
+                scheduled = false;
+                text = pending.toString();
+                pending.setLength(0);
+                events = pendingEvents;
+                pendingEvents = new ArrayList<>();
+            }
+            final JavaClientConnection connection = JavaLanguageServerPlugin.getInstance() == null ? null :
+                    JavaLanguageServerPlugin.getInstance().getClientConnection();
+            if (connection == null) {
+                return;
+            }
+            if (!text.isEmpty()) {
+                connection.executeClientCommand(CLIENT_COMMAND, requestId, text);
+            }
+            if (!events.isEmpty()) {
+                connection.executeClientCommand(EVENTS_CLIENT_COMMAND, requestId, events);
+            }
+        }
+    }
+}
@@ -12,12 +12,27 @@
 package com.microsoft.java.maven.handler;
 
 import com.microsoft.java.maven.AddDependencyHandler;
+import com.microsoft.java.maven.ArchetypeCatalogIndex;
 import com.microsoft.java.maven.ArtifactSearcher;
+import com.microsoft.java.maven.DependencyConflictAnalyzer;
+import com.microsoft.java.maven.DependencyTreeHandler;
+import com.microsoft.java.maven.DependencyUsageIndex;
+import com.microsoft.java.maven.EffectivePomHandler;
+import com.microsoft.java.maven.MavenExecutionService;
+import com.microsoft.java.maven.MetricsRegistry;
+import com.microsoft.java.maven.OutdatedDependencyScanner;
+import com.microsoft.java.maven.PluginDescriptorService;
+import com.microsoft.java.maven.PomHeaderScanner;
+import com.microsoft.java.maven.ProfileHandler;
+import com.microsoft.java.maven.VersionAlignmentHandler;
+import com.microsoft.java.maven.VersionService;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.ls.core.internal.IDelegateCommandHandler;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -27,6 +42,18 @@ public class DelegateCommandHandler implements IDelegateCommandHandler {
     
     @Override
     public Object executeCommand(String commandId, List<Object> arguments, IProgressMonitor monitor) throws Exception {
+        try (MetricsRegistry.Timer timer = MetricsRegistry.getDefault().time("command." + commandId)) {
+            try {
+                return dispatchCommand(commandId, arguments, monitor);
+            } catch (Exception e) {
+                timer.fail();
+                throw e;
+            }
+        }
+    }
+
+    private Object dispatchCommand(String commandId, List<Object> arguments, IProgressMonitor monitor)
+            throws Exception {
         if (Objects.equals(commandId, "java.maven.initializeSearcher")) {
             ArtifactSearcher.initialize((String) arguments.get(0));
         } else if (Objects.equals(commandId, "java.maven.searchArtifact")) {
@@ -40,6 +67,9 @@ public class DelegateCommandHandler implements IDelegateCommandHandler {
             } else {
                 return new ArrayList<>();
             }
+        } else if (Objects.equals(commandId, "java.maven.searchArtifacts")) {
+            // class names of unresolved types, searched ahead of hovers and quick fixes
+            return ArtifactSearcher.searchByClassNames((List<String>) arguments.get(0), monitor);
         } else if (Objects.equals(commandId, "java.maven.addDependency")) {
             final AddDependencyHandler.AddDependencyParams params = new AddDependencyHandler.AddDependencyParams(
                 (String) arguments.get(0), 
@@ -51,8 +81,93 @@ public class DelegateCommandHandler implements IDelegateCommandHandler {
             );
             return AddDependencyHandler.addDependency(params, monitor);
         } else if (Objects.equals(commandId, "java.maven.controlContext")) {
-            return ArtifactSearcher.controlIndexerContext((boolean) arguments.get(0), monitor);
-        } 
+            // on or off, then optionally the id of the context, all of them otherwise
+            return ArtifactSearcher.controlIndexerContext((boolean) arguments.get(0),
+                    arguments.size() > 1 ? (String) arguments.get(1) : null, monitor);
+        } else if (Objects.equals(commandId, "java.maven.addIndexContext")) {
+            // context id, index directory, then optionally the search deadline in milliseconds
+            return ArtifactSearcher.addIndexContext((String) arguments.get(0), (String) arguments.get(1),
+                    arguments.size() > 2 ? (Number) arguments.get(2) : null, monitor);
+        } else if (Objects.equals(commandId, "java.maven.removeIndexContext")) {
+            return ArtifactSearcher.removeIndexContext((String) arguments.get(0), monitor);
+        } else if (Objects.equals(commandId, "java.maven.listIndexContexts")) {
+            return ArtifactSearcher.getIndexContexts(monitor);
+        } else if (Objects.equals(commandId, "java.maven.resolveDependencyTree")) {
+            return DependencyTreeHandler.getDependencyTree((String) arguments.get(0), monitor);
+        } else if (Objects.equals(commandId, "java.maven.effectivePom")) {
+            return EffectivePomHandler.getEffectivePom((String) arguments.get(0), monitor);
+        } else if (Objects.equals(commandId, "java.maven.analyzeConflicts")) {
+            return DependencyConflictAnalyzer.analyzeWorkspace(monitor);
+        } else if (Objects.equals(commandId, "java.maven.analyzeClasspath")) {
+            return DependencyConflictAnalyzer.analyzeClasspath((String) arguments.get(0), monitor);
+        } else if (Objects.equals(commandId, "java.maven.findDependencyUsages")) {
+            // groupId, artifactId, then an optional version and the kinds of usage to return
+            final String version = arguments.size() < 3 ? null : (String) arguments.get(2);
+            final List<String> kinds = arguments.size() < 4 ? null : (List<String>) arguments.get(3);
+            return DependencyUsageIndex.getDefault().findUsages((String) arguments.get(0), (String) arguments.get(1),
+                    version, kinds, monitor);
+        } else if (Objects.equals(commandId, "java.maven.alignDependencyVersion")) {
+            // groupId, artifactId, target version, then optional pom paths (the whole workspace by default)
+            final List<String> pomPaths = arguments.size() < 4 ? null : (List<String>) arguments.get(3);
+            return VersionAlignmentHandler.alignVersion((String) arguments.get(0), (String) arguments.get(1),
+                    (String) arguments.get(2), pomPaths, monitor);
+        } else if (Objects.equals(commandId, "java.maven.getVersions")) {
+            // completion cannot wait for the remote repository, its versions show up on the next request
+            final boolean remote = arguments.size() < 3 || !Boolean.FALSE.equals(arguments.get(2));
+            return remote ?
+                    VersionService.getDefault().getVersionsWithoutWaiting((String) arguments.get(0),
+                            (String) arguments.get(1)) :
+                    VersionService.getDefault().getVersions((String) arguments.get(0), (String) arguments.get(1),
+                            false);
+        } else if (Objects.equals(commandId, "java.maven.findOutdatedDependencies")) {
+            // optional pom paths (the whole workspace by default), then whether to ask the remote search
+            final boolean remote = arguments.size() < 2 || !Boolean.FALSE.equals(arguments.get(1));
+            if (arguments.isEmpty() || arguments.get(0) == null) {
+                return OutdatedDependencyScanner.getDefault().scanWorkspace(remote, monitor);
+            }
+            return OutdatedDependencyScanner.getDefault().scan((List<String>) arguments.get(0), remote, monitor);
+        } else if (Objects.equals(commandId, "java.maven.describePlugins")) {
+            final List<Map<String, String>> plugins = arguments.size() < 2 ? null :
+                    (List<Map<String, String>>) arguments.get(1);
+            return PluginDescriptorService.getDefault().describePlugins((String) arguments.get(0), plugins, monitor);
+        } else if (Objects.equals(commandId, "java.maven.scanPomHeaders")) {
+            return PomHeaderScanner.getDefault().scan((List<String>) arguments.get(0), monitor);
+        } else if (Objects.equals(commandId, "java.maven.listProfiles")) {
+            final List<String> pomPaths = arguments.isEmpty() ? null : (List<String>) arguments.get(0);
+            return ProfileHandler.listProfiles(pomPaths, monitor);
+        } else if (Objects.equals(commandId, "java.maven.searchArchetypes")) {
+            // query, limit, then options: catalogs, bundledCatalog, autoUpdate, identifiers, localOnly and refresh
+            final Map<String, Object> options = arguments.size() < 3 || arguments.get(2) == null ?
+                    Collections.emptyMap() : (Map<String, Object>) arguments.get(2);
+            final ArchetypeCatalogIndex index = ArchetypeCatalogIndex.getDefault();
+            index.configure((List<String>) options.get("catalogs"), (String) options.get("bundledCatalog"),
+                    Boolean.TRUE.equals(options.get("autoUpdate")));
+            if (Boolean.TRUE.equals(options.get("refresh"))) {
+                index.refresh();
+            }
+            final int limit = arguments.size() < 2 || arguments.get(1) == null ? ArchetypeCatalogIndex.DEFAULT_LIMIT :
+                    ((Number) arguments.get(1)).intValue();
+            return index.search((String) arguments.get(0), limit, (List<String>) options.get("identifiers"),
+                    Boolean.TRUE.equals(options.get("localOnly")));
+        } else if (Objects.equals(commandId, "java.maven.executeGoals")) {
+            // mvn executable, pom path, Maven arguments, then an optional id to stream the output with
+            final File mavenHome = MavenExecutionService.getMavenHome((String) arguments.get(0));
+            if (mavenHome == null) {
+                return null;
+            }
+            final String requestId = arguments.size() < 4 ? null : (String) arguments.get(3);
+            try (BuildOutputForwarder forwarder = requestId == null ? null : new BuildOutputForwarder(requestId)) {
+                return MavenExecutionService.getDefault().execute(mavenHome, (String) arguments.get(1),
+                        (List<String>) arguments.get(2), forwarder, forwarder == null ? null : forwarder::acceptEvent,
+                        monitor);
+            }
+        } else if (Objects.equals(commandId, "java.maven.getMetrics")) {
+            final Map<String, Object> snapshot = MetricsRegistry.getDefault().snapshot();
+            if (!arguments.isEmpty() && Boolean.TRUE.equals(arguments.get(0))) {
+                MetricsRegistry.getDefault().reset();
+            }
+            return snapshot;
+        }
         return null;
     }
 
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Feeds reactor logs to the build output processor the way the build pipes them, in arbitrary chunks.
+ */
+public class BuildOutputProcessorTest {
+
+    private static final String COLORED_ERROR = "[\u001B[1;31mERROR\u001B[m] ";
+
+    @TempDir
+    File temp;
+
+    @Test
+    public void testReactorBuild() throws IOException {
+        final File core = new File(temp, "core/src/main/java/com/example/Core.java");
+        final File appTest = new File(temp, "app/src/test/java/com/example/AppTest.java");
+        appTest.getParentFile().mkdirs();
+        Files.write(appTest.toPath(), new byte[0]);
+
+        final List<BuildEvent> events = new ArrayList<>();
+        final BuildOutputProcessor processor = new BuildOutputProcessor(temp, events::add);
+        feed(processor, 7,
+                "[INFO] Scanning for projects...",
+                "[INFO] ------------------------------------------------------------------------",
+                "[INFO] Reactor Build Order:",
+                "[INFO] ",
+                "[INFO] ---------------------< com.example:parent >----------------------",
+                "[INFO] Building parent 1.0-SNAPSHOT                                       [1/4]",
+                "[INFO]   from pom.xml",
+                "[INFO] --------------------------------[ pom ]---------------------------------",
+                "[INFO] ----------------------< com.example:core >-----------------------",
+                "[INFO] Building Core 1.0-SNAPSHOT                                         [2/4]",
+                "[INFO]   from core/pom.xml",
+                "[INFO] --------------------------------[ jar ]---------------------------------",
+                "[INFO] --- compiler:3.11.0:compile (default-compile) @ core ---",
+                "[WARNING] " + core.getPath() + ":[3,8] [deprecation] Date(String) in Date has been deprecated",
+                "[INFO] -------------------------------------------------------------",
+                "[ERROR] COMPILATION ERROR : ",
+                "[INFO] -------------------------------------------------------------",
+                "[ERROR] " + core.getPath() + ":[12,5] cannot find symbol",
+                "[INFO] 1 error",
+                "[INFO] -------------------------------------------------------------",
+                COLORED_ERROR + core.getPath() + ":[12,5] cannot find symbol",
+                "[INFO] -----------------------< com.example:app >-----------------------",
+                "[INFO] Building app 1.0-SNAPSHOT                                          [3/4]",
+                "[INFO]   from app/pom.xml",
+                "[INFO] --------------------------------[ jar ]---------------------------------",
+                "[INFO] --- surefire:3.2.5:test (default-test) @ app ---",
+                "[INFO] Running com.example.AppTest",
+                "[ERROR] Tests run: 2, Failures: 1, Errors: 0, Skipped: 0, Time elapsed: 0.05 s <<< FAILURE! -- in "
+                        + "com.example.AppTest",
+                "[ERROR] com.example.AppTest.testAdd -- Time elapsed: 0.01 s <<< FAILURE!",
+                "org.opentest4j.AssertionFailedError: expected: <3> but was: <4>",
+                "\tat org.junit.jupiter.api.AssertionUtils.fail(AssertionUtils.java:151)",
+                "\tat com.example.AppTest.testAdd(AppTest.java:14)",
+                "\tat java.base/java.lang.reflect.Method.invoke(Method.java:580)",
+                "[INFO] ",
+                "[INFO] Results:",
+                "[ERROR] Failures: ",
+                "[ERROR]   AppTest.testAdd:14 expected: <3> but was: <4>",
+                "[INFO] ------------------------------------------------------------------------",
+                "[INFO] Reactor Summary for parent 1.0-SNAPSHOT:",
+                "[INFO] ",
+                "[INFO] parent ............................................. SUCCESS [  0.120 s]",
+                "[INFO] Core ............................................... FAILURE [  1.500 s]",
+                "[INFO] app ................................................ FAILURE [01:02 min]",
+                "[INFO] web ................................................ SKIPPED",
+                "[INFO] ------------------------------------------------------------------------",
+                "[INFO] BUILD FAILURE",
+                "[INFO] ------------------------------------------------------------------------",
+                "[ERROR] Failed to execute goal org.apache.maven.plugins:maven-compiler-plugin:3.11.0:compile "
+                        + "(default-compile) on project core: Compilation failure",
+                "[ERROR] Failed to execute goal org.apache.maven.plugins:maven-surefire-plugin:3.2.5:test "
+                        + "(default-test) on project app: There are test failures.");
+        processor.finish();
+
+        final List<BuildEvent> diagnostics = processor.getDiagnostics();
+        // the colored repetition of the compiler error and the failed goals add nothing
+        assertEquals(3, diagnostics.size());
+        assertDiagnostic(diagnostics.get(0), "core", core, 2, 7, "warning",
+                "[deprecation] Date(String) in Date has been deprecated");
+        assertDiagnostic(diagnostics.get(1), "core", core, 11, 4, "error", "cannot find symbol");
+        assertDiagnostic(diagnostics.get(2), "app", appTest, 13, 0, "error",
+                "testAdd: org.opentest4j.AssertionFailedError: expected: <3> but was: <4>");
+
+        final List<BuildEvent> modules = processor.getModules();
+        assertEquals("parent:SUCCESS, core:FAILURE, app:FAILURE, web:SKIPPED", describe(modules));
+        modules.forEach(module -> assertTrue(module.getDurationMillis() >= 0));
+        assertEquals(0, modules.get(3).getDurationMillis());
+
+        assertEquals("moduleStarted:parent, moduleFinished:parent, moduleStarted:core, diagnostic:core, "
+                + "diagnostic:core, moduleFinished:core, moduleStarted:app, diagnostic:app, moduleFinished:app, "
+                + "moduleFinished:web", events.stream().map(event -> event.getKind() + ":" + event.getModule())
+                        .collect(Collectors.joining(", ")));
+    }
+
+    @Test
+    public void testLegacyTestFailureWithoutSource() {
+        final BuildOutputProcessor processor = new BuildOutputProcessor(temp, null);
+        feed(processor, 3,
+                "[INFO] -----------------------< com.example:app >-----------------------",
+                "[INFO] Building app 1.0-SNAPSHOT",
+                "[INFO] --------------------------------[ jar ]---------------------------------",
+                "[ERROR] testApp(com.example.AppTest)  Time elapsed: 0.01 s  <<< ERROR!",
+                "java.lang.IllegalStateException: not ready",
+                "\tat com.example.App.start(App.java:8)",
+                "\tat com.example.AppTest.testApp(AppTest.java:20)",
+                "[INFO] BUILD FAILURE");
+        processor.finish();
+
+        // without the test source, the failure is reported on the pom of the module
+        assertEquals(1, processor.getDiagnostics().size());
+        assertDiagnostic(processor.getDiagnostics().get(0), "app", new File(temp, "pom.xml"), 0, 0, "error",
+                "testApp: java.lang.IllegalStateException: not ready");
+        assertEquals("app:FAILURE", describe(processor.getModules()));
+    }
+
+    @Test
+    public void testSummaryCorrectsAssumedStatus() {
+        final BuildOutputProcessor processor = new BuildOutputProcessor(temp, null);
+        feed(processor, 5,
+                "[INFO] ----------------------< com.example:core >-----------------------",
+                "[INFO] Building Core 1.0-SNAPSHOT                                         [1/3]",
+                "[INFO] --------------------------------[ jar ]---------------------------------",
+                "[INFO] -----------------------< com.example:app >-----------------------",
+                "[INFO] Building app 1.0-SNAPSHOT                                          [2/3]",
+                "[INFO] --------------------------------[ jar ]---------------------------------",
+                "[INFO] Reactor Summary for parent 1.0-SNAPSHOT:",
+                "[INFO] Core ............................................... FAILURE [  1.500 s]",
+                "[INFO] app ................................................ SUCCESS [  0.300 s]",
+                "[INFO] lib ................................................ SUCCESS [01:02 min]",
+                "[INFO] BUILD FAILURE");
+        processor.finish();
+
+        // core was assumed successful when app started, lib was built before the log started
+        assertEquals("core:FAILURE, app:SUCCESS, lib:SUCCESS", describe(processor.getModules()));
+        assertEquals(62000, processor.getModules().get(2).getDurationMillis());
+    }
+
+    @Test
+    public void testMaxDiagnostics() {
+        final List<BuildEvent> events = new ArrayList<>();
+        final BuildOutputProcessor processor = new BuildOutputProcessor(temp, events::add);
+        final StringBuilder log = new StringBuilder();
+        for (int i = 1; i <= BuildOutputProcessor.MAX_DIAGNOSTICS + 50; i++) {
+            log.append("[ERROR] src/main/java/App.java:[").append(i).append(",1] error ").append(i).append("\r\n");
+        }
+        processor.accept(log.toString());
+        processor.finish();
+
+        assertEquals(BuildOutputProcessor.MAX_DIAGNOSTICS, processor.getDiagnostics().size());
+        assertEquals(BuildOutputProcessor.MAX_DIAGNOSTICS, events.size());
+        final BuildEvent last = processor.getDiagnostics().get(BuildOutputProcessor.MAX_DIAGNOSTICS - 1);
+        assertEquals(new File(temp, "src/main/java/App.java").getAbsolutePath(), last.getFile());
+        assertEquals("error " + BuildOutputProcessor.MAX_DIAGNOSTICS, last.getMessage());
+    }
+
+    @Test
+    public void testParseDuration() {
+        assertEquals(1234, BuildOutputProcessor.parseDuration("1.234", "s"));
+        assertEquals(62000, BuildOutputProcessor.parseDuration("01:02", "min"));
+        assertEquals(3720000, BuildOutputProcessor.parseDuration("01:02", "h"));
+        assertEquals(0, BuildOutputProcessor.parseDuration(null, null));
+        assertEquals(0, BuildOutputProcessor.parseDuration("1.x", "s"));
+    }
+
+    private static void feed(BuildOutputProcessor processor, int chunkSize, String... lines) {
+        final String log = String.join("\n", lines) + "\n";
+        for (int i = 0; i < log.length(); i += chunkSize) {
+            processor.accept(log.substring(i, Math.min(log.length(), i + chunkSize)));
+        }
+    }
+
+    private static void assertDiagnostic(BuildEvent diagnostic, String module, File file, int line, int column,
+            String severity, String message) {
+        assertEquals(BuildEvent.DIAGNOSTIC, diagnostic.getKind());
+        assertEquals(module, diagnostic.getModule());
+        assertEquals(file.getAbsolutePath(), diagnostic.getFile());
+        assertEquals(line, diagnostic.getLine());
+        assertEquals(column, diagnostic.getColumn());
+        assertEquals(severity, diagnostic.getSeverity());
+        assertEquals(message, diagnostic.getMessage());
+    }
+
+    private static String describe(List<BuildEvent> modules) {
+        return modules.stream().map(module -> module.getModule() + ":" + module.getStatus())
+                .collect(Collectors.joining(", "));
+    }
+}
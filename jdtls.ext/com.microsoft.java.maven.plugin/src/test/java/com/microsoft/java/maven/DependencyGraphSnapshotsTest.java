@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes and reads dependency tree snapshots, and checks what their keys depend on.
+ */
+public class DependencyGraphSnapshotsTest {
+
+    private static final String POM_PATH = "/workspace/app/pom.xml";
+
+    @TempDir
+    File temp;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final DependencyTreeNode tree = newTree();
+
+        final DependencyGraphSnapshots.Snapshot snapshot = DependencyGraphSnapshots.read(
+                new DataInputStream(new ByteArrayInputStream(write(tree))), POM_PATH);
+
+        assertNotNull(snapshot);
+        assertEquals("key", snapshot.getKey());
+        assertEquals(describe(tree), describe(snapshot.getTree()));
+        assertArrayEquals(DependencyGraphSnapshots.encode(tree), DependencyGraphSnapshots.encode(snapshot.getTree()));
+    }
+
+    @Test
+    public void testSharedCoordinatesAreStoredOnce() {
+        final DependencyTreeNode once = new DependencyTreeNode("com.example", "app", "1.0", null);
+        once.getChildren().add(newJacksonDatabind());
+        final DependencyTreeNode twice = new DependencyTreeNode("com.example", "app", "1.0", null);
+        twice.getChildren().add(newJacksonDatabind());
+        twice.getChildren().add(newJacksonDatabind());
+
+        final int nodeSize = DependencyGraphSnapshots.encode(twice).length -
+                DependencyGraphSnapshots.encode(once).length;
+        // the repeated subtree only adds its nodes and edges, no string nor coordinates: 3 nodes
+        // of 4 ints, 3 offsets and 3 edges
+        assertEquals((3 * 4 + 3 + 3) * Integer.BYTES, nodeSize);
+    }
+
+    @Test
+    public void testOtherVersionOrPomIsRejected() throws IOException {
+        final byte[] bytes = write(newTree());
+
+        assertNull(DependencyGraphSnapshots.read(new DataInputStream(new ByteArrayInputStream(bytes)),
+                "/workspace/other/pom.xml"));
+        // the format version follows the magic number
+        bytes[7]++;
+        assertNull(DependencyGraphSnapshots.read(new DataInputStream(new ByteArrayInputStream(bytes)), POM_PATH));
+    }
+
+    @Test
+    public void testUnreadableFilesAreIgnored() throws IOException {
+        final File directory = new File(temp, "snapshots");
+        new DependencyGraphSnapshots(directory).put(POM_PATH, "key", newTree());
+        final File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        assertNotNull(new DependencyGraphSnapshots(directory).get(POM_PATH));
+
+        final byte[] bytes = Files.readAllBytes(files[0].toPath());
+        Files.write(files[0].toPath(), Arrays.copyOf(bytes, bytes.length - 10));
+        assertNull(new DependencyGraphSnapshots(directory).get(POM_PATH));
+
+        bytes[7]++;
+        Files.write(files[0].toPath(), bytes);
+        assertNull(new DependencyGraphSnapshots(directory).get(POM_PATH));
+    }
+
+    @Test
+    public void testKeyFollowsParentChain() throws IOException {
+        final File parent = writePom("pom.xml",
+                "<project>",
+                "  <groupId>com.example</groupId>",
+                "  <artifactId>parent</artifactId>",
+                "  <version>1.0</version>",
+                "  <packaging>pom</packaging>",
+                "</project>");
+        final File pom = writePom("app/pom.xml",
+                "<project>",
+                "  <parent>",
+                "    <groupId>com.example</groupId>",
+                "    <artifactId>parent</artifactId>",
+                "    <version>1.0</version>",
+                "  </parent>",
+                "  <artifactId>app</artifactId>",
+                "</project>");
+        final String key = computeKey(pom);
+        assertNotNull(key);
+        assertEquals(key, computeKey(pom));
+
+        writePom("other/pom.xml", "<project/>");
+        assertEquals(key, computeKey(pom));
+
+        Files.write(parent.toPath(), Arrays.asList(
+                "<project>",
+                "  <groupId>com.example</groupId>",
+                "  <artifactId>parent</artifactId>",
+                "  <version>1.0</version>",
+                "  <packaging>pom</packaging>",
+                "  <properties><java.version>17</java.version></properties>",
+                "</project>"));
+        assertNotEquals(key, computeKey(pom));
+
+        assertNull(computeKey(new File(temp, "missing/pom.xml")));
+    }
+
+    @Test
+    public void testKeyFollowsImportedBoms() throws IOException {
+        final File bom = writePom("repository/com/example/bom/2.0/bom-2.0.pom",
+                "<project>",
+                "  <groupId>com.example</groupId>",
+                "  <artifactId>bom</artifactId>",
+                "  <version>2.0</version>",
+                "</project>");
+        writePom("pom.xml",
+                "<project>",
+                "  <groupId>com.example</groupId>",
+                "  <artifactId>parent</artifactId>",
+                "  <version>1.0</version>",
+                "  <packaging>pom</packaging>",
+                "  <properties><bom.version>2.0</bom.version></properties>",
+                "  <dependencyManagement>",
+                "    <dependencies>",
+                "      <dependency>",
+                "        <groupId>com.example</groupId>",
+                "        <artifactId>bom</artifactId>",
+                "        <version>${bom.version}</version>",
+                "        <type>pom</type>",
+                "        <scope>import</scope>",
+                "      </dependency>",
+                "    </dependencies>",
+                "  </dependencyManagement>",
+                "</project>");
+        final File pom = writePom("app/pom.xml",
+                "<project>",
+                "  <parent>",
+                "    <groupId>com.example</groupId>",
+                "    <artifactId>parent</artifactId>",
+                "    <version>1.0</version>",
+                "  </parent>",
+                "  <artifactId>app</artifactId>",
+                "</project>");
+        final String key = computeKey(pom);
+
+        Files.write(bom.toPath(), Arrays.asList(
+                "<project>",
+                "  <groupId>com.example</groupId>",
+                "  <artifactId>bom</artifactId>",
+                "  <version>2.0</version>",
+                "  <dependencyManagement/>",
+                "</project>"));
+        assertNotEquals(key, computeKey(pom));
+    }
+
+    private String computeKey(File pom) {
+        return DependencyGraphSnapshots.computeKey(pom.getPath(), new File(temp, "repository"),
+                Collections.emptyList());
+    }
+
+    private File writePom(String path, String... lines) throws IOException {
+        final File pom = new File(temp, path);
+        pom.getParentFile().mkdirs();
+        Files.write(pom.toPath(), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return pom;
+    }
+
+    private static byte[] write(DependencyTreeNode tree) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            DependencyGraphSnapshots.write(out, POM_PATH, "key", tree);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A tree where jackson-databind is reached twice, and guava once directly and once omitted.
+     */
+    private static DependencyTreeNode newTree() {
+        final DependencyTreeNode root = new DependencyTreeNode("com.example", "app", "1.0", null);
+        final DependencyTreeNode guava = new DependencyTreeNode("com.google.guava", "guava", "33.0.0-jre", "compile");
+        guava.getChildren().add(new DependencyTreeNode("com.google.guava", "failureaccess", "1.0.2", "compile"));
+        root.getChildren().add(guava);
+        root.getChildren().add(newJacksonDatabind());
+        final DependencyTreeNode client = new DependencyTreeNode("com.example", "client", "1.0", "test");
+        client.getChildren().add(newJacksonDatabind());
+        final DependencyTreeNode omitted = new DependencyTreeNode("com.google.guava", "guava", "31.1-jre", "test");
+        omitted.setOmitted(DependencyTreeNode.OMITTED_FOR_CONFLICT, "33.0.0-jre");
+        client.getChildren().add(omitted);
+        root.getChildren().add(client);
+        return root;
+    }
+
+    private static DependencyTreeNode newJacksonDatabind() {
+        final DependencyTreeNode databind = new DependencyTreeNode("com.fasterxml.jackson.core", "jackson-databind",
+                "2.17.0", "compile");
+        databind.getChildren().add(new DependencyTreeNode("com.fasterxml.jackson.core", "jackson-annotations",
+                "2.17.0", "compile"));
+        databind.getChildren().add(new DependencyTreeNode("com.fasterxml.jackson.core", "jackson-core", "2.17.0",
+                "compile"));
+        return databind;
+    }
+
+    private static String describe(DependencyTreeNode node) {
+        final StringBuilder description = new StringBuilder();
+        describe(node, "", description);
+        return description.toString();
+    }
+
+    private static void describe(DependencyTreeNode node, String indent, StringBuilder description) {
+        description.append(indent).append(node.getGroupId()).append(':').append(node.getArtifactId()).append(':')
+                .append(node.getVersion()).append(':').append(node.getScope()).append(':').append(node.getOmitted())
+                .append(':').append(node.getEffectiveVersion()).append('\n');
+        final List<DependencyTreeNode> children = node.getChildren();
+        for (final DependencyTreeNode child : children) {
+            describe(child, indent + "  ", description);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.InputSource;
+
+import java.io.StringReader;
+
+import javax.xml.parsers.SAXParserFactory;
+
+public class GetPosHandlerTest {
+
+    private static final String POM = String.join("\n",
+            "<project>",
+            "  <dependencyManagement>",
+            "    <dependencies>",
+            "      <dependency>",
+            "        <groupId>org.slf4j</groupId>",
+            "        <artifactId>slf4j-api</artifactId>",
+            "        <version>2.0.9</version>",
+            "      </dependency>",
+            "    </dependencies>",
+            "  </dependencyManagement>",
+            "  <dependencies>",
+            "    <dependency>",
+            "      <groupId>com.google.guava</groupId>",
+            "      <artifactId>guava</artifactId>",
+            "    </dependency>",
+            "  </dependencies>",
+            "</project>");
+
+    @Test
+    public void testDeclaredDependency() throws Exception {
+        final PosInfo posInfo = parse(POM, "com.google.guava:guava");
+
+        assertFalse(posInfo.needAddDependency);
+        assertTrue(posInfo.alreadyHasDependencies);
+        // right before "</dependencies>" of the project
+        assertEquals(15, posInfo.pos.getLine());
+        assertEquals(2, posInfo.pos.getCharacter());
+    }
+
+    @Test
+    public void testManagedDependencyIsNotDeclared() throws Exception {
+        assertTrue(parse(POM, "org.slf4j:slf4j-api").needAddDependency);
+    }
+
+    @Test
+    public void testWithoutDependencies() throws Exception {
+        final PosInfo posInfo = parse("<project>\n  <artifactId>app</artifactId>\n</project>", "g:a");
+
+        assertTrue(posInfo.needAddDependency);
+        assertFalse(posInfo.alreadyHasDependencies);
+        // right before "</project>"
+        assertEquals(2, posInfo.pos.getLine());
+        assertEquals(0, posInfo.pos.getCharacter());
+    }
+
+    private static PosInfo parse(String pom, String targetDependency) throws Exception {
+        final GetPosHandler handler = new GetPosHandler();
+        handler.setTargetDependency(targetDependency);
+        SAXParserFactory.newInstance().newSAXParser().parse(new InputSource(new StringReader(pom)), handler);
+        return handler.getPosInfo();
+    }
+}
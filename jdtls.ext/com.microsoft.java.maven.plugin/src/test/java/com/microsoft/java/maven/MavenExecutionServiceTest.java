@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs offline builds of the test projects of the extension in warm workers, with the Maven
+ * installation found in the PATH. Skipped when there is none.
+ */
+public class MavenExecutionServiceTest {
+
+    // jdtls.ext/com.microsoft.java.maven.plugin -> test/projects of the extension
+    private static final File PROJECTS = new File("../../test/projects");
+
+    @TempDir
+    File temp;
+
+    private File mavenHome;
+    private MavenExecutionService service;
+
+    @BeforeEach
+    public void setUp() {
+        mavenHome = MavenExecutionService.getMavenHome("mvn");
+        assumeTrue(mavenHome != null, "no Maven installation in the PATH");
+        service = new MavenExecutionService(new File(temp, "worker"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    public void testOfflineBuilds() throws Exception {
+        final MavenExecutionService.ExecutionResult first = validate(new File(PROJECTS, "maven/pom.xml"));
+        assertEquals(0, first.getExitCode(), first.getOutput());
+        assertFalse(first.isWarm());
+        assertTrue(first.getOutput().contains("BUILD SUCCESS"), first.getOutput());
+
+        final MavenExecutionService.ExecutionResult second = validate(new File(PROJECTS, "multi-module/pom.xml"));
+        assertEquals(0, second.getExitCode(), second.getOutput());
+        assertTrue(second.isWarm());
+        assertTrue(second.getOutput().contains("module1"), second.getOutput());
+        assertTrue(second.getOutput().contains("module2"), second.getOutput());
+    }
+
+    @Test
+    public void testPropertiesDoNotLeakIntoLaterBuilds() throws Exception {
+        // the profile adds a module that does not exist, failing the build
+        final File pom = new File(temp, "pom.xml");
+        Files.write(pom.toPath(), String.join("\n",
+                "<project>",
+                "  <modelVersion>4.0.0</modelVersion>",
+                "  <groupId>com.example</groupId>",
+                "  <artifactId>leak</artifactId>",
+                "  <version>1.0</version>",
+                "  <packaging>pom</packaging>",
+                "  <profiles>",
+                "    <profile>",
+                "      <id>broken</id>",
+                "      <activation>",
+                "        <property>",
+                "          <name>leak.check</name>",
+                "        </property>",
+                "      </activation>",
+                "      <modules>",
+                "        <module>missing</module>",
+                "      </modules>",
+                "    </profile>",
+                "  </profiles>",
+                "</project>").getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(1, validate(pom, "-Dleak.check=true").getExitCode());
+        final MavenExecutionService.ExecutionResult next = validate(pom);
+        assertTrue(next.isWarm());
+        assertEquals(0, next.getExitCode(), next.getOutput());
+    }
+
+    private MavenExecutionService.ExecutionResult validate(File pom, String... extraArgs)
+            throws IOException, InterruptedException {
+        final List<String> args = new ArrayList<>(Arrays.asList("-o", "-B",
+                "-Dmaven.repo.local=" + new File(temp, "repository").getAbsolutePath()));
+        args.addAll(Arrays.asList(extraArgs));
+        args.add("validate");
+        return service.execute(mavenHome, pom.getAbsolutePath(), args, null, null, null);
+    }
+}
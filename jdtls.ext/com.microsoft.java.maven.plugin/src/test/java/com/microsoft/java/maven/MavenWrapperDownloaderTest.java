@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javax.tools.ToolProvider;
+
+/**
+ * Runs the MavenWrapperDownloader bundled with the extension against a server on a local port.
+ */
+public class MavenWrapperDownloaderTest {
+
+    private static final String DOWNLOADER = "../../resources/maven-wrapper/.mvn/wrapper/MavenWrapperDownloader.java";
+    private static final String ETAG = "\"v1\"";
+
+    @TempDir
+    File temp;
+
+    private final byte[] content = new byte[200 * 1024];
+    // Range header of each request, null when it asked for the whole file
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean truncateNext;
+    private HttpServer server;
+    private Method download;
+    private File cache;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        new Random(42).nextBytes(content);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/wrapper.jar", exchange -> {
+            final String range = exchange.getRequestHeaders().getFirst("Range");
+            ranges.add(range);
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            int start = 0;
+            if (range != null && ETAG.equals(exchange.getRequestHeaders().getFirst("If-Range"))) {
+                start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+                exchange.getResponseHeaders().set("Content-Range",
+                        "bytes " + start + "-" + (content.length - 1) + "/" + content.length);
+                exchange.sendResponseHeaders(206, content.length - start);
+            } else {
+                exchange.sendResponseHeaders(200, content.length);
+            }
+            try (OutputStream out = exchange.getResponseBody()) {
+                // a stalled transfer: the body stops short of the announced length
+                out.write(content, start, truncateNext ? content.length / 2 - start : content.length - start);
+            } catch (IOException e) {
+                // the client gave up on the truncated body
+            } finally {
+                truncateNext = false;
+            }
+        });
+        server.start();
+
+        final File classes = new File(temp, "classes");
+        assertTrue(classes.mkdirs());
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, "-d", classes.getPath(),
+                new File(DOWNLOADER).getPath()));
+        final URLClassLoader loader = new URLClassLoader(new URL[] { classes.toURI().toURL() });
+        // read when the class is initialized, so that stalled transfers are given up quickly
+        System.setProperty("mvnw.readTimeout", "500");
+        try {
+            download = Class.forName("MavenWrapperDownloader", true, loader).getDeclaredMethod("downloadFileFromURL",
+                    String.class, File.class, String.class, Path.class);
+        } finally {
+            System.clearProperty("mvnw.readTimeout");
+        }
+        download.setAccessible(true);
+        cache = new File(temp, "cache");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testVerifiedDownloadIsCached() throws Exception {
+        final File first = new File(temp, "first/maven-wrapper.jar");
+        final File second = new File(temp, "second/maven-wrapper.jar");
+        assertTrue(first.getParentFile().mkdirs() && second.getParentFile().mkdirs());
+
+        download(first, sha256(content));
+        download(second, sha256(content));
+
+        assertArrayEquals(content, Files.readAllBytes(first.toPath()));
+        assertArrayEquals(content, Files.readAllBytes(second.toPath()));
+        assertTrue(new File(cache, sha256(content)).isFile());
+        // the second project is set up from the cache
+        assertEquals(1, ranges.size());
+    }
+
+    @Test
+    public void testStalledTransferIsResumed() throws Exception {
+        final File jar = new File(temp, "maven-wrapper.jar");
+        truncateNext = true;
+
+        download(jar, null);
+
+        assertArrayEquals(content, Files.readAllBytes(jar.toPath()));
+        assertEquals(2, ranges.size());
+        assertNull(ranges.get(0));
+        assertEquals("bytes=" + content.length / 2 + "-", ranges.get(1));
+        // nothing to cache without a checksum
+        assertFalse(cache.exists());
+    }
+
+    @Test
+    public void testChecksumMismatch() throws Exception {
+        final File jar = new File(temp, "maven-wrapper.jar");
+        final String wrong = sha256(new byte[0]);
+
+        final Exception error = assertThrows(InvocationTargetException.class, () -> download(jar, wrong));
+
+        assertTrue(error.getCause().getMessage().startsWith("SHA-256 mismatch"));
+        assertFalse(jar.exists());
+        assertFalse(new File(temp, "maven-wrapper.jar.part").exists());
+        assertFalse(new File(cache, wrong).exists());
+    }
+
+    private void download(File destination, String sha256) throws Exception {
+        download.invoke(null, "http://127.0.0.1:" + server.getAddress().getPort() + "/wrapper.jar", destination,
+                sha256, cache.toPath());
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        final StringBuilder builder = new StringBuilder();
+        for (final byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+}
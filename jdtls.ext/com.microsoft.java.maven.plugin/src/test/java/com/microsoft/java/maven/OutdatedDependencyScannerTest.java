@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans a pom against a stub local repository and a stub search answering on a local port.
+ */
+public class OutdatedDependencyScannerTest {
+
+    @TempDir
+    File temp;
+
+    private File repository;
+    private File pom;
+    private HttpServer search;
+    // groupId -> search answer
+    private final Map<String, String> answers = new HashMap<>();
+    // the search answers once it is counted down, when a test holds it back
+    private volatile CountDownLatch held;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        repository = new File(temp, "repository");
+        install("com.example", "lib", "1.0", "1.1", "2.0-rc1", "2.1-SNAPSHOT");
+        install("com.example", "tool", "3.0");
+        install("com.example", "edge", "1.0");
+        install("org.example", "other", "1.0", "1.5");
+        pom = new File(temp, "pom.xml");
+        Files.write(pom.toPath(), String.join("\n",
+                "<project>",
+                "  <modelVersion>4.0.0</modelVersion>",
+                "  <groupId>com.example</groupId>",
+                "  <artifactId>app</artifactId>",
+                "  <version>1.0</version>",
+                "  <properties>",
+                "    <lib.version>1.0</lib.version>",
+                "  </properties>",
+                "  <dependencies>",
+                "    <dependency>",
+                "      <groupId>com.example</groupId>",
+                "      <artifactId>lib</artifactId>",
+                "      <version>${lib.version}</version>",
+                "    </dependency>",
+                "    <dependency>",
+                "      <groupId>com.example</groupId>",
+                "      <artifactId>tool</artifactId>",
+                "      <version>3.0</version>",
+                "    </dependency>",
+                "    <dependency>",
+                "      <groupId>com.example</groupId>",
+                "      <artifactId>edge</artifactId>",
+                "      <version>1.0</version>",
+                "    </dependency>",
+                "    <dependency>",
+                "      <groupId>org.example</groupId>",
+                "      <artifactId>other</artifactId>",
+                "      <version>1.5-SNAPSHOT</version>",
+                "    </dependency>",
+                "  </dependencies>",
+                "</project>").getBytes(StandardCharsets.UTF_8));
+
+        answers.put("com.example", "{\"response\":{\"numFound\":2,\"start\":0,\"docs\":[" +
+                "{\"g\":\"com.example\",\"a\":\"tool\",\"latestVersion\":\"3.1\"}," +
+                "{\"g\":\"com.example\",\"a\":\"edge\",\"latestVersion\":\"2.0-M1\"}]}}");
+        search = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        search.createContext("/select", exchange -> {
+            final String query = exchange.getRequestURI().getQuery();
+            final String groupId = query.substring(query.indexOf("g:\"") + 3, query.indexOf("\"&"));
+            final CountDownLatch hold = held;
+            if (hold != null) {
+                try {
+                    hold.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            final byte[] body = answers.getOrDefault(groupId, "{\"response\":{\"docs\":[]}}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        search.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (held != null) {
+            held.countDown();
+        }
+        search.stop(0);
+    }
+
+    @Test
+    public void testLocalVersionsOnly() {
+        final List<OutdatedDependency> outdated = scan(false);
+
+        // the release candidate and the snapshot are newer, but not releases
+        assertEquals(1, outdated.size());
+        final OutdatedDependency lib = outdated.get(0);
+        assertEquals("lib", lib.getArtifactId());
+        assertEquals("1.0", lib.getVersion());
+        assertEquals("1.1", lib.getLatestVersion());
+        // reported on the value of the property the version refers to
+        assertEquals(6, lib.getRange().getStart().getLine());
+        assertEquals(17, lib.getRange().getStart().getCharacter());
+    }
+
+    @Test
+    public void testRemoteVersions() {
+        final List<OutdatedDependency> outdated = scan(true);
+
+        assertEquals(Arrays.asList("lib:1.1", "tool:3.1"), describe(outdated));
+    }
+
+    @Test
+    public void testMalformedAnswer() {
+        // a null doc fails the scanner with a NullPointerException rather than a JSON error
+        answers.put("com.example", "{\"response\":{\"docs\":[null]}}");
+
+        assertEquals(Arrays.asList("lib:1.1"), describe(scan(true)));
+    }
+
+    @Test
+    public void testCanceledWhileSearching() {
+        held = new CountDownLatch(1);
+        final NullProgressMonitor monitor = new NullProgressMonitor();
+        final ScheduledExecutorService canceler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            canceler.schedule(() -> monitor.setCanceled(true), 300, TimeUnit.MILLISECONDS);
+            final long start = System.currentTimeMillis();
+            assertThrows(OperationCanceledException.class, () -> newScanner().scan(Arrays.asList(pom.getPath()),
+                    true, monitor));
+            assertTrue(System.currentTimeMillis() - start < 5000);
+        } finally {
+            canceler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSnapshotsAreSkipped() {
+        assertFalse(describe(scan(true)).stream().anyMatch(dependency -> dependency.startsWith("other:")));
+    }
+
+    @Test
+    public void testPreReleases() {
+        assertTrue(ArtifactVersions.isPreRelease("2.0-rc1"));
+        assertTrue(ArtifactVersions.isPreRelease("2.0.0-RC.2"));
+        assertTrue(ArtifactVersions.isPreRelease("5.0.0-M1"));
+        assertTrue(ArtifactVersions.isPreRelease("1.0-alpha-2"));
+        assertTrue(ArtifactVersions.isPreRelease("2.0b3"));
+        assertTrue(ArtifactVersions.isPreRelease("1.1-SNAPSHOT"));
+        assertFalse(ArtifactVersions.isPreRelease("32.1.3-jre"));
+        assertFalse(ArtifactVersions.isPreRelease("5.3.1.Final"));
+        assertFalse(ArtifactVersions.isPreRelease("1.0-b"));
+        assertFalse(ArtifactVersions.isPreRelease("2.1"));
+    }
+
+    private List<OutdatedDependency> scan(boolean remote) {
+        final Map<String, List<OutdatedDependency>> result = newScanner().scan(Arrays.asList(pom.getPath()),
+                remote, null);
+        assertEquals(1, result.size());
+        return result.get(pom.getPath());
+    }
+
+    private OutdatedDependencyScanner newScanner() {
+        final VersionService versions = new VersionService(repository, "http://127.0.0.1:1/", null);
+        return new OutdatedDependencyScanner(versions,
+                "http://127.0.0.1:" + search.getAddress().getPort() + "/select");
+    }
+
+    private static List<String> describe(List<OutdatedDependency> outdated) {
+        final List<String> result = new ArrayList<>();
+        for (final OutdatedDependency dependency : outdated) {
+            result.add(dependency.getArtifactId() + ":" + dependency.getLatestVersion());
+        }
+        return result;
+    }
+
+    private void install(String groupId, String artifactId, String... versions) throws IOException {
+        final File folder = VersionService.getArtifactFolder(repository, groupId, artifactId);
+        for (final String version : versions) {
+            final File versionFolder = new File(folder, version);
+            Files.createDirectories(versionFolder.toPath());
+            Files.write(new File(versionFolder, artifactId + "-" + version + ".pom").toPath(),
+                    "<project/>".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Answers qualified class name queries from a package trie built from class name fields.
+ */
+public class PackageTrieTest {
+
+    private static final String GUAVA_CLASSES = String.join("\n",
+            "/com/google/common/base/Strings",
+            "/com/google/common/collect/ImmutableList",
+            "/com/google/common/collect/ImmutableMap",
+            "/com/google/common/collect/Lists",
+            "/com/google/common/collect/ImmutableList$Builder");
+    private static final String TESTLIB_CLASSES = String.join("\n",
+            "/com/google/common/collect/ImmutableList",
+            "/com/google/common/collect/testing/Helpers");
+    private static final String APP_CLASSES = String.join("\n",
+            "/Main",
+            "/com/example/App");
+
+    @Test
+    public void testClassesOfPackage() {
+        final PackageTrie trie = newTrie(APP_CLASSES);
+
+        // the first artifact shipping a class wins
+        assertEquals(Arrays.asList(
+                "com.google.guava:guava:33.0.0-jre:com.google.common.collect.ImmutableList",
+                "com.google.guava:guava:33.0.0-jre:com.google.common.collect.ImmutableMap",
+                "com.google.guava:guava:33.0.0-jre:com.google.common.collect.ImmutableList$Builder"),
+                describe(trie.find("com.google.common.collect.Imm", 10)));
+    }
+
+    @Test
+    public void testPackagePrefix() {
+        final PackageTrie trie = newTrie(APP_CLASSES);
+
+        // no class of com.google.common starts with "coll", the packages starting with it are listed
+        assertEquals(Arrays.asList(
+                "com.google.guava:guava:33.0.0-jre:com.google.common.collect.ImmutableList",
+                "com.google.guava:guava:33.0.0-jre:com.google.common.collect.ImmutableMap",
+                "com.google.guava:guava:33.0.0-jre:com.google.common.collect.Lists",
+                "com.google.guava:guava:33.0.0-jre:com.google.common.collect.ImmutableList$Builder",
+                "com.google.guava:guava-testlib:33.0.0-jre:com.google.common.collect.testing.Helpers"),
+                describe(trie.find("com.google.common.coll", 10)));
+        assertEquals(2, trie.find("com.google.common.coll", 2).size());
+        assertTrue(trie.find("com.google.commons.coll", 10).isEmpty());
+    }
+
+    @Test
+    public void testQueriesDifferingInCase() {
+        final PackageTrie trie = newTrie(APP_CLASSES);
+
+        // the names are returned as written in the index
+        assertEquals(describe(trie.find("com.google.common.collect.Imm", 10)),
+                describe(trie.find("COM.Google.common.COLLECT.imm", 10)));
+        assertEquals(Arrays.asList("com.google.guava:guava:33.0.0-jre:com.google.common.base.Strings"),
+                describe(trie.find("Com.Google.Common.Ba", 10)));
+    }
+
+    @Test
+    public void testDefaultPackageIsSkipped() throws IOException {
+        // classes of the default package cannot be imported, they leave no trace in the trie
+        assertArrayEquals(write(newTrie("/com/example/App")), write(newTrie(APP_CLASSES)));
+        assertEquals(Arrays.asList("com.example:app:1.0:com.example.App"),
+                describe(newTrie(APP_CLASSES).find("com.example.", 10)));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final PackageTrie trie = newTrie(APP_CLASSES);
+        final byte[] bytes = write(trie);
+
+        final PackageTrie read = PackageTrie.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+
+        assertArrayEquals(bytes, write(read));
+        assertEquals(describe(trie.find("com.google.common.coll", 10)),
+                describe(read.find("com.google.common.coll", 10)));
+        assertEquals(describe(trie.find("com.Example.a", 10)), describe(read.find("com.Example.a", 10)));
+
+        // the format version follows the magic number
+        bytes[7]++;
+        assertNull(PackageTrie.read(new DataInputStream(new ByteArrayInputStream(bytes))));
+    }
+
+    private static PackageTrie newTrie(String appClasses) {
+        final List<String[]> artifacts = new ArrayList<>();
+        artifacts.add(new String[] { "com.google.guava", "guava", "33.0.0-jre" });
+        artifacts.add(new String[] { "com.google.guava", "guava-testlib", "33.0.0-jre" });
+        artifacts.add(new String[] { "com.example", "app", "1.0" });
+        return PackageTrie.build(1L, artifacts.size(), artifacts,
+                Arrays.asList(GUAVA_CLASSES, TESTLIB_CLASSES, appClasses));
+    }
+
+    private static byte[] write(PackageTrie trie) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            trie.write(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<String> describe(List<PackageTrie.Match> matches) {
+        return matches.stream().map(match -> match.groupId + ":" + match.artifactId + ":" + match.version + ":" +
+                match.fullClassName).collect(Collectors.toList());
+    }
+}
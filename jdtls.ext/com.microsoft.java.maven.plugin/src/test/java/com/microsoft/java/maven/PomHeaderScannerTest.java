@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Reads pom headers, checking where the reader may stop.
+ */
+public class PomHeaderScannerTest {
+
+    @Test
+    public void testPropertiesAfterOtherElements() throws XMLStreamException {
+        final PomHeader header = parse(
+                "<project>",
+                "  <groupId>com.example</groupId>",
+                "  <artifactId>app</artifactId>",
+                "  <version>1.0</version>",
+                "  <description>An application</description>",
+                "  <licenses><license><name>MIT</name></license></licenses>",
+                "  <properties>",
+                "    <java.version>17</java.version>",
+                "  </properties>",
+                "  <dependencies/>",
+                "</project>");
+
+        assertEquals("app", header.getArtifactId());
+        assertEquals("17", header.getProperties().get("java.version"));
+    }
+
+    @Test
+    public void testStopsAtTheFirstBuildSection() throws XMLStreamException {
+        // everything after the start of the dependencies is left unread, even if not well-formed
+        final PomHeader header = parse(
+                "<project>",
+                "  <artifactId>app</artifactId>",
+                "  <url>https://example.com</url>",
+                "  <dependencies>",
+                "    <dependency>");
+
+        assertEquals("app", header.getArtifactId());
+        assertTrue(header.getProperties().isEmpty());
+    }
+
+    @Test
+    public void testAggregatorModulesAfterBuildSections() throws XMLStreamException {
+        final PomHeader header = parse(
+                "<project>",
+                "  <artifactId>parent</artifactId>",
+                "  <packaging>pom</packaging>",
+                "  <dependencyManagement/>",
+                "  <modules>",
+                "    <module>app</module>",
+                "  </modules>",
+                "</project>");
+
+        assertEquals(Arrays.asList("app"), header.getModules());
+    }
+
+    private static PomHeader parse(String... lines) throws XMLStreamException {
+        return PomHeaderScanner.parseHeader("pom.xml",
+                new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8)));
+    }
+}
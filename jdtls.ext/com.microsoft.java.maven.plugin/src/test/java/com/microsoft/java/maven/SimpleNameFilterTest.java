@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Checks that the prefix filter of the simple class names never rules out a prefix of a name.
+ */
+public class SimpleNameFilterTest {
+
+    private static final String[] LOWER_CASE_NAMES = {
+        "arraylist",
+        "hashmap",
+        "immutablemap",
+        "jsonnode",
+        "logger",
+        "objectmapper",
+        "objectreader",
+        "optional",
+        "springapplication",
+        "springbootapplication",
+        "stringutils",
+        "xmlparser",
+        "xmlmapper"
+    };
+
+    @Test
+    public void testEveryPrefixMightStartAName() {
+        final SimpleNameFilter filter = SimpleNameFilter.build(0, LOWER_CASE_NAMES.length, LOWER_CASE_NAMES);
+
+        assertTrue(filter.mightStartName(""));
+        for (final String name : LOWER_CASE_NAMES) {
+            for (int length = 1; length <= name.length(); length++) {
+                assertTrue(filter.mightStartName(name.substring(0, length)), name.substring(0, length));
+            }
+        }
+    }
+
+    @Test
+    public void testHopelessQueriesAreRuledOut() {
+        final SimpleNameFilter filter = SimpleNameFilter.build(0, LOWER_CASE_NAMES.length, LOWER_CASE_NAMES);
+
+        assertFalse(filter.mightStartName("kubernetesclient"));
+        assertFalse(filter.mightStartName("qwx"));
+        assertFalse(filter.mightStartName("objectmapperz"));
+        assertFalse(filter.mightStartName("mapper"));
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        final Random random = new Random(42);
+        final Set<String> names = new HashSet<>();
+        while (names.size() < 20000) {
+            names.add(randomName(random));
+        }
+        final String[] lowerCaseNames = names.toArray(new String[0]);
+        final SimpleNameFilter filter = SimpleNameFilter.build(0, lowerCaseNames.length, lowerCaseNames);
+        for (final String name : lowerCaseNames) {
+            assertTrue(filter.mightStartName(name));
+            assertTrue(filter.mightStartName(name.substring(0, name.length() / 2)));
+        }
+
+        // queries no name starts with, the names being shorter
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightStartName(randomName(random) + "0123456789abcdef")) {
+                falsePositives++;
+            }
+        }
+        // about 1% by design
+        assertTrue(falsePositives < 300, falsePositives + " false positives");
+    }
+
+    private static String randomName(Random random) {
+        final StringBuilder name = new StringBuilder();
+        final int length = 4 + random.nextInt(12);
+        for (int i = 0; i < length; i++) {
+            name.append((char) ('a' + random.nextInt(26)));
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds CamelCase abbreviations and infixes of simple class names in the name index.
+ */
+public class SimpleNameIndexTest {
+
+    private static final String[] NAMES = {
+        "ArrayList",
+        "HashMap",
+        "ImmutableMap",
+        "JsonNode",
+        "Logger",
+        "ObjectMapper",
+        "ObjectReader",
+        "Optional",
+        "SpringApplication",
+        "SpringBootApplication",
+        "StringUtils",
+        "XMLParser",
+        "XmlMapper"
+    };
+
+    private final SimpleNameIndex index = new SimpleNameIndex(0, NAMES.length, NAMES);
+
+    @Test
+    public void testAbbreviations() {
+        final Map<String, Integer> found = index.find("SBApp");
+        assertEquals(Integer.valueOf(ArtifactResult.PREFIX), found.get("springbootapplication"));
+        // SpringApplication has no third hump
+        assertFalse(found.containsKey("springapplication"));
+
+        assertEquals(Integer.valueOf(ArtifactResult.PREFIX), index.find("ObjMapper").get("objectmapper"));
+        assertFalse(index.find("ObjMapper").containsKey("objectreader"));
+        // the humps of an all upper-case name are single letters
+        assertEquals(Integer.valueOf(ArtifactResult.PREFIX), index.find("XMLP").get("xmlparser"));
+    }
+
+    @Test
+    public void testInfixes() {
+        final Map<String, Integer> found = index.find("mapper");
+        assertEquals(Arrays.asList("objectmapper", "xmlmapper"), Arrays.asList(found.keySet().toArray()));
+        assertEquals(Integer.valueOf(ArtifactResult.FUZZY), found.get("objectmapper"));
+
+        // the case of the query does not matter, and names starting with it are left to the prefix search
+        assertEquals(Arrays.asList("hashmap", "immutablemap", "objectmapper", "xmlmapper"),
+                Arrays.asList(index.find("MAP").keySet().toArray()));
+        assertTrue(index.find("ma").isEmpty());
+        assertTrue(index.find("mapperz").isEmpty());
+    }
+
+    @Test
+    public void testNamesWithinTwoEditsKeepTheScan() {
+        // a character no name contains stands for all of them: no trigram of the index has it
+        final Set<Character> alphabet = new HashSet<>();
+        alphabet.add('#');
+        for (final String name : NAMES) {
+            for (final char c : name.toLowerCase().toCharArray()) {
+                alphabet.add(c);
+            }
+        }
+        int checked = 0;
+        for (final String name : NAMES) {
+            final String lowerCaseName = name.toLowerCase();
+            if (lowerCaseName.length() > 12) {
+                continue;
+            }
+            for (final String query : edits(edits(Set.of(lowerCaseName), alphabet), alphabet)) {
+                // the names fuzzy matching accepts are as long as the query or up to 2 characters longer
+                if (query.length() <= lowerCaseName.length() && query.length() >= lowerCaseName.length() - 2) {
+                    assertTrue(index.mayBeWithinDistance(query, 2), query + " is within 2 edits of " + name);
+                    checked++;
+                }
+            }
+        }
+        assertTrue(checked > 100000);
+    }
+
+    @Test
+    public void testHopelessQueriesSkipTheScan() {
+        assertFalse(index.mayBeWithinDistance("kubernetesclient", 2));
+        assertFalse(index.mayBeWithinDistance("qwxqwxqwx", 2));
+        // three edits of objectmapper, one in each piece of the query
+        assertFalse(index.mayBeWithinDistance("objxctmzppzr", 2));
+        // with one edit less, the last piece is found unchanged
+        assertTrue(index.mayBeWithinDistance("objxctmzpper", 2));
+        // the names cannot be that much longer, or shorter
+        assertFalse(index.mayBeWithinDistance("objectmapperfactory", 2));
+        assertFalse(index.mayBeWithinDistance("springbootapp", 2));
+        // the pieces of short queries are too short for trigrams, the scan is always kept
+        assertTrue(index.mayBeWithinDistance("qwxqwx", 2));
+        assertTrue(index.mayBeWithinDistance("qwxqwxqw", 2));
+    }
+
+    @Test
+    public void testHumps() {
+        assertEquals(Arrays.asList("X", "M", "L", "Parser"), SimpleNameIndex.humpsOf("XMLParser"));
+        assertEquals(Arrays.asList("Immutable", "List", "Builder"), SimpleNameIndex.humpsOf("ImmutableList$Builder"));
+        assertEquals(Arrays.asList("max", "value"), SimpleNameIndex.humpsOf("max_value"));
+    }
+
+    /**
+     * Returns the texts and everything one deletion, substitution or insertion away from them.
+     */
+    private static Set<String> edits(Set<String> texts, Set<Character> alphabet) {
+        final Set<String> result = new HashSet<>(texts);
+        for (final String text : texts) {
+            for (int i = 0; i <= text.length(); i++) {
+                if (i < text.length()) {
+                    result.add(text.substring(0, i) + text.substring(i + 1));
+                }
+                for (final char c : alphabet) {
+                    if (i < text.length()) {
+                        result.add(text.substring(0, i) + c + text.substring(i + 1));
+                    }
+                    result.add(text.substring(0, i) + c + text.substring(i));
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+
+package com.microsoft.java.maven;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.eclipse.lsp4j.TextEdit;
+import org.eclipse.lsp4j.WorkspaceEdit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aligns versions across a parent pom managing dependencies and a child pom overriding them.
+ */
+public class VersionAlignmentHandlerTest {
+
+    @TempDir
+    File temp;
+
+    private File parent;
+    private File child;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        parent = write("parent/pom.xml",
+                "<project>",
+                "  <groupId>com.example</groupId>",
+                "  <artifactId>parent</artifactId>",
+                "  <version>1.0</version>",
+                "  <properties>",
+                "    <lib.version>1.0</lib.version>",
+                "  </properties>",
+                "  <dependencyManagement>",
+                "    <dependencies>",
+                "      <dependency>",
+                "        <groupId>com.example</groupId>",
+                "        <artifactId>lib</artifactId>",
+                "        <version>${lib.version}</version>",
+                "      </dependency>",
+                "      <dependency>",
+                "        <groupId>com.example</groupId>",
+                "        <artifactId>external</artifactId>",
+                "        <version>${external.version}</version>",
+                "      </dependency>",
+                "    </dependencies>",
+                "  </dependencyManagement>",
+                "  <profiles>",
+                "    <profile>",
+                "      <id>extra</id>",
+                "      <dependencyManagement>",
+                "        <dependencies>",
+                "          <dependency>",
+                "            <groupId>com.example</groupId>",
+                "            <artifactId>profiled</artifactId>",
+                "            <version>1.0</version>",
+                "          </dependency>",
+                "        </dependencies>",
+                "      </dependencyManagement>",
+                "    </profile>",
+                "  </profiles>",
+                "</project>");
+        child = write("child/pom.xml",
+                "<project>",
+                "  <parent>",
+                "    <groupId>com.example</groupId>",
+                "    <artifactId>parent</artifactId>",
+                "    <version>1.0</version>",
+                "  </parent>",
+                "  <artifactId>child</artifactId>",
+                "  <dependencies>",
+                "    <dependency>",
+                "      <groupId>com.example</groupId>",
+                "      <artifactId>lib</artifactId>",
+                "      <version>0.9</version>",
+                "    </dependency>",
+                "    <dependency>",
+                "      <groupId>com.example</groupId>",
+                "      <artifactId>external</artifactId>",
+                "      <version>0.9</version>",
+                "    </dependency>",
+                "    <dependency>",
+                "      <groupId>com.example</groupId>",
+                "      <artifactId>profiled</artifactId>",
+                "      <version>0.9</version>",
+                "    </dependency>",
+                "  </dependencies>",
+                "</project>");
+    }
+
+    @Test
+    public void testManagedVersionIsChangedAndOverrideRemoved() {
+        final Map<String, List<TextEdit>> changes = align("lib");
+
+        assertEquals(Arrays.asList("5:17-5:20 2.0"), describe(changes, parent));
+        assertEquals(Arrays.asList("11:0-12:0 "), describe(changes, child));
+    }
+
+    @Test
+    public void testManagementInProfilesIsIgnored() {
+        final Map<String, List<TextEdit>> changes = align("profiled");
+
+        assertEquals(Arrays.asList("29:21-29:24 2.0"), describe(changes, parent));
+        // only the active profile would manage it, the override stays and gets the version
+        assertEquals(Arrays.asList("21:15-21:18 2.0"), describe(changes, child));
+    }
+
+    @Test
+    public void testManagedVersionFromOutsideTheWorkspaceIsKept() {
+        final Map<String, List<TextEdit>> changes = align("external");
+
+        assertEquals(Arrays.asList(), describe(changes, parent));
+        assertEquals(Arrays.asList("16:15-16:18 2.0"), describe(changes, child));
+    }
+
+    private Map<String, List<TextEdit>> align(String artifactId) {
+        final WorkspaceEdit edit = VersionAlignmentHandler.alignVersion("com.example", artifactId, "2.0",
+                Arrays.asList(parent.getPath(), child.getPath()), null);
+        return edit.getChanges();
+    }
+
+    private static List<String> describe(Map<String, List<TextEdit>> changes, File pom) {
+        final List<String> result = new ArrayList<>();
+        for (final Map.Entry<String, List<TextEdit>> entry : changes.entrySet()) {
+            if (!entry.getKey().endsWith(pom.getParentFile().getName() + "/pom.xml")) {
+                continue;
+            }
+            for (final TextEdit edit : entry.getValue()) {
+                result.add(edit.getRange().getStart().getLine() + ":" + edit.getRange().getStart().getCharacter() +
+                        "-" + edit.getRange().getEnd().getLine() + ":" + edit.getRange().getEnd().getCharacter() +
+                        " " + edit.getNewText());
+            }
+        }
+        return result;
+    }
+
+    private File write(String path, String... lines) throws IOException {
+        final File file = new File(temp, path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -16,6 +16,9 @@
 import java.net.*;
 import java.io.*;
 import java.nio.channels.*;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.Locale;
 import java.util.Properties;
 
 public class MavenWrapperDownloader {
@@ -45,6 +48,22 @@ public class MavenWrapperDownloader {
      */
     private static final String PROPERTY_NAME_WRAPPER_URL = "wrapperUrl";
 
+    /**
+     * Name of the property holding the expected SHA-256 of the wrapper jar. When absent the download is not verified.
+     */
+    private static final String PROPERTY_NAME_WRAPPER_SHA_256_SUM = "wrapperSha256Sum";
+
+    /**
+     * Timeouts of a single connection in milliseconds, overridable with -Dmvnw.connectTimeout and -Dmvnw.readTimeout.
+     */
+    private static final int CONNECT_TIMEOUT = Integer.getInteger("mvnw.connectTimeout", 10000);
+    private static final int READ_TIMEOUT = Integer.getInteger("mvnw.readTimeout", 30000);
+
+    /**
+     * Number of attempts, every retry resumes from the bytes already downloaded.
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
     public static void main(String args[]) {
         System.out.println("- Downloader started");
         File baseDirectory = new File(args[0]);
@@ -54,6 +73,7 @@ public class MavenWrapperDownloader {
         // wrapperUrl parameter.
         File mavenWrapperPropertyFile = new File(baseDirectory, MAVEN_WRAPPER_PROPERTIES_PATH);
         String url = DEFAULT_DOWNLOAD_URL;
+        String sha256 = null;
         if(mavenWrapperPropertyFile.exists()) {
             FileInputStream mavenWrapperPropertyFileInputStream = null;
             try {
@@ -61,6 +81,7 @@ public class MavenWrapperDownloader {
                 Properties mavenWrapperProperties = new Properties();
                 mavenWrapperProperties.load(mavenWrapperPropertyFileInputStream);
                 url = mavenWrapperProperties.getProperty(PROPERTY_NAME_WRAPPER_URL, url);
+                sha256 = mavenWrapperProperties.getProperty(PROPERTY_NAME_WRAPPER_SHA_256_SUM);
             } catch (IOException e) {
                 System.out.println("- ERROR loading '" + MAVEN_WRAPPER_PROPERTIES_PATH + "'");
             } finally {
@@ -84,7 +105,7 @@ public class MavenWrapperDownloader {
         }
         System.out.println("- Downloading to: " + outputFile.getAbsolutePath());
         try {
-            downloadFileFromURL(url, outputFile);
+            downloadFileFromURL(url, outputFile, sha256);
             System.out.println("Done");
             System.exit(0);
         } catch (Throwable e) {
@@ -94,7 +115,7 @@ public class MavenWrapperDownloader {
         }
     }
 
-    private static void downloadFileFromURL(String urlString, File destination) throws Exception {
+    private static void downloadFileFromURL(String urlString, File destination, String expectedSha256) throws Exception {
         if (System.getenv("MVNW_USERNAME") != null && System.getenv("MVNW_PASSWORD") != null) {
             String username = System.getenv("MVNW_USERNAME");
             char[] password = System.getenv("MVNW_PASSWORD").toCharArray();
@@ -105,13 +126,142 @@ public class MavenWrapperDownloader {
                 }
             });
         }
-        URL website = new URL(urlString);
-        ReadableByteChannel rbc;
-        rbc = Channels.newChannel(website.openStream());
-        FileOutputStream fos = new FileOutputStream(destination);
-        fos.getChannel().transferFrom(rbc, 0, Long.MAX_VALUE);
-        fos.close();
-        rbc.close();
+        String mavenUserHome = System.getenv("MAVEN_USER_HOME");
+        Path home = mavenUserHome != null && !mavenUserHome.isEmpty() ? Paths.get(mavenUserHome)
+                : Paths.get(System.getProperty("user.home"), ".m2");
+        downloadFileFromURL(urlString, destination, expectedSha256, home.resolve("wrapper/cache/sha256"));
+    }
+
+    /**
+     * Places the file at the given url into destination, only ever replacing it by a complete file. Verified
+     * downloads are kept under their SHA-256 in cacheDirectory, shared by all projects (and by mvnw when it
+     * downloads with wget or curl), so setting up another project with the same wrapper is a local hard link or
+     * copy.
+     */
+    static void downloadFileFromURL(String urlString, File destination, String expectedSha256, Path cacheDirectory)
+            throws Exception {
+        String expected = expectedSha256 == null || expectedSha256.trim().isEmpty() ? null
+                : expectedSha256.trim().toLowerCase(Locale.ROOT);
+        if (expected != null && !expected.matches("[0-9a-f]{64}")) {
+            throw new IOException("Invalid " + PROPERTY_NAME_WRAPPER_SHA_256_SUM + ": " + expectedSha256);
+        }
+        Path target = destination.toPath();
+        Path cached = expected == null ? null : cacheDirectory.resolve(expected);
+        if (cached != null && Files.isRegularFile(cached) && expected.equals(sha256(cached))) {
+            System.out.println("- Using cached " + cached);
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.deleteIfExists(temp);
+            try {
+                Files.createLink(temp, cached);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(cached, temp);
+            }
+            move(temp, target);
+            return;
+        }
+
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        download(new URL(urlString), part);
+        String actual = sha256(part);
+        if (expected != null && !expected.equals(actual)) {
+            Files.delete(part);
+            throw new IOException("SHA-256 mismatch for " + urlString + ": expected " + expected + " but was "
+                    + actual);
+        }
+        if (cached != null) {
+            try {
+                Files.createDirectories(cacheDirectory);
+                Path temp = cacheDirectory.resolve(expected + ".tmp");
+                Files.copy(part, temp, StandardCopyOption.REPLACE_EXISTING);
+                move(temp, cached);
+            } catch (IOException e) {
+                // The cache only saves later downloads.
+            }
+        }
+        move(part, target);
+    }
+
+    /**
+     * Downloads url into part with connect and read timeouts. A broken transfer is resumed with a range request,
+     * guarded by If-Range so that a file changed in the meantime is downloaded again as a whole.
+     */
+    private static void download(URL url, Path part) throws Exception {
+        Files.deleteIfExists(part);
+        String validator = null;
+        long length = -1;
+        IOException failure = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            long have = Files.isRegularFile(part) ? Files.size(part) : 0;
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            connection.setRequestProperty("Accept-Encoding", "identity");
+            if (have > 0 && validator != null) {
+                connection.setRequestProperty("Range", "bytes=" + have + "-");
+                connection.setRequestProperty("If-Range", validator);
+            }
+            try {
+                int status = connection.getResponseCode();
+                boolean append = have > 0 && validator != null && status == HttpURLConnection.HTTP_PARTIAL;
+                if (!append && status != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("Server returned HTTP " + status + " for " + url);
+                }
+                if (!append) {
+                    validator = connection.getHeaderField("ETag");
+                    if (validator == null || validator.startsWith("W/")) {
+                        validator = connection.getHeaderField("Last-Modified");
+                    }
+                    length = connection.getContentLengthLong();
+                }
+                try (InputStream in = connection.getInputStream();
+                        OutputStream out = append ? Files.newOutputStream(part, StandardOpenOption.APPEND)
+                                : Files.newOutputStream(part)) {
+                    byte[] buffer = new byte[64 * 1024];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                    }
+                }
+                if (length < 0 || Files.size(part) >= length) {
+                    return;
+                }
+                failure = new IOException("Connection closed early while downloading " + url);
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                connection.disconnect();
+            }
+            if (attempt < MAX_ATTEMPTS) {
+                System.out.println("- Retrying download (" + failure.getMessage() + ")");
+                Thread.sleep(500L * attempt);
+            }
+        }
+        Files.deleteIfExists(part);
+        throw failure;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String sha256(Path file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder builder = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
     }
 
 }
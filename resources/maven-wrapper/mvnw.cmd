@@ -118,6 +118,8 @@ for /F "usebackq delims=" %%a in ("%MAVEN_PROJECTBASEDIR%\.mvn\jvm.config") do s
 
 SET MAVEN_JAVA_EXE="%JAVA_HOME%\bin\java.exe"
 set WRAPPER_JAR="%MAVEN_PROJECTBASEDIR%\.mvn\wrapper\maven-wrapper.jar"
+@REM The download goes here first and only replaces the jar once verified.
+set WRAPPER_JAR_PART="%MAVEN_PROJECTBASEDIR%\.mvn\wrapper\maven-wrapper.jar.part"
 set WRAPPER_LAUNCHER=org.apache.maven.wrapper.MavenWrapperMain
 
 set DOWNLOAD_URL="https://repo.maven.apache.org/maven2/io/takari/maven-wrapper/0.5.5/maven-wrapper-0.5.5.jar"
@@ -126,6 +128,11 @@ FOR /F "tokens=1,2 delims==" %%A IN ("%MAVEN_PROJECTBASEDIR%\.mvn\wrapper\maven-
     IF "%%A"=="wrapperUrl" SET DOWNLOAD_URL=%%B
 )
 
+SET WRAPPER_SHA_256_SUM=
+FOR /F "usebackq tokens=1,2 delims==" %%A IN ("%MAVEN_PROJECTBASEDIR%\.mvn\wrapper\maven-wrapper.properties") DO (
+    IF "%%A"=="wrapperSha256Sum" SET WRAPPER_SHA_256_SUM=%%B
+)
+
 @REM Extension to allow automatically downloading the maven-wrapper.jar from Maven-central
 @REM This allows using the maven wrapper in projects that prohibit checking in binary data.
 if exist %WRAPPER_JAR% (
@@ -146,11 +153,27 @@ if exist %WRAPPER_JAR% (
 		"if (-not ([string]::IsNullOrEmpty('%MVNW_USERNAME%') -and [string]::IsNullOrEmpty('%MVNW_PASSWORD%'))) {"^
 		"$webclient.Credentials = new-object System.Net.NetworkCredential('%MVNW_USERNAME%', '%MVNW_PASSWORD%');"^
 		"}"^
-		"[Net.ServicePointManager]::SecurityProtocol = [Net.SecurityProtocolType]::Tls12; $webclient.DownloadFile('%DOWNLOAD_URL%', '%WRAPPER_JAR%')"^
+		"[Net.ServicePointManager]::SecurityProtocol = [Net.SecurityProtocolType]::Tls12; $webclient.DownloadFile('%DOWNLOAD_URL%', '%WRAPPER_JAR_PART%')"^
 		"}"
+    if ERRORLEVEL 1 goto error
     if "%MVNW_VERBOSE%" == "true" (
         echo Finished downloading %WRAPPER_JAR%
     )
+    if not "%WRAPPER_SHA_256_SUM%" == "" (
+        powershell -Command "&{"^
+			"$hash = (Get-FileHash \"%WRAPPER_JAR_PART%\" -Algorithm SHA256).Hash.ToLower();"^
+			"if ('%WRAPPER_SHA_256_SUM%' -ne $hash) {"^
+			"Remove-Item \"%WRAPPER_JAR_PART%\";"^
+			"Write-Output 'Error: Failed to validate Maven wrapper SHA-256, your Maven wrapper might be compromised.';"^
+			"Write-Output 'If you updated the wrapper, you need to update the wrapperSha256Sum property.';"^
+			"Write-Output 'The download was deleted, the next run downloads it again.';"^
+			"exit 1;"^
+			"}"^
+			"}"
+        if ERRORLEVEL 1 goto error
+    )
+    move /Y %WRAPPER_JAR_PART% %WRAPPER_JAR% >NUL
+    if ERRORLEVEL 1 goto error
 )
 @REM End of extension
 
@@ -47,6 +47,18 @@ export class Settings {
         workspace.getConfiguration().update("maven.executable.path", mvnPath, true);
     }
 
+    public static archetypeCatalogs(): string[] {
+        return _getMavenSection<string[]>("archetype.catalogs") ?? [];
+    }
+
+    public static archetypeAutoUpdateCatalogs(): boolean {
+        return !!_getMavenSection<boolean>("archetype.autoUpdateCatalogs");
+    }
+
+    public static artifactSearchIndexes(): string[] {
+        return _getMavenSection<string[]>("artifactSearch.indexes") ?? [];
+    }
+
     public static getSettingsFilePath(): string | undefined {
         return _getMavenSection<string>("settingsFile");
     }
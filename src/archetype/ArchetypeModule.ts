@@ -7,6 +7,7 @@ import * as path from "path";
 import * as vscode from "vscode";
 import { Uri, workspace } from "vscode";
 import { sendInfo } from "vscode-extension-telemetry-wrapper";
+import { refreshArchetypesInLanguageServer } from "../jdtls/archetypes";
 import { mavenTerminal } from "../mavenTerminal";
 import { Settings } from "../Settings";
 import { getPathToExtensionRoot } from "../utils/contextUtils";
@@ -102,6 +103,10 @@ export class ArchetypeModule {
     }
 
     public static async updateArchetypeCatalog(): Promise<void> {
+        // the language server downloads the catalogs to disk and indexes them without loading them as a whole
+        if (await refreshArchetypesInLanguageServer()) {
+            return;
+        }
         const xml: string = await Utils.downloadFile(REMOTE_ARCHETYPE_CATALOG_URL, true);
         const archetypes: Archetype[] = await ArchetypeModule.listArchetypeFromXml(xml);
         const targetFilePath: string = path.join(getPathToExtensionRoot(), "resources", "archetypes.json");
@@ -4,6 +4,7 @@
 import * as fse from "fs-extra";
 import * as path from "path";
 import { Disposable, QuickInputButtons, QuickPick, QuickPickItem, QuickPickItemKind, window } from "vscode";
+import { searchArchetypesInLanguageServer } from "../../jdtls/archetypes";
 import { getMavenLocalRepository, getPathToExtensionRoot } from "../../utils/contextUtils";
 import { Archetype } from "../Archetype";
 import { ArchetypeModule } from "../ArchetypeModule";
@@ -15,12 +16,15 @@ interface IArchetypePickItem extends QuickPickItem {
 
 const LABEL_NO_ARCHETYPE = "No Archetype...";
 const LABEL_MORE = "More...";
+// archetypes listed at once when the language server searches the catalogs
+const MAX_SEARCH_RESULTS = 200;
 
 export class SelectArchetypeStep implements IProjectCreationStep {
     /**
      * This has to be the first step, no back buttons provided for previous steps.
      */
     public readonly previousStep: undefined;
+    private querySequence = 0;
 
     public async run(metadata: IProjectCreationMetadata): Promise<StepResult> {
         const disposables: Disposable[] = [];
@@ -31,13 +35,30 @@ export class SelectArchetypeStep implements IProjectCreationStep {
             pickBox.matchOnDescription = true;
             pickBox.ignoreFocusOut = true;
             pickBox.items = items;
+            let showingAll = false;
             disposables.push(
                 pickBox.onDidTriggerButton(async (item) => {
                     if (item === QuickInputButtons.Back) {
+                        showingAll = false;
                         pickBox.items = await this.getArchetypePickItems(false);
                         pickBox.buttons = [];
                     }
                 }),
+                pickBox.onDidChangeValue(async (value: string) => {
+                    if (!showingAll) {
+                        return;
+                    }
+                    // all archetypes are not listed at once, search the catalogs for the best ones
+                    const sequence: number = ++this.querySequence;
+                    pickBox.busy = true;
+                    const searchItems: IArchetypePickItem[] | undefined = await this.searchArchetypePickItems(value);
+                    if (sequence === this.querySequence) {
+                        pickBox.busy = false;
+                        if (searchItems !== undefined) {
+                            pickBox.items = searchItems;
+                        }
+                    }
+                }),
                 pickBox.onDidAccept(async () => {
                     if (pickBox.selectedItems[0].archetype === undefined) {
                         if (pickBox.selectedItems[0].label === LABEL_NO_ARCHETYPE) {
@@ -45,7 +66,8 @@ export class SelectArchetypeStep implements IProjectCreationStep {
                             resolve(StepResult.NEXT);
                         } else if (pickBox.selectedItems[0].label === LABEL_MORE) {
                             // More archetypes...
-                            pickBox.items = await this.getArchetypePickItems(true);
+                            showingAll = true;
+                            pickBox.items = await this.getArchetypePickItems(true, pickBox.value);
                             pickBox.buttons = [QuickInputButtons.Back];
                         } else {
                             // IMPOSSIBLE
@@ -74,7 +96,7 @@ export class SelectArchetypeStep implements IProjectCreationStep {
         }
     }
 
-    private async getArchetypePickItems(all?: boolean): Promise<IArchetypePickItem[]> {
+    private async getArchetypePickItems(all?: boolean, query?: string): Promise<IArchetypePickItem[]> {
         const noArchetypeButton: IArchetypePickItem = {
             label: LABEL_NO_ARCHETYPE,
             description: "",
@@ -87,13 +109,8 @@ export class SelectArchetypeStep implements IProjectCreationStep {
             detail: "Find more archetypes available in remote catalog.",
             alwaysShow: true
         };
-        const archetypes = await this.loadArchetypePickItems(all);
-        const pickItems = archetypes.map(archetype => ({
-            archetype,
-            label: archetype.artifactId ? `$(package) ${archetype.artifactId} ` : "More...",
-            description: archetype.groupId ? `${archetype.groupId}` : "",
-            detail: archetype.description
-        }));
+        const searchItems: IArchetypePickItem[] | undefined = all ? await this.searchArchetypePickItems(query ?? "") : undefined;
+        const pickItems: IArchetypePickItem[] = searchItems ?? (await this.loadArchetypePickItems(all)).map(toPickItem);
         const SEP_ARCHETYPE: IArchetypePickItem = {
             label: "Popular Archetypes",
             kind: QuickPickItemKind.Separator
@@ -101,7 +118,28 @@ export class SelectArchetypeStep implements IProjectCreationStep {
         return all ? pickItems : [noArchetypeButton, moreButton, SEP_ARCHETYPE, ...pickItems];
     }
 
+    /**
+     * Search the catalogs indexed by the language server, the best matches first.
+     *
+     * @returns the pick items, or undefined if the language server cannot search the catalogs
+     */
+    private async searchArchetypePickItems(query: string): Promise<IArchetypePickItem[] | undefined> {
+        const archetypes: Archetype[] | undefined = await searchArchetypesInLanguageServer(query, MAX_SEARCH_RESULTS);
+        // matched by words of the description too, which the quick pick would filter out
+        return archetypes?.map(archetype => ({ ...toPickItem(archetype), alwaysShow: true }));
+    }
+
     private async loadArchetypePickItems(all?: boolean): Promise<Archetype[]> {
+        if (!all) {
+            const [localOnlyItems, popularIds] = await Promise.all([
+                searchArchetypesInLanguageServer("", MAX_SEARCH_RESULTS, { localOnly: true }),
+                this.getPopularArchetypeIds()
+            ]);
+            const recommendedItems: Archetype[] | undefined = localOnlyItems && await searchArchetypesInLanguageServer("", popularIds.length, { identifiers: popularIds });
+            if (localOnlyItems !== undefined && recommendedItems !== undefined) {
+                return [...localOnlyItems, ...recommendedItems];
+            }
+        }
         // from local catalog
         const localItems: Archetype[] = await this.getLocalArchetypeItems();
         // from cached remote-catalog
@@ -116,17 +154,17 @@ export class SelectArchetypeStep implements IProjectCreationStep {
     }
 
     private async getRecommendedItems(allItems: Archetype[]): Promise<Archetype[]> {
+        const fixedList: string[] = await this.getPopularArchetypeIds();
+        return fixedList.map((fullname: string) => allItems.find((item: Archetype) => fullname === `${item.groupId}:${item.artifactId}`)).filter(Boolean) as Archetype[];
+    }
+
+    private async getPopularArchetypeIds(): Promise<string[]> {
         // Top popular archetypes according to usage data
-        let fixedList: string[] | undefined;
         try {
-            fixedList = await fse.readJSON(path.join(getPathToExtensionRoot(), "resources", "popular_archetypes.json"));
+            return await fse.readJSON(path.join(getPathToExtensionRoot(), "resources", "popular_archetypes.json"));
         } catch (error) {
             console.error(error);
-        }
-        if (!fixedList) {
             return [];
-        } else {
-            return fixedList.map((fullname: string) => allItems.find((item: Archetype) => fullname === `${item.groupId}:${item.artifactId}`)).filter(Boolean) as Archetype[];
         }
     }
 
@@ -157,3 +195,12 @@ export class SelectArchetypeStep implements IProjectCreationStep {
         }
     }
 }
+
+function toPickItem(archetype: Archetype): IArchetypePickItem {
+    return {
+        archetype,
+        label: archetype.artifactId ? `$(package) ${archetype.artifactId} ` : "More...",
+        description: archetype.groupId ? `${archetype.groupId}` : "",
+        detail: archetype.description
+    };
+}
@@ -114,12 +114,17 @@ export class ArtifactProvider implements IXmlCompletionProvider {
                     return [];
                 }
 
-                const [centralItems, indexItems, localItems] = await settledAll([
+                // the language server already merges the local repository, the index and cached remote metadata
+                const [serverItems] = await settledAll([this.indexProvider.getVersionCandidates(groupIdHint, artifactIdHint)]);
+                if (serverItems.length > 0) {
+                    serverItems.forEach(item => item.range = targetRange);
+                    return serverItems;
+                }
+                const [centralItems, localItems] = await settledAll([
                     this.centralProvider.getVersionCandidates(groupIdHint, artifactIdHint, undefined, token),
-                    this.indexProvider.getVersionCandidates(groupIdHint, artifactIdHint),
                     this.localProvider.getVersionCandidates(groupIdHint, artifactIdHint),
                 ]);
-                const mergedItems: vscode.CompletionItem[] = _.unionBy(centralItems, indexItems, localItems, (item) => item.insertText);
+                const mergedItems: vscode.CompletionItem[] = _.unionBy(centralItems, localItems, (item) => item.insertText);
                 mergedItems.forEach(item => item.range = targetRange);
                 return mergedItems;
             }
@@ -1,12 +1,22 @@
 // Copyright (c) Microsoft Corporation. All rights reserved.
 // Licensed under the MIT license.
 
+import * as _ from "lodash";
 import * as vscode from "vscode";
 import { IArtifactSearchResult, ISearchArtifactParam, SearchType } from "../../../jdtls/artifactSearcher";
 import { executeJavaLanguageServerCommand, isJavaLanguageServerStandard } from "../../../jdtls/commands";
 import { COMMAND_COMPLETION_ITEM_SELECTED, INFO_COMPLETION_ITEM_SELECTED } from "../../constants";
 import { IArtifactCompletionProvider } from "./IArtifactProvider";
-import { getSortText } from "../../utils";
+
+const VERSION_SORT_TEXT_DIGITS = 5;
+
+interface IArtifactVersions {
+    groupId: string;
+    artifactId: string;
+    versions: string[];
+    latest?: string;
+    release?: string;
+}
 
 export class FromIndex implements IArtifactCompletionProvider {
     public async getGroupIdCandidates(groupIdHint: string, artifactIdHint: string): Promise<vscode.CompletionItem[]> {
@@ -69,20 +79,17 @@ export class FromIndex implements IArtifactCompletionProvider {
         if (!isJavaLanguageServerStandard()) {
             return [];
         }
-        const searchParam: ISearchArtifactParam = {
-            searchType: SearchType.identifier,
-            groupId,
-            artifactId
-        };
-        const docs: IArtifactSearchResult[] = await executeJavaLanguageServerCommand("java.maven.searchArtifact", searchParam);
+        // merged from the local repository, the index and remote metadata, newest first as Maven orders them;
+        // expired remote metadata is refreshed in the background, so this never waits for the network
+        const result: IArtifactVersions | undefined = await executeJavaLanguageServerCommand("java.maven.getVersions", groupId, artifactId);
         const commandOnSelection: vscode.Command = {
             title: "selected", command: COMMAND_COMPLETION_ITEM_SELECTED,
             arguments: [{ infoName: INFO_COMPLETION_ITEM_SELECTED, completeFor: "version", source: "maven-index" }]
         };
-        return docs.map((doc) => {
-            const item: vscode.CompletionItem = new vscode.CompletionItem(doc.version, vscode.CompletionItemKind.Constant);
-            item.insertText = doc.version;
-            item.sortText = getSortText(doc.version);
+        return (result?.versions ?? []).map((version, index) => {
+            const item: vscode.CompletionItem = new vscode.CompletionItem(version, vscode.CompletionItemKind.Constant);
+            item.insertText = version;
+            item.sortText = _.padStart(index.toString(), VERSION_SORT_TEXT_DIGITS, "0");
             item.command = commandOnSelection;
             return item;
         });
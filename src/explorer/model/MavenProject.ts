@@ -5,6 +5,8 @@ import * as fs from "fs";
 import * as _ from "lodash";
 import * as path from "path";
 import * as vscode from "vscode";
+import { IPomHeader } from "../../jdtls/pomHeaders";
+import { IMavenProfileInfo, profilesFromLanguageServer } from "../../jdtls/profiles";
 import { MavenProjectManager } from "../../project/MavenProjectManager";
 import { Settings } from "../../Settings";
 import { getPathToExtensionRoot } from "../../utils/contextUtils";
@@ -220,6 +222,14 @@ export class MavenProject implements ITreeItem {
         }
     }
 
+    /**
+     * Use the header scanned by the Java language server instead of parsing the whole pom.
+     */
+    public setHeader(header: IPomHeader): void {
+        this._pom = toPomObject(header);
+        this.updateProperties();
+    }
+
     public getDependencyVersion(gid: string, aid: string): string | undefined {
         // from effective POM
         const deps: any[] | undefined = this.dependencies;
@@ -311,6 +321,11 @@ export class MavenProject implements ITreeItem {
     }
 
     public async refreshProfiles() {
+        const profileInfos: IMavenProfileInfo[] | undefined = await profilesFromLanguageServer(this.pomPath);
+        if (profileInfos) {
+            this.profiles = profileInfos.map(p => new MavenProfile(this, p.id, p.active, p.source));
+            return;
+        }
         const output = await rawProfileList(this.pomPath);
         if (output) {
             const profiles = Utils.parseProfilesOutput(this, output);
@@ -318,3 +333,36 @@ export class MavenProject implements ITreeItem {
         }
     }
 }
+
+/**
+ * Shape a scanned header like the parsed pom, so the getters work the same for both.
+ */
+function toPomObject(header: IPomHeader): any {
+    const project: any = {};
+    for (const key of ["groupId", "artifactId", "version", "name", "packaging"]) {
+        const value: string | undefined = (header as any)[key];
+        if (value !== undefined) {
+            project[key] = [value];
+        }
+    }
+    if (header.modules.length > 0) {
+        project.modules = [{ module: header.modules }];
+    }
+    if (header.parent !== undefined) {
+        const parent: any = {};
+        for (const [key, value] of Object.entries(header.parent)) {
+            if (value !== undefined) {
+                parent[key] = [value];
+            }
+        }
+        project.parent = [parent];
+    }
+    if (Object.keys(header.properties).length > 0) {
+        const properties: any = {};
+        for (const [key, value] of Object.entries(header.properties)) {
+            properties[key] = [value];
+        }
+        project.properties = [properties];
+    }
+    return { project };
+}
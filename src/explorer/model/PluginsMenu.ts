@@ -3,6 +3,7 @@
 
 import * as vscode from "vscode";
 import { MavenExplorerProvider } from "../MavenExplorerProvider";
+import { pluginInfoProvider } from "../pluginInfoProvider";
 import { ITreeItem } from "./ITreeItem";
 import { MavenPlugin } from "./MavenPlugin";
 import { MavenProject } from "./MavenProject";
@@ -16,7 +17,11 @@ export class PluginsMenu extends ProjectMenu implements ITreeItem {
 
     public async getChildren() : Promise<MavenPlugin[]> {
         await this.project.getEffectivePom();
-        return this.project.plugins;
+        const plugins: MavenPlugin[] = this.project.plugins;
+        // not awaited: the plugins show up right away, their prefixes and goals wait for the batch request
+        pluginInfoProvider.prefetchPlugins(this.project.pomPath, plugins.map(p => ({ groupId: p.groupId, artifactId: p.artifactId, version: p.version })))
+            .catch(console.error);
+        return plugins;
     }
 
     public getTreeItem(): vscode.TreeItem | Thenable<vscode.TreeItem> {
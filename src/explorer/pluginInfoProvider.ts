@@ -5,6 +5,7 @@ import * as fs from "fs";
 import * as _ from "lodash";
 import * as path from "path";
 import * as vscode from "vscode";
+import { describePluginsFromLanguageServer, IPluginCoordinates, IPluginDescriptor } from "../jdtls/pluginDescriptors";
 import { getMavenLocalRepository } from "../utils/contextUtils";
 import { readContentFromJar } from "../utils/jarUtils";
 import { fetchPluginMetadataXml } from "../utils/requestUtils";
@@ -36,12 +37,46 @@ interface PluginDescription {
 
 class PluginInfoProvider {
     private _context: vscode.ExtensionContext;
+    // plugins being described by a batch request, keyed by groupId:artifactId
+    private _pending: Map<string, Promise<void>> = new Map();
 
     public initialize(context: vscode.ExtensionContext): void {
         this._context = context;
     }
 
+    /**
+     * Describe all the uncached plugins of a project with a single language server request, so that expanding
+     * them later does not fall back to reading jars or running help:describe one by one.
+     */
+    public async prefetchPlugins(pomPath: string, plugins: IPluginCoordinates[]): Promise<void> {
+        const cache: IPluginCache = this.getPluginCache();
+        const missing: IPluginCoordinates[] = plugins.filter(p => p.version === undefined
+            || _.get(cache, [p.groupId, p.artifactId, "versions", p.version]) === undefined);
+        if (missing.length === 0) {
+            return;
+        }
+        const request: Promise<void> = (async () => {
+            const descriptors: IPluginDescriptor[] | undefined = await describePluginsFromLanguageServer(pomPath, missing);
+            if (descriptors) {
+                await this.cachePluginDescriptors(descriptors);
+            }
+        })();
+        for (const plugin of missing) {
+            this._pending.set(`${plugin.groupId}:${plugin.artifactId}`, request);
+        }
+        try {
+            await request;
+        } finally {
+            for (const plugin of missing) {
+                if (this._pending.get(`${plugin.groupId}:${plugin.artifactId}`) === request) {
+                    this._pending.delete(`${plugin.groupId}:${plugin.artifactId}`);
+                }
+            }
+        }
+    }
+
     public async getPluginPrefix(gid: string, aid: string): Promise<string | undefined> {
+        await this._pending.get(`${gid}:${aid}`);
         // read from cache if exists
         const infos: PluginInfoDict = _.get(this.getPluginCache(), [gid]) ?? {};
         const info: IPluginInfo = _.get(infos, [aid]) ?? {};
@@ -66,6 +101,7 @@ class PluginInfoProvider {
     }
 
     public async getPluginGoals(pomPath: string, groupId: string, artifactId: string, version: string): Promise<string[] | undefined> {
+        await this._pending.get(`${groupId}:${artifactId}`);
         // read from cache if exists
         const infos: PluginInfoDict = _.get(this.getPluginCache(), [groupId]) ?? {};
         const info: IPluginInfo = _.get(infos, [artifactId]) ?? {};
@@ -77,7 +113,8 @@ class PluginInfoProvider {
 
         // Read from `jar!META-INF/maven/plugin.xml` if plugin.jar is available in local repository.
         // See https://github.com/microsoft/vscode-maven/issues/895
-        const desc: PluginDescription | undefined = await parseMetadataFromJar(groupId, artifactId, version);
+        const desc: PluginDescription | undefined = await parseMetadataFromLanguageServer(pomPath, groupId, artifactId, version)
+            ?? await parseMetadataFromJar(groupId, artifactId, version);
         if (desc) {
             info.prefix = desc.goalPrefix;
             info.versions[version] = desc.goals;
@@ -103,6 +140,20 @@ class PluginInfoProvider {
         await this._context.globalState.update(KEY_PLUGINS, plugins);
     }
 
+    private async cachePluginDescriptors(descriptors: IPluginDescriptor[]): Promise<void> {
+        const plugins: any = this._context.globalState.get(KEY_PLUGINS) ?? {};
+        for (const desc of descriptors) {
+            if (desc.version === undefined || desc.goals === undefined) {
+                continue;
+            }
+            const info: IPluginInfo = _.get(plugins, [desc.groupId, desc.artifactId]) ?? {};
+            info.prefix = desc.goalPrefix ?? info.prefix;
+            info.versions = { ...info.versions, [desc.version]: desc.goals };
+            _.set(plugins, [desc.groupId, desc.artifactId], info);
+        }
+        await this._context.globalState.update(KEY_PLUGINS, plugins);
+    }
+
     private async cachePluginInfo(gid: string, aid: string, info: IPluginInfo): Promise<void> {
         const plugins: any = this._context.globalState.get(KEY_PLUGINS) ?? {};
         _.set(plugins, [gid, aid], info);
@@ -149,6 +200,18 @@ class PluginInfoProvider {
 
 export const pluginInfoProvider: PluginInfoProvider = new PluginInfoProvider();
 
+async function parseMetadataFromLanguageServer(pomPath: string, groupId: string, artifactId: string, version: string): Promise<PluginDescription | undefined> {
+    const descriptors: IPluginDescriptor[] | undefined = await describePluginsFromLanguageServer(pomPath, [{ groupId, artifactId, version }]);
+    const desc: IPluginDescriptor | undefined = descriptors?.[0];
+    if (desc?.goals === undefined) {
+        return undefined;
+    }
+    return {
+        goalPrefix: desc.goalPrefix ?? "",
+        goals: desc.goals
+    };
+}
+
 async function parseMetadataFromJar(groupId: string, artifactId: string, version: string): Promise<PluginDescription | undefined> {
     const jarFilePath = path.join(getMavenLocalRepository(), ...groupId.split("."), artifactId, version, `${artifactId}-${version}.jar`);
     try {
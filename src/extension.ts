@@ -38,6 +38,8 @@ import { executeLifecyclePhaseHandler } from "./handlers/lifecycle/executeLifecy
 import { HoverProvider } from "./hover/hoverProvider";
 import { registerArtifactSearcher } from "./jdtls/artifactSearcher";
 import { isJavaExtEnabled } from "./jdtls/commands";
+import { COMMAND_DEPENDENCY_TREE_CHANGED } from "./jdtls/dependencyTree";
+import { COMMAND_BACKGROUND_OUTPUT, COMMAND_BUILD_EVENTS, onBackgroundOutput, onBuildEvents } from "./jdtls/mavenExecution";
 import { mavenOutputChannel } from "./mavenOutputChannel";
 import { mavenTerminal } from "./mavenTerminal";
 import { init as initMavenXsd } from "./mavenXsd";
@@ -79,6 +81,17 @@ async function doActivate(_operationId: string, context: vscode.ExtensionContext
     registerPomFileWatcher(context);
     // register output, terminal, taskExecutor, problemMatcher
     context.subscriptions.push(mavenOutputChannel, mavenTerminal, taskExecutor, mavenProblemMatcher);
+    // output of background goals run by the language server, not instrumented as it is called for every chunk
+    context.subscriptions.push(vscode.commands.registerCommand(COMMAND_BACKGROUND_OUTPUT, onBackgroundOutput));
+    context.subscriptions.push(vscode.commands.registerCommand(COMMAND_BUILD_EVENTS, onBuildEvents));
+    // a tree shown from an outdated snapshot has been resolved again by the language server
+    context.subscriptions.push(vscode.commands.registerCommand(COMMAND_DEPENDENCY_TREE_CHANGED, (pomPath: string) => {
+        contentProvider.invalidate(dependenciesContentUri(pomPath));
+        const project: MavenProject | undefined = MavenProjectManager.get(pomPath);
+        if (project) {
+            MavenExplorerProvider.getInstance().refresh(project);
+        }
+    }));
     // register common goals
     DEFAULT_MAVEN_LIFECYCLES.forEach((goal: string) => {
         registerCommandRequiringTrust(context, `maven.goal.${goal}`, async (node: MavenProject) => executeInTerminal({ command: goal, pomfile: node.pomPath }));
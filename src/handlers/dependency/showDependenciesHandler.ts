@@ -4,6 +4,7 @@
 import * as vscode from "vscode";
 import { setUserError } from "vscode-extension-telemetry-wrapper";
 import { MavenProject } from "../../explorer/model/MavenProject";
+import { resolveDependencyTreeText } from "../../jdtls/dependencyTree";
 import { rawDependencyTree } from "../../utils/mavenUtils";
 import { dependenciesContentUri } from "../../utils/uiUtils";
 
@@ -29,7 +30,8 @@ export async function getDependencyTree(pomPathOrMavenProject: string | MavenPro
     const task = async (p: vscode.Progress<{ message?: string }>) => {
         p.report({ message: `Generating Dependency Tree: ${name}` });
         try {
-            const rawData = await rawDependencyTree(pomPath);
+            // prefer the tree m2e already resolved in the language server, fork Maven otherwise
+            const rawData = await resolveDependencyTreeText(pomPath) ?? await rawDependencyTree(pomPath);
             return (rawData);
         } catch (error) {
             setUserError(error);
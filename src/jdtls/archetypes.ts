@@ -0,0 +1,68 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+import { Archetype } from "../archetype/Archetype";
+import { Settings } from "../Settings";
+import { getPathToExtensionRoot } from "../utils/contextUtils";
+import { executeJavaLanguageServerCommand, isJavaExtActivated, isJavaLanguageServerStandard } from "./commands";
+
+const COMMAND_SEARCH_ARCHETYPES = "java.maven.searchArchetypes";
+
+interface IArchetypeInfo {
+    groupId: string;
+    artifactId: string;
+    description?: string;
+    repository?: string;
+    versions: string[]; // newest first
+    localOnly: boolean;
+}
+
+export interface IArchetypeSearchOptions {
+    identifiers?: string[]; // "groupId:artifactId", to look up these archetypes only
+    localOnly?: boolean; // only the archetypes missing from the remote catalogs
+}
+
+/**
+ * Search the archetypes of the remote, local and bundled catalogs, indexed by the Java language server,
+ * instead of loading and filtering whole catalogs here.
+ *
+ * @param query words matching the start of words of the artifactId, groupId or description, empty for the default order
+ * @param limit the maximum number of archetypes returned
+ * @returns the best archetypes first, or undefined if the language server cannot search them
+ */
+export async function searchArchetypesInLanguageServer(query: string, limit: number, options?: IArchetypeSearchOptions): Promise<Archetype[] | undefined> {
+    if (!isJavaExtActivated() || !isJavaLanguageServerStandard()) {
+        return undefined;
+    }
+    try {
+        const result: IArchetypeInfo[] | undefined = await executeJavaLanguageServerCommand<IArchetypeInfo[]>(COMMAND_SEARCH_ARCHETYPES, query, limit, {
+            ...options,
+            ...catalogOptions()
+        });
+        return result?.map(info => new Archetype(info.artifactId, info.groupId, info.repository, info.description, info.versions));
+    } catch (error) {
+        return undefined;
+    }
+}
+
+/**
+ * Download the remote catalogs again and index them in the Java language server.
+ *
+ * @returns false if the language server cannot index the catalogs
+ * @throws the error of the language server when a catalog could not be downloaded
+ */
+export async function refreshArchetypesInLanguageServer(): Promise<boolean> {
+    if (!isJavaExtActivated() || !isJavaLanguageServerStandard()) {
+        return false;
+    }
+    await executeJavaLanguageServerCommand<IArchetypeInfo[]>(COMMAND_SEARCH_ARCHETYPES, "", 0, { refresh: true, ...catalogOptions() });
+    return true;
+}
+
+function catalogOptions(): { catalogs: string[], bundledCatalog: string, autoUpdate: boolean } {
+    return {
+        catalogs: Settings.archetypeCatalogs(),
+        bundledCatalog: getPathToExtensionRoot("resources", "archetypes.json"),
+        autoUpdate: Settings.archetypeAutoUpdateCatalogs()
+    };
+}
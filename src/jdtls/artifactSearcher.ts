@@ -1,23 +1,28 @@
 // Copyright (c) Microsoft Corporation. All rights reserved.
 // Licensed under the MIT license.
 
+import * as crypto from "crypto";
 import * as path from "path";
 import * as vscode from "vscode";
+import { Settings } from "../Settings";
 import { applyWorkspaceEdit } from "../utils/editUtils";
 import { registerCommand } from "../utils/uiUtils";
 import { executeJavaLanguageServerCommand, getJavaExtension, isJavaExtActivated } from "./commands";
-
-// Please refer to https://help.eclipse.org/2019-06/index.jsp?topic=%2Forg.eclipse.jdt.doc.isv%2Freference%2Fapi%2Fconstant-values.html
-const UNDEFINED_TYPE = "16777218"; // e.g. Unknown var;
-const UNDEFINED_NAME = "570425394"; // e.g. Unknown.foo();
+import { diagnosticIndicatesUnresolvedType, UnresolvedTypeCandidates } from "./unresolvedTypeCandidates";
 
 const COMMAND_SEARCH_ARTIFACT = "maven.artifactSearch";
+const COMMAND_ADD_INDEX_CONTEXT = "java.maven.addIndexContext";
+const COMMAND_REMOVE_INDEX_CONTEXT = "java.maven.removeIndexContext";
 const TITLE_RESOLVE_UNKNOWN_TYPE = "Resolve unknown type";
+// candidates searched ahead offered directly by hovers and quick fixes
+const MAX_DIRECT_CANDIDATES = 3;
 
 export function registerArtifactSearcher(context: vscode.ExtensionContext): void {
     const javaExt: vscode.Extension<any> | undefined = getJavaExtension();
     if (javaExt) {
-        const resolver: TypeResolver = new TypeResolver(path.join(context.extensionPath, "resources", "IndexData"));
+        const candidates: UnresolvedTypeCandidates = new UnresolvedTypeCandidates(async () => await resolver.initialize());
+        const resolver: TypeResolver = new TypeResolver(path.join(context.extensionPath, "resources", "IndexData"), candidates);
+        context.subscriptions.push(candidates);
 
         registerCommand(context, COMMAND_SEARCH_ARTIFACT, async (param: any) => await resolver.pickAndAddDependency(param));
 
@@ -32,18 +37,29 @@ export function registerArtifactSearcher(context: vscode.ExtensionContext): void
                 return resolver.getArtifactsCodeActions(document, codeActionContext, range);
             }
         }));
+
+        context.subscriptions.push(vscode.workspace.onDidChangeConfiguration((e: vscode.ConfigurationChangeEvent) => {
+            if (e.affectsConfiguration("maven.artifactSearch.indexes")) {
+                resolver.syncIndexContexts().catch(console.error);
+            }
+        }));
     }
 }
 
 class TypeResolver {
     private dataPath: string;
     private initialized = false;
+    // additional index directories searched by the language server, by context id
+    private indexContexts: Map<string, string> = new Map();
+    // candidates of the unresolved types of open files, searched in the background
+    private candidates: UnresolvedTypeCandidates;
 
-    constructor(dataPath: string) {
+    constructor(dataPath: string, candidates: UnresolvedTypeCandidates) {
         this.dataPath = dataPath;
+        this.candidates = candidates;
     }
 
-    public async initialize(): Promise<void> {
+    public async initialize(): Promise<boolean> {
         if (!this.initialized) {
             try {
                 await executeJavaLanguageServerCommand("java.maven.initializeSearcher", this.dataPath);
@@ -51,6 +67,34 @@ class TypeResolver {
             } catch (error) {
                 // ignore
             }
+            await this.syncIndexContexts();
+        }
+        return this.initialized;
+    }
+
+    /**
+     * Add the index directories of the settings to the language server and remove the ones no longer there.
+     */
+    public async syncIndexContexts(): Promise<void> {
+        if (!this.initialized) {
+            return;
+        }
+        const wanted: Map<string, string> = new Map(Settings.artifactSearchIndexes().map((indexPath): [string, string] => [indexContextId(indexPath), indexPath]));
+        for (const id of Array.from(this.indexContexts.keys())) {
+            if (!wanted.has(id)) {
+                this.indexContexts.delete(id);
+                await executeJavaLanguageServerCommand(COMMAND_REMOVE_INDEX_CONTEXT, id);
+            }
+        }
+        for (const [id, indexPath] of Array.from(wanted.entries())) {
+            if (!this.indexContexts.has(id)) {
+                const added: boolean | undefined = await executeJavaLanguageServerCommand<boolean>(COMMAND_ADD_INDEX_CONTEXT, id, indexPath);
+                if (added) {
+                    this.indexContexts.set(id, indexPath);
+                } else {
+                    vscode.window.showWarningMessage(`Cannot open the Maven index at ${indexPath}, classes it lists are not searched.`);
+                }
+            }
         }
     }
 
@@ -83,8 +127,13 @@ class TypeResolver {
                 length
             };
             const commandName: string = TITLE_RESOLVE_UNKNOWN_TYPE;
-            const message = `\uD83D\uDC49 [${commandName}](command:${COMMAND_SEARCH_ARTIFACT}?${encodeURIComponent(JSON.stringify(param))} "${commandName}")`;
-            const hoverMessage: vscode.MarkdownString = new vscode.MarkdownString(message);
+            let message = `\uD83D\uDC49 [${commandName}](command:${COMMAND_SEARCH_ARTIFACT}?${encodeURIComponent(JSON.stringify(param))} "${commandName}")`;
+            for (const candidate of (this.candidates.get(document.uri, className) ?? []).slice(0, MAX_DIRECT_CANDIDATES)) {
+                const artifactParam: any = { ...param, artifact: toArtifactChoice(candidate) };
+                const title = `Import ${candidate.fullClassName}`;
+                message += `\n\n$(package) [${candidate.fullClassName}](command:${COMMAND_SEARCH_ARTIFACT}?${encodeURIComponent(JSON.stringify(artifactParam))} "${title}") ${toCoordinates(candidate)}`;
+            }
+            const hoverMessage: vscode.MarkdownString = new vscode.MarkdownString(message, true);
             hoverMessage.isTrusted = true;
             return new vscode.Hover(hoverMessage);
         } else {
@@ -128,7 +177,16 @@ class TypeResolver {
                 command,
                 kind: vscode.CodeActionKind.QuickFix
             };
-            return [codeAction];
+            // the candidates searched ahead come first, adding one of them needs no search
+            const direct: vscode.CodeAction[] = (this.candidates.get(document.uri, className) ?? []).slice(0, MAX_DIRECT_CANDIDATES).map(candidate => ({
+                title: `Import '${candidate.fullClassName}' from ${toCoordinates(candidate)}`,
+                command: {
+                    ...command,
+                    arguments: [{ ...command.arguments?.[0], artifact: toArtifactChoice(candidate) }]
+                },
+                kind: vscode.CodeActionKind.QuickFix
+            }));
+            return [...direct, codeAction];
         } else {
             return [];
         }
@@ -144,11 +202,16 @@ class TypeResolver {
             return;
         }
 
-        const pickItem: vscode.QuickPickItem | undefined = await vscode.window.showQuickPick(getArtifactsPickItems(param.className), { placeHolder: "Select the artifact you want to add" });
+        param.uri = decodeBase64(param.uri);
+        let pickItem: vscode.QuickPickItem | undefined = param.artifact;
+        if (pickItem === undefined) {
+            const searched: IArtifactSearchResult[] | undefined = this.candidates.get(vscode.Uri.parse(param.uri), param.className);
+            const picks: vscode.QuickPickItem[] | Promise<vscode.QuickPickItem[]> = searched ? toPickItems(searched) : getArtifactsPickItems(param.className);
+            pickItem = await vscode.window.showQuickPick(picks, { placeHolder: "Select the artifact you want to add" });
+        }
         if (pickItem === undefined) {
             return;
         }
-        param.uri = decodeBase64(param.uri);
         const edits: vscode.WorkspaceEdit[] = await getWorkSpaceEdits(pickItem, param);
         await applyEdits(vscode.Uri.parse(param.uri), edits);
     }
@@ -160,6 +223,10 @@ async function getArtifactsPickItems(className: string): Promise<vscode.QuickPic
         className
     };
     const response: IArtifactSearchResult[] = await executeJavaLanguageServerCommand("java.maven.searchArtifact", searchParam);
+    return toPickItems(response);
+}
+
+function toPickItems(response: IArtifactSearchResult[]): vscode.QuickPickItem[] {
     const picks: vscode.QuickPickItem[] = [];
     for (let i = 0; i < Math.min(Math.round(response.length / 5), 5); i += 1) {
         const arr: string[] = [response[i].groupId, " : ", response[i].artifactId, " : ", response[i].version];
@@ -184,6 +251,21 @@ async function getArtifactsPickItems(className: string): Promise<vscode.QuickPic
     return picks;
 }
 
+/**
+ * The pick item of a candidate, what adding its dependency needs.
+ */
+function toArtifactChoice(candidate: IArtifactSearchResult): vscode.QuickPickItem {
+    return {
+        label: candidate.className,
+        description: candidate.fullClassName,
+        detail: [candidate.groupId, " : ", candidate.artifactId, " : ", candidate.version].join("")
+    };
+}
+
+function toCoordinates(candidate: IArtifactSearchResult): string {
+    return `${candidate.groupId}:${candidate.artifactId}:${candidate.version}`;
+}
+
 async function applyEdits(uri: vscode.Uri, edits: any): Promise<void> {
     // if the pom is invalid, no change occurs in edits[2]
     if (Object.keys(edits[2].changes).length > 0) {
@@ -216,15 +298,8 @@ async function getWorkSpaceEdits(pickItem: vscode.QuickPickItem, param: any): Pr
     return await executeJavaLanguageServerCommand("java.maven.addDependency", pickItem.description, pickItem.detail, param.uri, param.line, param.character, param.length);
 }
 
-function startsWithCapitalLetter(word: string): boolean {
-    return word.charCodeAt(0) >= 65 && word.charCodeAt(0) <= 90;
-}
-
-function diagnosticIndicatesUnresolvedType(diagnostic: vscode.Diagnostic, document: vscode.TextDocument): boolean {
-    return (
-        UNDEFINED_TYPE === diagnostic.code ||
-        UNDEFINED_NAME === diagnostic.code && startsWithCapitalLetter(document.getText(diagnostic.range))
-    );
+function indexContextId(indexPath: string): string {
+    return `index-${crypto.createHash("sha1").update(path.resolve(indexPath)).digest("hex").substring(0, 12)}`;
 }
 
 function encodeBase64(content: string): string {
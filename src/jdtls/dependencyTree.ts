@@ -0,0 +1,62 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+import { executeJavaLanguageServerCommand, isJavaExtActivated, isJavaLanguageServerStandard } from "./commands";
+
+const COMMAND_RESOLVE_DEPENDENCY_TREE = "java.maven.resolveDependencyTree";
+// called by the language server with the pom path when a tree it served from an outdated snapshot has been resolved again
+export const COMMAND_DEPENDENCY_TREE_CHANGED = "maven.dependencyTreeChanged";
+
+export interface IDependencyTreeNode {
+    groupId: string;
+    artifactId: string;
+    version: string;
+    scope?: string;
+    omitted?: "conflict" | "duplicate";
+    effectiveVersion?: string;
+    children: IDependencyTreeNode[];
+}
+
+/**
+ * Resolve the dependency tree in the Java language server instead of forking Maven.
+ * The tree persisted by a previous session may be returned while the current one is resolved, see COMMAND_DEPENDENCY_TREE_CHANGED.
+ *
+ * @param pomPath absolute path of pom.xml
+ * @returns the tree rendered in the same text format as depgraph-maven-plugin, or undefined if the language server cannot resolve it
+ */
+export async function resolveDependencyTreeText(pomPath: string): Promise<string | undefined> {
+    if (!isJavaExtActivated() || !isJavaLanguageServerStandard()) {
+        return undefined;
+    }
+    let root: IDependencyTreeNode | undefined;
+    try {
+        root = await executeJavaLanguageServerCommand<IDependencyTreeNode | undefined>(COMMAND_RESOLVE_DEPENDENCY_TREE, pomPath);
+    } catch (error) {
+        return undefined;
+    }
+    if (!root) {
+        return undefined;
+    }
+    const lines: string[] = [[root.groupId, root.artifactId, root.version].join(":")];
+    renderChildren(root.children, "", lines);
+    return `${lines.join("\n")}\n`;
+}
+
+function renderChildren(children: IDependencyTreeNode[], indent: string, lines: string[]): void {
+    children.forEach((child: IDependencyTreeNode, index: number) => {
+        const isLast: boolean = index === children.length - 1;
+        lines.push(`${indent}${isLast ? "\\- " : "+- "}${describe(child)}`);
+        renderChildren(child.children, `${indent}${isLast ? "   " : "|  "}`, lines);
+    });
+}
+
+function describe(node: IDependencyTreeNode): string {
+    const scope: string = node.scope || "compile";
+    if (node.omitted === "conflict") {
+        // same as depgraph: the winning version first, the omitted one in parentheses
+        return `${node.groupId}:${node.artifactId}:${node.effectiveVersion}:${scope} (omitted for conflict: ${node.version})`;
+    } else if (node.omitted === "duplicate") {
+        return `${node.groupId}:${node.artifactId}:${node.version}:${scope} (omitted for duplicate)`;
+    }
+    return `${node.groupId}:${node.artifactId}:${node.version}:${scope}`;
+}
@@ -0,0 +1,23 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+import { executeJavaLanguageServerCommand, isJavaExtActivated, isJavaLanguageServerStandard } from "./commands";
+
+const COMMAND_EFFECTIVE_POM = "java.maven.effectivePom";
+
+/**
+ * Get the effective pom from the model the Java language server already built, instead of forking Maven.
+ *
+ * @param pomPath absolute path of pom.xml
+ * @returns full content of effective pom, or undefined if the language server cannot provide it
+ */
+export async function effectivePomFromLanguageServer(pomPath: string): Promise<string | undefined> {
+    if (!isJavaExtActivated() || !isJavaLanguageServerStandard()) {
+        return undefined;
+    }
+    try {
+        return await executeJavaLanguageServerCommand<string | undefined>(COMMAND_EFFECTIVE_POM, pomPath) || undefined;
+    } catch (error) {
+        return undefined;
+    }
+}
@@ -0,0 +1,79 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+import { executeJavaLanguageServerCommand, isJavaExtActivated, isJavaLanguageServerStandard } from "./commands";
+
+const COMMAND_EXECUTE_GOALS = "java.maven.executeGoals";
+// invoked by the language server with the output of a build, and the events recognized in it, while it runs
+export const COMMAND_BACKGROUND_OUTPUT = "maven.backgroundOutput";
+export const COMMAND_BUILD_EVENTS = "maven.buildEvents";
+
+export interface IBuildEvent {
+    kind: "diagnostic" | "moduleStarted" | "moduleFinished";
+    module?: string; // artifactId of the module being built
+    file?: string;
+    line: number; // 0-based
+    column: number; // 0-based
+    severity?: "error" | "warning";
+    message?: string;
+    status?: "SUCCESS" | "FAILURE" | "SKIPPED";
+    durationMillis: number;
+}
+
+export interface IExecutionResult {
+    exitCode: number;
+    output: string;
+    durationMillis: number;
+    warm: boolean; // whether an already started Maven runtime was reused
+    diagnostics: IBuildEvent[];
+    modules: IBuildEvent[]; // finished modules, with their status and duration
+}
+
+export interface IExecutionListener {
+    onOutput?(text: string): void;
+    onEvents?(events: IBuildEvent[]): void;
+}
+
+let nextRequestId = 0;
+const listeners: Map<string, IExecutionListener> = new Map();
+
+/**
+ * Run Maven in a warm process kept by the Java language server, instead of starting a JVM for every background goal.
+ * Builds of different poms run concurrently, each in its own process.
+ *
+ * @param mvn the Maven executable, which must belong to a regular Maven installation (not a wrapper)
+ * @param pomPath absolute path of pom.xml
+ * @param args unquoted arguments, without -f
+ * @param listener called with the output and the events (problems, module timings) while the build runs
+ * @returns the result of the build, or undefined if the language server cannot run it
+ */
+export async function executeGoalsInLanguageServer(mvn: string, pomPath: string, args: string[], listener?: IExecutionListener): Promise<IExecutionResult | undefined> {
+    if (!isJavaExtActivated() || !isJavaLanguageServerStandard()) {
+        return undefined;
+    }
+    const requestId: string = `${process.pid}-${nextRequestId++}`;
+    if (listener) {
+        listeners.set(requestId, listener);
+    }
+    try {
+        return await executeJavaLanguageServerCommand<IExecutionResult | undefined>(COMMAND_EXECUTE_GOALS, mvn, pomPath, args, requestId) || undefined;
+    } catch (error) {
+        return undefined;
+    } finally {
+        listeners.delete(requestId);
+    }
+}
+
+/**
+ * Handle the output the language server sends for a running build.
+ */
+export function onBackgroundOutput(requestId: string, text: string): void {
+    listeners.get(requestId)?.onOutput?.(text);
+}
+
+/**
+ * Handle the events the language server recognized in the output of a running build.
+ */
+export function onBuildEvents(requestId: string, events: IBuildEvent[]): void {
+    listeners.get(requestId)?.onEvents?.(events);
+}
@@ -0,0 +1,35 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+import { executeJavaLanguageServerCommand, isJavaExtActivated, isJavaLanguageServerStandard } from "./commands";
+
+const COMMAND_DESCRIBE_PLUGINS = "java.maven.describePlugins";
+
+export interface IPluginCoordinates {
+    groupId: string;
+    artifactId: string;
+    version?: string;
+}
+
+export interface IPluginDescriptor extends IPluginCoordinates {
+    goalPrefix?: string;
+    goals?: string[]; // absent when the plugin jar is not in the local repository
+}
+
+/**
+ * Describe plugins from the descriptors of their jars in the local repository, all plugins of a project in one request.
+ *
+ * @param pomPath absolute path of pom.xml, used to fill in missing plugin versions
+ * @param plugins plugins to describe
+ * @returns descriptors in the order of the plugins, or undefined if the language server cannot provide them
+ */
+export async function describePluginsFromLanguageServer(pomPath: string, plugins: IPluginCoordinates[]): Promise<IPluginDescriptor[] | undefined> {
+    if (!isJavaExtActivated() || !isJavaLanguageServerStandard()) {
+        return undefined;
+    }
+    try {
+        return await executeJavaLanguageServerCommand<IPluginDescriptor[] | undefined>(COMMAND_DESCRIBE_PLUGINS, pomPath, plugins) || undefined;
+    } catch (error) {
+        return undefined;
+    }
+}
@@ -0,0 +1,45 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+import { executeJavaLanguageServerCommand, isJavaExtActivated, isJavaLanguageServerStandard } from "./commands";
+
+const COMMAND_SCAN_POM_HEADERS = "java.maven.scanPomHeaders";
+
+export interface IPomHeader {
+    pomPath: string;
+    groupId?: string;
+    artifactId?: string;
+    version?: string;
+    name?: string;
+    packaging?: string;
+    modules: string[];
+    parent?: {
+        groupId?: string;
+        artifactId?: string;
+        version?: string;
+        relativePath?: string; // "" when explicitly disabled
+    };
+    properties: { [key: string]: string };
+}
+
+/**
+ * Read what the explorer shows of many poms in one request: the language server scans them in parallel and caches the result across sessions.
+ *
+ * @param pomPaths absolute paths of pom.xml files
+ * @returns headers by pom path, poms that cannot be read being left out, or undefined if the language server cannot scan them
+ */
+export async function scanPomHeadersInLanguageServer(pomPaths: string[]): Promise<Map<string, IPomHeader> | undefined> {
+    if (pomPaths.length === 0 || !isJavaExtActivated() || !isJavaLanguageServerStandard()) {
+        return undefined;
+    }
+    let headers: IPomHeader[] | undefined;
+    try {
+        headers = await executeJavaLanguageServerCommand<IPomHeader[] | undefined>(COMMAND_SCAN_POM_HEADERS, pomPaths);
+    } catch (error) {
+        return undefined;
+    }
+    if (!headers) {
+        return undefined;
+    }
+    return new Map(headers.map((header): [string, IPomHeader] => [header.pomPath, header]));
+}
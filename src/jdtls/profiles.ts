@@ -0,0 +1,56 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+import * as path from "path";
+import { executeJavaLanguageServerCommand, isJavaExtActivated, isJavaLanguageServerStandard } from "./commands";
+
+const COMMAND_LIST_PROFILES = "java.maven.listProfiles";
+
+export interface IMavenProfileInfo {
+    id: string;
+    active: boolean;
+    source: string; // "pom" or "settings.xml"
+    pomPath?: string; // the pom declaring the profile
+    activation: string[]; // e.g. "activeByDefault", "jdk:[17,)", "property:env=dev"
+}
+
+let pendingRequest: Promise<{ [pomPath: string]: IMavenProfileInfo[] } | undefined> | undefined;
+
+/**
+ * List the profiles of a project from the model the Java language server already built, instead of running help:all-profiles.
+ * The profiles of all workspace projects are requested at once, concurrent callers sharing the same request.
+ *
+ * @param pomPath absolute path of pom.xml
+ * @returns profiles of the pom, its parents and settings.xml, or undefined if the language server cannot provide them
+ */
+export async function profilesFromLanguageServer(pomPath: string): Promise<IMavenProfileInfo[] | undefined> {
+    if (!isJavaExtActivated() || !isJavaLanguageServerStandard()) {
+        return undefined;
+    }
+    if (pendingRequest === undefined) {
+        pendingRequest = listWorkspaceProfiles().then(result => {
+            pendingRequest = undefined;
+            return result;
+        });
+    }
+    const profilesByPom = await pendingRequest;
+    if (profilesByPom === undefined) {
+        return undefined;
+    }
+    const key: string | undefined = Object.keys(profilesByPom).find(p => isSamePath(p, pomPath));
+    return key === undefined ? undefined : profilesByPom[key];
+}
+
+async function listWorkspaceProfiles(): Promise<{ [pomPath: string]: IMavenProfileInfo[] } | undefined> {
+    try {
+        return await executeJavaLanguageServerCommand<{ [pomPath: string]: IMavenProfileInfo[] } | undefined>(COMMAND_LIST_PROFILES) || undefined;
+    } catch (error) {
+        return undefined;
+    }
+}
+
+function isSamePath(a: string, b: string): boolean {
+    const normalizedA: string = path.normalize(a);
+    const normalizedB: string = path.normalize(b);
+    return process.platform === "win32" ? normalizedA.toLowerCase() === normalizedB.toLowerCase() : normalizedA === normalizedB;
+}
@@ -0,0 +1,183 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT license.
+
+import * as vscode from "vscode";
+import { IArtifactSearchResult } from "./artifactSearcher";
+import { executeJavaLanguageServerCommand, isJavaExtActivated, isJavaLanguageServerStandard } from "./commands";
+
+// Please refer to https://help.eclipse.org/2019-06/index.jsp?topic=%2Forg.eclipse.jdt.doc.isv%2Freference%2Fapi%2Fconstant-values.html
+const UNDEFINED_TYPE = "16777218"; // e.g. Unknown var;
+const UNDEFINED_NAME = "570425394"; // e.g. Unknown.foo();
+
+const COMMAND_SEARCH_ARTIFACTS = "java.maven.searchArtifacts";
+// names searched per request, small enough for a request not to hold the language server for long
+const BATCH_SIZE = 16;
+// how long diagnostics must stay still before searching, they come in waves while a file is edited
+const IDLE_DELAY = 1500;
+// pause between two batches, leaving room to the requests of the user
+const BATCH_DELAY = 200;
+// longest pause before searching again a batch that failed, the pause doubling with each failure in a row
+const MAX_RETRY_DELAY = 60000;
+
+// candidates of a name, or whether it is still to be searched or needs the network, left to the search on demand
+type Candidates = IArtifactSearchResult[] | "pending" | "deferred";
+
+/**
+ * Artifact candidates of the unresolved types of open Java files, searched in the background as the language server reports them,
+ * so that hovers and quick fixes have them at hand instead of waiting on a search.
+ *
+ * Names are searched once the diagnostics of a file settle, a small batch at a time. A name leaves the store, and the search
+ * for it is dropped, when its problem goes away or its file is closed: a request none of whose names is still pending is
+ * cancelled in the language server.
+ */
+export class UnresolvedTypeCandidates implements vscode.Disposable {
+    // document uri -> unresolved name -> candidates
+    private files: Map<string, Map<string, Candidates>> = new Map();
+    private disposables: vscode.Disposable[] = [];
+    private timer: NodeJS.Timer | undefined;
+    // the request in flight and the names it searches
+    private search: { batch: string[], cancellation: vscode.CancellationTokenSource } | undefined;
+    // batches failed in a row
+    private failures = 0;
+
+    constructor(private initialize: () => Promise<boolean>) {
+        this.disposables.push(vscode.languages.onDidChangeDiagnostics(e => this.onDidChangeDiagnostics(e.uris)));
+        this.disposables.push(vscode.workspace.onDidCloseTextDocument(document => {
+            this.files.delete(document.uri.toString());
+            this.cancelObsoleteSearch();
+        }));
+    }
+
+    /**
+     * The candidates searched for a name of a file, or undefined if they are not known yet.
+     */
+    public get(uri: vscode.Uri, className: string): IArtifactSearchResult[] | undefined {
+        const candidates: Candidates | undefined = this.files.get(uri.toString())?.get(className);
+        return Array.isArray(candidates) ? candidates : undefined;
+    }
+
+    public dispose(): void {
+        if (this.timer) {
+            clearTimeout(this.timer);
+        }
+        this.disposables.forEach(disposable => disposable.dispose());
+        this.files.clear();
+        this.search?.cancellation.cancel();
+    }
+
+    private onDidChangeDiagnostics(uris: readonly vscode.Uri[]): void {
+        let pending = false;
+        for (const uri of uris) {
+            const document: vscode.TextDocument | undefined = vscode.workspace.textDocuments.find(doc => doc.uri.toString() === uri.toString());
+            if (!document || document.languageId !== "java") {
+                continue;
+            }
+            const names: Set<string> = new Set(vscode.languages.getDiagnostics(uri)
+                .filter(diagnostic => diagnosticIndicatesUnresolvedType(diagnostic, document))
+                .map(diagnostic => document.getText(diagnostic.range)));
+            if (names.size === 0) {
+                this.files.delete(uri.toString());
+                continue;
+            }
+            const previous: Map<string, Candidates> = this.files.get(uri.toString()) ?? new Map();
+            const current: Map<string, Candidates> = new Map();
+            for (const name of Array.from(names)) {
+                const candidates: Candidates = previous.get(name) ?? "pending";
+                current.set(name, candidates);
+                pending = pending || candidates === "pending";
+            }
+            this.files.set(uri.toString(), current);
+        }
+        this.cancelObsoleteSearch();
+        if (pending) {
+            this.schedule(IDLE_DELAY);
+        }
+    }
+
+    private cancelObsoleteSearch(): void {
+        if (this.search && !this.search.batch.some(name => this.isPending(name))) {
+            this.search.cancellation.cancel();
+        }
+    }
+
+    private isPending(name: string): boolean {
+        return Array.from(this.files.values()).some(names => names.get(name) === "pending");
+    }
+
+    private schedule(delay: number): void {
+        if (this.timer) {
+            clearTimeout(this.timer);
+        }
+        this.timer = setTimeout(() => {
+            this.timer = undefined;
+            this.searchBatch().catch(console.error);
+        }, delay);
+    }
+
+    private async searchBatch(): Promise<void> {
+        if (this.search || !isJavaExtActivated() || !isJavaLanguageServerStandard()) {
+            return;
+        }
+        const batch: string[] = this.nextBatch();
+        if (batch.length === 0) {
+            return;
+        }
+        const cancellation: vscode.CancellationTokenSource = new vscode.CancellationTokenSource();
+        this.search = { batch, cancellation };
+        let found: { [className: string]: IArtifactSearchResult[] } | undefined;
+        try {
+            if (await this.initialize() && !cancellation.token.isCancellationRequested) {
+                // the Java extension cancels the request in the language server along with a token passed last
+                found = await executeJavaLanguageServerCommand<{ [className: string]: IArtifactSearchResult[] }>(COMMAND_SEARCH_ARTIFACTS, batch, cancellation.token);
+            }
+        } catch (error) {
+            // cancelled, or failed and searched again below
+        } finally {
+            this.search = undefined;
+        }
+        const cancelled: boolean = cancellation.token.isCancellationRequested;
+        cancellation.dispose();
+        if (found) {
+            this.failures = 0;
+            // names whose problem went away meanwhile are no longer in the store and are dropped here, the language server
+            // leaves out the names the network would have to complete
+            for (const names of Array.from(this.files.values())) {
+                for (const name of batch) {
+                    if (names.get(name) === "pending") {
+                        names.set(name, found[name] ?? "deferred");
+                    }
+                }
+            }
+        } else if (!cancelled) {
+            this.failures++;
+        }
+        // the names of a failed batch are still pending, and searched again after a pause
+        if (this.nextBatch().length > 0) {
+            this.schedule(this.failures === 0 || cancelled ? BATCH_DELAY :
+                Math.min(MAX_RETRY_DELAY, IDLE_DELAY * Math.pow(2, this.failures - 1)));
+        }
+    }
+
+    private nextBatch(): string[] {
+        const batch: Set<string> = new Set();
+        for (const names of Array.from(this.files.values())) {
+            for (const [name, candidates] of Array.from(names.entries())) {
+                if (candidates === "pending" && batch.size < BATCH_SIZE) {
+                    batch.add(name);
+                }
+            }
+        }
+        return Array.from(batch);
+    }
+}
+
+export function diagnosticIndicatesUnresolvedType(diagnostic: vscode.Diagnostic, document: vscode.TextDocument): boolean {
+    return (
+        UNDEFINED_TYPE === diagnostic.code ||
+        UNDEFINED_NAME === diagnostic.code && startsWithCapitalLetter(document.getText(diagnostic.range))
+    );
+}
+
+function startsWithCapitalLetter(word: string): boolean {
+    return word.charCodeAt(0) >= 65 && word.charCodeAt(0) <= 90;
+}
@@ -3,9 +3,12 @@
 
 import * as vscode from "vscode";
 import * as path from "path";
+import { IBuildEvent } from "./jdtls/mavenExecution";
 
 export class MavenProblemMatcher {
     private diagnosticCollection: vscode.DiagnosticCollection;
+    // files the last build of each pom reported problems on, keyed by pom path
+    private reportedFiles: Map<string, Set<string>> = new Map();
 
     constructor() {
         this.diagnosticCollection = vscode.languages.createDiagnosticCollection("maven");
@@ -69,6 +72,46 @@ export class MavenProblemMatcher {
         return null;
     }
 
+    /**
+     * Clear the problems the previous build of a pom reported, before reporting those of a new one with addBuildEvents.
+     * Problems reported by builds of other poms are kept.
+     */
+    public clear(pomPath: string): void {
+        for (const file of this.reportedFiles.get(pomPath) ?? []) {
+            this.diagnosticCollection.delete(vscode.Uri.file(file));
+        }
+        this.reportedFiles.delete(pomPath);
+    }
+
+    /**
+     * Report the problems recognized by the language server in the output of a build of a pom, as they occur.
+     */
+    public addBuildEvents(pomPath: string, events: IBuildEvent[]): void {
+        const diagnosticsMap = new Map<string, vscode.Diagnostic[]>();
+        for (const event of events) {
+            if (event.kind !== "diagnostic" || event.file === undefined) {
+                continue;
+            }
+            if (!diagnosticsMap.has(event.file)) {
+                diagnosticsMap.set(event.file, [...(this.diagnosticCollection.get(vscode.Uri.file(event.file)) ?? [])]);
+            }
+            const diagnostic = new vscode.Diagnostic(
+                new vscode.Range(event.line, event.column, event.line, event.column + 1),
+                event.message ?? "",
+                event.severity === "warning" ? vscode.DiagnosticSeverity.Warning : vscode.DiagnosticSeverity.Error
+            );
+            diagnosticsMap.get(event.file)!.push(diagnostic);
+        }
+
+        if (diagnosticsMap.size > 0 && !this.reportedFiles.has(pomPath)) {
+            this.reportedFiles.set(pomPath, new Set());
+        }
+        for (const [filePath, diagnostics] of diagnosticsMap) {
+            this.reportedFiles.get(pomPath)!.add(filePath);
+            this.diagnosticCollection.set(vscode.Uri.file(filePath), diagnostics);
+        }
+    }
+
     public dispose(): void {
         this.diagnosticCollection.dispose();
     }
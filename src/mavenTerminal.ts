@@ -7,7 +7,6 @@ import * as vscode from "vscode";
 import { mavenOutputChannel } from "./mavenOutputChannel";
 import { Settings } from "./Settings";
 import { executeCommand } from "./utils/cpUtils";
-import { mavenProblemMatcher } from "./mavenProblemMatcher";
 
 export interface ITerminalOptions {
     addNewLine?: boolean;
@@ -92,7 +91,6 @@ class MavenTerminal implements vscode.Disposable {
                 this.terminals[id].dispose();
                 delete this.terminals[id];
             });
-            mavenProblemMatcher.dispose();
         } else if (this.terminals[terminalName] !== undefined) {
             this.terminals[terminalName].dispose();
             delete this.terminals[terminalName];
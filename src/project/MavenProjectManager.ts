@@ -3,6 +3,7 @@
 
 import { MavenProject } from "../explorer/model/MavenProject";
 import * as vscode from "vscode";
+import { IPomHeader, scanPomHeadersInLanguageServer } from "../jdtls/pomHeaders";
 import { Settings } from "../Settings";
 
 export class MavenProjectManager {
@@ -31,7 +32,16 @@ export class MavenProjectManager {
             allProjects.push(currentProject);
         }
 
-        await Promise.all(newProjects.map(async elem => elem.parsePom()));
+        // one request for all the headers, each pom is parsed only when the language server cannot help
+        const headers: Map<string, IPomHeader> | undefined = await scanPomHeadersInLanguageServer(newProjects.map(p => p.pomPath));
+        await Promise.all(newProjects.map(async elem => {
+            const header: IPomHeader | undefined = headers?.get(elem.pomPath);
+            if (header !== undefined) {
+                elem.setHeader(header);
+            } else {
+                await elem.parsePom();
+            }
+        }));
         MavenProjectManager.update(...newProjects);
         newProjects.forEach(p => {
             p.modules.forEach(m => {
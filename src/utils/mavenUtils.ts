@@ -8,6 +8,8 @@ import * as md5 from "md5";
 import * as path from "path";
 import * as vscode from "vscode";
 import * as which from "which";
+import { effectivePomFromLanguageServer } from "../jdtls/effectivePom";
+import { executeGoalsInLanguageServer, IBuildEvent, IExecutionResult } from "../jdtls/mavenExecution";
 import { mavenOutputChannel } from "../mavenOutputChannel";
 import { mavenTerminal } from "../mavenTerminal";
 import { MavenProjectManager } from "../project/MavenProjectManager";
@@ -32,11 +34,21 @@ export async function rawEffectivePom(pomPath: string, options?: {cacheOnly?: bo
     const outputPath: string = getTempFolder(pomPath);
     const epomPath = `${outputPath}.epom`;
     const mtimePath = `${outputPath}.mtime`;
+    if (options?.cacheOnly) {
+        return await readFileIfExists(epomPath);
+    }
+
+    // the language server keeps its own cache, invalidated by any pom of the parent and imported bom chain
+    const ePomFromLanguageServer: string | undefined = await effectivePomFromLanguageServer(pomPath);
+    if (ePomFromLanguageServer !== undefined) {
+        await fse.writeFile(epomPath, ePomFromLanguageServer);
+        return ePomFromLanguageServer;
+    }
+
     const cachedMTimeMs: string | undefined = await readFileIfExists(mtimePath);
     const stat: fse.Stats = await fse.stat(pomPath);
     const mtimeMs: string = stat.mtimeMs.toString();
-
-    if (cachedMTimeMs === mtimeMs || options?.cacheOnly) {
+    if (cachedMTimeMs === mtimeMs) {
         return await readFileIfExists(epomPath);
     }
 
@@ -81,7 +93,28 @@ async function executeInBackground(mvnArgs: string, pomfile?: string): Promise<u
     const userArgs: string | undefined = Settings.Executable.options(pomfile);
     const mvnSettingsFile: string | undefined = Settings.getSettingsFilePath();
     const mvnSettingsArg: string | undefined = mvnSettingsFile ? `-s "${await mavenTerminal.formattedPathForTerminal(mvnSettingsFile)}"` : undefined;
-    const matched: RegExpMatchArray | null = [mvnSettingsArg, mvnArgs, userArgs].filter(Boolean).join(" ").match(/(?:[^\s"]+|"[^"]*")+/g); // Split by space, but ignore spaces in quotes
+    if (pomfile && Object.keys(Settings.getEnvironment(pomfile)).length === 0) {
+        // a warm Maven process of the language server saves the JVM and Maven startup, custom environments need a fresh process
+        const executable: string = workspaceFolder && path.basename(mvn) !== mvn ? path.resolve(workspaceFolder.uri.fsPath, mvn) : mvn;
+        const unquotedArgs: string[] = (mvnSettingsFile ? ["-s", mvnSettingsFile] : []).concat((splitArgs([mvnArgs, userArgs].filter(Boolean).join(" ")) ?? []).map(arg => arg.replace(/"/g, "")));
+        const pomPath: string = pomfile;
+        mavenProblemMatcher.clear(pomPath);
+        const result: IExecutionResult | undefined = await executeGoalsInLanguageServer(executable, pomfile, unquotedArgs, {
+            onOutput: (text: string) => mavenOutputChannel.append(text),
+            onEvents: (events: IBuildEvent[]) => mavenProblemMatcher.addBuildEvents(pomPath, events)
+        });
+        if (result !== undefined) {
+            // problems were reported as the build went, unless the output could not be streamed
+            mavenProblemMatcher.clear(pomPath);
+            mavenProblemMatcher.addBuildEvents(pomPath, result.diagnostics);
+            logModuleDurations(result.modules);
+            if (result.exitCode !== 0) {
+                throw new Error(`Background process terminated with code ${result.exitCode}.`);
+            }
+            return result.exitCode;
+        }
+    }
+    const matched: RegExpMatchArray | null = splitArgs([mvnSettingsArg, mvnArgs, userArgs].filter(Boolean).join(" "));
     const args: string[] = matched !== null ? matched : [];
     if (pomfile) {
         args.push("-f", `"${pomfile}"`);
@@ -131,6 +164,21 @@ async function executeInBackground(mvnArgs: string, pomfile?: string): Promise<u
     });
 }
 
+function logModuleDurations(modules: IBuildEvent[]): void {
+    if (modules.length < 2) {
+        return;
+    }
+    mavenOutputChannel.appendLine("Module build times, slowest first:");
+    for (const module of [...modules].sort((a, b) => b.durationMillis - a.durationMillis)) {
+        mavenOutputChannel.appendLine(`  ${module.module} ${module.status} ${(module.durationMillis / 1000).toFixed(3)} s`);
+    }
+}
+
+// Split by space, but ignore spaces in quotes
+function splitArgs(args: string): RegExpMatchArray | null {
+    return args.match(/(?:[^\s"]+|"[^"]*")+/g);
+}
+
 export async function executeInTerminal(options: {
     command: string;
     mvnPath?: string;